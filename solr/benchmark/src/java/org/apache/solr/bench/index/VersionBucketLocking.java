@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.bench.index;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.apache.solr.update.OptimisticVersionBucket;
+import org.apache.solr.update.StripedUpdateLock;
+import org.apache.solr.update.TimedVersionBucket;
+import org.apache.solr.update.VersionBucket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(32)
+@Warmup(time = 5, iterations = 3)
+@Measurement(time = 10, iterations = 5)
+@Fork(value = 1)
+// Compares the version locking implementations under many concurrent update threads, the way
+// DistributedUpdateProcessor.versionAdd locks: the update lock, then the bucket of the document.
+public class VersionBucketLocking {
+
+  @State(Scope.Benchmark)
+  public static class BenchState {
+
+    @Param({"monitor", "timed", "optimistic"})
+    String locking;
+
+    // fewer buckets means more updates of the same bucket at the same time
+    @Param({"1", "64", "65536"})
+    int numBuckets;
+
+    // the work done while holding the bucket lock
+    @Param({"10", "1000"})
+    int tokens;
+
+    VersionBucket[] buckets;
+    // TimedVersionBucket is only used with a timeout
+    int lockTimeoutMs;
+    ReadWriteLock updateLock;
+    StripedUpdateLock stripedUpdateLock;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      buckets = new VersionBucket[numBuckets];
+      for (int i = 0; i < numBuckets; i++) {
+        switch (locking) {
+          case "monitor":
+            buckets[i] = new VersionBucket();
+            break;
+          case "timed":
+            buckets[i] = new TimedVersionBucket();
+            lockTimeoutMs = 10000;
+            break;
+          case "optimistic":
+            buckets[i] = new OptimisticVersionBucket();
+            break;
+          default:
+            throw new IllegalArgumentException("Unknown locking: " + locking);
+        }
+        // seeded, as it is from the index on startup
+        buckets[i].highest = 1;
+      }
+      if ("optimistic".equals(locking)) {
+        stripedUpdateLock = new StripedUpdateLock();
+      } else {
+        updateLock = new ReentrantReadWriteLock(true);
+      }
+    }
+
+    void lockForUpdate() {
+      if (stripedUpdateLock != null) {
+        stripedUpdateLock.lockForUpdate();
+      } else {
+        updateLock.readLock().lock();
+      }
+    }
+
+    void unlockForUpdate() {
+      if (stripedUpdateLock != null) {
+        stripedUpdateLock.unlockForUpdate();
+      } else {
+        updateLock.readLock().unlock();
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    final SplittableRandom random = new SplittableRandom();
+    long version;
+  }
+
+  @Benchmark
+  public long versionUpdate(BenchState benchState, ThreadState threadState) throws IOException {
+    VersionBucket bucket =
+        benchState.buckets[threadState.random.nextInt(benchState.buckets.length)];
+    long version = ++threadState.version;
+    benchState.lockForUpdate();
+    try {
+      return bucket.runWithLock(
+          benchState.lockTimeoutMs,
+          () -> {
+            try {
+              Blackhole.consumeCPU(benchState.tokens);
+              bucket.updateHighest(version);
+              return bucket.highest;
+            } finally {
+              bucket.unlock();
+            }
+          });
+    } finally {
+      benchState.unlockForUpdate();
+    }
+  }
+}
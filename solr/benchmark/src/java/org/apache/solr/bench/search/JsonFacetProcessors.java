@@ -0,0 +1,253 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.bench.search;
+
+import static org.apache.solr.bench.Docs.docs;
+import static org.apache.solr.bench.generators.SourceDSL.booleans;
+import static org.apache.solr.bench.generators.SourceDSL.doubles;
+import static org.apache.solr.bench.generators.SourceDSL.integers;
+import static org.apache.solr.bench.generators.SourceDSL.lists;
+import static org.apache.solr.bench.generators.SourceDSL.strings;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.solr.bench.Docs;
+import org.apache.solr.bench.MiniClusterState;
+import org.apache.solr.bench.generators.SolrGen;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Timeout;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the individual JSON facet processors and aggregations on a single core, so that the
+ * results aren't dominated by distributed search. Each benchmark forces the processor it is named
+ * after through the facet {@code method}.
+ *
+ * <p>The cardinality of the faceted fields and the density of the facet domain, the percentage of
+ * the index it matches, can be varied through {@link BenchState#cardinality} and {@link
+ * BenchState#density}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(1)
+@Warmup(time = 5, iterations = 3)
+@Measurement(time = 10, iterations = 5)
+@Fork(value = 1)
+@Timeout(time = 60)
+public class JsonFacetProcessors {
+
+  static final String COLLECTION = "c1";
+
+  @State(Scope.Benchmark)
+  public static class BenchState {
+
+    @Param({"200000"})
+    int docCount;
+
+    /** The maximum number of distinct values of the faceted fields */
+    @Param({"100", "10000"})
+    int cardinality;
+
+    /** The percentage of the index matched by the facet domain */
+    @Param({"5", "50", "100"})
+    int density;
+
+    /** The number of segments the index is merged down to */
+    @Param({"10"})
+    int segments;
+
+    private String node;
+
+    @Setup(Level.Trial)
+    public void setupTrial(MiniClusterState.MiniClusterBenchState miniClusterState)
+        throws Exception {
+      miniClusterState.startMiniCluster(1);
+      miniClusterState.createCollection(COLLECTION, 1, 1);
+
+      SolrGen<String> values =
+          strings().basicLatinAlphabet().maxCardinality(cardinality).ofLengthBetween(4, 16);
+      Docs docs =
+          docs()
+              .field("id", integers().incrementing())
+              // used to select the facet domain
+              .field("density_i_dv", integers().between(0, 99))
+              .field("fore_b", booleans().all())
+              .field("bucket_s", strings().basicLatinAlphabet().maxCardinality(20).ofLength(8))
+              .field("single_s", values)
+              .field("multi_ss", lists().of(values).ofSizeBetween(1, 5))
+              .field("multi_ss_nodv", lists().of(values).ofSizeBetween(1, 5))
+              .field("int_i_dv", integers().allWithMaxCardinality(cardinality))
+              .field("double_d_dv", doubles().between(0, 1000));
+
+      miniClusterState.index(COLLECTION, docs, docCount);
+      miniClusterState.forceMerge(COLLECTION, segments);
+      node = miniClusterState.nodes.get(0);
+    }
+
+    QueryRequest request(String jsonFacet, String... moreParams) {
+      ModifiableSolrParams params =
+          MiniClusterState.params(
+              "q",
+              density >= 100 ? "*:*" : "density_i_dv:[0 TO " + (density - 1) + "]",
+              "rows",
+              "0",
+              "distrib",
+              "false",
+              "json.facet",
+              jsonFacet);
+      MiniClusterState.params(params, moreParams);
+      QueryRequest request = new QueryRequest(params);
+      request.setBasePath(node);
+      return request;
+    }
+  }
+
+  private static NamedList<Object> query(
+      MiniClusterState.MiniClusterBenchState miniClusterState, QueryRequest request)
+      throws Exception {
+    return miniClusterState.client.request(request, COLLECTION);
+  }
+
+  /** {@code FacetFieldProcessorByArrayDV} on a multi-valued docValues field */
+  @Benchmark
+  public Object termsArrayDV(
+      MiniClusterState.MiniClusterBenchState miniClusterState, BenchState state)
+      throws Exception {
+    return query(
+        miniClusterState, state.request("{f:{type:terms, field:multi_ss, method:dv, limit:10}}"));
+  }
+
+  /** {@code FacetFieldProcessorByArrayUIF} on a multi-valued field without docValues */
+  @Benchmark
+  public Object termsArrayUIF(
+      MiniClusterState.MiniClusterBenchState miniClusterState, BenchState state)
+      throws Exception {
+    return query(
+        miniClusterState,
+        state.request("{f:{type:terms, field:multi_ss_nodv, method:uif, limit:10}}"));
+  }
+
+  /** {@code FacetFieldProcessorByHashDV} on a single-valued string field */
+  @Benchmark
+  public Object termsHashDV(
+      MiniClusterState.MiniClusterBenchState miniClusterState, BenchState state)
+      throws Exception {
+    return query(
+        miniClusterState,
+        state.request("{f:{type:terms, field:single_s, method:dvhash, limit:10}}"));
+  }
+
+  /** {@code FacetFieldProcessorByHashDV} on a single-valued numeric field */
+  @Benchmark
+  public Object termsHashDVNumeric(
+      MiniClusterState.MiniClusterBenchState miniClusterState, BenchState state)
+      throws Exception {
+    return query(
+        miniClusterState, state.request("{f:{type:terms, field:int_i_dv, limit:10}}"));
+  }
+
+  /** {@code FacetFieldProcessorByEnumTermsStream}, which needs an index order sort */
+  @Benchmark
+  public Object termsEnumStream(
+      MiniClusterState.MiniClusterBenchState miniClusterState, BenchState state)
+      throws Exception {
+    return query(
+        miniClusterState,
+        state.request(
+            "{f:{type:terms, field:single_s, method:stream, sort:'index asc', limit:100}}"));
+  }
+
+  /** {@code FacetRangeProcessor} with a hundred buckets */
+  @Benchmark
+  public Object range(MiniClusterState.MiniClusterBenchState miniClusterState, BenchState state)
+      throws Exception {
+    return query(
+        miniClusterState,
+        state.request("{f:{type:range, field:double_d_dv, start:0, end:1000, gap:10}}"));
+  }
+
+  /** {@code UniqueAgg} of a string field for every bucket */
+  @Benchmark
+  public Object aggUnique(
+      MiniClusterState.MiniClusterBenchState miniClusterState, BenchState state)
+      throws Exception {
+    return query(
+        miniClusterState,
+        state.request(
+            "{f:{type:terms, field:bucket_s, limit:-1, facet:{x:'unique(single_s)'}}}"));
+  }
+
+  /** {@code UniqueAgg} of a numeric field for every bucket */
+  @Benchmark
+  public Object aggUniqueNumeric(
+      MiniClusterState.MiniClusterBenchState miniClusterState, BenchState state)
+      throws Exception {
+    return query(
+        miniClusterState,
+        state.request("{f:{type:terms, field:bucket_s, limit:-1, facet:{x:'unique(int_i_dv)'}}}"));
+  }
+
+  /** {@code HLLAgg} for every bucket */
+  @Benchmark
+  public Object aggHll(MiniClusterState.MiniClusterBenchState miniClusterState, BenchState state)
+      throws Exception {
+    return query(
+        miniClusterState,
+        state.request("{f:{type:terms, field:bucket_s, limit:-1, facet:{x:'hll(int_i_dv)'}}}"));
+  }
+
+  /** {@code PercentileAgg} for every bucket */
+  @Benchmark
+  public Object aggPercentile(
+      MiniClusterState.MiniClusterBenchState miniClusterState, BenchState state)
+      throws Exception {
+    return query(
+        miniClusterState,
+        state.request(
+            "{f:{type:terms, field:bucket_s, limit:-1,"
+                + " facet:{x:'percentile(double_d_dv,50,90,99)'}}}"));
+  }
+
+  /** {@code RelatednessAgg} sorting the buckets of a multi-valued field */
+  @Benchmark
+  public Object aggRelatedness(
+      MiniClusterState.MiniClusterBenchState miniClusterState, BenchState state)
+      throws Exception {
+    return query(
+        miniClusterState,
+        state.request(
+            "{f:{type:terms, field:multi_ss, limit:10, sort:'x desc',"
+                + " facet:{x:'relatedness($fore,$back)'}}}",
+            "fore",
+            "fore_b:true",
+            "back",
+            "*:*"));
+  }
+}
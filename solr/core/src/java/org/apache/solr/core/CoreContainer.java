@@ -151,6 +151,7 @@ import org.apache.solr.security.SecurityPluginHolder;
 import org.apache.solr.security.SolrNodeKeyPair;
 import org.apache.solr.update.SolrCoreState;
 import org.apache.solr.update.UpdateShardHandler;
+import org.apache.solr.update.processor.UpdatePipelineExecutor;
 import org.apache.solr.util.OrderedExecutor;
 import org.apache.solr.util.RefCounted;
 import org.apache.solr.util.StartupLoggingUtils;
@@ -309,6 +310,8 @@ public class CoreContainer {
   private ExecutorService coreContainerAsyncTaskExecutor =
       ExecutorUtil.newMDCAwareCachedThreadPool("Core Container Async Task");
 
+  private final UpdatePipelineExecutor updatePipelineExecutor;
+
   /**
    * Non-empty if the Collection API is executed in a distributed way and not on Overseer, once the
    * CoreContainer has been initialized properly, i.e. method {@link #load()} called. Until then it
@@ -418,6 +421,7 @@ public class CoreContainer {
             ExecutorUtil.newMDCAwareCachedThreadPool(
                 cfg.getReplayUpdatesThreads(),
                 new SolrNamedThreadFactory("replayUpdatesExecutor")));
+    this.updatePipelineExecutor = new UpdatePipelineExecutor();
     this.appHandlersByConfigSetId = new JerseyAppHandlerCache();
 
     SolrPaths.AllowPathBuilder allowPathBuilder = new SolrPaths.AllowPathBuilder();
@@ -657,6 +661,7 @@ public class CoreContainer {
     cfg = null;
     containerProperties = null;
     replayUpdatesExecutor = null;
+    updatePipelineExecutor = null;
     distributedCollectionCommandRunner = Optional.empty();
     allowPaths = null;
     allowListUrlChecker = null;
@@ -710,6 +715,11 @@ public class CoreContainer {
     return replayUpdatesExecutor;
   }
 
+  /** The worker threads of pipelined update requests, null if this container has none. */
+  public UpdatePipelineExecutor getUpdatePipelineExecutor() {
+    return updatePipelineExecutor;
+  }
+
   public SolrPackageLoader getPackageLoader() {
     return packageLoader;
   }
@@ -1325,6 +1335,7 @@ public class CoreContainer {
           () -> {
             replayUpdatesExecutor.shutdownAndAwaitTermination();
           });
+      customThreadPool.submit(updatePipelineExecutor::close);
 
       if (metricManager != null) {
         metricManager.closeReporters(SolrMetricManager.getRegistryName(SolrInfoBean.Group.node));
@@ -306,13 +306,19 @@ public class SolrConfig implements MapSerializable {
       //    filtOptThreshold = getFloat("query/boolTofilterOptimizer/@threshold",.05f);
 
       useFilterForSortedQuery = get("query").get("useFilterForSortedQuery").boolVal(false);
+      compactCachedDocSets = get("query").get("compactCachedDocSets").boolVal(false);
+      adaptiveFilterCaching = get("query").get("adaptiveFilterCaching").boolVal(false);
       queryResultWindowSize = Math.max(1, get("query").get("queryResultWindowSize").intVal(1));
       queryResultMaxDocsCached =
           get("query").get("queryResultMaxDocsCached").intVal(Integer.MAX_VALUE);
+      resumeCachedQueryResults = get("query").get("resumeCachedQueryResults").boolVal(false);
       enableLazyFieldLoading = get("query").get("enableLazyFieldLoading").boolVal(false);
 
       filterCacheConfig =
           CacheConfig.getConfig(this, get("query").get("filterCache"), "query/filterCache");
+      segmentFilterCacheConfig =
+          CacheConfig.getConfig(
+              this, get("query").get("segmentFilterCache"), "query/segmentFilterCache");
       queryResultCacheConfig =
           CacheConfig.getConfig(
               this, get("query").get("queryResultCache"), "query/queryResultCache");
@@ -342,6 +348,8 @@ public class SolrConfig implements MapSerializable {
       httpCachingConfig = new HttpCachingConfig(this);
 
       maxWarmingSearchers = get("query").get("maxWarmingSearchers").intVal(1);
+      indexSearcherExecutorThreads =
+          Math.max(0, get("query").get("indexSearcherExecutorThreads").intVal(0));
       slowQueryThresholdMillis = get("query").get("slowQueryThresholdMillis").intVal(-1);
       for (SolrPluginInfo plugin : plugins) loadPluginInfo(plugin);
 
@@ -673,14 +681,18 @@ public class SolrConfig implements MapSerializable {
   //  public final float filtOptThreshold;
   // SolrIndexSearcher - caches configurations
   public final CacheConfig filterCacheConfig;
+  public final CacheConfig segmentFilterCacheConfig;
   public final CacheConfig queryResultCacheConfig;
   public final CacheConfig documentCacheConfig;
   public final CacheConfig fieldValueCacheConfig;
   public final Map<String, CacheConfig> userCacheConfigs;
   // SolrIndexSearcher - more...
   public final boolean useFilterForSortedQuery;
+  public final boolean compactCachedDocSets;
+  public final boolean adaptiveFilterCaching;
   public final int queryResultWindowSize;
   public final int queryResultMaxDocsCached;
+  public final boolean resumeCachedQueryResults;
   public final boolean enableLazyFieldLoading;
 
   // IndexConfig settings
@@ -691,6 +703,7 @@ public class SolrConfig implements MapSerializable {
   private Map<String, List<PluginInfo>> pluginStore = new LinkedHashMap<>();
 
   public final int maxWarmingSearchers;
+  public final int indexSearcherExecutorThreads; // 0 means searching segments sequentially
   public final boolean useColdSearcher;
   public final Version luceneMatchVersion;
   protected String dataDir;
@@ -806,6 +819,8 @@ public class SolrConfig implements MapSerializable {
         autoCommmitMaxTime,
         autoSoftCommmitMaxDocs,
         autoSoftCommmitMaxTime;
+    // bounds of the soft commit delay chosen by AdaptiveCommitPolicy, -1 if not adaptive
+    public final int autoSoftCommitAdaptiveMinTime, autoSoftCommitAdaptiveMaxTime;
     public final long autoCommitMaxSizeBytes;
     public final boolean openSearcher; // is opening a new searcher part of hard autocommit?
     public final boolean commitWithinSoftCommit;
@@ -833,6 +848,8 @@ public class SolrConfig implements MapSerializable {
 
       this.autoSoftCommmitMaxDocs = autoSoftCommmitMaxDocs;
       this.autoSoftCommmitMaxTime = autoSoftCommmitMaxTime;
+      this.autoSoftCommitAdaptiveMinTime = -1;
+      this.autoSoftCommitAdaptiveMaxTime = -1;
 
       this.commitWithinSoftCommit = commitWithinSoftCommit;
       this.aggregateNodeLevelMetricsEnabled = false;
@@ -848,6 +865,10 @@ public class SolrConfig implements MapSerializable {
       this.openSearcher = autoCommit.get("openSearcher").boolVal(true);
       this.autoSoftCommmitMaxDocs = updateHandler.get("autoSoftCommit").get("maxDocs").intVal(-1);
       this.autoSoftCommmitMaxTime = updateHandler.get("autoSoftCommit").get("maxTime").intVal(-1);
+      this.autoSoftCommitAdaptiveMinTime =
+          updateHandler.get("autoSoftCommit").get("adaptiveMinTime").intVal(-1);
+      this.autoSoftCommitAdaptiveMaxTime =
+          updateHandler.get("autoSoftCommit").get("adaptiveMaxTime").intVal(-1);
       this.commitWithinSoftCommit =
           updateHandler.get("commitWithin").get("softCommit").boolVal(true);
       this.aggregateNodeLevelMetricsEnabled =
@@ -865,7 +886,11 @@ public class SolrConfig implements MapSerializable {
               "openSearcher", openSearcher));
       map.put(
           "autoSoftCommit",
-          Map.of("maxDocs", autoSoftCommmitMaxDocs, "maxTime", autoSoftCommmitMaxTime));
+          Map.of(
+              "maxDocs", autoSoftCommmitMaxDocs,
+              "maxTime", autoSoftCommmitMaxTime,
+              "adaptiveMinTime", autoSoftCommitAdaptiveMinTime,
+              "adaptiveMaxTime", autoSoftCommitAdaptiveMaxTime));
       return map;
     }
   }
@@ -1014,10 +1039,14 @@ public class SolrConfig implements MapSerializable {
     Map<String, Object> m = new LinkedHashMap<>();
     result.put("query", m);
     m.put("useFilterForSortedQuery", useFilterForSortedQuery);
+    m.put("compactCachedDocSets", compactCachedDocSets);
+    m.put("adaptiveFilterCaching", adaptiveFilterCaching);
     m.put("queryResultWindowSize", queryResultWindowSize);
     m.put("queryResultMaxDocsCached", queryResultMaxDocsCached);
+    m.put("resumeCachedQueryResults", resumeCachedQueryResults);
     m.put("enableLazyFieldLoading", enableLazyFieldLoading);
     m.put("maxBooleanClauses", booleanQueryMaxClauseCount);
+    m.put("indexSearcherExecutorThreads", indexSearcherExecutorThreads);
 
     for (SolrPluginInfo plugin : plugins) {
       List<PluginInfo> infos = getPluginInfos(plugin.clazz.getName());
@@ -1048,7 +1077,12 @@ public class SolrConfig implements MapSerializable {
     }
 
     addCacheConfig(
-        m, filterCacheConfig, queryResultCacheConfig, documentCacheConfig, fieldValueCacheConfig);
+        m,
+        filterCacheConfig,
+        segmentFilterCacheConfig,
+        queryResultCacheConfig,
+        documentCacheConfig,
+        fieldValueCacheConfig);
     m = new LinkedHashMap<>();
     result.put("requestDispatcher", m);
     m.put("handleSelect", handleSelect);
@@ -338,6 +338,25 @@ public class SolrCore implements SolrInfoBean, Closeable {
     return solrConfig;
   }
 
+  /**
+   * Gets the executor searchers of this core use to collect the segment slices of a query
+   * concurrently, or null if queries are collected sequentially.
+   *
+   * @see SolrConfig#indexSearcherExecutorThreads
+   */
+  public ExecutorService getIndexSearcherExecutor() {
+    return indexSearcherExecutor;
+  }
+
+  private static ExecutorService initIndexSearcherExecutor(SolrConfig solrConfig) {
+    if (solrConfig.indexSearcherExecutorThreads <= 0) {
+      return null;
+    }
+    return ExecutorUtil.newMDCAwareFixedThreadPool(
+        solrConfig.indexSearcherExecutorThreads,
+        new SolrNamedThreadFactory("indexSearcherExecutor"));
+  }
+
   /**
    * Gets the schema resource name used by this core instance.
    *
@@ -1079,6 +1098,7 @@ public class SolrCore implements SolrInfoBean, Closeable {
       coreProvider = new Provider(coreContainer, getName(), uniqueId);
 
       this.solrConfig = configSet.getSolrConfig();
+      this.indexSearcherExecutor = initIndexSearcherExecutor(solrConfig);
       this.resourceLoader = configSet.getSolrConfig().getResourceLoader();
       this.resourceLoader.initCore(this);
       IndexSchema schema = configSet.getIndexSchema();
@@ -1854,6 +1874,17 @@ public class SolrCore implements SolrInfoBean, Closeable {
       }
     }
 
+    if (indexSearcherExecutor != null) {
+      try {
+        ExecutorUtil.shutdownAndAwaitTermination(indexSearcherExecutor);
+      } catch (Throwable e) {
+        log.error("Exception shutting down indexSearcherExecutor", e);
+        if (e instanceof Error) {
+          throw (Error) e;
+        }
+      }
+    }
+
     if (coreStateClosed) {
       try {
         cleanupOldIndexDirectories(false);
@@ -2072,6 +2103,9 @@ public class SolrCore implements SolrInfoBean, Closeable {
 
   final ExecutorService searcherExecutor =
       ExecutorUtil.newMDCAwareSingleThreadExecutor(new SolrNamedThreadFactory("searcherExecutor"));
+
+  // Collects segment slices of a single query concurrently; null unless configured
+  private final ExecutorService indexSearcherExecutor;
   private int onDeckSearchers; // number of searchers preparing
   // Lock ordering: one can acquire the openSearcherLock and then the searcherLock, but not
   // vice-versa.
@@ -2096,6 +2130,13 @@ public class SolrCore implements SolrInfoBean, Closeable {
     return isEmpty;
   }
 
+  /** Returns the number of searchers being opened or warmed, that are not registered yet. */
+  public int getOnDeckSearchers() {
+    synchronized (searcherLock) {
+      return onDeckSearchers;
+    }
+  }
+
   /**
    * Return a registered {@link RefCounted}&lt;{@link SolrIndexSearcher}&gt; with the reference
    * count incremented. It <b>must</b> be decremented when no longer needed. This method should not
@@ -30,6 +30,7 @@ import org.apache.solr.handler.loader.ContentStreamLoader;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.response.SolrQueryResponse;
 import org.apache.solr.update.SolrCoreState;
+import org.apache.solr.update.processor.PipelinedUpdateProcessor;
 import org.apache.solr.update.processor.UpdateRequestProcessor;
 import org.apache.solr.update.processor.UpdateRequestProcessorChain;
 import org.apache.solr.util.circuitbreaker.CircuitBreaker;
@@ -83,7 +84,8 @@ public abstract class ContentStreamHandlerBase extends RequestHandlerBase {
       SolrParams params = req.getParams();
       UpdateRequestProcessorChain processorChain = req.getCore().getUpdateProcessorChain(params);
 
-      UpdateRequestProcessor processor = processorChain.createProcessor(req, rsp);
+      UpdateRequestProcessor processor =
+          PipelinedUpdateProcessor.createProcessor(processorChain, req, rsp);
 
       try {
         ContentStreamLoader documentLoader = newLoader(req, processor);
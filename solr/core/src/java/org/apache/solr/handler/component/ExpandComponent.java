@@ -16,11 +16,14 @@
  */
 package org.apache.solr.handler.component;
 
+import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntHashSet;
 import com.carrotsearch.hppc.IntObjectHashMap;
+import com.carrotsearch.hppc.LongArrayList;
 import com.carrotsearch.hppc.LongHashSet;
 import com.carrotsearch.hppc.LongObjectHashMap;
 import com.carrotsearch.hppc.LongObjectMap;
+import com.carrotsearch.hppc.cursors.IntCursor;
 import com.carrotsearch.hppc.cursors.IntObjectCursor;
 import com.carrotsearch.hppc.cursors.LongCursor;
 import com.carrotsearch.hppc.cursors.LongObjectCursor;
@@ -28,19 +31,25 @@ import com.carrotsearch.hppc.cursors.ObjectCursor;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.MultiDocValues;
 import org.apache.lucene.index.NumericDocValues;
 import org.apache.lucene.index.OrdinalMap;
+import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
 import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.LeafCollector;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
@@ -52,15 +61,18 @@ import org.apache.lucene.search.TermInSetQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TopDocsCollector;
 import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.search.TopFieldDocs;
 import org.apache.lucene.search.TopScoreDocCollector;
 import org.apache.lucene.search.TotalHitCountCollector;
 import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.BitSetIterator;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.BytesRefBuilder;
 import org.apache.lucene.util.CharsRefBuilder;
 import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.LongValues;
+import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.params.ExpandParams;
@@ -81,6 +93,7 @@ import org.apache.solr.search.DocSlice;
 import org.apache.solr.search.QParser;
 import org.apache.solr.search.QueryUtils;
 import org.apache.solr.search.ReturnFields;
+import org.apache.solr.search.SolrCache;
 import org.apache.solr.search.SolrIndexSearcher;
 import org.apache.solr.search.SortSpecParsing;
 import org.apache.solr.search.SyntaxError;
@@ -107,6 +120,13 @@ import org.apache.solr.util.plugin.PluginInfoInitialized;
  */
 public class ExpandComponent extends SearchComponent implements PluginInfoInitialized {
   public static final String COMPONENT_NAME = "expand";
+
+  /**
+   * Name of the optional user cache holding the top docs of every group of an expand query, see
+   * {@link ExpandParams#EXPAND_CACHE}.
+   */
+  public static final String CACHE_NAME = "expandCache";
+
   private static final int finishingStage = ResponseBuilder.STAGE_GET_FIELDS;
   private PluginInfo info = PluginInfo.EMPTY_INFO;
 
@@ -228,6 +248,28 @@ public class ExpandComponent extends SearchComponent implements PluginInfoInitia
           "Expand not supported for fieldType:'" + fieldType.getTypeName() + "'");
     }
 
+    @SuppressWarnings("unchecked")
+    final SolrCache<GroupsCacheKey, CachedGroups> expandCache = searcher.getCache(CACHE_NAME);
+    if (expandCache != null
+        && params.getBool(ExpandParams.EXPAND_CACHE, true)
+        && !params.getBool(ExpandParams.EXPAND_NULL, false)) {
+      final SimpleOrderedMap<DocSlice> expanded =
+          getCachedGroups(
+              searcher,
+              expandCache,
+              schemaField,
+              query,
+              newFilters,
+              sort == null ? null : sort.rewrite(searcher),
+              limit,
+              rb.getResults().docList,
+              rb.rsp.getReturnFields());
+      if (expanded != null) {
+        rb.rsp.add("expanded", expanded);
+        return;
+      }
+    }
+
     FixedBitSet groupBits = null;
     LongHashSet groupSet = null;
     DocList docList = rb.getResults().docList;
@@ -760,27 +802,15 @@ public class ExpandComponent extends SearchComponent implements PluginInfoInitia
       if (groupCollector instanceof TopDocsCollector) {
         TopDocsCollector<?> topDocsCollector = TopDocsCollector.class.cast(groupCollector);
         TopDocs topDocs = topDocsCollector.topDocs();
-        ScoreDoc[] scoreDocs = topDocs.scoreDocs;
-        if (scoreDocs.length > 0) {
-          if (returnFields.wantsScore() && sort != null) {
-            TopFieldCollector.populateScores(scoreDocs, searcher, query);
-          }
-          int[] docs = new int[scoreDocs.length];
-          float[] scores = new float[scoreDocs.length];
-          for (int i = 0; i < docs.length; i++) {
-            ScoreDoc scoreDoc = scoreDocs[i];
-            docs[i] = scoreDoc.doc;
-            scores[i] = scoreDoc.score;
-          }
+        if (topDocs.scoreDocs.length > 0) {
           assert topDocs.totalHits.relation == TotalHits.Relation.EQUAL_TO;
-          return new DocSlice(
-              0,
-              docs.length,
-              docs,
-              scores,
+          return toDocSlice(
+              topDocs.scoreDocs,
               topDocs.totalHits.value,
-              Float.NaN,
-              TotalHits.Relation.EQUAL_TO);
+              sort,
+              query,
+              searcher,
+              returnFields);
         }
       } else {
         int totalHits = ((TotalHitCountCollector) groupCollector).getTotalHits();
@@ -827,6 +857,418 @@ public class ExpandComponent extends SearchComponent implements PluginInfoInitia
     }
   }
 
+  private static DocSlice toDocSlice(
+      ScoreDoc[] scoreDocs,
+      long totalHits,
+      Sort sort,
+      Query query,
+      SolrIndexSearcher searcher,
+      ReturnFields returnFields)
+      throws IOException {
+    if (returnFields.wantsScore() && sort != null) {
+      TopFieldCollector.populateScores(scoreDocs, searcher, query);
+    }
+    int[] docs = new int[scoreDocs.length];
+    float[] scores = new float[scoreDocs.length];
+    for (int i = 0; i < docs.length; i++) {
+      ScoreDoc scoreDoc = scoreDocs[i];
+      docs[i] = scoreDoc.doc;
+      scores[i] = scoreDoc.score;
+    }
+    return new DocSlice(
+        0, docs.length, docs, scores, totalHits, Float.NaN, TotalHits.Relation.EQUAL_TO);
+  }
+
+  /**
+   * Expands the groups of the current page from the top docs of every group. These are collected
+   * once per searcher for a given expand query, concurrently over the segment slices when the
+   * searcher has an executor, and kept in the {@link #CACHE_NAME} cache so that the following pages
+   * do not collect anything. Returns null when the page can not be expanded from the cached top
+   * docs, so the groups of the page are collected as usual.
+   */
+  private SimpleOrderedMap<DocSlice> getCachedGroups(
+      SolrIndexSearcher searcher,
+      SolrCache<GroupsCacheKey, CachedGroups> expandCache,
+      SchemaField schemaField,
+      Query query,
+      List<Query> filters,
+      Sort sort,
+      int limit,
+      DocList docList,
+      ReturnFields returnFields)
+      throws IOException {
+    final List<LeafReaderContext> leaves = searcher.getTopReaderContext().leaves();
+    if (leaves.isEmpty()) {
+      return null;
+    }
+    final OrdinalMap ordinalMap = getOrdinalMap(searcher, schemaField);
+
+    // Gather the groups of the current page, keyed like the cached groups
+    final int[] globalDocs = new int[docList.size()];
+    final DocIterator idit = docList.iterator();
+    for (int i = 0; idit.hasNext(); i++) {
+      globalDocs[i] = idit.nextDoc();
+    }
+    Arrays.sort(globalDocs);
+    final LongObjectHashMap<IntArrayList> pageGroups = new LongObjectHashMap<>();
+    final List<String> groupValues = new ArrayList<>();
+    final LongArrayList groupKeys = new LongArrayList();
+    int leafOrd = -1;
+    LeafGroupKeys leafGroupKeys = null;
+    for (int globalDoc : globalDocs) {
+      final int ord = ReaderUtil.subIndex(globalDoc, leaves);
+      if (ord != leafOrd) {
+        leafOrd = ord;
+        leafGroupKeys = getLeafGroupKeys(leaves.get(ord), schemaField, ordinalMap);
+      }
+      if (leafGroupKeys.advanceExact(globalDoc - leaves.get(ord).docBase)) {
+        final long groupKey = leafGroupKeys.groupKey();
+        IntArrayList groupDocs = pageGroups.get(groupKey);
+        if (groupDocs == null) {
+          groupDocs = new IntArrayList(1);
+          pageGroups.put(groupKey, groupDocs);
+          groupKeys.add(groupKey);
+          groupValues.add(leafGroupKeys.groupValue());
+        }
+        groupDocs.add(globalDoc);
+      }
+    }
+
+    final int depth = limit + 1;
+    final CachedGroups cachedGroups =
+        expandCache.computeIfAbsent(
+            new GroupsCacheKey(schemaField.getName(), query, filters, sort, depth),
+            k -> collectGroups(searcher, schemaField, ordinalMap, query, filters, sort, depth));
+
+    final SimpleOrderedMap<DocSlice> outMap = new SimpleOrderedMap<>();
+    for (int i = 0; i < groupKeys.size(); i++) {
+      final TopDocs topDocs = cachedGroups.topDocs.get(groupKeys.get(i));
+      if (topDocs == null) {
+        continue;
+      }
+      // the docs of the page are left out of their group, like the group heads
+      final IntArrayList groupDocs = pageGroups.get(groupKeys.get(i));
+      long totalHits = topDocs.totalHits.value;
+      for (IntCursor doc : groupDocs) {
+        if (cachedGroups.matches.get(doc.value)) {
+          totalHits--;
+        }
+      }
+      final List<ScoreDoc> scoreDocs = new ArrayList<>(limit);
+      for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+        if (scoreDocs.size() == limit) {
+          break;
+        }
+        if (!groupDocs.contains(scoreDoc.doc)) {
+          scoreDocs.add(new ScoreDoc(scoreDoc.doc, scoreDoc.score));
+        }
+      }
+      if (scoreDocs.size() < Math.min(limit, totalHits)) {
+        // more than one doc of the group is on the page, so not enough top docs were cached
+        return null;
+      }
+      if (totalHits > 0) {
+        if (limit == 0) {
+          outMap.add(
+              groupValues.get(i),
+              new DocSlice(0, 0, null, null, totalHits, 0, TotalHits.Relation.EQUAL_TO));
+        } else {
+          final ScoreDoc[] docs = scoreDocs.toArray(new ScoreDoc[0]);
+          outMap.add(
+              groupValues.get(i),
+              toDocSlice(docs, totalHits, sort, query, searcher, returnFields));
+        }
+      }
+    }
+    return outMap;
+  }
+
+  private static OrdinalMap getOrdinalMap(SolrIndexSearcher searcher, SchemaField schemaField)
+      throws IOException {
+    if (schemaField.getType() instanceof StrField) {
+      SortedDocValues values =
+          DocValues.getSorted(searcher.getSlowAtomicReader(), schemaField.getName());
+      if (values instanceof MultiDocValues.MultiSortedDocValues) {
+        return ((MultiDocValues.MultiSortedDocValues) values).mapping;
+      }
+    }
+    return null;
+  }
+
+  private static CachedGroups collectGroups(
+      SolrIndexSearcher searcher,
+      SchemaField schemaField,
+      OrdinalMap ordinalMap,
+      Query query,
+      List<Query> filters,
+      Sort sort,
+      int depth)
+      throws IOException {
+    final CollectorManager<AllGroupsCollector, CachedGroups> manager =
+        new CollectorManager<>() {
+          @Override
+          public AllGroupsCollector newCollector() {
+            return new AllGroupsCollector(searcher.maxDoc(), schemaField, ordinalMap, sort, depth);
+          }
+
+          @Override
+          public CachedGroups reduce(Collection<AllGroupsCollector> collectors) {
+            return CachedGroups.merge(collectors, sort, depth);
+          }
+        };
+
+    final SolrIndexSearcher.ProcessedFilter pfilter = searcher.getProcessedFilter(filters);
+    final Query filteredQuery = QueryUtils.combineQueryAndFilter(query, pfilter.filter);
+    if (pfilter.postFilter == null) {
+      return searcher.search(filteredQuery, manager);
+    }
+    // post filters need to see every match in a single collector
+    final AllGroupsCollector collector = manager.newCollector();
+    pfilter.postFilter.setLastDelegate(collector);
+    searcher.search(filteredQuery, pfilter.postFilter);
+    return manager.reduce(Collections.singletonList(collector));
+  }
+
+  /** Reads the group keys of the docs of one segment, in increasing doc order. */
+  private interface LeafGroupKeys {
+    boolean advanceExact(int contextDoc) throws IOException;
+
+    /** The global ordinal, or the numeric value, of the group of the current doc. */
+    long groupKey() throws IOException;
+
+    /** The value of the group of the current doc, as it is written in the response. */
+    String groupValue() throws IOException;
+  }
+
+  private static LeafGroupKeys getLeafGroupKeys(
+      LeafReaderContext context, SchemaField schemaField, OrdinalMap ordinalMap)
+      throws IOException {
+    final FieldType fieldType = schemaField.getType();
+    if (fieldType instanceof StrField) {
+      final SortedDocValues values = DocValues.getSorted(context.reader(), schemaField.getName());
+      final LongValues globalOrds =
+          ordinalMap == null ? LongValues.IDENTITY : ordinalMap.getGlobalOrds(context.ord);
+      return new LeafGroupKeys() {
+        @Override
+        public boolean advanceExact(int contextDoc) throws IOException {
+          return values.advanceExact(contextDoc);
+        }
+
+        @Override
+        public long groupKey() throws IOException {
+          return globalOrds.get(values.ordValue());
+        }
+
+        @Override
+        public String groupValue() throws IOException {
+          final CharsRefBuilder charsRef = new CharsRefBuilder();
+          fieldType.indexedToReadable(values.lookupOrd(values.ordValue()), charsRef);
+          return charsRef.toString();
+        }
+      };
+    }
+    final NumericDocValues values = DocValues.getNumeric(context.reader(), schemaField.getName());
+    return new LeafGroupKeys() {
+      @Override
+      public boolean advanceExact(int contextDoc) throws IOException {
+        return values.advanceExact(contextDoc);
+      }
+
+      @Override
+      public long groupKey() throws IOException {
+        return values.longValue();
+      }
+
+      @Override
+      public String groupValue() throws IOException {
+        return numericToString(fieldType, values.longValue());
+      }
+    };
+  }
+
+  /** Key of the {@link #CACHE_NAME} cache. */
+  private static final class GroupsCacheKey {
+    private final String field;
+    private final Query query;
+    private final List<Query> filters;
+    private final Sort sort;
+    private final int depth;
+
+    GroupsCacheKey(String field, Query query, List<Query> filters, Sort sort, int depth) {
+      this.field = field;
+      this.query = query;
+      this.filters = new ArrayList<>(filters);
+      this.sort = sort;
+      this.depth = depth;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof GroupsCacheKey)) return false;
+      GroupsCacheKey other = (GroupsCacheKey) o;
+      return depth == other.depth
+          && field.equals(other.field)
+          && query.equals(other.query)
+          && filters.equals(other.filters)
+          && Objects.equals(sort, other.sort);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(field, query, filters, sort, depth);
+    }
+  }
+
+  /**
+   * The top docs of every group of an expand query, along with all the docs matching it so that
+   * the hit counts of the groups can leave out the docs of a page.
+   */
+  private static final class CachedGroups implements Accountable {
+    private static final long BASE_RAM_BYTES_USED =
+        RamUsageEstimator.shallowSizeOfInstance(CachedGroups.class);
+
+    private final LongObjectHashMap<TopDocs> topDocs;
+    private final FixedBitSet matches;
+    private final long ramBytesUsed;
+
+    private CachedGroups(LongObjectHashMap<TopDocs> topDocs, FixedBitSet matches) {
+      this.topDocs = topDocs;
+      this.matches = matches;
+      long bytes = BASE_RAM_BYTES_USED + matches.ramBytesUsed();
+      for (ObjectCursor<TopDocs> cursor : topDocs.values()) {
+        bytes +=
+            Long.BYTES
+                + RamUsageEstimator.shallowSizeOfInstance(TopDocs.class)
+                + RamUsageEstimator.shallowSizeOf(cursor.value.scoreDocs)
+                + cursor.value.scoreDocs.length
+                    * RamUsageEstimator.shallowSizeOfInstance(FieldDoc.class);
+      }
+      this.ramBytesUsed = bytes;
+    }
+
+    static CachedGroups merge(Collection<AllGroupsCollector> collectors, Sort sort, int depth) {
+      final LongObjectHashMap<List<TopDocs>> groupTopDocs = new LongObjectHashMap<>();
+      FixedBitSet matches = null;
+      for (AllGroupsCollector collector : collectors) {
+        if (matches == null) {
+          matches = collector.matches;
+        } else {
+          matches.or(collector.matches);
+        }
+        for (LongObjectCursor<TopDocsCollector<?>> cursor : collector.groups) {
+          List<TopDocs> list = groupTopDocs.get(cursor.key);
+          if (list == null) {
+            list = new ArrayList<>(collectors.size());
+            groupTopDocs.put(cursor.key, list);
+          }
+          list.add(cursor.value.topDocs());
+        }
+      }
+
+      final LongObjectHashMap<TopDocs> topDocs = new LongObjectHashMap<>(groupTopDocs.size());
+      for (LongObjectCursor<List<TopDocs>> cursor : groupTopDocs) {
+        final List<TopDocs> list = cursor.value;
+        final TopDocs merged;
+        if (list.size() == 1) {
+          merged = list.get(0);
+        } else if (sort == null) {
+          merged = TopDocs.merge(depth, list.toArray(new TopDocs[0]));
+        } else {
+          merged = TopDocs.merge(sort, depth, list.toArray(new TopFieldDocs[0]));
+        }
+        topDocs.put(cursor.key, merged);
+      }
+      return new CachedGroups(topDocs, matches);
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return ramBytesUsed;
+    }
+  }
+
+  /**
+   * Collects the top docs of every group, creating the collector of a group when its first doc is
+   * found, and the docs that have a group.
+   */
+  private static class AllGroupsCollector implements Collector {
+    private final SchemaField schemaField;
+    private final OrdinalMap ordinalMap;
+    private final Sort sort;
+    private final int depth;
+    private final ScoreMode scoreMode;
+
+    private final LongObjectHashMap<TopDocsCollector<?>> groups = new LongObjectHashMap<>();
+    private final FixedBitSet matches;
+
+    AllGroupsCollector(
+        int maxDoc, SchemaField schemaField, OrdinalMap ordinalMap, Sort sort, int depth) {
+      this.schemaField = schemaField;
+      this.ordinalMap = ordinalMap;
+      this.sort = sort;
+      this.depth = depth;
+      this.matches = new FixedBitSet(maxDoc);
+      this.scoreMode = newGroupCollector().scoreMode();
+    }
+
+    private TopDocsCollector<?> newGroupCollector() {
+      if (sort == null) {
+        return TopScoreDocCollector.create(depth, Integer.MAX_VALUE);
+      } else {
+        return TopFieldCollector.create(sort, depth, Integer.MAX_VALUE);
+      }
+    }
+
+    @Override
+    public ScoreMode scoreMode() {
+      return scoreMode;
+    }
+
+    @Override
+    public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
+      final int docBase = context.docBase;
+      final LeafGroupKeys leafGroupKeys = getLeafGroupKeys(context, schemaField, ordinalMap);
+      final LongObjectHashMap<LeafCollector> leafCollectors = new LongObjectHashMap<>();
+
+      return new LeafCollector() {
+        private Scorable scorer;
+
+        @Override
+        public void setScorer(Scorable scorer) throws IOException {
+          this.scorer = scorer;
+          for (ObjectCursor<LeafCollector> c : leafCollectors.values()) {
+            c.value.setScorer(scorer);
+          }
+        }
+
+        @Override
+        public void collect(int docId) throws IOException {
+          if (!leafGroupKeys.advanceExact(docId)) {
+            return;
+          }
+          matches.set(docBase + docId);
+          final long groupKey = leafGroupKeys.groupKey();
+          final int index = leafCollectors.indexOf(groupKey);
+          final LeafCollector leafCollector;
+          if (index >= 0) {
+            leafCollector = leafCollectors.indexGet(index);
+          } else {
+            TopDocsCollector<?> groupCollector = groups.get(groupKey);
+            if (groupCollector == null) {
+              groupCollector = newGroupCollector();
+              groups.put(groupKey, groupCollector);
+            }
+            leafCollector = groupCollector.getLeafCollector(context);
+            leafCollector.setScorer(scorer);
+            leafCollectors.indexInsert(index, groupKey, leafCollector);
+          }
+          leafCollector.collect(docId);
+        }
+      };
+    }
+  }
+
   private Query getGroupQuery(String fname, FieldType ft, int size, LongHashSet groupSet) {
 
     BytesRef[] bytesRefs = new BytesRef[size];
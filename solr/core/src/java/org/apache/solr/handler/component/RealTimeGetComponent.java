@@ -24,6 +24,7 @@ import static org.apache.solr.search.QueryUtils.makeQueryable;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -816,6 +817,76 @@ public class RealTimeGetComponent extends SearchComponent {
     return sid;
   }
 
+  /**
+   * Obtains the latest documents for several root ids, like {@link #getInputDocument(SolrCore,
+   * BytesRef, BytesRef, AtomicLong, Set, Resolution)} called for each of them with the same id and
+   * root id. The ids that aren't in the update log are looked up in the realtime searcher with
+   * {@link SolrIndexSearcher#lookupIds(BytesRef[])}, and their documents are fetched in doc id
+   * order.
+   *
+   * @param rootIds IDs of root documents, in any order
+   * @param resolveStrategy {@link Resolution#DOC} or {@link Resolution#ROOT_WITH_CHILDREN}.
+   * @return the documents, in the same order as the ids, null for the ones that weren't found
+   */
+  public static SolrInputDocument[] getInputDocuments(
+      SolrCore core, List<BytesRef> rootIds, Resolution resolveStrategy) throws IOException {
+    assert resolveStrategy != Resolution.PARTIAL;
+    final SolrInputDocument[] result = new SolrInputDocument[rootIds.size()];
+
+    List<Integer> notInTlog = new ArrayList<>();
+    for (int i = 0; i < result.length; i++) {
+      SolrInputDocument sid =
+          getInputDocumentFromTlog(core, rootIds.get(i), null, null, resolveStrategy);
+      if (sid == null) {
+        notInTlog.add(i);
+      } else if (sid != DELETED) {
+        result[i] = sid;
+      }
+    }
+    if (notInTlog.isEmpty()) {
+      return result;
+    }
+
+    notInTlog.sort((a, b) -> rootIds.get(a).compareTo(rootIds.get(b)));
+    final BytesRef[] sortedIds = new BytesRef[notInTlog.size()];
+    for (int i = 0; i < sortedIds.length; i++) {
+      sortedIds[i] = rootIds.get(notInTlog.get(i));
+    }
+
+    RefCounted<SolrIndexSearcher> searcherHolder = core.getRealtimeSearcher();
+    try {
+      SolrIndexSearcher searcher = searcherHolder.get();
+      List<LeafReaderContext> leaves = searcher.getTopReaderContext().leaves();
+      long[] found = searcher.lookupIds(sortedIds);
+
+      // (global doc id << 32) | position in result
+      long[] docs = new long[found.length];
+      int numDocs = 0;
+      for (int i = 0; i < found.length; i++) {
+        if (found[i] == -1) continue;
+        if (resolveStrategy == Resolution.ROOT_WITH_CHILDREN
+            && core.getLatestSchema().isUsableForChildDocs()
+            && !hasRootTerm(searcher, sortedIds[i])) {
+          throw new SolrException(
+              ErrorCode.BAD_REQUEST,
+              "Attempted an atomic/partial update to a child doc without indicating the _root_ somehow.");
+        }
+        int docId = leaves.get((int) (found[i] >> 32)).docBase + (int) found[i];
+        docs[numDocs++] = ((long) docId << 32) | notInTlog.get(i);
+      }
+      Arrays.sort(docs, 0, numDocs);
+
+      SolrReturnFields returnFields = makeReturnFields(core, null, resolveStrategy);
+      for (int i = 0; i < numDocs; i++) {
+        SolrDocument solrDoc = fetchSolrDoc(searcher, (int) (docs[i] >>> 32), returnFields);
+        result[(int) docs[i]] = toSolrInputDocument(solrDoc, core.getLatestSchema());
+      }
+    } finally {
+      searcherHolder.decref();
+    }
+    return result;
+  }
+
   private static boolean hasRootTerm(SolrIndexSearcher searcher, BytesRef rootIdBytes)
       throws IOException {
     final String fieldName = IndexSchema.ROOT_FIELD_NAME;
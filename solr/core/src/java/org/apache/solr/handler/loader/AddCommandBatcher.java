@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.handler.loader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.params.UpdateParams;
+import org.apache.solr.update.AddUpdateCommand;
+import org.apache.solr.update.processor.UpdateRequestProcessor;
+
+/**
+ * Collects the consecutive add commands of a loader and hands them to the processor chain in
+ * batches of bounded size, see {@link UpdateRequestProcessor#processAddBatch(List)}. Loaders must
+ * {@link #flush()} before processing any other kind of command, and when done.
+ */
+class AddCommandBatcher {
+  static final int DEFAULT_BATCH_SIZE = 100;
+
+  private final UpdateRequestProcessor processor;
+  private final int batchSize;
+  private List<AddUpdateCommand> batch;
+
+  AddCommandBatcher(UpdateRequestProcessor processor, SolrParams params) {
+    this.processor = processor;
+    this.batchSize = params.getInt(UpdateParams.ADD_BATCH_SIZE, DEFAULT_BATCH_SIZE);
+  }
+
+  /** Adds a command to the batch. The command must not be reused by the caller. */
+  void add(AddUpdateCommand cmd) throws IOException {
+    if (batchSize <= 1) {
+      processor.processAdd(cmd);
+      return;
+    }
+    if (batch == null) {
+      batch = new ArrayList<>(batchSize);
+    }
+    batch.add(cmd);
+    if (batch.size() >= batchSize) {
+      flush();
+    }
+  }
+
+  /** Processes the pending commands, if any. */
+  void flush() throws IOException {
+    if (batch == null || batch.isEmpty()) {
+      return;
+    }
+    // not processed again if this fails
+    List<AddUpdateCommand> cmds = batch;
+    batch = null;
+    if (cmds.size() == 1) {
+      processor.processAdd(cmds.get(0));
+    } else {
+      processor.processAddBatch(cmds);
+    }
+  }
+
+  /**
+   * Processes the pending commands after the loader failed with {@code cause}, as if they had been
+   * processed one by one before the error. Should this fail too, the exception is added to the
+   * suppressed ones of {@code cause}, which remains the error reported to the client.
+   */
+  void flushAfterError(Throwable cause) {
+    try {
+      flush();
+    } catch (Exception e) {
+      cause.addSuppressed(e);
+    }
+  }
+}
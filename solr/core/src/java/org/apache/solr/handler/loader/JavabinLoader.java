@@ -90,10 +90,9 @@ public class JavabinLoader extends ContentStreamLoader {
       return;
     }
     UpdateRequest update = null;
+    final AddCommandBatcher batcher = new AddCommandBatcher(processor, req.getParams());
     JavaBinUpdateRequestCodec.StreamingUpdateHandler handler =
         new JavaBinUpdateRequestCodec.StreamingUpdateHandler() {
-          private AddUpdateCommand addCmd = null;
-
           @Override
           public void update(
               SolrInputDocument document,
@@ -103,9 +102,8 @@ public class JavabinLoader extends ContentStreamLoader {
             if (document == null) {
               return;
             }
-            if (addCmd == null) {
-              addCmd = getAddCommand(req, updateRequest.getParams());
-            }
+            // commands are batched, so they can't be reused
+            AddUpdateCommand addCmd = getAddCommand(req, updateRequest.getParams());
             addCmd.solrDoc = document;
             if (commitWithin != null) {
               addCmd.commitWithin = commitWithin;
@@ -120,8 +118,10 @@ public class JavabinLoader extends ContentStreamLoader {
             }
 
             try {
-              processor.processAdd(addCmd);
-              addCmd.clear();
+              batcher.add(addCmd);
+              if (addCmd.isLastDocInBatch) {
+                batcher.flush();
+              }
             } catch (IOException e) {
               throw new SolrException(
                   SolrException.ErrorCode.SERVER_ERROR, "ERROR adding document " + document, e);
@@ -129,17 +129,26 @@ public class JavabinLoader extends ContentStreamLoader {
           }
         };
     FastInputStream in = FastInputStream.wrap(stream);
-    for (; ; ) {
-      if (in.peek() == -1) return;
-      try {
-        update = new JavaBinUpdateRequestCodec().unmarshal(in, handler);
-      } catch (EOFException e) {
-        break; // this is expected
-      }
-      if (update.getDeleteByIdMap() != null || update.getDeleteQuery() != null) {
-        delete(req, update, processor);
+    try {
+      for (; ; ) {
+        if (in.peek() == -1) break;
+        try {
+          update = new JavaBinUpdateRequestCodec().unmarshal(in, handler);
+        } catch (EOFException e) {
+          break; // this is expected
+        }
+        // deletes are processed after the documents of the same request
+        batcher.flush();
+        if (update.getDeleteByIdMap() != null || update.getDeleteQuery() != null) {
+          delete(req, update, processor);
+        }
       }
+    } catch (Throwable t) {
+      // documents read before an error are added, as if they had been processed one by one
+      batcher.flushAfterError(t);
+      throw t;
     }
+    batcher.flush();
   }
 
   private void handleMultiStream(
@@ -24,9 +24,11 @@ import static org.apache.solr.common.params.CommonParams.VERSION_FIELD;
 import static org.apache.solr.common.params.ShardParams._ROUTE_;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
 import java.io.StringReader;
 import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -44,6 +46,7 @@ import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.common.params.UpdateParams;
 import org.apache.solr.common.util.ContentStream;
+import org.apache.solr.common.util.ContentStreamBase;
 import org.apache.solr.common.util.JsonRecordReader;
 import org.apache.solr.common.util.StrUtils;
 import org.apache.solr.handler.RequestHandlerUtils;
@@ -57,6 +60,7 @@ import org.apache.solr.update.DeleteUpdateCommand;
 import org.apache.solr.update.RollbackUpdateCommand;
 import org.apache.solr.update.processor.UpdateRequestProcessor;
 import org.apache.solr.util.RecordingJSONParser;
+import org.apache.solr.util.Utf8JSONParser;
 import org.noggit.JSONParser;
 import org.noggit.JSONParser.ParseException;
 import org.noggit.ObjectBuilder;
@@ -71,6 +75,13 @@ public class JsonLoader extends ContentStreamLoader {
   private static final AtomicBoolean WARNED_ABOUT_INDEX_TIME_BOOSTS = new AtomicBoolean();
   public static final String CHILD_DOC_KEY = "_childDocuments_";
 
+  /**
+   * Request parameter to parse UTF-8 update requests without decoding them: string values of
+   * fields that can be indexed from UTF-8 are added to documents as {@link
+   * org.apache.solr.common.util.ByteArrayUtf8CharSequence}, and only decoded if needed.
+   */
+  public static final String UTF8_PARAM = "json.utf8";
+
   @Override
   public String getDefaultWT() {
     return JSON;
@@ -147,14 +158,36 @@ public class JsonLoader extends ContentStreamLoader {
         ContentStream stream,
         UpdateRequestProcessor processor)
         throws Exception {
-      try (Reader reader = getReader(stream)) {
-        this.processUpdate(reader);
+      try {
+        if (useUtf8Parser(stream)) {
+          try (InputStream in = stream.getStream()) {
+            processUpdate(new Utf8JSONParser(in));
+          }
+        } else {
+          try (Reader reader = getReader(stream)) {
+            this.processUpdate(reader);
+          }
+        }
       } catch (ParseException e) {
         throw new SolrException(
             SolrException.ErrorCode.BAD_REQUEST, "Cannot parse provided JSON: " + e.getMessage());
       }
     }
 
+    private boolean useUtf8Parser(ContentStream stream) {
+      if (!req.getParams().getBool(UTF8_PARAM, false) || log.isTraceEnabled() || isSplitMode()) {
+        return false;
+      }
+      String charset = ContentStreamBase.getCharsetFromContentType(stream.getContentType());
+      return charset == null || StandardCharsets.UTF_8.name().equalsIgnoreCase(charset);
+    }
+
+    private boolean isSplitMode() {
+      String path = (String) req.getContext().get(PATH);
+      return UpdateRequestHandler.DOC_PATH.equals(path)
+          || "false".equals(req.getParams().get("json.command"));
+    }
+
     private Reader getReader(ContentStream stream) throws IOException {
       if (log.isTraceEnabled()) {
         String body = StrUtils.stringFromReader(stream.getReader());
@@ -164,17 +197,19 @@ public class JsonLoader extends ContentStreamLoader {
       return stream.getReader();
     }
 
-    @SuppressWarnings("fallthrough")
     void processUpdate(Reader reader) throws IOException {
-      String path = (String) req.getContext().get(PATH);
-      if (UpdateRequestHandler.DOC_PATH.equals(path)
-          || "false".equals(req.getParams().get("json.command"))) {
+      if (isSplitMode()) {
         String split = req.getParams().get("split");
         String[] f = req.getParams().getParams("f");
         handleSplitMode(split, f, reader);
         return;
       }
-      parser = new JSONParser(reader);
+      processUpdate(new JSONParser(reader));
+    }
+
+    @SuppressWarnings("fallthrough")
+    void processUpdate(JSONParser parser) throws IOException {
+      this.parser = parser;
       int ev = parser.nextEvent();
       while (ev != JSONParser.EOF) {
 
@@ -261,36 +296,43 @@ public class JsonLoader extends ContentStreamLoader {
       }
 
       JsonRecordReader jsonRecordReader = JsonRecordReader.getInst(split, Arrays.asList(fields));
-      jsonRecordReader.streamRecords(
-          parser,
-          new JsonRecordReader.Handler() {
-            ArrayList<Map<String, Object>> docs = null;
-
-            @Override
-            public void handle(Map<String, Object> record, String path) {
-              Map<String, Object> copy = getDocMap(record, parser, srcField, mapUniqueKeyOnly);
-
-              if (echo) {
-                if (docs == null) {
-                  docs = new ArrayList<>();
-                  rsp.add("docs", docs);
-                }
-                changeChildDoc(copy);
-                docs.add(copy);
-              } else {
-                AddUpdateCommand cmd = new AddUpdateCommand(req);
-                cmd.commitWithin = commitWithin;
-                cmd.overwrite = overwrite;
-                cmd.solrDoc = buildDoc(copy);
-                try {
-                  processor.processAdd(cmd);
-                } catch (IOException e) {
-                  throw new SolrException(
-                      SolrException.ErrorCode.BAD_REQUEST, "Error inserting document: ", e);
+      AddCommandBatcher batcher = new AddCommandBatcher(processor, req.getParams());
+      try {
+        jsonRecordReader.streamRecords(
+            parser,
+            new JsonRecordReader.Handler() {
+              ArrayList<Map<String, Object>> docs = null;
+
+              @Override
+              public void handle(Map<String, Object> record, String path) {
+                Map<String, Object> copy = getDocMap(record, parser, srcField, mapUniqueKeyOnly);
+
+                if (echo) {
+                  if (docs == null) {
+                    docs = new ArrayList<>();
+                    rsp.add("docs", docs);
+                  }
+                  changeChildDoc(copy);
+                  docs.add(copy);
+                } else {
+                  AddUpdateCommand cmd = new AddUpdateCommand(req);
+                  cmd.commitWithin = commitWithin;
+                  cmd.overwrite = overwrite;
+                  cmd.solrDoc = buildDoc(copy);
+                  try {
+                    batcher.add(cmd);
+                  } catch (IOException e) {
+                    throw new SolrException(
+                        SolrException.ErrorCode.BAD_REQUEST, "Error inserting document: ", e);
+                  }
                 }
               }
-            }
-          });
+            });
+      } catch (Throwable t) {
+        batcher.flushAfterError(t);
+        throw t;
+      }
+      batcher.flush();
     }
 
     private Map<String, Object> getDocMap(
@@ -540,18 +582,26 @@ public class JsonLoader extends ContentStreamLoader {
     }
 
     void handleAdds() throws IOException {
-      while (true) {
-        AddUpdateCommand cmd = new AddUpdateCommand(req);
-        cmd.commitWithin = commitWithin;
-        cmd.overwrite = overwrite;
-
-        int ev = parser.nextEvent();
-        if (ev == JSONParser.ARRAY_END) break;
-
-        assertEvent(ev, JSONParser.OBJECT_START);
-        cmd.solrDoc = parseDoc(ev);
-        processor.processAdd(cmd);
+      AddCommandBatcher batcher = new AddCommandBatcher(processor, req.getParams());
+      try {
+        while (true) {
+          AddUpdateCommand cmd = new AddUpdateCommand(req);
+          cmd.commitWithin = commitWithin;
+          cmd.overwrite = overwrite;
+
+          int ev = parser.nextEvent();
+          if (ev == JSONParser.ARRAY_END) break;
+
+          assertEvent(ev, JSONParser.OBJECT_START);
+          cmd.solrDoc = parseDoc(ev);
+          batcher.add(cmd);
+        }
+      } catch (Throwable t) {
+        // documents parsed before an error are added, as if they had been processed one by one
+        batcher.flushAfterError(t);
+        throw t;
       }
+      batcher.flush();
     }
 
     int assertNextEvent(int expected) throws IOException {
@@ -607,6 +657,9 @@ public class JsonLoader extends ContentStreamLoader {
     private Object parseFieldValue(int ev, String fieldName) throws IOException {
       switch (ev) {
         case JSONParser.STRING:
+          if (parser instanceof Utf8JSONParser && isUtf8Field(fieldName)) {
+            return ((Utf8JSONParser) parser).getUtf8String();
+          }
           return parser.getString();
         case JSONParser.LONG:
           return parser.getLong();
@@ -664,6 +717,11 @@ public class JsonLoader extends ContentStreamLoader {
       }
     }
 
+    private boolean isUtf8Field(String fieldName) {
+      SchemaField field = req.getSchema().getFieldOrNull(fieldName);
+      return field != null && field.getType().isUtf8Field();
+    }
+
     /** Is this a child doc (true) or a partial update (false)? */
     private boolean isChildDoc(SolrInputDocument extendedFieldValue) {
       if (extendedFieldValue.size() != 1) {
@@ -0,0 +1,268 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.index;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.MergePolicy.OneMerge;
+import org.apache.lucene.index.MergeTrigger;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.RateLimitedIndexOutput;
+import org.apache.lucene.store.RateLimiter;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.metrics.QueryLoad;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link ConcurrentMergeScheduler} that adapts merging to the query load of the core.
+ *
+ * <p>About once per second, while merges are running, the recent query load is compared with its
+ * moving average:
+ *
+ * <ul>
+ *   <li>When the mean query latency exceeds its average by <code>busyLatencyRatio</code>, or the
+ *       query rate exceeds <code>busyRequestsPerSecond</code>, at most <code>busyMaxThreadCount
+ *       </code> merges run, the largest ones being paused first, and big merges write at most
+ *       <code>busyMBPerSec</code>.
+ *   <li>When the query rate is below <code>idleRequestsPerSecond</code>, the automatic IO throttle
+ *       of big merges is disabled so that they can catch up.
+ *   <li>Otherwise, merges are scheduled as configured for {@link ConcurrentMergeScheduler}.
+ * </ul>
+ *
+ * <p>Merges smaller than <code>bigMergeMB</code> are never slowed down.
+ *
+ * @lucene.experimental
+ */
+public class QueryLoadAwareMergeScheduler extends ConcurrentMergeScheduler {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  static final long REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  /** Weight of the last observation in the moving average of the query latency */
+  static final double AVERAGE_WEIGHT = 0.05;
+
+  enum Load {
+    IDLE,
+    NORMAL,
+    BUSY
+  }
+
+  private double busyLatencyRatio = 1.5;
+  private double busyRequestsPerSecond = -1;
+  private double idleRequestsPerSecond = 0.1;
+  private int busyMaxThreadCount = 1;
+  private double busyMBPerSec = 10;
+  private double bigMergeMB = 50;
+
+  private Supplier<QueryLoad> queryLoad = () -> QueryLoad.NONE;
+
+  // guarded by this
+  private Load load = Load.NORMAL;
+  private double averageLatency = -1;
+  private int normalMaxThreadCount = -1;
+  private boolean normalAutoIOThrottle;
+
+  private volatile long lastRefreshNanos = System.nanoTime();
+  private volatile double throttleMBPerSec = Double.POSITIVE_INFINITY;
+
+  /** Reads the query load from the metrics of the given core */
+  public void setCore(SolrCore core) {
+    setQueryLoad(() -> QueryLoad.of(core.getSolrMetricsContext().getMetricRegistry()));
+  }
+
+  public void setQueryLoad(Supplier<QueryLoad> queryLoad) {
+    this.queryLoad = queryLoad;
+  }
+
+  /** Ratio to the average query latency above which the core is busy */
+  public void setBusyLatencyRatio(double busyLatencyRatio) {
+    this.busyLatencyRatio = busyLatencyRatio;
+  }
+
+  /** Query rate above which the core is busy, or -1 to only consider latency */
+  public void setBusyRequestsPerSecond(double busyRequestsPerSecond) {
+    this.busyRequestsPerSecond = busyRequestsPerSecond;
+  }
+
+  /** Query rate below which the core is idle */
+  public void setIdleRequestsPerSecond(double idleRequestsPerSecond) {
+    this.idleRequestsPerSecond = idleRequestsPerSecond;
+  }
+
+  /** Maximum number of running merges while the core is busy */
+  public void setBusyMaxThreadCount(int busyMaxThreadCount) {
+    if (busyMaxThreadCount < 1) {
+      throw new IllegalArgumentException("busyMaxThreadCount must be at least 1");
+    }
+    this.busyMaxThreadCount = busyMaxThreadCount;
+  }
+
+  /** IO rate of big merges while the core is busy */
+  public void setBusyMBPerSec(double busyMBPerSec) {
+    this.busyMBPerSec = busyMBPerSec;
+  }
+
+  /** Size of merges above which they may be throttled */
+  public void setBigMergeMB(double bigMergeMB) {
+    this.bigMergeMB = bigMergeMB;
+  }
+
+  synchronized Load getLoad() {
+    return load;
+  }
+
+  @Override
+  public synchronized void merge(MergeSource mergeSource, MergeTrigger trigger)
+      throws IOException {
+    maybeRefreshLoad();
+    maybeApplyDetectedThreadCount();
+    super.merge(mergeSource, trigger);
+    maybeApplyDetectedThreadCount();
+  }
+
+  @Override
+  public Directory wrapForMerge(OneMerge merge, Directory directory) {
+    Directory dir = super.wrapForMerge(merge, directory);
+    if (merge.estimatedMergeBytes < bigMergeMB * 1024 * 1024) {
+      return dir;
+    }
+    // shared by all the files of the merge, like the merge's own rate limiter
+    final RateLimiter rateLimiter = new LoadRateLimiter();
+    return new FilterDirectory(dir) {
+      @Override
+      public IndexOutput createOutput(String name, IOContext context) throws IOException {
+        return new RateLimitedIndexOutput(rateLimiter, in.createOutput(name, context));
+      }
+    };
+  }
+
+  /** Re-evaluates the query load if it wasn't done recently */
+  void maybeRefreshLoad() {
+    if (System.nanoTime() - lastRefreshNanos < REFRESH_NANOS) {
+      return;
+    }
+    synchronized (this) {
+      long now = System.nanoTime();
+      if (now - lastRefreshNanos < REFRESH_NANOS) {
+        return;
+      }
+      lastRefreshNanos = now;
+      refreshLoad(queryLoad.get());
+    }
+  }
+
+  synchronized void refreshLoad(QueryLoad current) {
+    double latency = current.getMeanLatencyMillis();
+    Load newLoad;
+    if (current.getRequestsPerSecond() < idleRequestsPerSecond) {
+      newLoad = Load.IDLE;
+    } else if ((busyRequestsPerSecond > 0
+            && current.getRequestsPerSecond() > busyRequestsPerSecond)
+        || (averageLatency > 0 && latency > averageLatency * busyLatencyRatio)) {
+      newLoad = Load.BUSY;
+    } else {
+      newLoad = Load.NORMAL;
+    }
+    if (latency > 0) {
+      averageLatency =
+          averageLatency < 0
+              ? latency
+              : averageLatency + AVERAGE_WEIGHT * (latency - averageLatency);
+    }
+    if (newLoad != load) {
+      log.info("Merge scheduling for {} query load: {}", newLoad, current);
+      setLoad(newLoad);
+    }
+  }
+
+  /**
+   * Applies the thread count of the current load if it changed before the thread counts were auto
+   * detected, which happens when merging starts.
+   */
+  private void maybeApplyDetectedThreadCount() {
+    if (load != Load.NORMAL && normalMaxThreadCount < 0 && getMaxThreadCount() > 0) {
+      normalMaxThreadCount = getMaxThreadCount();
+      setLoad(load);
+    }
+  }
+
+  private void setLoad(Load newLoad) {
+    if (load == Load.NORMAL) {
+      // remember the configured settings
+      normalMaxThreadCount = getMaxThreadCount();
+      normalAutoIOThrottle = getAutoIOThrottle();
+    }
+    load = newLoad;
+
+    // AUTO_DETECT_MERGES_AND_THREADS until the first merge
+    if (normalMaxThreadCount > 0) {
+      int maxThreadCount =
+          newLoad == Load.BUSY
+              ? Math.min(busyMaxThreadCount, normalMaxThreadCount)
+              : normalMaxThreadCount;
+      setMaxMergesAndThreads(getMaxMergeCount(), maxThreadCount);
+    }
+    throttleMBPerSec = newLoad == Load.BUSY ? busyMBPerSec : Double.POSITIVE_INFINITY;
+    if (newLoad == Load.IDLE) {
+      disableAutoIOThrottle();
+    } else if (normalAutoIOThrottle) {
+      enableAutoIOThrottle();
+    }
+    // pauses the largest merges beyond the max thread count, or resumes them
+    updateMergeThreads();
+  }
+
+  /** Throttles the output of a big merge while the core is busy, shared by all its files */
+  private class LoadRateLimiter extends RateLimiter {
+    private final RateLimiter.SimpleRateLimiter delegate =
+        new RateLimiter.SimpleRateLimiter(busyMBPerSec);
+
+    /** No-op, the rate follows the query load, see {@link #setBusyMBPerSec(double)} */
+    @Override
+    public void setMBPerSec(double mbPerSec) {}
+
+    @Override
+    public double getMBPerSec() {
+      return throttleMBPerSec;
+    }
+
+    @Override
+    public long pause(long bytes) throws IOException {
+      maybeRefreshLoad();
+      double mbPerSec = throttleMBPerSec;
+      if (mbPerSec == Double.POSITIVE_INFINITY) {
+        return 0;
+      }
+      if (delegate.getMBPerSec() != mbPerSec) {
+        delegate.setMBPerSec(mbPerSec);
+      }
+      return delegate.pause(bytes);
+    }
+
+    @Override
+    public long getMinPauseCheckBytes() {
+      return delegate.getMinPauseCheckBytes();
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import java.util.concurrent.TimeUnit;
+import org.apache.solr.core.SolrInfoBean;
+
+/**
+ * A snapshot of the recent query load of a core, read from the request time timers of its {@link
+ * SolrInfoBean.Category#QUERY} handlers.
+ */
+public final class QueryLoad {
+  private static final String PREFIX = SolrInfoBean.Category.QUERY.toString() + '.';
+  private static final String SUFFIX = ".requestTimes";
+
+  /** Load without any request */
+  public static final QueryLoad NONE = new QueryLoad(0, -1);
+
+  private final double requestsPerSecond;
+  private final double meanLatencyMillis;
+
+  public QueryLoad(double requestsPerSecond, double meanLatencyMillis) {
+    this.requestsPerSecond = requestsPerSecond;
+    this.meanLatencyMillis = meanLatencyMillis;
+  }
+
+  /** Reads the query load from the metrics of a core */
+  public static QueryLoad of(MetricRegistry registry) {
+    double weightedSum = 0, totalRate = 0;
+    for (Timer timer :
+        registry
+            .getTimers((name, metric) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+            .values()) {
+      double rate = timer.getOneMinuteRate();
+      if (rate > 0) {
+        weightedSum += rate * timer.getSnapshot().getMean();
+        totalRate += rate;
+      }
+    }
+    if (totalRate == 0) {
+      return NONE;
+    }
+    return new QueryLoad(totalRate, weightedSum / totalRate / TimeUnit.MILLISECONDS.toNanos(1));
+  }
+
+  /** The one minute rate of query requests */
+  public double getRequestsPerSecond() {
+    return requestsPerSecond;
+  }
+
+  /**
+   * The recent mean latency of query requests, weighted by the request rate of each handler, or -1
+   * if there was no recent request
+   */
+  public double getMeanLatencyMillis() {
+    return meanLatencyMillis;
+  }
+
+  @Override
+  public String toString() {
+    return "QueryLoad{requestsPerSecond="
+        + requestsPerSecond
+        + ", meanLatencyMillis="
+        + meanLatencyMillis
+        + '}';
+  }
+}
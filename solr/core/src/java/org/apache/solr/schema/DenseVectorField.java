@@ -22,10 +22,12 @@ import static org.apache.lucene.codecs.lucene95.Lucene95HnswVectorsFormat.DEFAUL
 
 import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import org.apache.lucene.codecs.KnnVectorsFormat;
+import org.apache.lucene.document.BinaryDocValuesField;
 import org.apache.lucene.document.FieldType;
 import org.apache.lucene.document.KnnByteVectorField;
 import org.apache.lucene.document.KnnFloatVectorField;
@@ -44,10 +46,12 @@ import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.hnsw.HnswGraph;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.search.QParser;
+import org.apache.solr.search.neural.FilteredKnnVectorQuery;
 import org.apache.solr.uninverting.UninvertingReader;
 import org.apache.solr.util.vector.ByteDenseVectorParser;
 import org.apache.solr.util.vector.DenseVectorParser;
 import org.apache.solr.util.vector.FloatDenseVectorParser;
+import org.apache.solr.util.vector.ScalarQuantizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -57,7 +61,10 @@ import org.slf4j.LoggerFactory;
  * dimension for the vector and a fixed similarity function. The default similarity is
  * EUCLIDEAN_HNSW (L2). The default algorithm is HNSW. For Lucene 9.1 e.g. See {@link
  * org.apache.lucene.util.hnsw.HnswGraph} for more details about the implementation. <br>
- * Only {@code Indexed} and {@code Stored} attributes are supported.
+ * Only {@code Indexed} and {@code Stored} attributes are supported. <br>
+ * FLOAT32 vectors can be indexed quantized to bytes, see {@link ScalarQuantizer}: the HNSW graph
+ * is then built and searched on the quantized vectors, and the full precision vectors, kept in
+ * binary doc values, are only read to rescore the best candidates.
  */
 public class DenseVectorField extends FloatPointField {
   private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
@@ -71,6 +78,18 @@ public class DenseVectorField extends FloatPointField {
   static final VectorEncoding DEFAULT_VECTOR_ENCODING = VectorEncoding.FLOAT32;
   static final String KNN_SIMILARITY_FUNCTION = "similarityFunction";
   static final VectorSimilarityFunction DEFAULT_SIMILARITY = VectorSimilarityFunction.EUCLIDEAN;
+  static final String VECTOR_QUANTIZATION = "vectorQuantization";
+  static final String QUANTIZATION_RANGE = "quantizationRange";
+  static final float DEFAULT_QUANTIZATION_RANGE = 1f;
+
+  /** How FLOAT32 vectors are quantized before being indexed. */
+  public enum VectorQuantization {
+    /** Vectors are indexed as they are */
+    NONE,
+    /** Vector components are quantized to signed bytes */
+    INT8
+  }
+
   private int dimension;
   private VectorSimilarityFunction similarityFunction;
   private String knnAlgorithm;
@@ -93,6 +112,11 @@ public class DenseVectorField extends FloatPointField {
    */
   private VectorEncoding vectorEncoding;
 
+  private VectorQuantization vectorQuantization = VectorQuantization.NONE;
+
+  /** Quantizes the FLOAT32 vectors to index, null when they are indexed as they are. */
+  private ScalarQuantizer quantizer;
+
   public DenseVectorField() {
     super();
   }
@@ -140,6 +164,31 @@ public class DenseVectorField extends FloatPointField {
             .orElse(DEFAULT_VECTOR_ENCODING);
     args.remove(VECTOR_ENCODING);
 
+    this.vectorQuantization =
+        ofNullable(args.get(VECTOR_QUANTIZATION))
+            .map(DenseVectorField::parseVectorQuantization)
+            .orElse(VectorQuantization.NONE);
+    args.remove(VECTOR_QUANTIZATION);
+
+    float quantizationRange =
+        ofNullable(args.get(QUANTIZATION_RANGE))
+            .map(Float::parseFloat)
+            .orElse(DEFAULT_QUANTIZATION_RANGE);
+    args.remove(QUANTIZATION_RANGE);
+
+    if (vectorQuantization != VectorQuantization.NONE) {
+      if (vectorEncoding != VectorEncoding.FLOAT32) {
+        throw new SolrException(
+            SolrException.ErrorCode.SERVER_ERROR,
+            "vector quantization is only supported with the FLOAT32 vector encoding");
+      }
+      try {
+        this.quantizer = new ScalarQuantizer(similarityFunction, quantizationRange);
+      } catch (IllegalArgumentException e) {
+        throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, e.getMessage(), e);
+      }
+    }
+
     this.hnswMaxConn =
         ofNullable(args.get(HNSW_MAX_CONNECTIONS)).map(Integer::parseInt).orElse(DEFAULT_MAX_CONN);
     args.remove(HNSW_MAX_CONNECTIONS);
@@ -178,6 +227,23 @@ public class DenseVectorField extends FloatPointField {
     return vectorEncoding;
   }
 
+  public VectorQuantization getVectorQuantization() {
+    return vectorQuantization;
+  }
+
+  private static VectorQuantization parseVectorQuantization(String value) {
+    try {
+      return VectorQuantization.valueOf(value.toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new SolrException(
+          SolrException.ErrorCode.SERVER_ERROR,
+          "unsupported vector quantization: '"
+              + value
+              + "', the supported values are: "
+              + Arrays.toString(VectorQuantization.values()));
+    }
+  }
+
   @Override
   public void checkSchemaField(final SchemaField field) throws SolrException {
     super.checkSchemaField(field);
@@ -228,6 +294,11 @@ public class DenseVectorField extends FloatPointField {
 
       if (field.indexed()) {
         fields.add(createField(field, vectorBuilder));
+        if (quantizer != null) {
+          fields.add(
+              new BinaryDocValuesField(
+                  field.getName(), ScalarQuantizer.encode(vectorBuilder.getFloatVector())));
+        }
       }
       if (field.stored()) {
         switch (vectorEncoding) {
@@ -257,6 +328,12 @@ public class DenseVectorField extends FloatPointField {
 
     if (vectorValue == null) return null;
     DenseVectorParser vectorBuilder = (DenseVectorParser) vectorValue;
+    if (quantizer != null) {
+      return new KnnByteVectorField(
+          field.getName(),
+          quantizer.quantize(vectorBuilder.getFloatVector()),
+          denseVectorFieldType);
+    }
     switch (vectorEncoding) {
       case BYTE:
         return new KnnByteVectorField(
@@ -288,7 +365,7 @@ public class DenseVectorField extends FloatPointField {
 
           @Override
           public VectorEncoding vectorEncoding() {
-            return vectorEncoding;
+            return quantizer != null ? VectorEncoding.BYTE : vectorEncoding;
           }
 
           @Override
@@ -346,6 +423,11 @@ public class DenseVectorField extends FloatPointField {
 
   @Override
   public ValueSource getValueSource(SchemaField field, QParser parser) {
+    if (quantizer != null) {
+      throw new SolrException(
+          SolrException.ErrorCode.BAD_REQUEST,
+          "Function queries are not supported on quantized vector fields.");
+    }
 
     switch (vectorEncoding) {
       case FLOAT32:
@@ -358,12 +440,28 @@ public class DenseVectorField extends FloatPointField {
         SolrException.ErrorCode.BAD_REQUEST, "Vector encoding not supported for function queries.");
   }
 
+  /**
+   * A K nearest neighbors query, pre-filtered by the given filter query if any. On quantized
+   * fields, the quantized vectors are searched and the topK results rescored at full precision.
+   */
   public Query getKnnVectorQuery(
       String fieldName, String vectorToSearch, int topK, Query filterQuery) {
 
     DenseVectorParser vectorBuilder =
         getVectorBuilder(vectorToSearch, DenseVectorParser.BuilderPhase.QUERY);
 
+    if (quantizer != null) {
+      float[] vector = vectorBuilder.getFloatVector();
+      return new FilteredKnnVectorQuery(
+          fieldName,
+          quantizer.quantize(vector),
+          vector,
+          topK,
+          topK,
+          filterQuery == null ? List.of() : List.of(filterQuery),
+          FilteredKnnVectorQuery.DEFAULT_EXACT_SEARCH_RATIO);
+    }
+
     switch (vectorEncoding) {
       case FLOAT32:
         return new KnnFloatVectorQuery(
@@ -377,6 +475,51 @@ public class DenseVectorField extends FloatPointField {
     }
   }
 
+  /**
+   * A K nearest neighbors query pre-filtered by the given filter queries, that are resolved through
+   * the Solr searcher so that cached filters are reused. On quantized fields, topK * oversample
+   * candidates are searched with the quantized vectors, then rescored at full precision.
+   *
+   * @see FilteredKnnVectorQuery
+   */
+  public Query getKnnVectorQuery(
+      String fieldName,
+      String vectorToSearch,
+      int topK,
+      float oversample,
+      List<Query> filterQueries,
+      float exactSearchRatio) {
+
+    DenseVectorParser vectorBuilder =
+        getVectorBuilder(vectorToSearch, DenseVectorParser.BuilderPhase.QUERY);
+
+    if (quantizer != null) {
+      float[] vector = vectorBuilder.getFloatVector();
+      int numCandidates = (int) Math.min(Integer.MAX_VALUE, Math.ceil(topK * (double) oversample));
+      return new FilteredKnnVectorQuery(
+          fieldName,
+          quantizer.quantize(vector),
+          vector,
+          topK,
+          Math.max(topK, numCandidates),
+          filterQueries,
+          exactSearchRatio);
+    }
+
+    switch (vectorEncoding) {
+      case FLOAT32:
+        return new FilteredKnnVectorQuery(
+            fieldName, vectorBuilder.getFloatVector(), topK, filterQueries, exactSearchRatio);
+      case BYTE:
+        return new FilteredKnnVectorQuery(
+            fieldName, vectorBuilder.getByteVector(), topK, filterQueries, exactSearchRatio);
+      default:
+        throw new SolrException(
+            SolrException.ErrorCode.SERVER_ERROR,
+            "Unexpected state. Vector Encoding: " + vectorEncoding);
+    }
+  }
+
   /**
    * Not Supported. Please use the {!knn} query parser to run K nearest neighbors search queries.
    */
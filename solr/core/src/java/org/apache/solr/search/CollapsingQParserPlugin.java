@@ -138,6 +138,15 @@ public class CollapsingQParserPlugin extends QParserPlugin {
    */
   public static final String HINT_BLOCK = "block";
 
+  /**
+   * Indicates that group heads should be tracked per segment in a hash keyed by segment ordinal,
+   * only mapping the groups that match to global ordinals. Memory then scales with the number of
+   * matching groups instead of the cardinality of the collapse field, which helps when collapsing
+   * selective queries on very high cardinality fields. This hint is only used when collapsing on
+   * String fields using the score to select the group head, and will be ignored otherwise.
+   */
+  public static final String HINT_SEGMENT = "segment";
+
   /**
    * If elevation is used in combination with the collapse query parser, we can define that we only
    * want to return the representative and not all elevated docs by setting this parameter to false
@@ -809,6 +818,225 @@ public class CollapsingQParserPlugin extends QParserPlugin {
     }
   }
 
+  /**
+   * Collapses on Ordinal Values using Score to select the group head, tracking the group heads of
+   * each segment in a hash keyed by segment ordinal. Only the ordinals of the groups that matched
+   * in a segment are mapped to global ordinals once the segment is done, so the memory used scales
+   * with the number of matching groups rather than with the cardinality of the collapse field.
+   *
+   * @lucene.internal
+   */
+  static class SegmentOrdScoreCollector extends DelegatingCollector {
+
+    private final LeafReaderContext[] contexts;
+    private final String collapseField;
+    private final OrdinalMap ordinalMap;
+    private SortedDocValues segmentValues;
+    private LongValues segmentOrdinalMap;
+    // Both maps hold the score (high bits) and the global doc (low bits) of a group head.
+    private final IntLongHashMap segmentHeads = new IntLongHashMap();
+    private final IntLongHashMap heads = new IntLongHashMap();
+    private final FixedBitSet collapsedSet;
+    private final int maxDoc;
+    private final int nullPolicy;
+    private float nullScore = -Float.MAX_VALUE;
+    private int nullDoc = -1;
+    private final boolean collectElevatedDocsWhenCollapsing;
+    private FloatArrayList nullScores;
+
+    private final BoostedDocsCollector boostedDocsCollector;
+
+    public SegmentOrdScoreCollector(
+        int maxDoc,
+        int segments,
+        String collapseField,
+        int nullPolicy,
+        IntIntHashMap boostDocsMap,
+        SolrIndexSearcher searcher,
+        boolean collectElevatedDocsWhenCollapsing)
+        throws IOException {
+      this.maxDoc = maxDoc;
+      this.contexts = new LeafReaderContext[segments];
+      this.collapseField = collapseField;
+      this.collectElevatedDocsWhenCollapsing = collectElevatedDocsWhenCollapsing;
+      List<LeafReaderContext> con = searcher.getTopReaderContext().leaves();
+      for (int i = 0; i < con.size(); i++) {
+        contexts[i] = con.get(i);
+      }
+
+      // the ordinal map is built once per searcher, and is only consulted for matching groups
+      SortedDocValues collapseValues =
+          DocValues.getSorted(searcher.getSlowAtomicReader(), collapseField);
+      if (collapseValues instanceof MultiDocValues.MultiSortedDocValues) {
+        this.ordinalMap = ((MultiDocValues.MultiSortedDocValues) collapseValues).mapping;
+      } else {
+        this.ordinalMap = null;
+      }
+
+      this.collapsedSet = new FixedBitSet(maxDoc);
+      this.nullPolicy = nullPolicy;
+      if (nullPolicy == NullPolicy.EXPAND.getCode()) {
+        nullScores = new FloatArrayList();
+      }
+      this.boostedDocsCollector = BoostedDocsCollector.build(boostDocsMap);
+    }
+
+    private static long scoreDoc(float score, int globalDoc) {
+      return (((long) Float.floatToRawIntBits(score)) << 32) | (globalDoc & 0xFFFFFFFFL);
+    }
+
+    private static float score(long scoreDoc) {
+      return Float.intBitsToFloat((int) (scoreDoc >>> 32));
+    }
+
+    @Override
+    public ScoreMode scoreMode() {
+      return ScoreMode.COMPLETE;
+    }
+
+    @Override
+    protected void doSetNextReader(LeafReaderContext context) throws IOException {
+      mergeSegmentHeads();
+      this.contexts[context.ord] = context;
+      this.docBase = context.docBase;
+      this.segmentValues = DocValues.getSorted(context.reader(), collapseField);
+      this.segmentOrdinalMap =
+          ordinalMap == null ? LongValues.IDENTITY : ordinalMap.getGlobalOrds(context.ord);
+    }
+
+    /** Maps the heads of the current segment to global ordinals and merges them. */
+    private void mergeSegmentHeads() {
+      if (segmentHeads.isEmpty()) {
+        return;
+      }
+      for (IntLongCursor cursor : segmentHeads) {
+        final int ord = (int) segmentOrdinalMap.get(cursor.key);
+        final int idx;
+        if ((idx = heads.indexOf(ord)) >= 0) {
+          // on equal scores the earlier doc stays the group head
+          if (score(cursor.value) > score(heads.indexGet(idx))) {
+            heads.indexReplace(idx, cursor.value);
+          }
+        } else {
+          heads.indexInsert(idx, ord, cursor.value);
+        }
+      }
+      segmentHeads.clear();
+    }
+
+    @Override
+    public void collect(int contextDoc) throws IOException {
+      final int globalDoc = contextDoc + this.docBase;
+      final int segmentOrd = segmentValues.advanceExact(contextDoc) ? segmentValues.ordValue() : -1;
+
+      if (collectElevatedDocsWhenCollapsing && boostedDocsCollector.hasBoosts()) {
+        // Check to see if we have documents boosted by the QueryElevationComponent, only these
+        // need their global ordinal right away
+        if (0 <= segmentOrd) {
+          final int ord = (int) segmentOrdinalMap.get(segmentOrd);
+          if (boostedDocsCollector.collectIfBoosted(ord, globalDoc)) return;
+        } else {
+          if (boostedDocsCollector.collectInNullGroupIfBoosted(globalDoc)) return;
+        }
+      }
+
+      if (segmentOrd > -1) {
+        final float score = scorer.score();
+        final int idx;
+        if ((idx = segmentHeads.indexOf(segmentOrd)) >= 0) {
+          if (score > score(segmentHeads.indexGet(idx))) {
+            segmentHeads.indexReplace(idx, scoreDoc(score, globalDoc));
+          }
+        } else {
+          segmentHeads.indexInsert(idx, segmentOrd, scoreDoc(score, globalDoc));
+        }
+      } else if (nullPolicy == NullPolicy.COLLAPSE.getCode()) {
+        float score = scorer.score();
+        if (score > nullScore) {
+          nullScore = score;
+          nullDoc = globalDoc;
+        }
+      } else if (nullPolicy == NullPolicy.EXPAND.getCode()) {
+        collapsedSet.set(globalDoc);
+        nullScores.add(scorer.score());
+      }
+    }
+
+    @Override
+    public void complete() throws IOException {
+      if (contexts.length == 0) {
+        return;
+      }
+      mergeSegmentHeads();
+
+      // Handle the boosted docs.
+      boostedDocsCollector.purgeGroupsThatHaveBoostedDocs(
+          collapsedSet,
+          (ord) -> {
+            heads.remove(ord);
+          },
+          () -> {
+            nullDoc = -1;
+          });
+
+      // Build the sorted DocSet of group heads, and the group head scores in doc order so they
+      // can be replayed without looking up the ordinals again.
+      if (nullDoc > -1) {
+        collapsedSet.set(nullDoc);
+      }
+      final long[] docScores = new long[heads.size()];
+      int numHeads = 0;
+      for (IntLongCursor cursor : heads) {
+        final int doc = (int) cursor.value;
+        collapsedSet.set(doc);
+        docScores[numHeads++] = (((long) doc) << 32) | (cursor.value >>> 32);
+      }
+      Arrays.sort(docScores);
+
+      int currentContext = 0;
+      int currentDocBase = 0;
+      int nextDocBase =
+          currentContext + 1 < contexts.length ? contexts[currentContext + 1].docBase : maxDoc;
+      leafDelegate = delegate.getLeafCollector(contexts[currentContext]);
+      ScoreAndDoc dummy = new ScoreAndDoc();
+      leafDelegate.setScorer(dummy);
+      DocIdSetIterator it = new BitSetIterator(collapsedSet, 0L); // cost is not useful here
+      final MergeBoost mergeBoost = boostedDocsCollector.getMergeBoost();
+      int globalDoc = -1;
+      int headIndex = 0;
+      int nullScoreIndex = 0;
+      while ((globalDoc = it.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+        while (globalDoc >= nextDocBase) {
+          currentContext++;
+          currentDocBase = contexts[currentContext].docBase;
+          nextDocBase =
+              currentContext + 1 < contexts.length ? contexts[currentContext + 1].docBase : maxDoc;
+          leafDelegate = delegate.getLeafCollector(contexts[currentContext]);
+          leafDelegate.setScorer(dummy);
+        }
+
+        final int contextDoc = globalDoc - currentDocBase;
+        if (headIndex < numHeads && (int) (docScores[headIndex] >>> 32) == globalDoc) {
+          dummy.score = Float.intBitsToFloat((int) docScores[headIndex++]);
+        } else if (mergeBoost.boost(globalDoc)) {
+          // It's an elevated doc so no score is needed (and should not have been populated)
+          dummy.score = 0F;
+        } else if (nullPolicy == NullPolicy.COLLAPSE.getCode()) {
+          dummy.score = nullScore;
+        } else if (nullPolicy == NullPolicy.EXPAND.getCode()) {
+          dummy.score = nullScores.get(nullScoreIndex++);
+        }
+
+        dummy.docId = contextDoc;
+        leafDelegate.collect(contextDoc);
+      }
+
+      if (delegate instanceof DelegatingCollector) {
+        ((DelegatingCollector) delegate).complete();
+      }
+    }
+  }
+
   /**
    * Collapses on an integer field using the score to select the group head.
    *
@@ -2152,6 +2380,16 @@ public class CollapsingQParserPlugin extends QParserPlugin {
           if (blockCollapse) {
             return new BlockOrdScoreCollector(collapseField, nullPolicy, boostDocs);
           }
+          if (HINT_SEGMENT.equals(hint)) {
+            return new SegmentOrdScoreCollector(
+                maxDoc,
+                leafCount,
+                collapseField,
+                nullPolicy,
+                boostDocs,
+                searcher,
+                collectElevatedDocsWhenCollapsing);
+          }
           return new OrdScoreCollector(
               maxDoc,
               leafCount,
@@ -2184,6 +2422,12 @@ public class CollapsingQParserPlugin extends QParserPlugin {
 
       } else { // min, max, sort, etc.. something other then just "score"
 
+        if (HINT_SEGMENT.equals(hint)) {
+          log.debug(
+              "Query specifies hint={} but it is only used when selecting group heads by score",
+              HINT_SEGMENT);
+        }
+
         if (collapseFieldType instanceof StrField) {
           if (blockCollapse) {
             // NOTE: for now we don't worry about wether this is a sortSpec of min/max
@@ -18,6 +18,8 @@ package org.apache.solr.search;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.search.Scorable;
 import org.apache.lucene.search.ScoreMode;
@@ -88,6 +90,41 @@ public class DocSetCollector extends SimpleCollector {
     }
   }
 
+  /**
+   * Merges the collectors of a search that ran concurrently over several segment slices into a
+   * single DocSet. Unlike {@link #getDocSet()} this does not assume that docs were collected in
+   * order, since a slice may visit its segments in any order.
+   */
+  static DocSet merge(Collection<DocSetCollector> collectors, int maxDoc) {
+    int size = 0;
+    for (DocSetCollector collector : collectors) {
+      size += collector.size();
+    }
+
+    if (size <= DocSetUtil.smallSetSize(maxDoc)) {
+      // no collector can have collected more than fits in its scratch array
+      int[] docs = new int[size];
+      int pos = 0;
+      for (DocSetCollector collector : collectors) {
+        assert collector.bits == null;
+        int[] collected = collector.scratch.toArray();
+        System.arraycopy(collected, 0, docs, pos, collected.length);
+        pos += collected.length;
+      }
+      Arrays.sort(docs);
+      return new SortedIntDocSet(docs);
+    }
+
+    FixedBitSet bits = new FixedBitSet(maxDoc);
+    for (DocSetCollector collector : collectors) {
+      collector.scratch.copyTo(bits);
+      if (collector.bits != null) {
+        bits.or(collector.bits);
+      }
+    }
+    return new BitDocSet(bits, size);
+  }
+
   @Override
   public void setScorer(Scorable scorer) throws IOException {}
 
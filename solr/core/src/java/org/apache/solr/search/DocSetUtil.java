@@ -53,6 +53,27 @@ public class DocSetUtil {
     return (maxDoc >> 6) + 5; // The +5 is for better test coverage for small sets
   }
 
+  /** Sets using less heap than this are never worth compacting. */
+  private static final long MIN_COMPACT_RAM_BYTES = 1 << 14;
+
+  /**
+   * Returns a {@link RoaringDocSet} equivalent of the set if it uses considerably less heap, and
+   * the set itself otherwise. Meant for sets that are long-lived, like the ones inserted into
+   * caches, since the operations of a {@link BitDocSet} are generally faster.
+   *
+   * @lucene.experimental
+   */
+  public static DocSet compact(DocSet docs, int maxDoc) {
+    if (docs instanceof RoaringDocSet || docs.ramBytesUsed() < MIN_COMPACT_RAM_BYTES) {
+      return docs;
+    }
+    final long estimate = RoaringDocSet.estimateRamBytesUsed(docs, maxDoc);
+    if (estimate < docs.ramBytesUsed() - (docs.ramBytesUsed() >> 2)) {
+      return RoaringDocSet.of(docs, maxDoc);
+    }
+    return docs;
+  }
+
   /**
    * Iterates DocSets to test for equality - slow and for testing purposes only.
    *
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.io.IOException;
+import java.util.Arrays;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PointValues;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.IndexOrDocValuesQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.PointRangeQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+
+/**
+ * Cheaply estimates the number of documents a filter matches from index statistics, without
+ * running it: term document frequencies and BKD tree estimates for point ranges. Deleted documents
+ * are not taken into account.
+ *
+ * @see SolrIndexSearcher#getProcessedFilter(java.util.List)
+ */
+final class FilterCostEstimator {
+  /** Returned when no estimate can be made for a query */
+  static final long UNKNOWN = -1;
+
+  private FilterCostEstimator() {}
+
+  /** Returns the estimated number of matching documents, or {@link #UNKNOWN} */
+  static long estimateMatches(Query q, SolrIndexSearcher searcher) throws IOException {
+    if (q instanceof WrappedQuery) {
+      return estimateMatches(((WrappedQuery) q).getWrappedQuery(), searcher);
+    } else if (q instanceof ConstantScoreQuery) {
+      return estimateMatches(((ConstantScoreQuery) q).getQuery(), searcher);
+    } else if (q instanceof BoostQuery) {
+      return estimateMatches(((BoostQuery) q).getQuery(), searcher);
+    } else if (q instanceof IndexOrDocValuesQuery) {
+      return estimateMatches(((IndexOrDocValuesQuery) q).getIndexQuery(), searcher);
+    } else if (q instanceof MatchAllDocsQuery) {
+      return searcher.maxDoc();
+    } else if (q instanceof MatchNoDocsQuery) {
+      return 0;
+    } else if (q instanceof TermQuery) {
+      return searcher.docFreq(((TermQuery) q).getTerm());
+    } else if (q instanceof PointRangeQuery) {
+      return estimatePointRange((PointRangeQuery) q, searcher);
+    } else if (q instanceof BooleanQuery) {
+      return estimateBoolean((BooleanQuery) q, searcher);
+    }
+    return UNKNOWN;
+  }
+
+  private static long estimateBoolean(BooleanQuery bq, SolrIndexSearcher searcher)
+      throws IOException {
+    long required = Long.MAX_VALUE;
+    long optional = 0;
+    boolean hasOptional = false;
+    for (BooleanClause clause : bq.clauses()) {
+      switch (clause.getOccur()) {
+        case MUST:
+        case FILTER:
+          long estimate = estimateMatches(clause.getQuery(), searcher);
+          if (estimate != UNKNOWN) {
+            required = Math.min(required, estimate);
+          }
+          break;
+        case SHOULD:
+          hasOptional = true;
+          if (optional != UNKNOWN) {
+            long clauseEstimate = estimateMatches(clause.getQuery(), searcher);
+            optional = clauseEstimate == UNKNOWN ? UNKNOWN : optional + clauseEstimate;
+          }
+          break;
+        case MUST_NOT:
+          break;
+      }
+    }
+    if (required != Long.MAX_VALUE) {
+      // a conjunction matches at most as many documents as its most selective clause
+      return required;
+    }
+    if (hasOptional && optional != UNKNOWN && bq.getMinimumNumberShouldMatch() <= 1) {
+      return Math.min(optional, searcher.maxDoc());
+    }
+    return UNKNOWN;
+  }
+
+  private static long estimatePointRange(PointRangeQuery q, SolrIndexSearcher searcher)
+      throws IOException {
+    final int numDims = q.getNumDims();
+    final int bytesPerDim = q.getBytesPerDim();
+    final byte[] lower = q.getLowerPoint();
+    final byte[] upper = q.getUpperPoint();
+
+    final PointValues.IntersectVisitor visitor =
+        new PointValues.IntersectVisitor() {
+          @Override
+          public void visit(int docID) {}
+
+          @Override
+          public void visit(int docID, byte[] packedValue) {}
+
+          @Override
+          public PointValues.Relation compare(byte[] minPackedValue, byte[] maxPackedValue) {
+            boolean crosses = false;
+            for (int dim = 0; dim < numDims; dim++) {
+              final int from = dim * bytesPerDim;
+              final int to = from + bytesPerDim;
+              if (Arrays.compareUnsigned(minPackedValue, from, to, upper, from, to) > 0
+                  || Arrays.compareUnsigned(maxPackedValue, from, to, lower, from, to) < 0) {
+                return PointValues.Relation.CELL_OUTSIDE_QUERY;
+              }
+              crosses |=
+                  Arrays.compareUnsigned(minPackedValue, from, to, lower, from, to) < 0
+                      || Arrays.compareUnsigned(maxPackedValue, from, to, upper, from, to) > 0;
+            }
+            return crosses
+                ? PointValues.Relation.CELL_CROSSES_QUERY
+                : PointValues.Relation.CELL_INSIDE_QUERY;
+          }
+        };
+
+    long count = 0;
+    for (LeafReaderContext leaf : searcher.getTopReaderContext().leaves()) {
+      final PointValues values = leaf.reader().getPointValues(q.getField());
+      if (values != null) {
+        count += values.estimateDocCount(visitor);
+      }
+    }
+    return count;
+  }
+}
@@ -59,6 +59,12 @@ public class FunctionRangeQuery extends ExtendedQueryBase implements PostFilter
     return new FunctionRangeCollector(fcontext, weight);
   }
 
+  @Override
+  public boolean supportsConcurrentCollection() {
+    // every collector has its own function context, and documents are filtered one at a time
+    return true;
+  }
+
   class FunctionRangeCollector extends DelegatingCollector {
     final Map<Object, Object> fcontext;
     final Weight weight;
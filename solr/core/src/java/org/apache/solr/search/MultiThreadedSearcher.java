@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.MultiCollectorManager;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.search.TotalHitCountCollectorManager;
+
+/**
+ * Collects the top docs, the max score and/or the DocSet of a query concurrently over the segment
+ * slices of a {@link SolrIndexSearcher} that was created with an executor (see {@code
+ * indexSearcherExecutorThreads} in solrconfig.xml). Each slice gets its own collectors, including
+ * its own chain of post filter collectors, and the results are merged once all slices are done.
+ *
+ * @see SolrIndexSearcher#getExecutor()
+ */
+final class MultiThreadedSearcher {
+
+  /** The merged results of a concurrent search. */
+  static final class SearchResult {
+    TopDocs topDocs; // null unless top docs were requested
+    int totalHits;
+    float maxScore = Float.NaN;
+    DocSet docSet; // null unless a DocSet was requested
+  }
+
+  private final SolrIndexSearcher searcher;
+
+  MultiThreadedSearcher(SolrIndexSearcher searcher) {
+    this.searcher = searcher;
+  }
+
+  /**
+   * Returns true if a command can be collected concurrently. Options relying on a single collector
+   * that sees every segment (early termination, timeAllowed, query cancellation, rank queries) and
+   * post filters that do not support concurrent collection keep the query on the sequential path.
+   */
+  static boolean canSearch(
+      SolrIndexSearcher searcher, QueryCommand cmd, SolrIndexSearcher.ProcessedFilter pf) {
+    if (searcher.getExecutor() == null || searcher.getSlices().length < 2) {
+      return false;
+    }
+    if (cmd.getQuery() instanceof RankQuery
+        || cmd.getSegmentTerminateEarly()
+        || cmd.getTerminateEarly()
+        || cmd.isQueryCancellable()
+        || cmd.getTimeAllowed() > 0
+        || SolrQueryTimeoutImpl.getInstance().isTimeoutEnabled()) {
+      return false;
+    }
+    if (pf.postFilter != null) {
+      if (pf.postFilterQueries == null) {
+        return false;
+      }
+      for (PostFilter postFilter : pf.postFilterQueries) {
+        if (!postFilter.supportsConcurrentCollection()) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Searches {@code query} over all segment slices.
+   *
+   * @param len the number of top docs to collect, or 0 to only count hits
+   * @param needMaxScore whether the max score of all hits is needed
+   * @param needDocSet whether the DocSet of all hits is needed
+   */
+  SearchResult search(
+      Query query,
+      SolrIndexSearcher.ProcessedFilter pf,
+      QueryCommand cmd,
+      int len,
+      boolean needMaxScore,
+      boolean needDocSet)
+      throws IOException {
+    final List<CollectorManager<?, ?>> managers = new ArrayList<>(3);
+    if (len > 0) {
+      managers.add(topDocsManager(len, cmd));
+    } else if (!needDocSet) {
+      managers.add(new TotalHitCountCollectorManager());
+    }
+    final int maxScoreIndex = needMaxScore ? managers.size() : -1;
+    if (needMaxScore) {
+      managers.add(maxScoreManager());
+    }
+    final int docSetIndex = needDocSet ? managers.size() : -1;
+    if (needDocSet) {
+      managers.add(docSetManager());
+    }
+
+    final Object[] results =
+        searcher.search(
+            query,
+            withPostFilters(
+                pf, new MultiCollectorManager(managers.toArray(new CollectorManager<?, ?>[0]))));
+
+    final SearchResult result = new SearchResult();
+    if (len > 0) {
+      result.topDocs = (TopDocs) results[0];
+      result.totalHits = (int) result.topDocs.totalHits.value;
+    } else if (!needDocSet) {
+      result.totalHits = (Integer) results[0];
+    }
+    if (needMaxScore) {
+      result.maxScore = (Float) results[maxScoreIndex];
+    }
+    if (needDocSet) {
+      result.docSet = (DocSet) results[docSetIndex];
+      if (len <= 0) {
+        result.totalHits = result.docSet.size();
+      }
+    }
+    return result;
+  }
+
+  private CollectorManager<?, ? extends TopDocs> topDocsManager(int len, QueryCommand cmd)
+      throws IOException {
+    final int minNumFound = cmd.getMinExactCount();
+    if (null == cmd.getSort()) {
+      assert null == cmd.getCursorMark() : "have cursor but no sort";
+      return TopScoreDocCollector.createSharedManager(len, null, minNumFound);
+    } else {
+      final Sort weightedSort = searcher.weightSort(cmd.getSort());
+      final CursorMark cursor = cmd.getCursorMark();
+      final FieldDoc searchAfter = (null != cursor ? cursor.getSearchAfterFieldDoc() : null);
+      return TopFieldCollector.createSharedManager(weightedSort, len, searchAfter, minNumFound);
+    }
+  }
+
+  private static CollectorManager<MaxScoreCollector, Float> maxScoreManager() {
+    return new CollectorManager<>() {
+      @Override
+      public MaxScoreCollector newCollector() {
+        return new MaxScoreCollector();
+      }
+
+      @Override
+      public Float reduce(Collection<MaxScoreCollector> collectors) {
+        float maxScore = Float.NaN;
+        for (MaxScoreCollector collector : collectors) {
+          float score = collector.getMaxScore();
+          if (Float.isNaN(maxScore) || score > maxScore) {
+            maxScore = score;
+          }
+        }
+        return maxScore;
+      }
+    };
+  }
+
+  private CollectorManager<DocSetCollector, DocSet> docSetManager() {
+    final int maxDoc = searcher.maxDoc();
+    return new CollectorManager<>() {
+      @Override
+      public DocSetCollector newCollector() {
+        return new DocSetCollector(maxDoc);
+      }
+
+      @Override
+      public DocSet reduce(Collection<DocSetCollector> collectors) {
+        return DocSetUtil.getDocSet(DocSetCollector.merge(collectors, maxDoc), searcher);
+      }
+    };
+  }
+
+  /**
+   * Wraps every collector of {@code manager} with a new chain of the post filter collectors of
+   * {@code pf}. The chains are completed before the wrapped collectors are reduced.
+   */
+  private <C extends Collector, T> CollectorManager<Collector, T> withPostFilters(
+      SolrIndexSearcher.ProcessedFilter pf, CollectorManager<C, T> manager) {
+    final List<C> collectors = Collections.synchronizedList(new ArrayList<>());
+    return new CollectorManager<>() {
+      @Override
+      public Collector newCollector() throws IOException {
+        final C collector = manager.newCollector();
+        collectors.add(collector);
+        if (pf.postFilter == null) {
+          return collector;
+        }
+        final DelegatingCollector chain =
+            SolrIndexSearcher.newPostFilterChain(pf.postFilterQueries, searcher);
+        chain.setLastDelegate(collector);
+        return chain;
+      }
+
+      @Override
+      public T reduce(Collection<Collector> chains) throws IOException {
+        for (Collector chain : chains) {
+          if (chain instanceof DelegatingCollector) {
+            ((DelegatingCollector) chain).complete();
+          }
+        }
+        return manager.reduce(collectors);
+      }
+    };
+  }
+}
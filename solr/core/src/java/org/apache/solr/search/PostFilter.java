@@ -43,4 +43,14 @@ public interface PostFilter extends ExtendedQuery {
    * any sorting or grouping collectors
    */
   public DelegatingCollector getFilterCollector(IndexSearcher searcher);
+
+  /**
+   * Returns true if a query may be collected concurrently over several segment slices, each of them
+   * through its own collector obtained from {@link #getFilterCollector(IndexSearcher)}. Filters that
+   * need to see every matching document in a single collector, e.g. to compare documents across
+   * segments, must return false.
+   */
+  public default boolean supportsConcurrentCollection() {
+    return false;
+  }
 }
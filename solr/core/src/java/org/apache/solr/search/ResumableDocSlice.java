@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * A {@link DocSlice} holding the top documents of a query that also remembers the sort position of
+ * its last document. A request for documents beyond the end of the slice can then collect only the
+ * documents that sort after it, rather than collecting the top documents all over again.
+ *
+ * @see SolrIndexSearcher#getDocList(QueryCommand)
+ */
+class ResumableDocSlice extends DocSlice {
+  private static final long BASE_AFTER_RAM_BYTES_USED =
+      RamUsageEstimator.shallowSizeOfInstance(FieldDoc.class);
+
+  /** The last document, a {@link FieldDoc} with its sort values unless sorted by relevance */
+  final ScoreDoc after;
+
+  ResumableDocSlice(
+      int len,
+      int[] docs,
+      float[] scores,
+      long matches,
+      float maxScore,
+      TotalHits.Relation matchesRelation,
+      ScoreDoc after) {
+    super(0, len, docs, scores, matches, maxScore, matchesRelation);
+    this.after = after;
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    long bytes = super.ramBytesUsed() + BASE_AFTER_RAM_BYTES_USED;
+    if (after instanceof FieldDoc) {
+      bytes += RamUsageEstimator.sizeOfObject(((FieldDoc) after).fields);
+    }
+    return bytes;
+  }
+}
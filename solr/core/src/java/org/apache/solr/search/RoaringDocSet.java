@@ -0,0 +1,932 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * A compressed implementation of {@link DocSet} in the spirit of Roaring bitmaps. The doc id space
+ * is split into blocks of 2^16 docs; each non-empty block either holds the sorted lower 16 bits of
+ * its docs, or a bitmap once it has more than 4096 docs (at which point the bitmap is smaller).
+ *
+ * <p>Good for large, long-lived sets that are too big for a {@link SortedIntDocSet} but sparse or
+ * clustered enough that a {@link BitDocSet} would mostly store zeros. Use {@link
+ * DocSetUtil#compact(DocSet, int)} to pick it when it pays off.
+ *
+ * @lucene.experimental
+ */
+public class RoaringDocSet extends DocSet {
+  private static final long BASE_RAM_BYTES_USED =
+      RamUsageEstimator.shallowSizeOfInstance(RoaringDocSet.class);
+
+  static final int BLOCK_SHIFT = 16;
+  static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+  static final int BLOCK_MASK = BLOCK_SIZE - 1;
+  static final int BITMAP_WORDS = BLOCK_SIZE >>> 6;
+
+  /** Blocks with more docs than this are stored as a bitmap, which then uses less memory. */
+  static final int MAX_ARRAY_LENGTH = BLOCK_SIZE >>> 4;
+
+  private static final long BITMAP_RAM_BYTES_USED =
+      RamUsageEstimator.alignObjectSize(
+          RamUsageEstimator.NUM_BYTES_ARRAY_HEADER + (long) Long.BYTES * BITMAP_WORDS);
+
+  private final int maxDoc;
+  // for each block, at most one of arrays[block] and bitmaps[block] is non-null
+  private final char[][] arrays;
+  private final long[][] bitmaps;
+  private final int[] cardinalities;
+  private final int size;
+  private final long ramBytesUsed;
+
+  private RoaringDocSet(int maxDoc, char[][] arrays, long[][] bitmaps, int[] cardinalities) {
+    this.maxDoc = maxDoc;
+    this.arrays = arrays;
+    this.bitmaps = bitmaps;
+    this.cardinalities = cardinalities;
+    int size = 0;
+    long ramBytesUsed =
+        BASE_RAM_BYTES_USED
+            + RamUsageEstimator.sizeOf(cardinalities)
+            + 2 * RamUsageEstimator.shallowSizeOf(arrays);
+    for (int block = 0; block < cardinalities.length; block++) {
+      size += cardinalities[block];
+      if (arrays[block] != null) {
+        ramBytesUsed += RamUsageEstimator.sizeOf(arrays[block]);
+      } else if (bitmaps[block] != null) {
+        ramBytesUsed += BITMAP_RAM_BYTES_USED;
+      }
+    }
+    this.size = size;
+    this.ramBytesUsed = ramBytesUsed;
+  }
+
+  private static int numBlocks(int maxDoc) {
+    return (int) (((long) maxDoc + BLOCK_MASK) >>> BLOCK_SHIFT);
+  }
+
+  /** Creates a set of the docs in the given bits that are lower than maxDoc. */
+  public static RoaringDocSet fromBits(FixedBitSet bits, int maxDoc) {
+    final Builder builder = new Builder(maxDoc);
+    final long[] words = bits.getBits();
+    final int maxDocWords = FixedBitSet.bits2words(maxDoc);
+    final int numWords =
+        Math.min(Math.min(FixedBitSet.bits2words(bits.length()), words.length), maxDocWords);
+    for (int block = 0; block * BITMAP_WORDS < numWords; block++) {
+      final int from = block * BITMAP_WORDS;
+      final int to = Math.min(from + BITMAP_WORDS, numWords);
+      boolean any = false;
+      for (int i = from; i < to && !any; i++) {
+        any = words[i] != 0;
+      }
+      if (!any) continue;
+      final long[] bitmap = new long[BITMAP_WORDS];
+      System.arraycopy(words, from, bitmap, 0, to - from);
+      if (to == maxDocWords && (maxDoc & 63) != 0) {
+        // don't include docs beyond maxDoc
+        bitmap[to - from - 1] &= -1L >>> (64 - (maxDoc & 63));
+      }
+      builder.addBlock(block, bitmap, cardinality(bitmap));
+    }
+    return builder.build();
+  }
+
+  /** Creates a set of the first len docs of a sorted array of unique doc ids */
+  public static RoaringDocSet fromSortedInts(int[] docs, int len, int maxDoc) {
+    final Builder builder = new Builder(len == 0 ? maxDoc : Math.max(maxDoc, docs[len - 1] + 1));
+    for (int i = 0; i < len; i++) {
+      builder.add(docs[i]);
+    }
+    return builder.build();
+  }
+
+  /** Converts any DocSet into a RoaringDocSet */
+  public static RoaringDocSet of(DocSet docs, int maxDoc) {
+    if (docs instanceof RoaringDocSet) {
+      return (RoaringDocSet) docs;
+    } else if (docs instanceof BitDocSet) {
+      return fromBits(docs.getFixedBitSet(), maxDoc);
+    } else if (docs instanceof SortedIntDocSet) {
+      return fromSortedInts(((SortedIntDocSet) docs).getDocs(), docs.size(), maxDoc);
+    }
+    final Builder builder = new Builder(maxDoc);
+    for (DocIterator iter = docs.iterator(); iter.hasNext(); ) {
+      builder.add(iter.nextDoc());
+    }
+    return builder.build();
+  }
+
+  /**
+   * Estimates the heap a RoaringDocSet equivalent of the given set would use, without building it.
+   */
+  public static long estimateRamBytesUsed(DocSet docs, int maxDoc) {
+    if (docs instanceof RoaringDocSet) {
+      return docs.ramBytesUsed();
+    }
+    final int numBlocks = numBlocks(maxDoc);
+    final int[] cardinalities = new int[numBlocks];
+    if (docs instanceof BitDocSet) {
+      final FixedBitSet bits = docs.getFixedBitSet();
+      final long[] words = bits.getBits();
+      final int numWords =
+          Math.min(
+              Math.min(FixedBitSet.bits2words(bits.length()), words.length),
+              numBlocks * BITMAP_WORDS);
+      for (int i = 0; i < numWords; i++) {
+        cardinalities[i / BITMAP_WORDS] += Long.bitCount(words[i]);
+      }
+    } else {
+      for (DocIterator iter = docs.iterator(); iter.hasNext(); ) {
+        final int doc = iter.nextDoc();
+        if (doc >= maxDoc) break;
+        cardinalities[doc >>> BLOCK_SHIFT]++;
+      }
+    }
+    long estimate =
+        BASE_RAM_BYTES_USED
+            + RamUsageEstimator.sizeOf(cardinalities)
+            + 2
+                * RamUsageEstimator.alignObjectSize(
+                    RamUsageEstimator.NUM_BYTES_ARRAY_HEADER
+                        + (long) RamUsageEstimator.NUM_BYTES_OBJECT_REF * numBlocks);
+    for (int card : cardinalities) {
+      if (card > MAX_ARRAY_LENGTH) {
+        estimate += BITMAP_RAM_BYTES_USED;
+      } else if (card > 0) {
+        estimate +=
+            RamUsageEstimator.alignObjectSize(
+                RamUsageEstimator.NUM_BYTES_ARRAY_HEADER + (long) Character.BYTES * card);
+      }
+    }
+    return estimate;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean exists(int doc) {
+    final int block = doc >>> BLOCK_SHIFT;
+    if (block >= cardinalities.length) {
+      return false;
+    }
+    final int low = doc & BLOCK_MASK;
+    if (bitmaps[block] != null) {
+      return (bitmaps[block][low >>> 6] & (1L << low)) != 0;
+    } else if (arrays[block] != null) {
+      return Arrays.binarySearch(arrays[block], (char) low) >= 0;
+    }
+    return false;
+  }
+
+  @Override
+  public DocIterator iterator() {
+    return new DocIterator() {
+      private final Iter iter = new Iter();
+      private int pos = iter.nextDoc();
+
+      @Override
+      public boolean hasNext() {
+        return pos != DocIdSetIterator.NO_MORE_DOCS;
+      }
+
+      @Override
+      public Integer next() {
+        return nextDoc();
+      }
+
+      /** The remove operation is not supported by this Iterator. */
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException(
+            "The remove  operation is not supported by this Iterator.");
+      }
+
+      @Override
+      public int nextDoc() {
+        int old = pos;
+        pos = iter.nextDoc();
+        return old;
+      }
+
+      @Override
+      public float score() {
+        return 0.0f;
+      }
+    };
+  }
+
+  @Override
+  public DocIdSetIterator iterator(LeafReaderContext context) {
+    if (size == 0) {
+      return null;
+    }
+    if (context.isTopLevel) {
+      return new Iter();
+    }
+
+    final int segMaxDoc = context.reader().maxDoc();
+    if (segMaxDoc < 1) {
+      // entirely empty segment
+      return null;
+    }
+    final int base = context.docBase;
+    final int max = base + segMaxDoc; // one past the max doc in this segment.
+    final Iter iter = new Iter();
+
+    return new DocIdSetIterator() {
+      int adjustedDoc = -1;
+
+      @Override
+      public int docID() {
+        return adjustedDoc;
+      }
+
+      @Override
+      public int nextDoc() {
+        return adjust(adjustedDoc == -1 ? iter.advance(base) : iter.nextDoc());
+      }
+
+      @Override
+      public int advance(int target) {
+        if (target == NO_MORE_DOCS) return adjustedDoc = NO_MORE_DOCS;
+        return adjust(iter.advance(target + base));
+      }
+
+      private int adjust(int doc) {
+        return adjustedDoc = doc < max ? doc - base : NO_MORE_DOCS;
+      }
+
+      @Override
+      public long cost() {
+        long cost = 0;
+        final int lastBlock = Math.min((max - 1) >>> BLOCK_SHIFT, cardinalities.length - 1);
+        for (int block = base >>> BLOCK_SHIFT; block <= lastBlock; block++) {
+          cost += cardinalities[block];
+        }
+        return Math.min(cost, segMaxDoc);
+      }
+    };
+  }
+
+  @Override
+  public DocSet intersection(DocSet other) {
+    if (other instanceof RoaringDocSet) {
+      return intersection((RoaringDocSet) other);
+    } else if (other instanceof BitDocSet) {
+      return intersection(other.getFixedBitSet());
+    }
+    // small sets are better at driving the intersection; they don't call us back
+    return other.intersection(this);
+  }
+
+  private RoaringDocSet intersection(RoaringDocSet other) {
+    final Builder builder = new Builder(Math.min(maxDoc, other.maxDoc));
+    final int numBlocks = builder.cardinalities.length;
+    for (int block = 0; block < numBlocks; block++) {
+      if (cardinalities[block] == 0 || other.cardinalities[block] == 0) continue;
+      final long[] a = bitmaps[block];
+      final long[] b = other.bitmaps[block];
+      if (a != null && b != null) {
+        final long[] bitmap = new long[BITMAP_WORDS];
+        int card = 0;
+        for (int i = 0; i < BITMAP_WORDS; i++) {
+          card += Long.bitCount(bitmap[i] = a[i] & b[i]);
+        }
+        builder.addBlock(block, bitmap, card);
+      } else if (a != null) {
+        builder.addBlock(block, filter(other.arrays[block], a, true));
+      } else if (b != null) {
+        builder.addBlock(block, filter(arrays[block], b, true));
+      } else {
+        builder.addBlock(block, intersect(arrays[block], other.arrays[block]));
+      }
+    }
+    return builder.build();
+  }
+
+  private RoaringDocSet intersection(FixedBitSet other) {
+    final Builder builder = new Builder(maxDoc);
+    final BlockBits otherBits = new BlockBits(other);
+    for (int block = 0; block < cardinalities.length; block++) {
+      if (cardinalities[block] == 0 || !otherBits.load(block)) continue;
+      if (bitmaps[block] != null) {
+        final long[] a = bitmaps[block];
+        final long[] bitmap = otherBits.bitmap;
+        int card = 0;
+        for (int i = 0; i < BITMAP_WORDS; i++) {
+          card += Long.bitCount(bitmap[i] &= a[i]);
+        }
+        builder.addBlock(block, bitmap, card);
+        otherBits.bitmap = null; // now owned by the builder
+      } else {
+        builder.addBlock(block, filter(arrays[block], otherBits.bitmap, true));
+      }
+    }
+    return builder.build();
+  }
+
+  @Override
+  public int intersectionSize(DocSet other) {
+    if (other instanceof RoaringDocSet) {
+      final RoaringDocSet o = (RoaringDocSet) other;
+      final int numBlocks = Math.min(cardinalities.length, o.cardinalities.length);
+      int count = 0;
+      for (int block = 0; block < numBlocks; block++) {
+        if (cardinalities[block] == 0 || o.cardinalities[block] == 0) continue;
+        final long[] a = bitmaps[block];
+        final long[] b = o.bitmaps[block];
+        if (a != null && b != null) {
+          for (int i = 0; i < BITMAP_WORDS; i++) {
+            count += Long.bitCount(a[i] & b[i]);
+          }
+        } else if (a != null) {
+          count += countMatches(o.arrays[block], a);
+        } else if (b != null) {
+          count += countMatches(arrays[block], b);
+        } else {
+          count += intersectionSize(arrays[block], o.arrays[block]);
+        }
+      }
+      return count;
+    } else if (other instanceof BitDocSet) {
+      final BlockBits otherBits = new BlockBits(other.getFixedBitSet());
+      int count = 0;
+      for (int block = 0; block < cardinalities.length; block++) {
+        if (cardinalities[block] == 0 || !otherBits.load(block)) continue;
+        if (bitmaps[block] != null) {
+          final long[] a = bitmaps[block];
+          for (int i = 0; i < BITMAP_WORDS; i++) {
+            count += Long.bitCount(a[i] & otherBits.bitmap[i]);
+          }
+        } else {
+          count += countMatches(arrays[block], otherBits.bitmap);
+        }
+      }
+      return count;
+    }
+    // they had better not call us back!
+    return other.intersectionSize(this);
+  }
+
+  @Override
+  public boolean intersects(DocSet other) {
+    if (other instanceof RoaringDocSet || other instanceof BitDocSet) {
+      // TODO could exit early
+      return intersectionSize(other) > 0;
+    }
+    // they had better not call us back!
+    return other.intersects(this);
+  }
+
+  @Override
+  public DocSet union(DocSet other) {
+    if (other instanceof BitDocSet) {
+      // the result is at least as dense as the bitset
+      return other.union(this);
+    }
+    final RoaringDocSet o = of(other, maxDoc);
+    final Builder builder = new Builder(Math.max(maxDoc, o.maxDoc));
+    final int numBlocks = builder.cardinalities.length;
+    for (int block = 0; block < numBlocks; block++) {
+      final int cardA = block < cardinalities.length ? cardinalities[block] : 0;
+      final int cardB = block < o.cardinalities.length ? o.cardinalities[block] : 0;
+      if (cardA == 0 && cardB == 0) {
+        continue;
+      } else if (cardB == 0) {
+        builder.copyBlock(this, block);
+      } else if (cardA == 0) {
+        builder.copyBlock(o, block);
+      } else if (bitmaps[block] != null || o.bitmaps[block] != null) {
+        final long[] bitmap =
+            bitmaps[block] != null ? bitmaps[block].clone() : o.bitmaps[block].clone();
+        final long[] b = bitmaps[block] != null ? o.bitmaps[block] : bitmaps[block];
+        final char[] array = bitmaps[block] != null ? o.arrays[block] : arrays[block];
+        if (b != null) {
+          for (int i = 0; i < BITMAP_WORDS; i++) {
+            bitmap[i] |= b[i];
+          }
+        } else {
+          for (char low : array) {
+            bitmap[low >>> 6] |= 1L << low;
+          }
+        }
+        builder.addBlock(block, bitmap, cardinality(bitmap));
+      } else {
+        builder.addBlock(block, merge(arrays[block], o.arrays[block]));
+      }
+    }
+    return builder.build();
+  }
+
+  @Override
+  public DocSet andNot(DocSet other) {
+    if (other.size() == 0) return this;
+    if (other instanceof BitDocSet) {
+      final Builder builder = new Builder(maxDoc);
+      final BlockBits otherBits = new BlockBits(other.getFixedBitSet());
+      for (int block = 0; block < cardinalities.length; block++) {
+        if (cardinalities[block] == 0) continue;
+        if (!otherBits.load(block)) {
+          builder.copyBlock(this, block);
+        } else if (bitmaps[block] != null) {
+          final long[] a = bitmaps[block];
+          final long[] bitmap = otherBits.bitmap;
+          int card = 0;
+          for (int i = 0; i < BITMAP_WORDS; i++) {
+            card += Long.bitCount(bitmap[i] = a[i] & ~bitmap[i]);
+          }
+          builder.addBlock(block, bitmap, card);
+          otherBits.bitmap = null; // now owned by the builder
+        } else {
+          builder.addBlock(block, filter(arrays[block], otherBits.bitmap, false));
+        }
+      }
+      return builder.build();
+    }
+
+    final RoaringDocSet o = of(other, maxDoc);
+    final Builder builder = new Builder(maxDoc);
+    for (int block = 0; block < cardinalities.length; block++) {
+      if (cardinalities[block] == 0) continue;
+      if (block >= o.cardinalities.length || o.cardinalities[block] == 0) {
+        builder.copyBlock(this, block);
+        continue;
+      }
+      final long[] a = bitmaps[block];
+      final long[] b = o.bitmaps[block];
+      if (a != null) {
+        final long[] bitmap = a.clone();
+        if (b != null) {
+          for (int i = 0; i < BITMAP_WORDS; i++) {
+            bitmap[i] &= ~b[i];
+          }
+        } else {
+          for (char low : o.arrays[block]) {
+            bitmap[low >>> 6] &= ~(1L << low);
+          }
+        }
+        builder.addBlock(block, bitmap, cardinality(bitmap));
+      } else if (b != null) {
+        builder.addBlock(block, filter(arrays[block], b, false));
+      } else {
+        builder.addBlock(block, subtract(arrays[block], o.arrays[block]));
+      }
+    }
+    return builder.build();
+  }
+
+  @Override
+  public DocSetQuery makeQuery() {
+    return new DocSetQuery(this);
+  }
+
+  @Override
+  public void addAllTo(FixedBitSet target) {
+    final long[] words = target.getBits();
+    final int numWords = Math.min(FixedBitSet.bits2words(target.length()), words.length);
+    for (int block = 0; block < cardinalities.length; block++) {
+      if (bitmaps[block] != null) {
+        final int from = block * BITMAP_WORDS;
+        final int to = Math.min(from + BITMAP_WORDS, numWords);
+        final long[] bitmap = bitmaps[block];
+        for (int i = from; i < to; i++) {
+          words[i] |= bitmap[i - from];
+        }
+      } else if (arrays[block] != null) {
+        final int base = block << BLOCK_SHIFT;
+        for (char low : arrays[block]) {
+          target.set(base | low);
+        }
+      }
+    }
+  }
+
+  @Override
+  public RoaringDocSet clone() {
+    final char[][] arrays = new char[this.arrays.length][];
+    final long[][] bitmaps = new long[this.bitmaps.length][];
+    for (int block = 0; block < cardinalities.length; block++) {
+      if (this.arrays[block] != null) arrays[block] = this.arrays[block].clone();
+      if (this.bitmaps[block] != null) bitmaps[block] = this.bitmaps[block].clone();
+    }
+    return new RoaringDocSet(maxDoc, arrays, bitmaps, cardinalities.clone());
+  }
+
+  @Override
+  public Bits getBits() {
+    return new Bits() {
+      @Override
+      public boolean get(int index) {
+        return exists(index);
+      }
+
+      @Override
+      public int length() {
+        return maxDoc;
+      }
+    };
+  }
+
+  @Override
+  protected FixedBitSet getFixedBitSet() {
+    return getFixedBitSetClone();
+  }
+
+  @Override
+  protected FixedBitSet getFixedBitSetClone() {
+    final FixedBitSet bits = new FixedBitSet(maxDoc);
+    addAllTo(bits);
+    return bits;
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return ramBytesUsed;
+  }
+
+  @Override
+  public Collection<Accountable> getChildResources() {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public String toString() {
+    return "RoaringDocSet{"
+        + "size="
+        + size()
+        + ",ramUsed="
+        + RamUsageEstimator.humanReadableUnits(ramBytesUsed())
+        + '}';
+  }
+
+  // ---- block level helpers; "arrays" are sorted and free of duplicates
+
+  private static int cardinality(long[] bitmap) {
+    int card = 0;
+    for (long word : bitmap) {
+      card += Long.bitCount(word);
+    }
+    return card;
+  }
+
+  /** Returns the lowest set bit of the bitmap at or after index, or -1 if there is none */
+  private static int nextSetBit(long[] bitmap, int index) {
+    int i = index >>> 6;
+    long word = bitmap[i] >> index; // skip all the bits to the right of index
+    if (word != 0) {
+      return index + Long.numberOfTrailingZeros(word);
+    }
+    while (++i < BITMAP_WORDS) {
+      word = bitmap[i];
+      if (word != 0) {
+        return (i << 6) + Long.numberOfTrailingZeros(word);
+      }
+    }
+    return -1;
+  }
+
+  private static int countMatches(char[] array, long[] bitmap) {
+    int count = 0;
+    for (char low : array) {
+      if ((bitmap[low >>> 6] & (1L << low)) != 0) count++;
+    }
+    return count;
+  }
+
+  /** Returns the values of the array that are (or are not, if match is false) in the bitmap */
+  private static char[] filter(char[] array, long[] bitmap, boolean match) {
+    final char[] result = new char[array.length];
+    int len = 0;
+    for (char low : array) {
+      if (((bitmap[low >>> 6] & (1L << low)) != 0) == match) {
+        result[len++] = low;
+      }
+    }
+    return len == result.length ? result : Arrays.copyOf(result, len);
+  }
+
+  private static int intersectionSize(char[] a, char[] b) {
+    int count = 0;
+    int i = 0, j = 0;
+    while (i < a.length && j < b.length) {
+      if (a[i] < b[j]) {
+        i++;
+      } else if (a[i] > b[j]) {
+        j++;
+      } else {
+        count++;
+        i++;
+        j++;
+      }
+    }
+    return count;
+  }
+
+  private static char[] intersect(char[] a, char[] b) {
+    final char[] result = new char[Math.min(a.length, b.length)];
+    int len = 0;
+    int i = 0, j = 0;
+    while (i < a.length && j < b.length) {
+      if (a[i] < b[j]) {
+        i++;
+      } else if (a[i] > b[j]) {
+        j++;
+      } else {
+        result[len++] = a[i];
+        i++;
+        j++;
+      }
+    }
+    return len == result.length ? result : Arrays.copyOf(result, len);
+  }
+
+  private static char[] merge(char[] a, char[] b) {
+    final char[] result = new char[a.length + b.length];
+    int len = 0;
+    int i = 0, j = 0;
+    while (i < a.length && j < b.length) {
+      if (a[i] < b[j]) {
+        result[len++] = a[i++];
+      } else if (a[i] > b[j]) {
+        result[len++] = b[j++];
+      } else {
+        result[len++] = a[i];
+        i++;
+        j++;
+      }
+    }
+    while (i < a.length) result[len++] = a[i++];
+    while (j < b.length) result[len++] = b[j++];
+    return len == result.length ? result : Arrays.copyOf(result, len);
+  }
+
+  private static char[] subtract(char[] a, char[] b) {
+    final char[] result = new char[a.length];
+    int len = 0;
+    int i = 0, j = 0;
+    while (i < a.length) {
+      if (j >= b.length || a[i] < b[j]) {
+        result[len++] = a[i++];
+      } else if (a[i] > b[j]) {
+        j++;
+      } else {
+        i++;
+        j++;
+      }
+    }
+    return len == result.length ? result : Arrays.copyOf(result, len);
+  }
+
+  /** Exposes the words of a FixedBitSet one block at a time, as a scratch bitmap. */
+  private static final class BlockBits {
+    private final long[] words;
+    private final int numWords;
+    long[] bitmap; // scratch, may be taken over by the caller (who must null it out)
+
+    BlockBits(FixedBitSet bits) {
+      this.words = bits.getBits();
+      this.numWords = Math.min(FixedBitSet.bits2words(bits.length()), words.length);
+    }
+
+    /** Loads the given block into bitmap; returns false if it has no bits set */
+    boolean load(int block) {
+      final int from = block * BITMAP_WORDS;
+      final int to = Math.min(from + BITMAP_WORDS, numWords);
+      boolean any = false;
+      for (int i = from; i < to && !any; i++) {
+        any = words[i] != 0;
+      }
+      if (!any) {
+        return false;
+      }
+      if (bitmap == null) {
+        bitmap = new long[BITMAP_WORDS];
+      } else {
+        Arrays.fill(bitmap, to - from, BITMAP_WORDS, 0L);
+      }
+      System.arraycopy(words, from, bitmap, 0, to - from);
+      return true;
+    }
+  }
+
+  /** Iterates over all docs of the set, supporting efficient advancing. */
+  private final class Iter extends DocIdSetIterator {
+    private int doc = -1;
+    private int block = -1;
+    private int index; // position in arrays[block] of the current doc, if sparse
+
+    @Override
+    public int docID() {
+      return doc;
+    }
+
+    @Override
+    public int nextDoc() {
+      if (doc == NO_MORE_DOCS) {
+        return doc;
+      }
+      if (block >= 0) {
+        final int base = block << BLOCK_SHIFT;
+        if (arrays[block] != null) {
+          if (++index < arrays[block].length) {
+            return doc = base | arrays[block][index];
+          }
+        } else {
+          final int low = (doc & BLOCK_MASK) + 1;
+          if (low < BLOCK_SIZE) {
+            final int next = nextSetBit(bitmaps[block], low);
+            if (next != -1) {
+              return doc = base | next;
+            }
+          }
+        }
+      }
+      return doc = firstDocFrom(block + 1);
+    }
+
+    @Override
+    public int advance(int target) {
+      if (target >= maxDoc) {
+        return doc = NO_MORE_DOCS;
+      }
+      final int targetBlock = target >>> BLOCK_SHIFT;
+      if (targetBlock != block) {
+        if (cardinalities[targetBlock] == 0) {
+          return doc = firstDocFrom(targetBlock + 1);
+        }
+        block = targetBlock;
+        index = 0;
+      }
+      final int base = block << BLOCK_SHIFT;
+      final int low = target & BLOCK_MASK;
+      if (arrays[block] != null) {
+        final char[] array = arrays[block];
+        int found = Arrays.binarySearch(array, Math.max(index, 0), array.length, (char) low);
+        if (found < 0) found = -found - 1;
+        if (found < array.length) {
+          index = found;
+          return doc = base | array[found];
+        }
+      } else {
+        final int next = nextSetBit(bitmaps[block], low);
+        if (next != -1) {
+          return doc = base | next;
+        }
+      }
+      return doc = firstDocFrom(block + 1);
+    }
+
+    /** Positions on the first doc of the first non-empty block at or after the given one */
+    private int firstDocFrom(int from) {
+      for (int b = from; b < cardinalities.length; b++) {
+        if (cardinalities[b] == 0) continue;
+        block = b;
+        index = 0;
+        final int base = b << BLOCK_SHIFT;
+        return arrays[b] != null ? base | arrays[b][0] : base | nextSetBit(bitmaps[b], 0);
+      }
+      block = cardinalities.length;
+      return NO_MORE_DOCS;
+    }
+
+    @Override
+    public long cost() {
+      return size;
+    }
+  }
+
+  /** Builds a RoaringDocSet block by block, or from docs added in increasing order. */
+  static final class Builder {
+    private final int maxDoc;
+    private final char[][] arrays;
+    private final long[][] bitmaps;
+    private final int[] cardinalities;
+
+    // state of the block being filled by add(int)
+    private int currentBlock = -1;
+    private char[] currentArray;
+    private long[] currentBitmap;
+    private int currentCard;
+
+    Builder(int maxDoc) {
+      this.maxDoc = maxDoc;
+      final int numBlocks = numBlocks(maxDoc);
+      this.arrays = new char[numBlocks][];
+      this.bitmaps = new long[numBlocks][];
+      this.cardinalities = new int[numBlocks];
+    }
+
+    /** Adds a doc; docs must be added in strictly increasing order */
+    void add(int doc) {
+      final int block = doc >>> BLOCK_SHIFT;
+      if (block != currentBlock) {
+        flush();
+        currentBlock = block;
+      }
+      final int low = doc & BLOCK_MASK;
+      if (currentBitmap != null) {
+        currentBitmap[low >>> 6] |= 1L << low;
+      } else if (currentCard < MAX_ARRAY_LENGTH) {
+        if (currentArray == null) currentArray = new char[MAX_ARRAY_LENGTH];
+        currentArray[currentCard] = (char) low;
+      } else {
+        currentBitmap = new long[BITMAP_WORDS];
+        for (int i = 0; i < currentCard; i++) {
+          currentBitmap[currentArray[i] >>> 6] |= 1L << currentArray[i];
+        }
+        currentBitmap[low >>> 6] |= 1L << low;
+      }
+      currentCard++;
+    }
+
+    private void flush() {
+      if (currentCard > 0) {
+        if (currentBitmap != null) {
+          bitmaps[currentBlock] = currentBitmap;
+        } else {
+          arrays[currentBlock] = Arrays.copyOf(currentArray, currentCard);
+        }
+        cardinalities[currentBlock] = currentCard;
+      }
+      currentBitmap = null;
+      currentCard = 0;
+    }
+
+    void addBlock(int block, long[] bitmap, int card) {
+      assert cardinalities[block] == 0;
+      if (card == 0) {
+        return;
+      } else if (card > MAX_ARRAY_LENGTH) {
+        bitmaps[block] = bitmap;
+      } else {
+        final char[] array = new char[card];
+        int len = 0;
+        for (int low = nextSetBit(bitmap, 0); low != -1; ) {
+          array[len++] = (char) low;
+          low = low + 1 < BLOCK_SIZE ? nextSetBit(bitmap, low + 1) : -1;
+        }
+        assert len == card;
+        arrays[block] = array;
+      }
+      cardinalities[block] = card;
+    }
+
+    void addBlock(int block, char[] array) {
+      addBlock(block, array, array.length);
+    }
+
+    void addBlock(int block, char[] array, int len) {
+      assert cardinalities[block] == 0;
+      if (len == 0) {
+        return;
+      } else if (len > MAX_ARRAY_LENGTH) {
+        final long[] bitmap = new long[BITMAP_WORDS];
+        for (int i = 0; i < len; i++) {
+          bitmap[array[i] >>> 6] |= 1L << array[i];
+        }
+        bitmaps[block] = bitmap;
+      } else {
+        arrays[block] = len == array.length ? array : Arrays.copyOf(array, len);
+      }
+      cardinalities[block] = len;
+    }
+
+    /** Shares the (immutable) block of another set */
+    void copyBlock(RoaringDocSet other, int block) {
+      assert cardinalities[block] == 0;
+      arrays[block] = other.arrays[block];
+      bitmaps[block] = other.bitmaps[block];
+      cardinalities[block] = other.cardinalities[block];
+    }
+
+    RoaringDocSet build() {
+      flush();
+      return new RoaringDocSet(maxDoc, arrays, bitmaps, cardinalities);
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.util.Objects;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * A hash key for the per-segment filter cache, encapsulating the core cache key of a segment and
+ * the (positive, unwrapped) filter query that was evaluated against it.
+ *
+ * <p>The core cache key stays the same for the lifetime of a segment, including across commits
+ * that only add deletions to it, which is what allows cached per-segment {@link DocSet}s to be
+ * reused by later searchers.
+ *
+ * @lucene.internal
+ */
+public final class SegmentFilterCacheKey implements Accountable {
+  private static final long BASE_RAM_BYTES_USED =
+      RamUsageEstimator.shallowSizeOfInstance(SegmentFilterCacheKey.class);
+
+  final Object coreKey;
+  final Query query;
+
+  private final int hc; // cached hashCode
+
+  public SegmentFilterCacheKey(Object coreKey, Query query) {
+    this.coreKey = Objects.requireNonNull(coreKey);
+    this.query = Objects.requireNonNull(query);
+    this.hc = 31 * coreKey.hashCode() + query.hashCode();
+  }
+
+  public Object getCoreKey() {
+    return coreKey;
+  }
+
+  public Query getQuery() {
+    return query;
+  }
+
+  @Override
+  public int hashCode() {
+    return hc;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) return true;
+    if (!(o instanceof SegmentFilterCacheKey)) return false;
+    SegmentFilterCacheKey other = (SegmentFilterCacheKey) o;
+    if (this.hc != other.hc) return false;
+    // the core key is an identity based token; never compare it with equals()
+    return this.coreKey == other.coreKey && this.query.equals(other.query);
+  }
+
+  @Override
+  public String toString() {
+    return "SegmentFilterCacheKey(" + coreKey + "," + query + ")";
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    // the core key is owned by the segment, not by this cache entry
+    return BASE_RAM_BYTES_USED
+        + RamUsageEstimator.sizeOfObject(query, RamUsageEstimator.QUERY_DEFAULT_RAM_BYTES_USED);
+  }
+}
@@ -66,6 +66,7 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Scorable;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.SimpleCollector;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
@@ -152,14 +153,19 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
 
   private final int queryResultWindowSize;
   private final int queryResultMaxDocsCached;
+  private final boolean resumeCachedQueryResults;
+  private final boolean adaptiveFilterCaching;
   private final boolean useFilterForSortedQuery;
+  private final boolean compactCachedDocSets;
 
   private final boolean cachingEnabled;
   private final SolrCache<Query, DocSet> filterCache;
+  private final SolrCache<SegmentFilterCacheKey, DocSet> segmentFilterCache;
   private final SolrCache<QueryResultKey, DocList> queryResultCache;
   private final SolrCache<String, UnInvertedField> fieldValueCache;
   private final LongAdder fullSortCount = new LongAdder();
   private final LongAdder skipSortCount = new LongAdder();
+  private final LongAdder resumedSortCount = new LongAdder();
   private final LongAdder liveDocsNaiveCacheHitCount = new LongAdder();
   private final LongAdder liveDocsInsertsCount = new LongAdder();
   private final LongAdder liveDocsHitCount = new LongAdder();
@@ -335,7 +341,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       boolean reserveDirectory,
       DirectoryFactory directoryFactory)
       throws IOException {
-    super(wrapReader(core, r));
+    super(wrapReader(core, r), core.getIndexSearcherExecutor());
 
     this.path = path;
     this.directoryFactory = directoryFactory;
@@ -373,7 +379,10 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     final SolrConfig solrConfig = core.getSolrConfig();
     this.queryResultWindowSize = solrConfig.queryResultWindowSize;
     this.queryResultMaxDocsCached = solrConfig.queryResultMaxDocsCached;
+    this.resumeCachedQueryResults = solrConfig.resumeCachedQueryResults;
+    this.adaptiveFilterCaching = solrConfig.adaptiveFilterCaching;
     this.useFilterForSortedQuery = solrConfig.useFilterForSortedQuery;
+    this.compactCachedDocSets = solrConfig.compactCachedDocSets;
 
     this.docFetcher = new SolrDocumentFetcher(this, solrConfig, enableCache);
 
@@ -385,6 +394,12 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
               ? null
               : solrConfig.fieldValueCacheConfig.newInstance();
       if (fieldValueCache != null) clist.add(fieldValueCache);
+      // must be warmed before the filterCache, whose regeneration can then reuse segment results
+      segmentFilterCache =
+          solrConfig.segmentFilterCacheConfig == null
+              ? null
+              : solrConfig.segmentFilterCacheConfig.newInstance();
+      if (segmentFilterCache != null) clist.add(segmentFilterCache);
       filterCache =
           solrConfig.filterCacheConfig == null ? null : solrConfig.filterCacheConfig.newInstance();
       if (filterCache != null) clist.add(filterCache);
@@ -412,6 +427,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       cacheList = clist.toArray(new SolrCache[0]);
     } else {
       this.filterCache = null;
+      this.segmentFilterCache = null;
       this.queryResultCache = null;
       this.fieldValueCache = null;
       this.cacheMap = NO_GENERIC_CACHES;
@@ -620,6 +636,27 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     return filterCache;
   }
 
+  /**
+   * The per-segment filter cache, or null if not configured. Its values are {@link DocSet}s using
+   * segment-local doc ids that may include deleted documents.
+   *
+   * @lucene.internal
+   */
+  public SolrCache<SegmentFilterCacheKey, DocSet> getSegmentFilterCache() {
+    return segmentFilterCache;
+  }
+
+  /** Returns true if the segment identified by the given core cache key is part of this searcher */
+  boolean hasSegment(Object coreKey) {
+    for (LeafReaderContext ctx : leafContexts) {
+      IndexReader.CacheHelper cacheHelper = ctx.reader().getCoreCacheHelper();
+      if (cacheHelper != null && cacheHelper.getKey() == coreKey) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   //
   // Set default regenerators on filter and query caches if they don't have any
   //
@@ -637,7 +674,9 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
                 V oldVal)
                 throws IOException {
               if (oldVal instanceof UnInvertedField) {
-                UnInvertedField.getUnInvertedField((String) oldKey, newSearcher);
+                // only segments that are new to the searcher need to be un-inverted
+                UnInvertedField.getUnInvertedField(
+                    (String) oldKey, newSearcher, (UnInvertedField) oldVal);
               }
               return true;
             }
@@ -662,6 +701,27 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
           });
     }
 
+    if (solrConfig.segmentFilterCacheConfig != null
+        && solrConfig.segmentFilterCacheConfig.getRegenerator() == null) {
+      solrConfig.segmentFilterCacheConfig.setRegenerator(
+          new CacheRegenerator() {
+            @Override
+            public <K, V> boolean regenerateItem(
+                SolrIndexSearcher newSearcher,
+                SolrCache<K, V> newCache,
+                SolrCache<K, V> oldCache,
+                K oldKey,
+                V oldVal)
+                throws IOException {
+              // per-segment sets are still valid as long as the segment itself is still around
+              if (newSearcher.hasSegment(((SegmentFilterCacheKey) oldKey).getCoreKey())) {
+                newCache.put(oldKey, oldVal);
+              }
+              return true;
+            }
+          });
+    }
+
     if (solrConfig.queryResultCacheConfig != null
         && solrConfig.queryResultCacheConfig.getRegenerator() == null) {
       final int queryResultWindowSize = solrConfig.queryResultWindowSize;
@@ -872,6 +932,52 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     return -1;
   }
 
+  /**
+   * Looks up several ids at once, like {@link #lookupId(BytesRef)}. The ids must be sorted, so that
+   * each segment is searched with a single forward pass over its terms dictionary, and ids found in
+   * a segment aren't looked up in the next ones.
+   *
+   * @param sortedIds unique key values, in increasing order
+   * @return for each id, the leaf index in the high 32 bits and the doc id within the leaf in the
+   *     low 32 bits, or -1 if not found
+   * @lucene.internal
+   */
+  public long[] lookupIds(BytesRef[] sortedIds) throws IOException {
+    assert isSorted(sortedIds);
+    final String field = schema.getUniqueKeyField().getName();
+    final long[] result = new long[sortedIds.length];
+    Arrays.fill(result, -1);
+    int remaining = sortedIds.length;
+    PostingsEnum docs = null;
+    for (int i = 0, c = leafContexts.size(); i < c && remaining > 0; i++) {
+      final LeafReader reader = leafContexts.get(i).reader();
+      final Terms terms = reader.terms(field);
+      if (terms == null) continue;
+
+      final TermsEnum te = terms.iterator();
+      final Bits liveDocs = reader.getLiveDocs();
+      for (int j = 0; j < sortedIds.length; j++) {
+        if (result[j] != -1 || !te.seekExact(sortedIds[j])) continue;
+        docs = te.postings(docs, PostingsEnum.NONE);
+        for (int id = docs.nextDoc(); id != DocIdSetIterator.NO_MORE_DOCS; id = docs.nextDoc()) {
+          if (liveDocs == null || liveDocs.get(id)) {
+            result[j] = (((long) i) << 32) | id;
+            remaining--;
+            break;
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  private static boolean isSorted(BytesRef[] ids) {
+    for (int i = 1; i < ids.length; i++) {
+      if (ids[i - 1].compareTo(ids[i]) > 0) return false;
+    }
+    return true;
+  }
+
   /**
    * Compute and cache the DocSet that matches a query. The normal usage is expected to be
    * cacheDocSet(myQuery, null,false) meaning that Solr will determine if the Query warrants
@@ -922,7 +1028,8 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
   public BitDocSet getDocSetBits(Query q) throws IOException {
     DocSet answer = getDocSet(q);
     BitDocSet answerBits = makeBitDocSet(answer);
-    if (answerBits != answer && filterCache != null) {
+    // when compacting, we'd rather keep the compact form in the cache
+    if (answerBits != answer && filterCache != null && !compactCachedDocSets) {
       filterCache.put(q, answerBits);
     }
     return answerBits;
@@ -982,17 +1089,120 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
 
       // Not found in the cache so compute and put in the cache
       if (answer == null) {
-        answer = getDocSetNC(query, null);
+        answer = getDocSetForCache(query);
         filterCache.put(query, answer);
       }
     } else {
-      answer = filterCache.computeIfAbsent(query, q -> getDocSetNC(q, null));
+      answer = filterCache.computeIfAbsent(query, this::getDocSetForCache);
     }
 
     assert !(answer instanceof MutableBitDocSet) : "should not be mutable";
     return answer;
   }
 
+  /**
+   * Computes the DocSet of a query that is about to be inserted into the filterCache. If a
+   * segmentFilterCache is configured and the query can be cached per segment, the answer is
+   * assembled from per-segment sets so that segments unchanged by a commit don't need to be
+   * re-evaluated by the next searcher.
+   */
+  private DocSet getDocSetForCache(Query query) throws IOException {
+    DocSet answer = null;
+    if (segmentFilterCache != null) {
+      answer = getDocSetFromSegments(query);
+    }
+    if (answer == null) {
+      answer = getDocSetNC(query, null);
+    }
+    return compactForCache(answer, maxDoc());
+  }
+
+  /**
+   * Returns the representation of a DocSet that should be cached. If compactCachedDocSets is
+   * enabled, this may be a {@link RoaringDocSet} to reduce the heap held by the caches.
+   */
+  private DocSet compactForCache(DocSet docs, int maxDoc) {
+    if (!compactCachedDocSets || docs == liveDocs) {
+      return docs;
+    }
+    return DocSetUtil.compact(docs, maxDoc);
+  }
+
+  /**
+   * Assembles the top-level DocSet of a positive query from the segmentFilterCache, computing and
+   * caching the set of any segment that is missing. Returns null if the query can't be cached per
+   * segment, in which case the caller should compute it the usual way.
+   */
+  private DocSet getDocSetFromSegments(Query query) throws IOException {
+    assert segmentFilterCache != null;
+    if (query instanceof DocSetQuery) {
+      // holds top-level doc ids; they aren't stable for a segment across searchers
+      return null;
+    }
+
+    final Weight weight = createWeight(rewrite(query), ScoreMode.COMPLETE_NO_SCORES, 1f);
+    for (LeafReaderContext ctx : leafContexts) {
+      final IndexReader.CacheHelper cacheHelper = ctx.reader().getCoreCacheHelper();
+      if (cacheHelper == null || !weight.isCacheable(ctx)) {
+        return null;
+      }
+    }
+
+    final DocSet[] segmentSets = new DocSet[leafContexts.size()];
+    long maxSize = 0;
+    // see getAndCacheDocSet on why we don't reserve computation slots when timeouts are enabled
+    final boolean timeoutEnabled = SolrQueryTimeoutImpl.getInstance().isTimeoutEnabled();
+    for (LeafReaderContext ctx : leafContexts) {
+      final SegmentFilterCacheKey key =
+          new SegmentFilterCacheKey(ctx.reader().getCoreCacheHelper().getKey(), query);
+      DocSet segmentSet;
+      if (timeoutEnabled) {
+        segmentSet = segmentFilterCache.get(key);
+        if (segmentSet == null) {
+          segmentSet = computeSegmentDocSet(weight, ctx);
+          segmentFilterCache.put(key, segmentSet);
+        }
+      } else {
+        segmentSet = segmentFilterCache.computeIfAbsent(key, k -> computeSegmentDocSet(weight, ctx));
+      }
+      segmentSets[ctx.ord] = segmentSet;
+      maxSize += segmentSet.size();
+    }
+
+    final DocSetBuilder builder = new DocSetBuilder(maxDoc(), maxSize);
+    for (LeafReaderContext ctx : leafContexts) {
+      final DocSet segmentSet = segmentSets[ctx.ord];
+      if (segmentSet.size() == 0) continue;
+      // segment sets are computed without regard for deletions, apply them now
+      final Bits liveDocs = ctx.reader().getLiveDocs();
+      final int base = ctx.docBase;
+      final DocIterator iter = segmentSet.iterator();
+      while (iter.hasNext()) {
+        final int doc = iter.nextDoc();
+        if (liveDocs == null || liveDocs.get(doc)) {
+          builder.add(doc + base);
+        }
+      }
+    }
+    return DocSetUtil.getDocSet(builder.buildUniqueInOrder(null), this);
+  }
+
+  /**
+   * Collects all docs of a segment matching the weight, using segment-local doc ids and ignoring
+   * deletions.
+   */
+  private DocSet computeSegmentDocSet(Weight weight, LeafReaderContext ctx) throws IOException {
+    final Scorer scorer = weight.scorer(ctx);
+    if (scorer == null) {
+      return DocSet.empty();
+    }
+    final DocIdSetIterator iter = scorer.iterator();
+    final int segMaxDoc = ctx.reader().maxDoc();
+    final DocSetBuilder builder = new DocSetBuilder(segMaxDoc, iter.cost());
+    builder.add(iter, 0);
+    return compactForCache(builder.buildUniqueInOrder(null), segMaxDoc);
+  }
+
   private static final MatchAllDocsQuery MATCH_ALL_DOCS_QUERY = new MatchAllDocsQuery();
 
   /** Used as a synchronization point to handle the lazy-init of {@link #liveDocs}. */
@@ -1151,6 +1361,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     public DocSet answer;
     public Query filter; // maybe null.  Scoring is irrelevant / unspecified.
     public DelegatingCollector postFilter; // maybe null
+    List<PostFilter> postFilterQueries; // the queries postFilter was built from, maybe null
   }
 
   /**
@@ -1168,22 +1379,20 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     // This might become pf.answer but not if there are any non-cached filters
     DocSet answer = null;
 
-    boolean[] neg = new boolean[queries.size()];
-    DocSet[] sets = new DocSet[queries.size()];
+    List<Query> positives = null;
+    List<Query> negatives = null;
     List<ExtendedQuery> notCached = null;
     List<PostFilter> postFilters = null;
 
-    int end = 0; // size of "sets" and "neg"; parallel arrays
-
     for (Query q : queries) {
       if (q instanceof ExtendedQuery) {
         ExtendedQuery eq = (ExtendedQuery) q;
         if (!eq.getCache()) {
           if (eq.getCost() >= 100 && eq instanceof PostFilter) {
-            if (postFilters == null) postFilters = new ArrayList<>(sets.length - end);
+            if (postFilters == null) postFilters = new ArrayList<>(queries.size());
             postFilters.add((PostFilter) q);
           } else {
-            if (notCached == null) notCached = new ArrayList<>(sets.length - end);
+            if (notCached == null) notCached = new ArrayList<>(queries.size());
             notCached.add((ExtendedQuery) q);
           }
           continue;
@@ -1192,7 +1401,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
 
       if (filterCache == null) {
         // there is no cache: don't pull bitsets
-        if (notCached == null) notCached = new ArrayList<>(sets.length - end);
+        if (notCached == null) notCached = new ArrayList<>(queries.size());
         WrappedQuery uncached = new WrappedQuery(q);
         uncached.setCache(false);
         notCached.add(uncached);
@@ -1200,33 +1409,43 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       }
 
       Query posQuery = QueryUtils.getAbs(q);
-      DocSet docSet = getPositiveDocSet(posQuery);
       // Negative query if absolute value different from original
       if (Objects.equals(q, posQuery)) {
-        // keep track of the smallest positive set; use "answer" for this.
-        if (answer == null) {
-          answer = docSet;
-          continue;
-        }
-        // note: assume that size() is cached.  It generally comes from the cache, so should be.
-        if (docSet.size() < answer.size()) {
-          // swap answer & docSet so that answer is smallest
-          DocSet tmp = answer;
-          answer = docSet;
-          docSet = tmp;
-        }
-        neg[end] = false;
+        if (positives == null) positives = new ArrayList<>(queries.size());
+        positives.add(q);
       } else {
-        neg[end] = true;
+        if (negatives == null) negatives = new ArrayList<>(queries.size());
+        negatives.add(posQuery);
       }
-      sets[end++] = docSet;
     } // end of queries
 
-    if (end > 0) {
-      // Are all of our normal cached filters negative?
-      if (answer == null) {
-        answer = getLiveDocSet();
+    if (positives != null || negatives != null) {
+      List<DocSet> positiveSets = new ArrayList<>(positives == null ? 0 : positives.size());
+      if (positives != null) {
+        if (adaptiveFilterCaching && positives.size() > 1) {
+          notCached = addPositiveSetsAdaptively(positives, positiveSets, notCached);
+        } else {
+          for (Query q : positives) {
+            positiveSets.add(getPositiveDocSet(q));
+          }
+        }
       }
+      List<DocSet> negativeSets = new ArrayList<>(negatives == null ? 0 : negatives.size());
+      if (negatives != null) {
+        for (Query q : negatives) {
+          negativeSets.add(getPositiveDocSet(q));
+        }
+      }
+
+      // intersect smallest first so that the intermediate answers shrink as fast as possible, and
+      // remove the largest negative sets first for the same reason.
+      // note: assume that size() is cached.  It generally comes from the cache, so should be.
+      positiveSets.sort(Comparator.comparingInt(DocSet::size));
+      negativeSets.sort(Comparator.comparingInt(DocSet::size).reversed());
+
+      // Are all of our normal cached filters negative?
+      answer = positiveSets.isEmpty() ? getLiveDocSet() : positiveSets.get(0);
+      int end = positiveSets.size() + negativeSets.size() - (positiveSets.isEmpty() ? 0 : 1);
 
       // This optimizes for the case where we have more than 2 filters and instead
       // of copying the bitsets we make one mutable bitset. We should only do this
@@ -1236,12 +1455,12 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       }
 
       // do negative queries first to shrink set size
-      for (int i = 0; i < end; i++) {
-        if (neg[i]) answer = answer.andNot(sets[i]);
+      for (DocSet docSet : negativeSets) {
+        answer = answer.andNot(docSet);
       }
 
-      for (int i = 0; i < end; i++) {
-        if (!neg[i]) answer = answer.intersection(sets[i]);
+      for (int i = 1; i < positiveSets.size(); i++) {
+        answer = answer.intersection(positiveSets.get(i));
       }
 
       // Make sure to keep answer as an immutable DocSet if we made it mutable
@@ -1287,16 +1506,72 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     // Set pf.postFilter
     if (postFilters != null) {
       postFilters.sort(sortByCost);
-      for (int i = postFilters.size() - 1; i >= 0; i--) {
-        DelegatingCollector prev = pf.postFilter;
-        pf.postFilter = postFilters.get(i).getFilterCollector(this);
-        if (prev != null) pf.postFilter.setDelegate(prev);
-      }
+      pf.postFilter = newPostFilterChain(postFilters, this);
+      pf.postFilterQueries = postFilters;
     }
 
     return pf;
   }
 
+  /**
+   * Ratio between the estimated number of matches of a filter and the size of the most selective
+   * filter of the same request, above which adaptive filter caching evaluates the filter lazily.
+   */
+  private static final int ADAPTIVE_FILTER_RATIO = 64;
+
+  /**
+   * Gets the DocSets of positive cacheable filters from the most to the least selective, according
+   * to {@link FilterCostEstimator}. A filter estimated to match many more documents than the
+   * smallest set seen so far is neither computed nor cached; it is added to the non-cached filters
+   * instead, where the smaller sets lead the conjunction and it only gets to check their documents.
+   *
+   * @return notCached, possibly created
+   */
+  private List<ExtendedQuery> addPositiveSetsAdaptively(
+      List<Query> positives, List<DocSet> positiveSets, List<ExtendedQuery> notCached)
+      throws IOException {
+    final long[] estimates = new long[positives.size()];
+    final List<Integer> order = new ArrayList<>(positives.size());
+    for (int i = 0; i < estimates.length; i++) {
+      estimates[i] = FilterCostEstimator.estimateMatches(positives.get(i), this);
+      order.add(i);
+    }
+    // unknown estimates last
+    order.sort(
+        Comparator.comparingLong(
+            i -> estimates[i] == FilterCostEstimator.UNKNOWN ? Long.MAX_VALUE : estimates[i]));
+
+    long smallest = Long.MAX_VALUE;
+    for (int i : order) {
+      Query q = positives.get(i);
+      if (estimates[i] != FilterCostEstimator.UNKNOWN
+          && smallest != Long.MAX_VALUE
+          && estimates[i] > smallest * ADAPTIVE_FILTER_RATIO) {
+        if (notCached == null) notCached = new ArrayList<>(positives.size());
+        WrappedQuery uncached = new WrappedQuery(q);
+        uncached.setCache(false);
+        notCached.add(uncached);
+        continue;
+      }
+      DocSet docSet = getPositiveDocSet(q);
+      positiveSets.add(docSet);
+      smallest = Math.min(smallest, docSet.size());
+    }
+    return notCached;
+  }
+
+  /** Chains the collectors of post filters that are already sorted by cost, cheapest first. */
+  static DelegatingCollector newPostFilterChain(
+      List<PostFilter> postFilters, IndexSearcher searcher) {
+    DelegatingCollector chain = null;
+    for (int i = postFilters.size() - 1; i >= 0; i--) {
+      DelegatingCollector prev = chain;
+      chain = postFilters.get(i).getFilterCollector(searcher);
+      if (prev != null) chain.setDelegate(prev);
+    }
+    return chain;
+  }
+
   /**
    * @lucene.internal
    */
@@ -1308,7 +1583,8 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       TermQuery key = new TermQuery(new Term(deState.fieldName, deState.termsEnum.term()));
       return filterCache.computeIfAbsent(
           key,
-          (IOFunction<? super Query, ? extends DocSet>) k -> getResult(deState, largestPossible));
+          (IOFunction<? super Query, ? extends DocSet>)
+              k -> compactForCache(getResult(deState, largestPossible), maxDoc()));
     }
 
     return getResult(deState, largestPossible);
@@ -1543,6 +1819,8 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     if (maxDocRequested < 0 || maxDocRequested > maxDoc()) maxDocRequested = maxDoc();
     int supersetMaxDoc = maxDocRequested;
     DocList superset = null;
+    // a cached superset that is too small, but that we can continue collecting from
+    ResumableDocSlice resumeFrom = null;
 
     int flags = cmd.getFlags();
     Query q = cmd.getQuery();
@@ -1576,17 +1854,16 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
           // OPT: possible future optimization - if the doclist contains all the matches,
           // use it to make the docset instead of rerunning the query.
           if (out.docSet == null && ((flags & GET_DOCSET) != 0)) {
-            if (cmd.getFilterList() == null) {
-              out.docSet = getDocSet(cmd.getQuery());
-            } else {
-              List<Query> newList = new ArrayList<>(cmd.getFilterList().size() + 1);
-              newList.add(cmd.getQuery());
-              newList.addAll(cmd.getFilterList());
-              out.docSet = getDocSet(newList);
-            }
+            out.docSet = getDocSetForCommand(cmd);
           }
           return;
         }
+        if (superset instanceof ResumableDocSlice
+            && resumeCachedQueryResults
+            && (flags & NO_SET_QCACHE) == 0
+            && ((flags & GET_SCORES) == 0 || superset.hasScores())) {
+          resumeFrom = (ResumableDocSlice) superset;
+        }
       }
 
       // If we are going to generate the result, bump up to the
@@ -1649,7 +1926,14 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       useFilterCache = useFilterCacheForDynamicScoreQuery(needSort, cmd);
     }
 
-    if (useFilterCache) {
+    if (resumeFrom != null) {
+      // we have the top docs up to some point already, only collect the ones after it
+      resumedSortCount.increment();
+      resumeDocListNC(qr, cmd, resumeFrom);
+      if ((flags & GET_DOCSET) != 0) {
+        out.docSet = getDocSetForCommand(cmd);
+      }
+    } else if (useFilterCache) {
       // now actually use the filter cache.
       // for large filters that match few documents, this may be
       // slower than simply re-executing the query.
@@ -1690,7 +1974,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
         DocSet qDocSet = getDocListAndSetNC(qr, cmd);
         // cache the docSet matching the query w/o filtering
         if (qDocSet != null && filterCache != null && !qr.isPartialResults())
-          filterCache.put(cmd.getQuery(), qDocSet);
+          filterCache.put(cmd.getQuery(), compactForCache(qDocSet, maxDoc()));
       } else {
         getDocListNC(qr, cmd);
       }
@@ -1724,6 +2008,17 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     }
   }
 
+  /** Returns the set of documents matching both the query and the filters of the command. */
+  private DocSet getDocSetForCommand(QueryCommand cmd) throws IOException {
+    if (cmd.getFilterList() == null) {
+      return getDocSet(cmd.getQuery());
+    }
+    List<Query> newList = new ArrayList<>(cmd.getFilterList().size() + 1);
+    newList.add(cmd.getQuery());
+    newList.addAll(cmd.getFilterList());
+    return getDocSet(newList);
+  }
+
   /**
    * Helper method for extracting the {@link FieldDoc} sort values from a {@link TopFieldDocs} when
    * available and making the appropriate call to {@link QueryResult#setNextCursorMark} when
@@ -1804,6 +2099,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     float maxScore;
     int[] ids;
     float[] scores;
+    ScoreDoc after = null;
 
     boolean needScores = (cmd.getFlags() & GET_SCORES) != 0;
 
@@ -1811,9 +2107,22 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     final Query query =
         QueryUtils.combineQueryAndFilter(QueryUtils.makeQueryable(cmd.getQuery()), pf.filter);
     Relation hitsRelation;
+    final boolean concurrent = MultiThreadedSearcher.canSearch(this, cmd, pf);
 
     // handle zero case...
-    if (lastDocRequested <= 0) {
+    if (lastDocRequested <= 0 && concurrent) {
+      MultiThreadedSearcher.SearchResult result =
+          new MultiThreadedSearcher(this).search(query, pf, cmd, 0, needScores, false);
+
+      nDocsReturned = 0;
+      ids = new int[nDocsReturned];
+      scores = new float[nDocsReturned];
+      totalHits = result.totalHits;
+      maxScore = totalHits > 0 && needScores ? result.maxScore : 0.0f;
+      // no docs on this page, so cursor doesn't change
+      qr.setNextCursorMark(cmd.getCursorMark());
+      hitsRelation = Relation.EQUAL_TO;
+    } else if (lastDocRequested <= 0) {
       final float[] topscore = new float[] {Float.NEGATIVE_INFINITY};
       final int[] numHits = new int[1];
 
@@ -1867,22 +2176,36 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       qr.setNextCursorMark(cmd.getCursorMark());
       hitsRelation = Relation.EQUAL_TO;
     } else {
-      final TopDocsCollector<?> topCollector = buildTopDocsCollector(len, cmd);
-      MaxScoreCollector maxScoreCollector = null;
-      Collector collector = topCollector;
-      if ((cmd.getFlags() & GET_SCORES) != 0) {
-        maxScoreCollector = new MaxScoreCollector();
-        collector = MultiCollector.wrap(topCollector, maxScoreCollector);
-      }
-      ScoreMode scoreModeUsed =
-          buildAndRunCollectorChain(qr, query, collector, cmd, pf.postFilter).scoreMode();
-
-      totalHits = topCollector.getTotalHits();
-      TopDocs topDocs = topCollector.topDocs(0, len);
-      if (scoreModeUsed == ScoreMode.COMPLETE || scoreModeUsed == ScoreMode.COMPLETE_NO_SCORES) {
-        hitsRelation = TotalHits.Relation.EQUAL_TO;
-      } else {
+      final TopDocs topDocs;
+      final float collectedMaxScore;
+      if (concurrent) {
+        MultiThreadedSearcher.SearchResult result =
+            new MultiThreadedSearcher(this).search(query, pf, cmd, len, needScores, false);
+        totalHits = result.totalHits;
+        topDocs = result.topDocs;
         hitsRelation = topDocs.totalHits.relation;
+        collectedMaxScore = result.maxScore;
+      } else {
+        final TopDocsCollector<?> topCollector = buildTopDocsCollector(len, cmd);
+        MaxScoreCollector maxScoreCollector = null;
+        Collector collector = topCollector;
+        if ((cmd.getFlags() & GET_SCORES) != 0) {
+          maxScoreCollector = new MaxScoreCollector();
+          collector = MultiCollector.wrap(topCollector, maxScoreCollector);
+        }
+        ScoreMode scoreModeUsed =
+            buildAndRunCollectorChain(qr, query, collector, cmd, pf.postFilter).scoreMode();
+
+        totalHits = topCollector.getTotalHits();
+        topDocs = topCollector.topDocs(0, len);
+        if (scoreModeUsed == ScoreMode.COMPLETE
+            || scoreModeUsed == ScoreMode.COMPLETE_NO_SCORES) {
+          hitsRelation = TotalHits.Relation.EQUAL_TO;
+        } else {
+          hitsRelation = topDocs.totalHits.relation;
+        }
+        collectedMaxScore =
+            maxScoreCollector == null ? Float.NaN : maxScoreCollector.getMaxScore();
       }
       if (cmd.getSort() != null
           && cmd.getQuery() instanceof RankQuery == false
@@ -1891,10 +2214,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       }
       populateNextCursorMarkFromTopDocs(qr, cmd, topDocs);
 
-      maxScore =
-          totalHits > 0
-              ? (maxScoreCollector == null ? Float.NaN : maxScoreCollector.getMaxScore())
-              : 0.0f;
+      maxScore = totalHits > 0 ? collectedMaxScore : 0.0f;
       nDocsReturned = topDocs.scoreDocs.length;
       ids = new int[nDocsReturned];
       scores = (cmd.getFlags() & GET_SCORES) != 0 ? new float[nDocsReturned] : null;
@@ -1903,11 +2223,93 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
         ids[i] = scoreDoc.doc;
         if (scores != null) scores[i] = scoreDoc.score;
       }
+      if (nDocsReturned > 0 && nDocsReturned <= lastDocRequested && isResumable(cmd)) {
+        after = topDocs.scoreDocs[nDocsReturned - 1];
+      }
     }
 
     int sliceLen = Math.min(lastDocRequested, nDocsReturned);
     if (sliceLen < 0) sliceLen = 0;
-    qr.setDocList(new DocSlice(0, sliceLen, ids, scores, totalHits, maxScore, hitsRelation));
+    if (after != null) {
+      qr.setDocList(
+          new ResumableDocSlice(sliceLen, ids, scores, totalHits, maxScore, hitsRelation, after));
+    } else {
+      qr.setDocList(new DocSlice(0, sliceLen, ids, scores, totalHits, maxScore, hitsRelation));
+    }
+  }
+
+  /**
+   * Returns true if the top docs collected for the command may be continued by {@link
+   * #resumeDocListNC}, which needs a plain top docs collector that can search after a document.
+   */
+  private boolean isResumable(QueryCommand cmd) {
+    return resumeCachedQueryResults
+        && queryResultCache != null
+        && (cmd.getFlags() & NO_SET_QCACHE) == 0
+        && cmd.getCursorMark() == null
+        && !(cmd.getQuery() instanceof RankQuery);
+  }
+
+  /**
+   * Like {@link #getDocListNC} but for a command whose top docs are known up to the end of {@code
+   * cached}: only the documents sorting after its last document are collected, and appended to the
+   * ones of {@code cached}.
+   */
+  private void resumeDocListNC(QueryResult qr, QueryCommand cmd, ResumableDocSlice cached)
+      throws IOException {
+    final int cachedLen = cached.size();
+    final int len = Math.max(1, Math.min(cmd.getSupersetMaxDoc(), maxDoc()) - cachedLen);
+    final boolean needScores = (cmd.getFlags() & GET_SCORES) != 0;
+
+    ProcessedFilter pf = getProcessedFilter(cmd.getFilterList());
+    final Query query =
+        QueryUtils.combineQueryAndFilter(QueryUtils.makeQueryable(cmd.getQuery()), pf.filter);
+
+    final TopDocsCollector<?> topCollector;
+    if (cmd.getSort() == null) {
+      topCollector = TopScoreDocCollector.create(len, cached.after, cmd.getMinExactCount());
+    } else {
+      topCollector =
+          TopFieldCollector.create(
+              weightSort(cmd.getSort()), len, (FieldDoc) cached.after, cmd.getMinExactCount());
+    }
+    MaxScoreCollector maxScoreCollector = null;
+    Collector collector = topCollector;
+    if (needScores) {
+      maxScoreCollector = new MaxScoreCollector();
+      collector = MultiCollector.wrap(topCollector, maxScoreCollector);
+    }
+    ScoreMode scoreModeUsed =
+        buildAndRunCollectorChain(qr, query, collector, cmd, pf.postFilter).scoreMode();
+
+    // the paging collectors still count the documents sorting before "after"
+    final int totalHits = topCollector.getTotalHits();
+    final TopDocs topDocs = topCollector.topDocs(0, len);
+    final Relation hitsRelation;
+    if (scoreModeUsed == ScoreMode.COMPLETE || scoreModeUsed == ScoreMode.COMPLETE_NO_SCORES) {
+      hitsRelation = TotalHits.Relation.EQUAL_TO;
+    } else {
+      hitsRelation = topDocs.totalHits.relation;
+    }
+    if (cmd.getSort() != null && needScores) {
+      TopFieldCollector.populateScores(topDocs.scoreDocs, this, query);
+    }
+    final float collectedMaxScore =
+        maxScoreCollector == null ? Float.NaN : maxScoreCollector.getMaxScore();
+    final float maxScore = totalHits > 0 ? collectedMaxScore : 0.0f;
+
+    final int nDocsCollected = topDocs.scoreDocs.length;
+    final int[] ids = Arrays.copyOf(cached.docs, cachedLen + nDocsCollected);
+    final float[] scores = needScores ? Arrays.copyOf(cached.scores, ids.length) : null;
+    for (int i = 0; i < nDocsCollected; i++) {
+      ScoreDoc scoreDoc = topDocs.scoreDocs[i];
+      ids[cachedLen + i] = scoreDoc.doc;
+      if (scores != null) scores[cachedLen + i] = scoreDoc.score;
+    }
+    final ScoreDoc after =
+        nDocsCollected > 0 ? topDocs.scoreDocs[nDocsCollected - 1] : cached.after;
+    qr.setDocList(
+        new ResumableDocSlice(ids.length, ids, scores, totalHits, maxScore, hitsRelation, after));
   }
 
   // any DocSet returned is for the query only, without any filtering... that way it may
@@ -1922,6 +2324,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     float maxScore;
     int[] ids;
     float[] scores;
+    ScoreDoc after = null;
     DocSet set;
 
     boolean needScores = (cmd.getFlags() & GET_SCORES) != 0;
@@ -1931,9 +2334,22 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     ProcessedFilter pf = getProcessedFilter(cmd.getFilterList());
     final Query query =
         QueryUtils.combineQueryAndFilter(QueryUtils.makeQueryable(cmd.getQuery()), pf.filter);
+    final boolean concurrent = MultiThreadedSearcher.canSearch(this, cmd, pf);
 
     // handle zero case...
-    if (lastDocRequested <= 0) {
+    if (lastDocRequested <= 0 && concurrent) {
+      MultiThreadedSearcher.SearchResult result =
+          new MultiThreadedSearcher(this).search(query, pf, cmd, 0, needScores, true);
+      set = result.docSet;
+
+      nDocsReturned = 0;
+      ids = new int[nDocsReturned];
+      scores = new float[nDocsReturned];
+      totalHits = set.size();
+      maxScore = totalHits > 0 && needScores ? result.maxScore : 0.0f;
+      // no docs on this page, so cursor doesn't change
+      qr.setNextCursorMark(cmd.getCursorMark());
+    } else if (lastDocRequested <= 0) {
       final float[] topscore = new float[] {Float.NEGATIVE_INFINITY};
 
       Collector collector;
@@ -1979,36 +2395,46 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       // no docs on this page, so cursor doesn't change
       qr.setNextCursorMark(cmd.getCursorMark());
     } else {
-      final TopDocsCollector<? extends ScoreDoc> topCollector = buildTopDocsCollector(len, cmd);
-      DocSetCollector setCollector = new DocSetCollector(maxDoc);
-      MaxScoreCollector maxScoreCollector = null;
-      List<Collector> collectors = new ArrayList<>(Arrays.asList(topCollector, setCollector));
-
-      if ((cmd.getFlags() & GET_SCORES) != 0) {
-        maxScoreCollector = new MaxScoreCollector();
-        collectors.add(maxScoreCollector);
-      }
+      final TopDocs topDocs;
+      final float collectedMaxScore;
+      if (concurrent) {
+        MultiThreadedSearcher.SearchResult result =
+            new MultiThreadedSearcher(this).search(query, pf, cmd, len, needScores, true);
+        set = result.docSet;
+        totalHits = result.totalHits;
+        topDocs = result.topDocs;
+        collectedMaxScore = result.maxScore;
+      } else {
+        final TopDocsCollector<? extends ScoreDoc> topCollector = buildTopDocsCollector(len, cmd);
+        DocSetCollector setCollector = new DocSetCollector(maxDoc);
+        MaxScoreCollector maxScoreCollector = null;
+        List<Collector> collectors = new ArrayList<>(Arrays.asList(topCollector, setCollector));
+
+        if ((cmd.getFlags() & GET_SCORES) != 0) {
+          maxScoreCollector = new MaxScoreCollector();
+          collectors.add(maxScoreCollector);
+        }
 
-      Collector collector = MultiCollector.wrap(collectors);
+        Collector collector = MultiCollector.wrap(collectors);
 
-      buildAndRunCollectorChain(qr, query, collector, cmd, pf.postFilter);
+        buildAndRunCollectorChain(qr, query, collector, cmd, pf.postFilter);
 
-      set = DocSetUtil.getDocSet(setCollector, this);
+        set = DocSetUtil.getDocSet(setCollector, this);
 
-      totalHits = topCollector.getTotalHits();
+        totalHits = topCollector.getTotalHits();
+        topDocs = topCollector.topDocs(0, len);
+        collectedMaxScore =
+            maxScoreCollector == null ? Float.NaN : maxScoreCollector.getMaxScore();
+      }
       assert (totalHits == set.size()) || qr.isPartialResults();
 
-      TopDocs topDocs = topCollector.topDocs(0, len);
       if (cmd.getSort() != null
           && !(cmd.getQuery() instanceof RankQuery)
           && (cmd.getFlags() & GET_SCORES) != 0) {
         TopFieldCollector.populateScores(topDocs.scoreDocs, this, query);
       }
       populateNextCursorMarkFromTopDocs(qr, cmd, topDocs);
-      maxScore =
-          totalHits > 0
-              ? (maxScoreCollector == null ? Float.NaN : maxScoreCollector.getMaxScore())
-              : 0.0f;
+      maxScore = totalHits > 0 ? collectedMaxScore : 0.0f;
       nDocsReturned = topDocs.scoreDocs.length;
 
       ids = new int[nDocsReturned];
@@ -2018,13 +2444,23 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
         ids[i] = scoreDoc.doc;
         if (scores != null) scores[i] = scoreDoc.score;
       }
+      if (nDocsReturned > 0 && nDocsReturned <= lastDocRequested && isResumable(cmd)) {
+        after = topDocs.scoreDocs[nDocsReturned - 1];
+      }
     }
 
     int sliceLen = Math.min(lastDocRequested, nDocsReturned);
     if (sliceLen < 0) sliceLen = 0;
 
-    qr.setDocList(
-        new DocSlice(0, sliceLen, ids, scores, totalHits, maxScore, TotalHits.Relation.EQUAL_TO));
+    if (after != null) {
+      qr.setDocList(
+          new ResumableDocSlice(
+              sliceLen, ids, scores, totalHits, maxScore, TotalHits.Relation.EQUAL_TO, after));
+    } else {
+      qr.setDocList(
+          new DocSlice(
+              0, sliceLen, ids, scores, totalHits, maxScore, TotalHits.Relation.EQUAL_TO));
+    }
     // TODO: if we collect results before the filter, we just need to intersect with
     // that filter to generate the DocSet for qr.setDocSet()
     qr.setDocSet(set);
@@ -2251,7 +2687,8 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     }
 
     // bit of a hack to tell if a set is sorted - do it better in the future.
-    boolean inOrder = set instanceof BitDocSet || set instanceof SortedIntDocSet;
+    boolean inOrder =
+        set instanceof BitDocSet || set instanceof SortedIntDocSet || set instanceof RoaringDocSet;
 
     TopDocsCollector<? extends ScoreDoc> topCollector = buildTopDocsCollector(nDocs, cmd);
 
@@ -2527,6 +2964,8 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
         fullSortCount::sum, true, "fullSortCount", Category.SEARCHER.toString(), scope);
     parentContext.gauge(
         skipSortCount::sum, true, "skipSortCount", Category.SEARCHER.toString(), scope);
+    parentContext.gauge(
+        resumedSortCount::sum, true, "resumedSortCount", Category.SEARCHER.toString(), scope);
     final MetricsMap liveDocsCacheMetrics =
         new MetricsMap(
             (map) -> {
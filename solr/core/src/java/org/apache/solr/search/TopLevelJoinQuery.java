@@ -20,6 +20,7 @@ package org.apache.solr.search;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.SortedSetDocValues;
@@ -38,13 +39,16 @@ import org.apache.lucene.util.LongBitSet;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.schema.IndexSchema;
 import org.apache.solr.schema.SchemaField;
+import org.apache.solr.search.join.JoinOrdinalMap;
 import org.apache.solr.search.join.MultiValueTermOrdinalCollector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * {@link JoinQuery} implementation using global (top-level) DocValues ordinals to efficiently
- * compare values in the "from" and "to" fields.
+ * compare values in the "from" and "to" fields. When the "to" searcher has a {@link
+ * JoinOrdinalMap#CACHE_NAME} cache, the mapping between the ordinals of the two fields is computed
+ * once per searcher, reducing the join to bitset operations.
  */
 public class TopLevelJoinQuery extends JoinQuery {
   private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
@@ -81,9 +85,13 @@ public class TopLevelJoinQuery extends JoinQuery {
       final LongBitSet fromOrdBitSet =
           findFieldOrdinalsMatchingQuery(q, fromField, fromSearcher, topLevelFromDocValues);
       final LongBitSet toOrdBitSet = new LongBitSet(topLevelToDocValues.getValueCount());
+      final JoinOrdinalMap ordinalMap =
+          getOrdinalMap(fromSearcher, toSearcher, topLevelFromDocValues, topLevelToDocValues);
       final BitsetBounds toBitsetBounds =
-          convertFromOrdinalsIntoToField(
-              fromOrdBitSet, topLevelFromDocValues, toOrdBitSet, topLevelToDocValues);
+          ordinalMap != null
+              ? convertFromOrdinalsIntoToField(fromOrdBitSet, ordinalMap, toOrdBitSet)
+              : convertFromOrdinalsIntoToField(
+                  fromOrdBitSet, topLevelFromDocValues, toOrdBitSet, topLevelToDocValues);
 
       final boolean toMultivalued = toSearcher.getSchema().getFieldOrNull(toField).multiValued();
       return new ConstantScoreWeight(this, boost) {
@@ -193,6 +201,50 @@ public class TopLevelJoinQuery extends JoinQuery {
     return fromOrdBitSet;
   }
 
+  /**
+   * The cached mapping from the "from" ordinals to the "to" ordinals, or null when the "to"
+   * searcher has no {@link JoinOrdinalMap#CACHE_NAME} cache.
+   */
+  protected JoinOrdinalMap getOrdinalMap(
+      SolrIndexSearcher fromSearcher,
+      SolrIndexSearcher toSearcher,
+      SortedSetDocValues fromDocValues,
+      SortedSetDocValues toDocValues)
+      throws IOException {
+    @SuppressWarnings("unchecked")
+    final SolrCache<JoinOrdinalMap.CacheKey, JoinOrdinalMap> cache =
+        toSearcher.getCache(JoinOrdinalMap.CACHE_NAME);
+    final IndexReader.CacheHelper fromCacheHelper =
+        fromSearcher.getRawReader().getReaderCacheHelper();
+    if (cache == null || fromCacheHelper == null) {
+      return null;
+    }
+    final JoinOrdinalMap.CacheKey key =
+        new JoinOrdinalMap.CacheKey(fromCacheHelper.getKey(), fromField, toField);
+    return cache.computeIfAbsent(key, k -> JoinOrdinalMap.build(fromDocValues, toDocValues));
+  }
+
+  private static BitsetBounds convertFromOrdinalsIntoToField(
+      LongBitSet fromOrdBitSet, JoinOrdinalMap ordinalMap, LongBitSet toOrdBitSet) {
+    long firstToOrd = BitsetBounds.NO_MATCHES;
+    long lastToOrd = 0;
+
+    long fromOrdinal = 0;
+    // "to" ordinals are ascending with the "from" ordinals, both following the terms order
+    while (fromOrdinal < fromOrdBitSet.length()
+        && (fromOrdinal = fromOrdBitSet.nextSetBit(fromOrdinal)) >= 0) {
+      final long toOrdinal = ordinalMap.getToOrd(fromOrdinal);
+      if (toOrdinal >= 0) {
+        toOrdBitSet.set(toOrdinal);
+        if (firstToOrd == BitsetBounds.NO_MATCHES) firstToOrd = toOrdinal;
+        lastToOrd = toOrdinal;
+      }
+      fromOrdinal++;
+    }
+
+    return new BitsetBounds(firstToOrd, lastToOrd);
+  }
+
   protected BitsetBounds convertFromOrdinalsIntoToField(
       LongBitSet fromOrdBitSet,
       SortedSetDocValues fromDocValues,
@@ -265,6 +317,16 @@ public class TopLevelJoinQuery extends JoinQuery {
       super(joinField, joinField, null, subQuery);
     }
 
+    @Override
+    protected JoinOrdinalMap getOrdinalMap(
+        SolrIndexSearcher fromSearcher,
+        SolrIndexSearcher toSearcher,
+        SortedSetDocValues fromDocValues,
+        SortedSetDocValues toDocValues) {
+      // 'from' and 'to' ordinals are identical for self-joins.
+      return null;
+    }
+
     @Override
     protected BitsetBounds convertFromOrdinalsIntoToField(
         LongBitSet fromOrdBitSet,
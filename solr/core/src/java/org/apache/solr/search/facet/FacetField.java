@@ -39,6 +39,14 @@ public class FacetField extends FacetRequestSorted {
   // only.
   Boolean perSeg;
 
+  // number of threads to collect segments with when using the dv method, 0 or 1 meaning serial
+  // collection and a negative number meaning one thread per segment.
+  int threads;
+
+  // merge shard bucket lists with a k-way merge instead of a hash of every bucket seen, see
+  // FacetFieldMerger#isStreaming for when this can be honoured.
+  boolean streamMerge;
+
   {
     // defaults for FacetRequestSorted
     mincount = 1;
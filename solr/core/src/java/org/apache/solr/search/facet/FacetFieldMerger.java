@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import org.apache.solr.common.util.CollectionUtil;
 import org.apache.solr.common.util.SimpleOrderedMap;
 
@@ -37,6 +38,10 @@ public class FacetFieldMerger extends FacetRequestSortedMerger<FacetField> {
   // the number of buckets in the bucket lists returned from all of the shards
   int numReturnedBuckets;
 
+  // non-null when streaming: the (index sorted) bucket lists as returned by the shards, merged
+  // lazily by getMergedResult instead of being folded into the buckets map up front.
+  List<ShardBuckets> shardBuckets;
+
   public FacetFieldMerger(FacetField freq) {
     super(freq);
   }
@@ -75,7 +80,16 @@ public class FacetFieldMerger extends FacetRequestSortedMerger<FacetField> {
     List<SimpleOrderedMap<?>> bucketList = (List<SimpleOrderedMap<?>>) facetResult.get("buckets");
     numReturnedPerShard[mcontext.shardNum] = bucketList.size();
     numReturnedBuckets += bucketList.size();
-    mergeBucketList(bucketList, mcontext);
+    if (isStreaming(mcontext)) {
+      if (shardBuckets == null) {
+        shardBuckets = new ArrayList<>(mcontext.numShards);
+      }
+      if (!bucketList.isEmpty()) {
+        shardBuckets.add(new ShardBuckets(mcontext.shardNum, bucketList));
+      }
+    } else {
+      mergeBucketList(bucketList, mcontext);
+    }
 
     if (freq.numBuckets) {
       Object nb = facetResult.get("numBuckets");
@@ -88,6 +102,20 @@ public class FacetFieldMerger extends FacetRequestSortedMerger<FacetField> {
     }
   }
 
+  /**
+   * Returns true if the bucket lists of this facet can be merged as a stream. This requires that
+   * every shard returns its buckets in the final sort order, i.e. sorted by index, and that neither
+   * this facet nor any of its sub-facets need refinement, since refinement needs to know which
+   * shard saw which bucket.
+   */
+  boolean isStreaming(Context mcontext) {
+    return freq.streamMerge
+        && freq.prelim_sort == null
+        && "index".equals(freq.sort.sortVariable)
+        && !freq.doRefine()
+        && mcontext.getSubsWithRefinement(freq).isEmpty();
+  }
+
   @Override
   public Object getMergedResult() {
     SimpleOrderedMap<Object> result = new SimpleOrderedMap<>();
@@ -96,6 +124,21 @@ public class FacetFieldMerger extends FacetRequestSortedMerger<FacetField> {
       result.add("numBuckets", ((Number) numBuckets.getMergedResult()).longValue());
     }
 
+    List<SimpleOrderedMap<?>> resultBuckets =
+        shardBuckets != null ? getStreamedBuckets() : getSortedBuckets();
+
+    result.add("buckets", resultBuckets);
+    if (missingBucket != null) {
+      result.add("missing", missingBucket.getMergedBucket());
+    }
+    if (allBuckets != null) {
+      result.add("allBuckets", allBuckets.getMergedBucket());
+    }
+
+    return result;
+  }
+
+  private List<SimpleOrderedMap<?>> getSortedBuckets() {
     sortBuckets(freq.sort);
 
     long first = freq.offset;
@@ -135,15 +178,98 @@ public class FacetFieldMerger extends FacetRequestSortedMerger<FacetField> {
       resultBuckets.add(bucket.getMergedBucket());
     }
 
-    result.add("buckets", resultBuckets);
-    if (missingBucket != null) {
-      result.add("missing", missingBucket.getMergedBucket());
+    return resultBuckets;
+  }
+
+  /**
+   * k-way merges the shard bucket lists. Only one merged bucket is alive at a time, and merging
+   * stops as soon as the requested page is full, so the memory needed beyond the shard responses
+   * themselves is bounded by the number of shards and the size of the page.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private List<SimpleOrderedMap<?>> getStreamedBuckets() {
+    final int sortMul = freq.sort.sortDirection.getMultiplier();
+    PriorityQueue<ShardBuckets> queue =
+        new PriorityQueue<>(
+            Math.max(1, shardBuckets.size()),
+            (o1, o2) -> -o1.value().compareTo(o2.value()) * sortMul);
+    for (ShardBuckets shard : shardBuckets) {
+      shard.pos = 0;
+      queue.add(shard);
     }
-    if (allBuckets != null) {
-      result.add("allBuckets", allBuckets.getMergedBucket());
+
+    // buckets are merged and then dropped, nothing ever asks which shard saw them
+    StreamContext scontext = new StreamContext(mcontext.numShards);
+
+    int off = (int) freq.offset;
+    int lim = freq.limit >= 0 ? (int) freq.limit : Integer.MAX_VALUE;
+    List<SimpleOrderedMap<?>> resultBuckets = new ArrayList<>();
+    while (!queue.isEmpty() && resultBuckets.size() < lim) {
+      Comparable bucketVal = queue.peek().value();
+      FacetBucket bucket = newBucket(bucketVal, scontext);
+      do {
+        ShardBuckets shard = queue.poll();
+        scontext.shardNum = shard.shardNum;
+        bucket.mergeBucket(shard.bucket(), scontext);
+        if (shard.next()) {
+          queue.add(shard);
+        }
+      } while (!queue.isEmpty() && bucketVal.compareTo(queue.peek().value()) == 0);
+
+      if (bucket.getCount() < freq.mincount) {
+        continue;
+      }
+      if (off > 0) {
+        --off;
+        continue;
+      }
+      resultBuckets.add(bucket.getMergedBucket());
     }
 
-    return result;
+    return resultBuckets;
+  }
+
+  /** A cursor over the bucket list of a single shard response. */
+  static final class ShardBuckets {
+    final int shardNum;
+    final List<SimpleOrderedMap<?>> buckets;
+    int pos;
+
+    ShardBuckets(int shardNum, List<SimpleOrderedMap<?>> buckets) {
+      this.shardNum = shardNum;
+      this.buckets = buckets;
+    }
+
+    SimpleOrderedMap<?> bucket() {
+      return buckets.get(pos);
+    }
+
+    @SuppressWarnings("rawtypes")
+    Comparable value() {
+      return (Comparable) buckets.get(pos).get("val");
+    }
+
+    boolean next() {
+      return ++pos < buckets.size();
+    }
+  }
+
+  /**
+   * Context used for streamed buckets, which don't take part in refinement, so there's no need to
+   * number them or remember the shards they came from.
+   */
+  static final class StreamContext extends Context {
+    StreamContext(int numShards) {
+      super(numShards);
+    }
+
+    @Override
+    public int getNewBucketNumber() {
+      return 0;
+    }
+
+    @Override
+    public void setShardFlag(int bucketNum) {}
   }
 
   @Override
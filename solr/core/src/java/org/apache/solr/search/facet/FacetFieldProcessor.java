@@ -835,6 +835,24 @@ abstract class FacetFieldProcessor extends FacetProcessor<FacetField> {
       }
     }
 
+    @Override
+    public boolean isMergeable() {
+      for (SlotAcc acc : subAccs) {
+        if (!acc.isMergeable()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public void merge(SlotAcc other) throws IOException {
+      final SlotAcc[] otherSubAccs = ((MultiAcc) other).subAccs;
+      for (int i = 0; i < subAccs.length; i++) {
+        subAccs[i].merge(otherSubAccs[i]);
+      }
+    }
+
     @Override
     public void setValues(SimpleOrderedMap<Object> bucket, int slotNum) throws IOException {
       for (SlotAcc acc : subAccs) {
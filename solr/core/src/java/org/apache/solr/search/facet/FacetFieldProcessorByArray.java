@@ -90,7 +90,14 @@ abstract class FacetFieldProcessorByArray extends FacetFieldProcessor {
   @Override
   public void process() throws IOException {
     super.process();
-    response = calcFacets();
+    try {
+      response = calcFacets();
+    } finally {
+      // the counts may be held in off-heap pages, hand them back now that the buckets are built
+      if (countAcc != null) {
+        countAcc.close();
+      }
+    }
   }
 
   private SimpleOrderedMap<Object> calcFacets() throws IOException {
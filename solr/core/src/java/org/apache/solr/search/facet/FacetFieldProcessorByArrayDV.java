@@ -17,8 +17,15 @@
 package org.apache.solr.search.facet;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RunnableFuture;
 import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.MultiDocValues;
@@ -32,6 +39,7 @@ import org.apache.lucene.util.UnicodeUtil;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.schema.SchemaField;
 import org.apache.solr.search.facet.SlotAcc.CountSlotAcc;
+import org.apache.solr.search.facet.SlotAcc.CountSlotArrAcc;
 import org.apache.solr.search.facet.SlotAcc.SweepCountAccStruct;
 import org.apache.solr.search.facet.SlotAcc.SweepingCountSlotAcc;
 import org.apache.solr.search.facet.SweepCountAware.SegCountGlobal;
@@ -130,20 +138,195 @@ class FacetFieldProcessorByArrayDV extends FacetFieldProcessorByArray {
     if (freq.perSeg != null)
       accumSeg = canDoPerSeg && freq.perSeg; // internal - override perSeg heuristic
 
-    final int maxSize = others.size() + 1; // others + base
     final List<LeafReaderContext> leaves = fcontext.searcher.getIndexReader().leaves();
-    final DocIdSetIterator[] subIterators = new DocIdSetIterator[maxSize];
-    final CountSlotAcc[] activeCountAccs = new CountSlotAcc[maxSize];
+    final int numTasks = getNumConcurrentTasks(leaves.size(), others);
+    if (numTasks > 1) {
+      collectConcurrently(numTasks, leaves, base, countOnly, canDoPerSeg, accumSeg);
+      return;
+    }
 
+    final SegmentCollector collector =
+        new SegmentCollector(
+            base, others, collectAcc, allBucketsAcc, countOnly, canDoPerSeg, accumSeg);
     for (int subIdx = 0; subIdx < leaves.size(); subIdx++) {
       LeafReaderContext subCtx = leaves.get(subIdx);
-
       setNextReaderFirstPhase(subCtx);
+      collector.collectSegment(subIdx, subCtx);
+    }
+  }
+
+  /**
+   * Returns the number of tasks the segments should be collected with, 1 meaning serially on the
+   * calling thread. Concurrent collection needs all accumulators to be mergeable, and is not used
+   * for allBuckets or for sweeping over additional domains (e.g. relatedness).
+   */
+  private int getNumConcurrentTasks(int numLeaves, List<SweepCountAccStruct> others) {
+    final int threads = freq.threads;
+    if (threads == 0 || threads == 1 || numLeaves <= 1) {
+      return 1;
+    }
+    if (!others.isEmpty()
+        || allBucketsAcc != null
+        || !(countAcc instanceof CountSlotArrAcc)
+        || (collectAcc != null && !collectAcc.isMergeable())
+        || fcontext.req == null
+        || fcontext.req.getCoreContainer() == null) {
+      return 1;
+    }
+    // a negative number of threads means as many as there are segments
+    return threads < 0 ? numLeaves : Math.min(threads, numLeaves);
+  }
+
+  /**
+   * Collects the segments with one task per thread. Every task collects its share of the segments
+   * into its own count and stats accumulators, which are merged into this processor's
+   * accumulators once all tasks are done.
+   */
+  private void collectConcurrently(
+      int numTasks,
+      List<LeafReaderContext> leaves,
+      SweepCountAccStruct base,
+      boolean countOnly,
+      boolean canDoPerSeg,
+      boolean accumSeg)
+      throws IOException {
+    final CountSlotArrAcc[] taskCountAccs = new CountSlotArrAcc[numTasks];
+    final SlotAcc[] taskCollectAccs = new SlotAcc[numTasks];
+    final List<Future<Void>> futures = new ArrayList<>(numTasks);
+    final Executor executor =
+        fcontext.req.getCoreContainer().getUpdateShardHandler().getUpdateExecutor();
+
+    try {
+      for (int task = 0; task < numTasks; task++) {
+        final CountSlotArrAcc taskCountAcc = new CountSlotArrAcc(fcontext, maxSlots);
+        final SlotAcc taskCollectAcc = collectAcc == null ? null : copyAcc(collectAcc);
+        taskCountAccs[task] = taskCountAcc;
+        taskCollectAccs[task] = taskCollectAcc;
+
+        final int firstLeaf = task;
+        RunnableFuture<Void> future =
+            new FutureTask<>(
+                () -> {
+                  SegmentCollector collector =
+                      new SegmentCollector(
+                          new SweepCountAccStruct(base.docSet, true, taskCountAcc),
+                          Collections.emptyList(),
+                          taskCollectAcc,
+                          null,
+                          countOnly,
+                          canDoPerSeg,
+                          accumSeg);
+                  // segments are spread round-robin, each task visits its own in index order
+                  for (int subIdx = firstLeaf; subIdx < leaves.size(); subIdx += numTasks) {
+                    LeafReaderContext subCtx = leaves.get(subIdx);
+                    if (taskCollectAcc != null) {
+                      taskCollectAcc.setNextReader(subCtx);
+                    }
+                    collector.collectSegment(subIdx, subCtx);
+                  }
+                  return null;
+                });
+        executor.execute(future);
+        futures.add(future);
+      }
+
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SolrException(
+          SolrException.ErrorCode.SERVER_ERROR,
+          "Error while collecting facet field: InterruptedException",
+          e);
+    } catch (ExecutionException ee) {
+      Throwable e = ee.getCause(); // unwrap
+      if (e instanceof RuntimeException) {
+        throw (RuntimeException) e;
+      }
+      throw new SolrException(
+          SolrException.ErrorCode.SERVER_ERROR,
+          "Error while collecting facet field: " + e.toString(),
+          e);
+    }
+
+    for (int task = 0; task < numTasks; task++) {
+      final SlotArrays.LongArray counts = taskCountAccs[task].result;
+      for (int slot = 0; slot < counts.size(); slot++) {
+        final long count = counts.get(slot);
+        if (count != 0) {
+          countAcc.incrementCount(slot, count);
+        }
+      }
+      taskCountAccs[task].close();
+      if (collectAcc != null) {
+        collectAcc.merge(taskCollectAccs[task]);
+        taskCollectAccs[task].close();
+      }
+    }
+  }
+
+  /** Creates an empty accumulator for the same stats as {@code acc}, which must be mergeable. */
+  private SlotAcc copyAcc(SlotAcc acc) throws IOException {
+    if (acc instanceof MultiAcc) {
+      final SlotAcc[] subAccs = ((MultiAcc) acc).subAccs;
+      final SlotAcc[] copies = new SlotAcc[subAccs.length];
+      for (int i = 0; i < subAccs.length; i++) {
+        copies[i] = copyAcc(subAccs[i]);
+      }
+      return new MultiAcc(fcontext, copies);
+    }
+    final SlotAcc copy = freq.getFacetStats().get(acc.key).createSlotAcc(fcontext, nDocs, maxSlots);
+    copy.key = acc.key;
+    return copy;
+  }
+
+  @Override
+  protected BytesRef lookupOrd(int ord) throws IOException {
+    return si.lookupOrd(ord);
+  }
 
+  /**
+   * Collects segments into a set of count and stats accumulators. Segments are collected serially
+   * into the accumulators of this processor, or concurrently by one instance per thread.
+   */
+  private final class SegmentCollector {
+    final SweepCountAccStruct base;
+    final List<SweepCountAccStruct> others;
+    final SlotAcc collectAcc;
+    final SpecialSlotAcc allBucketsAcc;
+    final boolean countOnly;
+    final boolean canDoPerSeg;
+    final boolean accumSeg;
+    final DocIdSetIterator[] subIterators;
+    final CountSlotAcc[] activeCountAccs;
+
+    SegmentCollector(
+        SweepCountAccStruct base,
+        List<SweepCountAccStruct> others,
+        SlotAcc collectAcc,
+        SpecialSlotAcc allBucketsAcc,
+        boolean countOnly,
+        boolean canDoPerSeg,
+        boolean accumSeg) {
+      this.base = base;
+      this.others = others;
+      this.collectAcc = collectAcc;
+      this.allBucketsAcc = allBucketsAcc;
+      this.countOnly = countOnly;
+      this.canDoPerSeg = canDoPerSeg;
+      this.accumSeg = accumSeg;
+      final int maxSize = others.size() + 1; // others + base
+      this.subIterators = new DocIdSetIterator[maxSize];
+      this.activeCountAccs = new CountSlotAcc[maxSize];
+    }
+
+    /** Collects a segment, the accumulators must already be positioned on it */
+    void collectSegment(int subIdx, LeafReaderContext subCtx) throws IOException {
       final SweepDISI disi =
           SweepDISI.newInstance(base, others, subIterators, activeCountAccs, subCtx);
       if (disi == null) {
-        continue;
+        return;
       }
       LongValues toGlobal = ordinalMap == null ? null : ordinalMap.getGlobalOrds(subIdx);
 
@@ -154,12 +337,12 @@ class FacetFieldProcessorByArrayDV extends FacetFieldProcessorByArray {
         multiDv = subCtx.reader().getSortedSetDocValues(sf.getName());
         if (multiDv == null) {
           if (countOnly) {
-            continue;
+            return;
           } else {
             multiDv = DocValues.emptySortedSet();
           }
         } else if (countOnly && multiDv.getValueCount() < 1) {
-          continue;
+          return;
         }
         // some codecs may optimize SortedSet storage for single-valued fields
         // this will be null if this is not a wrapped single valued docvalues.
@@ -170,12 +353,12 @@ class FacetFieldProcessorByArrayDV extends FacetFieldProcessorByArray {
         singleDv = subCtx.reader().getSortedDocValues(sf.getName());
         if (singleDv == null) {
           if (countOnly) {
-            continue;
+            return;
           } else {
             singleDv = DocValues.emptySorted();
           }
         } else if (countOnly && singleDv.getValueCount() < 1) {
-          continue;
+          return;
         }
       }
 
@@ -202,224 +385,218 @@ class FacetFieldProcessorByArrayDV extends FacetFieldProcessorByArray {
       }
     }
 
-    Arrays.fill(reuse, null); // better GC
-  }
-
-  @Override
-  protected BytesRef lookupOrd(int ord) throws IOException {
-    return si.lookupOrd(ord);
-  }
-
-  private void collectPerSeg(SortedDocValues singleDv, SweepDISI disi, LongValues toGlobal)
-      throws IOException {
-    int segMax = singleDv.getValueCount();
-    final SegCountPerSeg segCounter = getSegCountPerSeg(disi, segMax);
-
-    /*
-     * alternate trial implementations // ord // FieldUtil.visitOrds(singleDv, disi,
-     * (doc,ord)->{counts[ord+1]++;} );
-     *
-     * <p>FieldUtil.OrdValues ordValues = FieldUtil.getOrdValues(singleDv, disi); while
-     * (ordValues.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) { counts[ ordValues.getOrd() + 1]++; }
-     */
-
-    // calculate segment-local counts
-    int doc;
-    if (singleDv instanceof FieldCacheImpl.SortedDocValuesImpl.Iter) {
-      FieldCacheImpl.SortedDocValuesImpl.Iter fc =
-          (FieldCacheImpl.SortedDocValuesImpl.Iter) singleDv;
-      while ((doc = disi.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
-        final int segOrd = fc.getOrd(doc);
-        if (segOrd >= 0) {
-          final int maxIdx = disi.registerCounts(segCounter);
-          segCounter.incrementCount(segOrd, 1, maxIdx);
-        }
-      }
-    } else {
-      while ((doc = disi.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
-        if (singleDv.advanceExact(doc)) {
-          final int segOrd = singleDv.ordValue();
+    private void collectPerSeg(SortedDocValues singleDv, SweepDISI disi, LongValues toGlobal)
+        throws IOException {
+      int segMax = singleDv.getValueCount();
+      final SegCountPerSeg segCounter = getSegCountPerSeg(disi, segMax);
+
+      /*
+       * alternate trial implementations // ord // FieldUtil.visitOrds(singleDv, disi,
+       * (doc,ord)->{counts[ord+1]++;} );
+       *
+       * <p>FieldUtil.OrdValues ordValues = FieldUtil.getOrdValues(singleDv, disi); while
+       * (ordValues.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+       * counts[ ordValues.getOrd() + 1]++; }
+       */
+
+      // calculate segment-local counts
+      int doc;
+      if (singleDv instanceof FieldCacheImpl.SortedDocValuesImpl.Iter) {
+        FieldCacheImpl.SortedDocValuesImpl.Iter fc =
+            (FieldCacheImpl.SortedDocValuesImpl.Iter) singleDv;
+        while ((doc = disi.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+          final int segOrd = fc.getOrd(doc);
           if (segOrd >= 0) {
             final int maxIdx = disi.registerCounts(segCounter);
             segCounter.incrementCount(segOrd, 1, maxIdx);
           }
         }
+      } else {
+        while ((doc = disi.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+          if (singleDv.advanceExact(doc)) {
+            final int segOrd = singleDv.ordValue();
+            if (segOrd >= 0) {
+              final int maxIdx = disi.registerCounts(segCounter);
+              segCounter.incrementCount(segOrd, 1, maxIdx);
+            }
+          }
+        }
       }
+
+      // convert segment-local counts to global counts
+      segCounter.register(disi.countAccs, toGlobal, segMax - 1);
     }
 
-    // convert segment-local counts to global counts
-    segCounter.register(disi.countAccs, toGlobal, segMax - 1);
-  }
+    private SegCountPerSeg getSegCountPerSeg(SweepDISI disi, int segMax) {
+      final int size = disi.size;
+      return new SegCountPerSeg(
+          getSegmentCountArrays(segMax, size), getBoolArr(segMax), segMax, size);
+    }
 
-  private SegCountPerSeg getSegCountPerSeg(SweepDISI disi, int segMax) {
-    final int size = disi.size;
-    return new SegCountPerSeg(
-        getSegmentCountArrays(segMax, size), getBoolArr(segMax), segMax, size);
-  }
+    private SegCountGlobal getSegCountGlobal(SweepDISI disi, SortedDocValues dv) {
+      return new SegCountGlobal(disi.countAccs);
+    }
 
-  private SegCountGlobal getSegCountGlobal(SweepDISI disi, SortedDocValues dv) {
-    return new SegCountGlobal(disi.countAccs);
-  }
+    private SegCountGlobal getSegCountGlobal(SweepDISI disi, SortedSetDocValues dv) {
+      return new SegCountGlobal(disi.countAccs);
+    }
 
-  private SegCountGlobal getSegCountGlobal(SweepDISI disi, SortedSetDocValues dv) {
-    return new SegCountGlobal(disi.countAccs);
-  }
+    private void collectPerSeg(SortedSetDocValues multiDv, SweepDISI disi, LongValues toGlobal)
+        throws IOException {
+      int segMax = (int) multiDv.getValueCount();
+      final SegCountPerSeg segCounter = getSegCountPerSeg(disi, segMax);
 
-  private void collectPerSeg(SortedSetDocValues multiDv, SweepDISI disi, LongValues toGlobal)
-      throws IOException {
-    int segMax = (int) multiDv.getValueCount();
-    final SegCountPerSeg segCounter = getSegCountPerSeg(disi, segMax);
-
-    int doc;
-    while ((doc = disi.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
-      if (multiDv.advanceExact(doc)) {
-        final int maxIdx = disi.registerCounts(segCounter);
-        for (; ; ) {
-          int segOrd = (int) multiDv.nextOrd();
-          if (segOrd < 0) break;
-          segCounter.incrementCount(segOrd, 1, maxIdx);
+      int doc;
+      while ((doc = disi.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+        if (multiDv.advanceExact(doc)) {
+          final int maxIdx = disi.registerCounts(segCounter);
+          for (; ; ) {
+            int segOrd = (int) multiDv.nextOrd();
+            if (segOrd < 0) break;
+            segCounter.incrementCount(segOrd, 1, maxIdx);
+          }
         }
       }
-    }
-
-    segCounter.register(disi.countAccs, toGlobal, segMax - 1);
-  }
-
-  private boolean[] reuseBool;
 
-  private boolean[] getBoolArr(int maxNeeded) {
-    if (reuseBool == null) {
-      // make the count array large enough for any segment
-      // FUTURE: (optionally) directly use the array of the CountAcc for an optimized index..
-      reuseBool = new boolean[(int) si.getValueCount() + 1];
-    } else {
-      Arrays.fill(reuseBool, 0, maxNeeded, false);
+      segCounter.register(disi.countAccs, toGlobal, segMax - 1);
     }
-    return reuseBool;
-  }
 
-  private int[][] reuse = new int[12][];
+    private boolean[] reuseBool;
 
-  private int[] getCountArr(int maxNeeded, int idx) {
-    if (idx >= reuse.length) {
-      reuse = Arrays.copyOf(reuse, idx + 1);
-    }
-    if (reuse[idx] == null) {
-      // make the count array large enough for any segment
-      // FUTURE: (optionally) directly use the array of the CountAcc for an optimized index..
-      reuse[idx] = new int[(int) si.getValueCount() + 1];
-    } else {
-      Arrays.fill(reuse[idx], 0, maxNeeded, 0);
-    }
-    return reuse[idx];
-  }
-
-  private int[][] getSegmentCountArrays(int segMax, int size) {
-    int[][] ret = new int[size][];
-    int i = size - 1;
-    do {
-      ret[i] = getCountArr(segMax, i);
-    } while (i-- > 0);
-    return ret;
-  }
-
-  private void collectDocs(SortedDocValues singleDv, SweepDISI disi, LongValues toGlobal)
-      throws IOException {
-    int doc;
-    final SegCountGlobal segCounter = getSegCountGlobal(disi, singleDv);
-    while ((doc = disi.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
-      if (singleDv.advanceExact(doc)) {
-        final int maxIdx = disi.registerCounts(segCounter);
-        int segOrd = singleDv.ordValue();
-        collect(doc, segOrd, toGlobal, segCounter, maxIdx, disi.collectBase());
+    private boolean[] getBoolArr(int maxNeeded) {
+      if (reuseBool == null) {
+        // make the count array large enough for any segment
+        // FUTURE: (optionally) directly use the array of the CountAcc for an optimized index..
+        reuseBool = new boolean[(int) si.getValueCount() + 1];
+      } else {
+        Arrays.fill(reuseBool, 0, maxNeeded, false);
       }
+      return reuseBool;
     }
-  }
 
-  private void collectCounts(SortedDocValues singleDv, SweepDISI disi, LongValues toGlobal)
-      throws IOException {
-    final SegCountGlobal segCounter = getSegCountGlobal(disi, singleDv);
-    int doc;
-    if (singleDv instanceof FieldCacheImpl.SortedDocValuesImpl.Iter) {
+    private int[][] reuse = new int[12][];
 
-      FieldCacheImpl.SortedDocValuesImpl.Iter fc =
-          (FieldCacheImpl.SortedDocValuesImpl.Iter) singleDv;
-      while ((doc = disi.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
-        int segOrd = fc.getOrd(doc);
-        if (segOrd < 0) continue;
-        int ord = (int) toGlobal.get(segOrd);
-        int maxIdx = disi.registerCounts(segCounter);
-        segCounter.incrementCount(ord, 1, maxIdx);
+    private int[] getCountArr(int maxNeeded, int idx) {
+      if (idx >= reuse.length) {
+        reuse = Arrays.copyOf(reuse, idx + 1);
       }
+      if (reuse[idx] == null) {
+        // make the count array large enough for any segment
+        // FUTURE: (optionally) directly use the array of the CountAcc for an optimized index..
+        reuse[idx] = new int[(int) si.getValueCount() + 1];
+      } else {
+        Arrays.fill(reuse[idx], 0, maxNeeded, 0);
+      }
+      return reuse[idx];
+    }
 
-    } else {
+    private int[][] getSegmentCountArrays(int segMax, int size) {
+      int[][] ret = new int[size][];
+      int i = size - 1;
+      do {
+        ret[i] = getCountArr(segMax, i);
+      } while (i-- > 0);
+      return ret;
+    }
 
+    private void collectDocs(SortedDocValues singleDv, SweepDISI disi, LongValues toGlobal)
+        throws IOException {
+      int doc;
+      final SegCountGlobal segCounter = getSegCountGlobal(disi, singleDv);
       while ((doc = disi.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
         if (singleDv.advanceExact(doc)) {
+          final int maxIdx = disi.registerCounts(segCounter);
           int segOrd = singleDv.ordValue();
+          collect(doc, segOrd, toGlobal, segCounter, maxIdx, disi.collectBase());
+        }
+      }
+    }
+
+    private void collectCounts(SortedDocValues singleDv, SweepDISI disi, LongValues toGlobal)
+        throws IOException {
+      final SegCountGlobal segCounter = getSegCountGlobal(disi, singleDv);
+      int doc;
+      if (singleDv instanceof FieldCacheImpl.SortedDocValuesImpl.Iter) {
+
+        FieldCacheImpl.SortedDocValuesImpl.Iter fc =
+            (FieldCacheImpl.SortedDocValuesImpl.Iter) singleDv;
+        while ((doc = disi.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+          int segOrd = fc.getOrd(doc);
+          if (segOrd < 0) continue;
           int ord = (int) toGlobal.get(segOrd);
           int maxIdx = disi.registerCounts(segCounter);
           segCounter.incrementCount(ord, 1, maxIdx);
         }
+
+      } else {
+
+        while ((doc = disi.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+          if (singleDv.advanceExact(doc)) {
+            int segOrd = singleDv.ordValue();
+            int ord = (int) toGlobal.get(segOrd);
+            int maxIdx = disi.registerCounts(segCounter);
+            segCounter.incrementCount(ord, 1, maxIdx);
+          }
+        }
       }
     }
-  }
 
-  private void collectDocs(SortedSetDocValues multiDv, SweepDISI disi, LongValues toGlobal)
-      throws IOException {
-    final SegCountGlobal segCounter = getSegCountGlobal(disi, multiDv);
-    int doc;
-    while ((doc = disi.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
-      if (multiDv.advanceExact(doc)) {
-        final int maxIdx = disi.registerCounts(segCounter);
-        final boolean collectBase = disi.collectBase();
-        for (; ; ) {
-          int segOrd = (int) multiDv.nextOrd();
-          if (segOrd < 0) break;
-          collect(doc, segOrd, toGlobal, segCounter, maxIdx, collectBase);
+    private void collectDocs(SortedSetDocValues multiDv, SweepDISI disi, LongValues toGlobal)
+        throws IOException {
+      final SegCountGlobal segCounter = getSegCountGlobal(disi, multiDv);
+      int doc;
+      while ((doc = disi.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+        if (multiDv.advanceExact(doc)) {
+          final int maxIdx = disi.registerCounts(segCounter);
+          final boolean collectBase = disi.collectBase();
+          for (; ; ) {
+            int segOrd = (int) multiDv.nextOrd();
+            if (segOrd < 0) break;
+            collect(doc, segOrd, toGlobal, segCounter, maxIdx, collectBase);
+          }
         }
       }
     }
-  }
 
-  private void collectCounts(SortedSetDocValues multiDv, SweepDISI disi, LongValues toGlobal)
-      throws IOException {
-    final SegCountGlobal segCounter = getSegCountGlobal(disi, multiDv);
-    int doc;
-    while ((doc = disi.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
-      if (multiDv.advanceExact(doc)) {
-        final int maxIdx = disi.registerCounts(segCounter);
-        for (; ; ) {
-          int segOrd = (int) multiDv.nextOrd();
-          if (segOrd < 0) break;
-          int ord = (int) toGlobal.get(segOrd);
-          segCounter.incrementCount(ord, 1, maxIdx);
+    private void collectCounts(SortedSetDocValues multiDv, SweepDISI disi, LongValues toGlobal)
+        throws IOException {
+      final SegCountGlobal segCounter = getSegCountGlobal(disi, multiDv);
+      int doc;
+      while ((doc = disi.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+        if (multiDv.advanceExact(doc)) {
+          final int maxIdx = disi.registerCounts(segCounter);
+          for (; ; ) {
+            int segOrd = (int) multiDv.nextOrd();
+            if (segOrd < 0) break;
+            int ord = (int) toGlobal.get(segOrd);
+            segCounter.incrementCount(ord, 1, maxIdx);
+          }
         }
       }
     }
-  }
 
-  private void collect(
-      int doc,
-      int segOrd,
-      LongValues toGlobal,
-      SegCountGlobal segCounter,
-      int maxIdx,
-      boolean collectBase)
-      throws IOException {
-    int ord = (toGlobal != null && segOrd >= 0) ? (int) toGlobal.get(segOrd) : segOrd;
-
-    int arrIdx = ord - startTermIndex;
-    // This code handles faceting prefixes, which narrows the range of ords we want to collect.
-    // It’s not an error for an ord to fall outside this range… we simply want to skip it.
-    if (arrIdx >= 0 && arrIdx < nTerms) {
-      segCounter.incrementCount(arrIdx, 1, maxIdx);
-      if (collectBase) {
-        if (collectAcc != null) {
-          collectAcc.collect(doc, arrIdx, slotContext);
-        }
-        if (allBucketsAcc != null) {
-          allBucketsAcc.collect(doc, arrIdx, slotContext);
+    private void collect(
+        int doc,
+        int segOrd,
+        LongValues toGlobal,
+        SegCountGlobal segCounter,
+        int maxIdx,
+        boolean collectBase)
+        throws IOException {
+      int ord = (toGlobal != null && segOrd >= 0) ? (int) toGlobal.get(segOrd) : segOrd;
+
+      int arrIdx = ord - startTermIndex;
+      // This code handles faceting prefixes, which narrows the range of ords we want to collect.
+      // It’s not an error for an ord to fall outside this range… we simply want to skip it.
+      if (arrIdx >= 0 && arrIdx < nTerms) {
+        segCounter.incrementCount(arrIdx, 1, maxIdx);
+        if (collectBase) {
+          if (collectAcc != null) {
+            collectAcc.collect(doc, arrIdx, slotContext);
+          }
+          if (allBucketsAcc != null) {
+            allBucketsAcc.collect(doc, arrIdx, slotContext);
+          }
         }
       }
     }
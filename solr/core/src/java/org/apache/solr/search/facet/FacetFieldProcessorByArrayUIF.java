@@ -17,16 +17,18 @@
 package org.apache.solr.search.facet;
 
 import java.io.IOException;
-import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.UnicodeUtil;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.schema.SchemaField;
 
-/** {@link UnInvertedField} implementation of field faceting. It's a top-level term cache. */
+/**
+ * {@link UnInvertedField} implementation of field faceting. It's a term cache built per segment,
+ * counted with global term numbers.
+ */
 class FacetFieldProcessorByArrayUIF extends FacetFieldProcessorByArray {
   UnInvertedField uif;
-  TermsEnum te;
+  UnInvertedField.DocToTerm docToTerm;
 
   FacetFieldProcessorByArrayUIF(FacetContext fcontext, FacetField freq, SchemaField sf) {
     super(fcontext, freq, sf);
@@ -40,23 +42,15 @@ class FacetFieldProcessorByArrayUIF extends FacetFieldProcessorByArray {
   @Override
   protected void findStartAndEndOrds() throws IOException {
     uif = UnInvertedField.getUnInvertedField(freq.field, fcontext.searcher);
-    te = uif.getOrdTermsEnum(fcontext.searcher.getSlowAtomicReader()); // "te" can be null
+    docToTerm = uif.new DocToTerm();
 
     startTermIndex = 0;
     endTermIndex = uif.numTerms(); // one past the end
 
-    if (prefixRef != null && te != null) {
-      if (te.seekCeil(prefixRef.get()) == TermsEnum.SeekStatus.END) {
-        startTermIndex = uif.numTerms();
-      } else {
-        startTermIndex = (int) te.ord();
-      }
+    if (prefixRef != null && uif.numTerms() > 0) {
+      startTermIndex = docToTerm.ceilOrd(prefixRef.get());
       prefixRef.append(UnicodeUtil.BIG_TERM);
-      if (te.seekCeil(prefixRef.get()) == TermsEnum.SeekStatus.END) {
-        endTermIndex = uif.numTerms();
-      } else {
-        endTermIndex = (int) te.ord();
-      }
+      endTermIndex = docToTerm.ceilOrd(prefixRef.get());
     }
 
     nTerms = endTermIndex - startTermIndex;
@@ -69,6 +63,6 @@ class FacetFieldProcessorByArrayUIF extends FacetFieldProcessorByArray {
 
   @Override
   protected BytesRef lookupOrd(int ord) throws IOException {
-    return uif.getTermValue(te, ord);
+    return docToTerm.lookupOrd(ord);
   }
 }
@@ -567,6 +567,14 @@ abstract class FacetParser<T extends FacetRequest> {
         facet.refine = FacetRequest.RefineMethod.fromObj(m.get("refine"));
 
         facet.perSeg = getBooleanOrNull(m, "perSeg");
+        facet.threads = (int) getLong(m, "threads", facet.threads);
+
+        String merge = getString(m, "merge", "hash");
+        if ("stream".equals(merge)) {
+          facet.streamMerge = true;
+        } else if (!"hash".equals(merge)) {
+          throw err("Unknown merge method '" + merge + "', expected 'hash' or 'stream'");
+        }
 
         // facet.sort may depend on a facet stat...
         // should we be parsing / validating this here, or in the execution environment?
@@ -181,6 +181,27 @@ public class HLLAgg extends StrAggValueSource {
     public int compare(int slotA, int slotB) {
       return Long.compare(getCardinality(slotA), getCardinality(slotB));
     }
+
+    @Override
+    public boolean isMergeable() {
+      return true;
+    }
+
+    @Override
+    public void merge(SlotAcc other) {
+      final HLL[] otherSets = ((BaseNumericAcc) other).sets;
+      for (int i = 0; i < sets.length; i++) {
+        final HLL otherSet = otherSets[i];
+        if (otherSet == null) {
+          continue;
+        }
+        if (sets[i] == null) {
+          sets[i] = otherSet;
+        } else {
+          sets[i].union(otherSet);
+        }
+      }
+    }
   }
 
   class NumericAcc extends BaseNumericAcc {
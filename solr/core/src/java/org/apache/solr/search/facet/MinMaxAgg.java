@@ -263,6 +263,25 @@ public class MinMaxAgg extends SimpleAggValueSource {
       }
     }
 
+    @Override
+    public boolean isMergeable() {
+      return true;
+    }
+
+    @Override
+    public void merge(SlotAcc other) {
+      final double[] otherResult = ((DFuncAcc) other).result;
+      for (int i = 0; i < result.length; i++) {
+        final double val = otherResult[i];
+        if (Double.isNaN(val)) {
+          continue; // nothing collected for this slot
+        }
+        if (Double.compare(val, result[i]) * minmax < 0 || Double.isNaN(result[i])) {
+          result[i] = val;
+        }
+      }
+    }
+
     @Override
     public Object getValue(int slot) {
       double val = result[slot];
@@ -338,6 +357,28 @@ public class MinMaxAgg extends SimpleAggValueSource {
       super.reset();
       exists.clear(0, exists.length());
     }
+
+    @Override
+    public boolean isMergeable() {
+      return true;
+    }
+
+    @Override
+    public void merge(SlotAcc other) {
+      final LFuncAcc otherAcc = (LFuncAcc) other;
+      for (int i = 0; i < result.length; i++) {
+        final long val = otherAcc.result[i];
+        if (val == 0 && !otherAcc.exists.get(i)) {
+          continue;
+        }
+        if (result[i] == 0 && !exists.get(i)) {
+          exists.set(i);
+          result[i] = val;
+        } else if (Long.compare(val, result[i]) * minmax < 0) {
+          result[i] = val;
+        }
+      }
+    }
   }
 
   class DateFuncAcc extends SlotAcc.LongFuncSlotAcc {
@@ -360,6 +401,22 @@ public class MinMaxAgg extends SimpleAggValueSource {
       }
     }
 
+    @Override
+    public boolean isMergeable() {
+      return true;
+    }
+
+    @Override
+    public void merge(SlotAcc other) {
+      final long[] otherResult = ((DateFuncAcc) other).result;
+      for (int i = 0; i < result.length; i++) {
+        final long val = otherResult[i];
+        if (val != MISSING && (Long.compare(val, result[i]) * minmax < 0 || result[i] == MISSING)) {
+          result[i] = val;
+        }
+      }
+    }
+
     // let compare be the default for now (since we can't yet correctly handle sortMissingLast
 
     @Override
@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.facet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.LongValues;
+import org.apache.solr.uninverting.DocTermOrds;
+
+/**
+ * The un-inverted form of a field for a single segment, using segment-local doc ids and term
+ * numbers. See {@link UnInvertedField} for the encoding, which this class shares.
+ *
+ * <p>Just like the rest of the un-inverted structure, the docs of big terms are collected without
+ * regard for deletions. An instance thus only depends on the segment core and can be reused by
+ * every searcher that contains the segment, whatever documents have been deleted since.
+ */
+final class SegmentUnInvertedField extends DocTermOrds {
+  private static final int TNUM_OFFSET = 2;
+
+  /** the core cache key of the segment, or null if the segment can't be shared */
+  final Object coreKey;
+
+  /* The number of documents holding the term {@code maxDocs = maxTermCounts[termNum]}. */
+  int[] maxTermCounts = new int[1024];
+
+  /* term numbers and docs of the terms that are too frequent to be un-inverted */
+  private final List<Integer> bigTermNumList = new ArrayList<>();
+  private final List<FixedBitSet> bigTermDocList = new ArrayList<>();
+  final int[] bigTermNums;
+  final FixedBitSet[] bigTermDocs;
+
+  private final int maxDoc;
+  private long memsz;
+
+  SegmentUnInvertedField(String field, LeafReader reader, Object coreKey, BytesRef prefix)
+      throws IOException {
+    super(
+        field,
+        // threshold, over which we use bit sets instead of un-inverting the term.
+        // Add 2 for testing purposes so that there will always be some terms under
+        // the threshold even when the segment is very small.
+        reader.maxDoc() / 20 + 2,
+        DEFAULT_INDEX_INTERVAL_BITS);
+    this.coreKey = coreKey;
+    this.maxDoc = reader.maxDoc();
+
+    // deletions are ignored, see class javadocs
+    uninvert(reader, null, prefix);
+
+    bigTermNums = new int[bigTermNumList.size()];
+    bigTermDocs = bigTermDocList.toArray(new FixedBitSet[0]);
+    for (int i = 0; i < bigTermNums.length; i++) {
+      bigTermNums[i] = bigTermNumList.get(i);
+    }
+
+    if (maxTermCounts.length != numTermsInField) {
+      int[] newMaxTermCounts = new int[numTermsInField];
+      System.arraycopy(maxTermCounts, 0, newMaxTermCounts, 0, numTermsInField);
+      maxTermCounts = newMaxTermCounts;
+    }
+  }
+
+  @Override
+  protected void visitTerm(TermsEnum te, int termNum) throws IOException {
+    if (termNum >= maxTermCounts.length) {
+      // resize by doubling - for very large number of unique terms, expanding
+      // by 4K and resultant GC will dominate uninvert times.  Trimmed at the end.
+      int[] newMaxTermCounts = new int[Math.min(Integer.MAX_VALUE - 16, maxTermCounts.length * 2)];
+      System.arraycopy(maxTermCounts, 0, newMaxTermCounts, 0, termNum);
+      maxTermCounts = newMaxTermCounts;
+    }
+
+    if (te.docFreq() > maxTermDocFreq) {
+      final FixedBitSet docs = new FixedBitSet(maxDoc);
+      postingsEnum = te.postings(postingsEnum, PostingsEnum.NONE);
+      int count = 0;
+      for (int doc = postingsEnum.nextDoc();
+          doc != DocIdSetIterator.NO_MORE_DOCS;
+          doc = postingsEnum.nextDoc()) {
+        docs.set(doc);
+        count++;
+      }
+      bigTermNumList.add(termNum);
+      bigTermDocList.add(docs);
+      maxTermCounts[termNum] = count;
+    }
+  }
+
+  @Override
+  protected void setActualDocFreq(int termNum, int docFreq) {
+    maxTermCounts[termNum] = docFreq;
+  }
+
+  long getTermInstances() {
+    return termInstances;
+  }
+
+  int getTotalTime() {
+    return total_time;
+  }
+
+  public long memSize() {
+    // can cache the mem size since it shouldn't change
+    if (memsz != 0) return memsz;
+    long sz = super.ramBytesUsed();
+    sz += 8 * 8 + 32; // local fields
+    for (FixedBitSet docs : bigTermDocs) {
+      sz += 4 + docs.ramBytesUsed();
+    }
+    sz += maxTermCounts.length * 4L;
+    memsz = sz;
+    return sz;
+  }
+
+  /**
+   * Calls {@code target} with the global term number, as mapped by {@code toGlobal}, of every
+   * term of the given segment doc.
+   */
+  void getTerms(int doc, LongValues toGlobal, UnInvertedField.Callback target) {
+    getBigTerms(doc, toGlobal, target);
+    getSmallTerms(doc, toGlobal, target);
+  }
+
+  void getBigTerms(int doc, LongValues toGlobal, UnInvertedField.Callback target) {
+    for (int i = 0; i < bigTermDocs.length; i++) {
+      if (bigTermDocs[i].get(doc)) {
+        target.call((int) toGlobal.get(bigTermNums[i]));
+      }
+    }
+  }
+
+  void getSmallTerms(int doc, LongValues toGlobal, UnInvertedField.Callback target) {
+    if (termInstances > 0) {
+      int code = index[doc];
+
+      if ((code & 0x80000000) != 0) {
+        int pos = code & 0x7fffffff;
+        int whichArray = (doc >>> 16) & 0xff;
+        byte[] arr = tnums[whichArray];
+        int tnum = 0;
+        for (; ; ) {
+          int delta = 0;
+          for (; ; ) {
+            byte b = arr[pos++];
+            delta = (delta << 7) | (b & 0x7f);
+            if ((b & 0x80) == 0) break;
+          }
+          if (delta == 0) break;
+          tnum += delta - TNUM_OFFSET;
+          target.call((int) toGlobal.get(tnum));
+        }
+      } else {
+        int tnum = 0;
+        int delta = 0;
+        for (; ; ) {
+          delta = (delta << 7) | (code & 0x7f);
+          if ((code & 0x80) == 0) {
+            if (delta == 0) break;
+            tnum += delta - TNUM_OFFSET;
+            target.call((int) toGlobal.get(tnum));
+            delta = 0;
+          }
+          code >>>= 8;
+        }
+      }
+    }
+  }
+}
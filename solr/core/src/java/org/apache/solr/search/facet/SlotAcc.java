@@ -153,6 +153,25 @@ public abstract class SlotAcc implements Closeable {
 
   public abstract void resize(Resizer resizer);
 
+  /**
+   * Returns true if this acc supports {@link #merge(SlotAcc)}, which allows documents to be
+   * collected concurrently by several accs whose values are combined afterwards.
+   */
+  public boolean isMergeable() {
+    return false;
+  }
+
+  /**
+   * Merges the values collected by {@code other} into the slots of this acc. {@code other} must
+   * have been created by the same aggregation with the same number of slots, and must have
+   * collected documents that this acc did not collect.
+   *
+   * @throws UnsupportedOperationException unless {@link #isMergeable()}
+   */
+  public void merge(SlotAcc other) throws IOException {
+    throw new UnsupportedOperationException(getClass().getSimpleName() + " is not mergeable");
+  }
+
   @Override
   public void close() throws IOException {}
 
@@ -212,6 +231,23 @@ public abstract class SlotAcc implements Closeable {
       return values;
     }
 
+    SlotArrays.LongArray resize(SlotArrays.LongArray old, long defaultValue) {
+      SlotArrays.LongArray values = SlotArrays.newLongArray(getNewSize());
+      if (defaultValue != 0) {
+        values.fill(defaultValue);
+      }
+      for (int i = 0; i < old.size(); i++) {
+        long val = old.get(i);
+        if (val != defaultValue) {
+          int newSlot = getNewSlot(i);
+          if (newSlot >= 0) {
+            values.set(newSlot, val);
+          }
+        }
+      }
+      return values;
+    }
+
     public FixedBitSet resize(FixedBitSet old) {
       FixedBitSet values = new FixedBitSet(getNewSize());
       int oldSize = old.length();
@@ -416,6 +452,19 @@ public abstract class SlotAcc implements Closeable {
       double val = values.doubleVal(doc);
       result[slotNum] += val;
     }
+
+    @Override
+    public boolean isMergeable() {
+      return true;
+    }
+
+    @Override
+    public void merge(SlotAcc other) {
+      final double[] otherResult = ((SumSlotAcc) other).result;
+      for (int i = 0; i < result.length; i++) {
+        result[i] += otherResult[i];
+      }
+    }
   }
 
   static class SumsqSlotAcc extends DoubleFuncSlotAcc {
@@ -802,6 +851,14 @@ public abstract class SlotAcc implements Closeable {
       }
     }
 
+    @Override
+    public void close() throws IOException {
+      super.close();
+      for (SweepCountAccStruct other : others) {
+        other.countAcc.close();
+      }
+    }
+
     /**
      * Helper method for code that wants to operating in a sweeping manner even if the current
      * processor is not using sweeping.
@@ -846,53 +903,66 @@ public abstract class SlotAcc implements Closeable {
   ;
 
   static class CountSlotArrAcc extends CountSlotAcc {
-    long[] result;
+    // paged once the number of slots is large, see SlotArrays
+    SlotArrays.LongArray result;
 
     public CountSlotArrAcc(FacetContext fcontext, int numSlots) {
       super(fcontext);
-      result = new long[numSlots];
+      result = SlotArrays.newLongArray(numSlots);
     }
 
     @Override
     public void collect(int doc, int slotNum, IntFunction<SlotContext> slotContext) {
       // TODO: count arrays can use fewer bytes based on the number of docs in
       // the base set (that's the upper bound for single valued) - look at ttf?
-      result[slotNum]++;
+      result.add(slotNum, 1);
     }
 
     @Override
     public int compare(int slotA, int slotB) {
-      return Long.compare(result[slotA], result[slotB]);
+      return Long.compare(result.get(slotA), result.get(slotB));
     }
 
     @Override
     public Object getValue(int slotNum) throws IOException {
-      return result[slotNum];
+      return result.get(slotNum);
     }
 
     @Override
     public void incrementCount(int slot, long count) {
-      result[slot] += count;
+      result.add(slot, count);
     }
 
     @Override
     public long getCount(int slot) {
-      return result[slot];
+      return result.get(slot);
+    }
+
+    @Override
+    public boolean isMergeable() {
+      return true;
     }
 
-    // internal and expert
-    long[] getCountArray() {
-      return result;
+    @Override
+    public void merge(SlotAcc other) {
+      result.add(((CountSlotArrAcc) other).result);
     }
 
     @Override
     public void reset() {
-      Arrays.fill(result, 0);
+      result.fill(0);
     }
 
     @Override
     public void resize(Resizer resizer) {
-      result = resizer.resize(result, 0);
+      final SlotArrays.LongArray old = result;
+      result = resizer.resize(old, 0);
+      old.release();
+    }
+
+    @Override
+    public void close() throws IOException {
+      result.release();
     }
   }
 
@@ -0,0 +1,280 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.facet;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * Primitive per-slot storage for accumulators whose number of slots can be as large as the number
+ * of terms in a field. Large arrays are split into fixed size pages so that no single allocation
+ * exceeds a page, which keeps them clear of G1's humongous allocations; the pages may also live
+ * off-heap.
+ *
+ * <p>The storage used for large arrays defaults to {@link Storage#PAGED} and can be changed with
+ * the {@value #STORAGE_PROPERTY} system property. Off-heap pages are returned to a pool of up to
+ * {@value #MAX_POOLED_PAGES_PROPERTY} pages when their array is {@link LongArray#release()
+ * released}, so that they are reused rather than left for the garbage collector to free.
+ */
+final class SlotArrays {
+  static final String STORAGE_PROPERTY = "solr.facet.slotStorage";
+  static final String MAX_POOLED_PAGES_PROPERTY = "solr.facet.slotStorage.maxPooledPages";
+
+  /** log2 of the number of entries in a page: 256KB pages of longs */
+  static final int PAGE_SHIFT = 15;
+
+  static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+  static final int PAGE_MASK = PAGE_SIZE - 1;
+
+  enum Storage {
+    /** A single on-heap array */
+    HEAP,
+    /** On-heap pages */
+    PAGED,
+    /** Pages in direct (off-heap) memory */
+    OFFHEAP;
+
+    static Storage fromString(String storage) {
+      if (storage == null) return PAGED;
+      return valueOf(storage.toUpperCase(Locale.ROOT));
+    }
+  }
+
+  static final Storage DEFAULT_STORAGE = Storage.fromString(System.getProperty(STORAGE_PROPERTY));
+
+  /** Off-heap pages of released arrays, all of them {@link #PAGE_SIZE} longs */
+  private static final BlockingQueue<LongBuffer> FREE_PAGES =
+      new ArrayBlockingQueue<>(Math.max(1, Integer.getInteger(MAX_POOLED_PAGES_PROPERTY, 64)));
+
+  private SlotArrays() {}
+
+  static LongArray newLongArray(int size) {
+    return newLongArray(size, DEFAULT_STORAGE);
+  }
+
+  static LongArray newLongArray(int size, Storage storage) {
+    if (size <= PAGE_SIZE || storage == Storage.HEAP) {
+      return new HeapLongArray(size);
+    }
+    return storage == Storage.OFFHEAP ? new OffHeapLongArray(size) : new PagedLongArray(size);
+  }
+
+  private static int numPages(int size) {
+    return (size + PAGE_MASK) >>> PAGE_SHIFT;
+  }
+
+  private static int pageSize(int size, int page) {
+    return Math.min(PAGE_SIZE, size - (page << PAGE_SHIFT));
+  }
+
+  /** A fixed size array of longs, initially filled with zeros. */
+  abstract static class LongArray implements Accountable {
+    final int size;
+
+    LongArray(int size) {
+      this.size = size;
+    }
+
+    int size() {
+      return size;
+    }
+
+    abstract long get(int index);
+
+    abstract void set(int index, long value);
+
+    abstract void add(int index, long inc);
+
+    abstract void fill(long value);
+
+    /**
+     * Frees the resources of this array, which must not be used anymore. Only off-heap arrays hold
+     * any, for the others this is a no-op.
+     */
+    void release() {}
+
+    /** Adds all values of {@code other}, which must be of the same size, to this array */
+    void add(LongArray other) {
+      assert other.size == size;
+      for (int i = 0; i < size; i++) {
+        final long val = other.get(i);
+        if (val != 0) {
+          add(i, val);
+        }
+      }
+    }
+  }
+
+  static final class HeapLongArray extends LongArray {
+    private final long[] values;
+
+    HeapLongArray(int size) {
+      super(size);
+      values = new long[size];
+    }
+
+    @Override
+    long get(int index) {
+      return values[index];
+    }
+
+    @Override
+    void set(int index, long value) {
+      values[index] = value;
+    }
+
+    @Override
+    void add(int index, long inc) {
+      values[index] += inc;
+    }
+
+    @Override
+    void fill(long value) {
+      Arrays.fill(values, value);
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return RamUsageEstimator.sizeOf(values);
+    }
+  }
+
+  static final class PagedLongArray extends LongArray {
+    private final long[][] pages;
+
+    PagedLongArray(int size) {
+      super(size);
+      pages = new long[numPages(size)][];
+      for (int i = 0; i < pages.length; i++) {
+        pages[i] = new long[pageSize(size, i)];
+      }
+    }
+
+    @Override
+    long get(int index) {
+      return pages[index >>> PAGE_SHIFT][index & PAGE_MASK];
+    }
+
+    @Override
+    void set(int index, long value) {
+      pages[index >>> PAGE_SHIFT][index & PAGE_MASK] = value;
+    }
+
+    @Override
+    void add(int index, long inc) {
+      pages[index >>> PAGE_SHIFT][index & PAGE_MASK] += inc;
+    }
+
+    @Override
+    void fill(long value) {
+      for (long[] page : pages) {
+        Arrays.fill(page, value);
+      }
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      long bytes = RamUsageEstimator.shallowSizeOf(pages);
+      for (long[] page : pages) {
+        bytes += RamUsageEstimator.sizeOf(page);
+      }
+      return bytes;
+    }
+  }
+
+  /**
+   * Pages allocated with {@link ByteBuffer#allocateDirect}, or taken from the pool of pages of
+   * released arrays. Pages are always {@link #PAGE_SIZE} longs so that any of them can be reused.
+   * The memory of pages that don't fit in the pool is freed once they are garbage collected.
+   */
+  static final class OffHeapLongArray extends LongArray {
+    private LongBuffer[] pages;
+
+    OffHeapLongArray(int size) {
+      super(size);
+      pages = new LongBuffer[numPages(size)];
+      for (int i = 0; i < pages.length; i++) {
+        pages[i] = newPage();
+      }
+    }
+
+    private static LongBuffer newPage() {
+      final LongBuffer page = FREE_PAGES.poll();
+      if (page == null) {
+        return ByteBuffer.allocateDirect(PAGE_SIZE * Long.BYTES)
+            .order(ByteOrder.nativeOrder())
+            .asLongBuffer();
+      }
+      for (int i = 0; i < PAGE_SIZE; i++) {
+        page.put(i, 0L);
+      }
+      return page;
+    }
+
+    @Override
+    long get(int index) {
+      return pages[index >>> PAGE_SHIFT].get(index & PAGE_MASK);
+    }
+
+    @Override
+    void set(int index, long value) {
+      pages[index >>> PAGE_SHIFT].put(index & PAGE_MASK, value);
+    }
+
+    @Override
+    void add(int index, long inc) {
+      final LongBuffer page = pages[index >>> PAGE_SHIFT];
+      final int offset = index & PAGE_MASK;
+      page.put(offset, page.get(offset) + inc);
+    }
+
+    @Override
+    void fill(long value) {
+      for (LongBuffer page : pages) {
+        for (int i = 0; i < page.capacity(); i++) {
+          page.put(i, value);
+        }
+      }
+    }
+
+    @Override
+    void release() {
+      final LongBuffer[] pages = this.pages;
+      this.pages = null; // fail fast rather than share the pages with another array
+      if (pages != null) {
+        for (LongBuffer page : pages) {
+          if (!FREE_PAGES.offer(page)) {
+            break;
+          }
+        }
+      }
+    }
+
+    /** Only accounts for the on-heap part */
+    @Override
+    public long ramBytesUsed() {
+      return pages == null ? 0 : RamUsageEstimator.shallowSizeOf(pages);
+    }
+  }
+}
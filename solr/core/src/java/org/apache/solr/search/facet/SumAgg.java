@@ -96,6 +96,19 @@ public class SumAgg extends SimpleAggValueSource {
         result[slot] += getDouble(values.nextValue());
       }
     }
+
+    @Override
+    public boolean isMergeable() {
+      return true;
+    }
+
+    @Override
+    public void merge(SlotAcc other) {
+      final double[] otherResult = ((SumSortedNumericAcc) other).result;
+      for (int i = 0; i < result.length; i++) {
+        result[i] += otherResult[i];
+      }
+    }
   }
 
   static class SumSortedSetAcc extends DocValuesAcc.DoubleSortedSetDVAcc {
@@ -114,6 +127,19 @@ public class SumAgg extends SimpleAggValueSource {
         result[slot] += val;
       }
     }
+
+    @Override
+    public boolean isMergeable() {
+      return true;
+    }
+
+    @Override
+    public void merge(SlotAcc other) {
+      final double[] otherResult = ((SumSortedSetAcc) other).result;
+      for (int i = 0; i < result.length; i++) {
+        result[i] += otherResult[i];
+      }
+    }
   }
 
   static class SumUnInvertedFieldAcc extends UnInvertedFieldAcc.DoubleUnInvertedFieldAcc {
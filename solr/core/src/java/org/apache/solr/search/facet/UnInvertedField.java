@@ -18,23 +18,24 @@ package org.apache.solr.search.facet;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.invoke.MethodHandles;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
-import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.LeafReaderContext;
-import org.apache.lucene.index.Term;
+import org.apache.lucene.index.OrdinalMap;
+import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.index.TermsEnum;
-import org.apache.lucene.search.Query;
-import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.CharsRefBuilder;
 import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.LongValues;
+import org.apache.lucene.util.packed.PackedInts;
 import org.apache.solr.common.SolrException;
-import org.apache.solr.index.SlowCompositeReaderWrapper;
 import org.apache.solr.schema.FieldType;
 import org.apache.solr.schema.TrieField;
 import org.apache.solr.search.BitDocSet;
@@ -42,12 +43,10 @@ import org.apache.solr.search.DocSet;
 import org.apache.solr.search.SolrCache;
 import org.apache.solr.search.SolrIndexSearcher;
 import org.apache.solr.search.facet.SlotAcc.CountSlotAcc;
-import org.apache.solr.search.facet.SlotAcc.SlotContext;
 import org.apache.solr.search.facet.SlotAcc.SweepCountAccStruct;
 import org.apache.solr.search.facet.SlotAcc.SweepingCountSlotAcc;
 import org.apache.solr.search.facet.SweepCountAware.SegCountGlobal;
 import org.apache.solr.search.facet.SweepDocIterator.SweepIteratorAndCounts;
-import org.apache.solr.uninverting.DocTermOrds;
 import org.apache.solr.util.TestInjection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,21 +55,27 @@ import org.slf4j.LoggerFactory;
  * Final form of the un-inverted field: Each document points to a list of term numbers that are
  * contained in that document.
  *
- * <p>Term numbers are in sorted order, and are encoded as variable-length deltas from the previous
- * term number. Real term numbers start at 2 since 0 and 1 are reserved. A term number of 0 signals
- * the end of the termNumber list.
+ * <p>The field is un-inverted per segment, see {@link SegmentUnInvertedField}, and segment term
+ * numbers are mapped to global term numbers through an {@link OrdinalMap}. Since the segment
+ * structures only depend on the segment core, the un-inverted field of a new searcher reuses those
+ * of the segments that were already un-inverted by the searcher it is warmed from. Only segments
+ * that are new to the searcher have to be un-inverted after a commit.
  *
- * <p>There is a single int[maxDoc()] which either contains a pointer into a byte[] for the
- * termNumber lists, or directly contains the termNumber list if it fits in the 4 bytes of an
+ * <p>Within a segment, term numbers are in sorted order, and are encoded as variable-length deltas
+ * from the previous term number. Real term numbers start at 2 since 0 and 1 are reserved. A term
+ * number of 0 signals the end of the termNumber list.
+ *
+ * <p>There is a single int[maxDoc()] per segment which either contains a pointer into a byte[] for
+ * the termNumber lists, or directly contains the termNumber list if it fits in the 4 bytes of an
  * integer. If the first byte in the integer is 1, the next 3 bytes are a pointer into a byte[]
  * where the termNumber list starts.
  *
  * <p>There are actually 256 byte arrays, to compensate for the fact that the pointers into the byte
  * arrays are only 3 bytes long. The correct byte array for a document is a function of its id.
  *
- * <p>To save space and speed up faceting, any term that matches enough documents will not be
- * un-inverted... it will be skipped while building the un-inverted field structure, and will use a
- * set intersection method during faceting.
+ * <p>To save space and speed up faceting, any term that matches enough documents of a segment will
+ * not be un-inverted... it will be skipped while building the un-inverted field structure, and its
+ * documents are kept in a bit set instead.
  *
  * <p>To further save memory, the terms (the actual string values) are not all stored in memory, but
  * a TermIndex is used to convert term numbers to term values only for the terms needed after
@@ -78,247 +83,292 @@ import org.slf4j.LoggerFactory;
  * number, and this is used as an index to find the closest term and iterate until the desired
  * number is hit (very much like Lucene's own internal term index).
  */
-public class UnInvertedField extends DocTermOrds {
-  private static int TNUM_OFFSET = 2;
+public class UnInvertedField implements Accountable {
 
   private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
-  static class TopTerm {
-    Query termQuery;
-    BytesRef term;
-    int termNum;
-
-    long memSize() {
-      return 8L
-          + // obj header
-          8
-          + 8
-          + term.length
-          + // term
-          4; // int
-    }
-  }
+  final String field;
+  private final SolrIndexSearcher searcher;
 
-  long memsz;
-  final AtomicLong use = new AtomicLong(); // number of uses
+  /* The un-inverted segments, by leaf ord. */
+  private final SegmentUnInvertedField[] segments;
+
+  /* Maps segment term numbers to global ones, null if there is no more than one segment. */
+  private final OrdinalMap ordinalMap;
+
+  private final int numTermsInField;
 
   /* The number of documents holding the term {@code maxDocs = maxTermCounts[termNum]}. */
-  int[] maxTermCounts = new int[1024];
+  final int[] maxTermCounts;
 
-  /* termNum -> docIDs for big terms. */
-  final Map<Integer, TopTerm> bigTerms = new LinkedHashMap<>();
+  private final long termInstances;
+  private final int numBigTerms;
+  private final int numReusedSegments;
+  private final long totalTime;
 
-  private SolrIndexSearcher.DocsEnumState deState;
-  private final SolrIndexSearcher searcher;
+  long memsz;
+  final AtomicLong use = new AtomicLong(); // number of uses
 
   private static final UnInvertedField uifPlaceholder = new UnInvertedField();
 
   private UnInvertedField() { // Dummy for synchronization.
-    super("fake", 0, 0); // cheapest initialization I can find.
+    field = "fake";
     searcher = null;
+    segments = new SegmentUnInvertedField[0];
+    ordinalMap = null;
+    numTermsInField = 0;
+    maxTermCounts = new int[0];
+    termInstances = 0;
+    numBigTerms = 0;
+    numReusedSegments = 0;
+    totalTime = 0;
+  }
+
+  public UnInvertedField(String field, SolrIndexSearcher searcher) throws IOException {
+    this(field, searcher, null);
   }
 
   /**
-   * Called for each term in the field being uninverted. Collects {@link #maxTermCounts} for all
-   * bigTerms as well as storing them in {@link #bigTerms}.
-   *
-   * @param te positioned at the current term.
-   * @param termNum the ID/pointer/ordinal of the current term. Monotonically increasing between
-   *     calls.
+   * Un-inverts the field for the given searcher, reusing the segments of {@code previous} (which
+   * may be null) that are still part of the searcher.
    */
-  @Override
-  protected void visitTerm(TermsEnum te, int termNum) throws IOException {
-
-    if (termNum >= maxTermCounts.length) {
-      // resize by doubling - for very large number of unique terms, expanding
-      // by 4K and resultant GC will dominate uninvert times.  Resize at end if material
-      int[] newMaxTermCounts = new int[Math.min(Integer.MAX_VALUE - 16, maxTermCounts.length * 2)];
-      System.arraycopy(maxTermCounts, 0, newMaxTermCounts, 0, termNum);
-      maxTermCounts = newMaxTermCounts;
+  public UnInvertedField(String field, SolrIndexSearcher searcher, UnInvertedField previous)
+      throws IOException {
+    assert TestInjection.injectUIFOutOfMemoryError();
+
+    final long startTime = System.nanoTime();
+    final String prefix = TrieField.getMainValuePrefix(searcher.getSchema().getFieldType(field));
+    this.field = field;
+    this.searcher = searcher;
+
+    final Map<Object, SegmentUnInvertedField> reusable = new HashMap<>();
+    if (previous != null && previous.field.equals(field)) {
+      for (SegmentUnInvertedField segment : previous.segments) {
+        if (segment.coreKey != null) {
+          reusable.put(segment.coreKey, segment);
+        }
+      }
     }
 
-    final BytesRef term = te.term();
-
-    if (te.docFreq() > maxTermDocFreq) {
-      Term t = new Term(field, term); // this makes a deep copy of the term bytes
-      TopTerm topTerm = new TopTerm();
-      topTerm.term = t.bytes();
-      topTerm.termNum = termNum;
-      topTerm.termQuery = new TermQuery(t);
-
-      bigTerms.put(topTerm.termNum, topTerm);
-
-      if (deState == null) {
-        deState = new SolrIndexSearcher.DocsEnumState();
-        deState.fieldName = field;
-        deState.liveDocs = searcher.getLiveDocsBits();
-        // TODO: check for MultiTermsEnum in SolrIndexSearcher could now fail?
-        deState.termsEnum = te;
-        deState.postingsEnum = postingsEnum;
-        deState.minSetSizeCached = maxTermDocFreq;
+    // DocTermOrds will throw an exception if it thinks the field has doc values, which is faked by
+    // UnInvertingReader, so the raw segments are un-inverted
+    final List<LeafReaderContext> leaves = searcher.getRawReader().leaves();
+    segments = new SegmentUnInvertedField[leaves.size()];
+    int reused = 0;
+    try {
+      for (LeafReaderContext ctx : leaves) {
+        final IndexReader.CacheHelper cacheHelper = ctx.reader().getCoreCacheHelper();
+        final Object coreKey = cacheHelper == null ? null : cacheHelper.getKey();
+        SegmentUnInvertedField segment = coreKey == null ? null : reusable.get(coreKey);
+        if (segment == null) {
+          segment =
+              new SegmentUnInvertedField(
+                  field, ctx.reader(), coreKey, prefix == null ? null : new BytesRef(prefix));
+        } else {
+          reused++;
+        }
+        segments[ctx.ord] = segment;
+      }
+    } catch (IllegalStateException ise) {
+      throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, ise);
+    }
+    numReusedSegments = reused;
+
+    if (segments.length > 1) {
+      final TermsEnum[] subs = new TermsEnum[segments.length];
+      final long[] weights = new long[segments.length];
+      for (LeafReaderContext ctx : leaves) {
+        final TermsEnum te = segments[ctx.ord].getOrdTermsEnum(ctx.reader());
+        subs[ctx.ord] = te == null ? TermsEnum.EMPTY : te;
+        weights[ctx.ord] = segments[ctx.ord].numTerms();
       }
+      final IndexReader.CacheHelper cacheHelper = searcher.getRawReader().getReaderCacheHelper();
+      ordinalMap =
+          OrdinalMap.build(
+              cacheHelper == null ? null : cacheHelper.getKey(), subs, weights, PackedInts.DEFAULT);
+      numTermsInField = (int) ordinalMap.getValueCount();
+    } else {
+      ordinalMap = null;
+      numTermsInField = segments.length == 0 ? 0 : segments[0].numTerms();
+    }
 
-      postingsEnum = deState.postingsEnum;
-      DocSet set = searcher.getDocSet(deState);
-      maxTermCounts[termNum] = set.size();
+    maxTermCounts = new int[numTermsInField];
+    long instances = 0;
+    int bigTerms = 0;
+    for (int segIdx = 0; segIdx < segments.length; segIdx++) {
+      final SegmentUnInvertedField segment = segments[segIdx];
+      final LongValues toGlobal = getGlobalOrds(segIdx);
+      for (int tnum = 0; tnum < segment.numTerms(); tnum++) {
+        maxTermCounts[(int) toGlobal.get(tnum)] += segment.maxTermCounts[tnum];
+      }
+      instances += segment.getTermInstances();
+      bigTerms += segment.bigTermNums.length;
     }
+    termInstances = instances;
+    numBigTerms = bigTerms;
+    totalTime = (System.nanoTime() - startTime) / 1_000_000;
+
+    log.info("UnInverted multi-valued field {}", this);
   }
 
-  @Override
-  protected void setActualDocFreq(int termNum, int docFreq) {
-    maxTermCounts[termNum] = docFreq;
+  /** Maps the term numbers of the given segment to global term numbers */
+  LongValues getGlobalOrds(int segIdx) {
+    return ordinalMap == null ? LongValues.IDENTITY : ordinalMap.getGlobalOrds(segIdx);
   }
 
   public long memSize() {
     // can cache the mem size since it shouldn't change
     if (memsz != 0) return memsz;
-    long sz = super.ramBytesUsed();
-    sz += 8 * 8 + 32; // local fields
-    sz += bigTerms.size() * 64L;
-    for (TopTerm tt : bigTerms.values()) {
-      sz += tt.memSize();
+    long sz = 8 * 8 + 32; // local fields
+    for (SegmentUnInvertedField segment : segments) {
+      sz += segment.memSize();
     }
-    if (maxTermCounts != null) sz += maxTermCounts.length * 4L;
+    if (ordinalMap != null) sz += ordinalMap.ramBytesUsed();
+    sz += maxTermCounts.length * 4L;
     memsz = sz;
     return sz;
   }
 
-  public UnInvertedField(String field, SolrIndexSearcher searcher) throws IOException {
-    super(
-        field,
-        // threshold, over which we use set intersections instead of counting
-        // to (1) save memory, and (2) speed up faceting.
-        // Add 2 for testing purposes so that there will always be some terms under
-        // the threshold even when the index is very
-        // small.
-        searcher.maxDoc() / 20 + 2,
-        DEFAULT_INDEX_INTERVAL_BITS);
-
-    assert TestInjection.injectUIFOutOfMemoryError();
-
-    final String prefix = TrieField.getMainValuePrefix(searcher.getSchema().getFieldType(field));
-    this.searcher = searcher;
-    try {
-      // TODO: it's wasteful to create one of these each time
-      // but DocTermOrds will throw an exception if it thinks the field has doc values (which is
-      // faked by UnInvertingReader)
-      LeafReader r = SlowCompositeReaderWrapper.wrap(searcher.getRawReader());
-      uninvert(r, r.getLiveDocs(), prefix == null ? null : new BytesRef(prefix));
-    } catch (IllegalStateException ise) {
-      throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, ise);
-    }
-    if (tnums != null) {
-      for (byte[] target : tnums) {
-        if (target != null && target.length > (1 << 24) * .9) {
-          log.warn(
-              "Approaching too many values for UnInvertedField faceting on field '{}' : bucket size={}",
-              field,
-              target.length);
-        }
-      }
-    }
-
-    // free space if outrageously wasteful (tradeoff memory/cpu)
-    if ((maxTermCounts.length - numTermsInField) > 1024) { // too much waste!
-      int[] newMaxTermCounts = new int[numTermsInField];
-      System.arraycopy(maxTermCounts, 0, newMaxTermCounts, 0, numTermsInField);
-      maxTermCounts = newMaxTermCounts;
-    }
+  @Override
+  public long ramBytesUsed() {
+    return memSize();
+  }
 
-    log.info("UnInverted multi-valued field {}", this);
-    // System.out.println("CREATED: " + toString() + " ti.index=" + ti.index);
+  public int numTerms() {
+    return numTermsInField;
   }
 
   public int getNumTerms() {
     return numTermsInField;
   }
 
+  /** The number of segments that were reused from a previous un-inverted field */
+  int getNumReusedSegments() {
+    return numReusedSegments;
+  }
+
   public class DocToTerm implements Closeable {
-    private final DocSet[] bigTermSets;
-    private final int[] bigTermNums;
-    private TermsEnum te;
-
-    public DocToTerm() throws IOException {
-      bigTermSets = new DocSet[bigTerms.size()];
-      bigTermNums = new int[bigTerms.size()];
-      int i = 0;
-      for (TopTerm tt : bigTerms.values()) {
-        bigTermSets[i] = searcher.getDocSet(tt.termQuery);
-        bigTermNums[i] = tt.termNum;
-        i++;
+    private final List<LeafReaderContext> leaves = searcher.getRawReader().leaves();
+    private final TermsEnum[] termsEnums = new TermsEnum[segments.length];
+
+    // the segment of the last doc
+    private int segIdx = -1;
+    private int segBase;
+    private int segEnd;
+    private LongValues toGlobal;
+
+    public DocToTerm() {}
+
+    public BytesRef lookupOrd(int ord) throws IOException {
+      if (ordinalMap == null) {
+        return lookupSegmentOrd(0, ord);
       }
+      return lookupSegmentOrd(
+          ordinalMap.getFirstSegmentNumber(ord), (int) ordinalMap.getFirstSegmentOrd(ord));
     }
 
-    public BytesRef lookupOrd(int ord) throws IOException {
-      return getTermValue(getTermsEnum(), ord);
+    private BytesRef lookupSegmentOrd(int segIdx, int segOrd) throws IOException {
+      return segments[segIdx].lookupTerm(getTermsEnum(segIdx), segOrd);
     }
 
-    public TermsEnum getTermsEnum() throws IOException {
-      if (te == null) {
-        te = getOrdTermsEnum(searcher.getSlowAtomicReader());
+    private TermsEnum getTermsEnum(int segIdx) throws IOException {
+      if (termsEnums[segIdx] == null) {
+        termsEnums[segIdx] = segments[segIdx].getOrdTermsEnum(leaves.get(segIdx).reader());
       }
-      return te;
+      return termsEnums[segIdx];
     }
 
-    public void getBigTerms(int doc, Callback target) throws IOException {
-      if (bigTermSets != null) {
-        for (int i = 0; i < bigTermSets.length; i++) {
-          if (bigTermSets[i].exists(doc)) {
-            target.call(bigTermNums[i]);
-          }
+    /**
+     * Returns the number of the first term that is greater than or equal to {@code target}, or
+     * {@link #numTerms()} if there is none.
+     */
+    public int ceilOrd(BytesRef target) throws IOException {
+      int ceil = numTermsInField;
+      for (int segIdx = 0; segIdx < segments.length; segIdx++) {
+        if (segments[segIdx].numTerms() == 0) continue;
+        final TermsEnum te = getTermsEnum(segIdx);
+        if (te.seekCeil(target) != TermsEnum.SeekStatus.END) {
+          ceil = Math.min(ceil, (int) getGlobalOrds(segIdx).get(te.ord()));
         }
       }
+      return ceil;
     }
 
-    public void getSmallTerms(int doc, Callback target) {
-      if (termInstances > 0) {
-        int code = index[doc];
-
-        if ((code & 0x80000000) != 0) {
-          int pos = code & 0x7fffffff;
-          int whichArray = (doc >>> 16) & 0xff;
-          byte[] arr = tnums[whichArray];
-          int tnum = 0;
-          for (; ; ) {
-            int delta = 0;
-            for (; ; ) {
-              byte b = arr[pos++];
-              delta = (delta << 7) | (b & 0x7f);
-              if ((b & 0x80) == 0) break;
-            }
-            if (delta == 0) break;
-            tnum += delta - TNUM_OFFSET;
-            target.call(tnum);
-          }
-        } else {
-          int tnum = 0;
-          int delta = 0;
-          for (; ; ) {
-            delta = (delta << 7) | (code & 0x7f);
-            if ((code & 0x80) == 0) {
-              if (delta == 0) break;
-              tnum += delta - TNUM_OFFSET;
-              target.call(tnum);
-              delta = 0;
-            }
-            code >>>= 8;
-          }
-        }
+    private void setDoc(int doc) {
+      if (doc < segBase || doc >= segEnd) {
+        segIdx = ReaderUtil.subIndex(doc, leaves);
+        final LeafReaderContext ctx = leaves.get(segIdx);
+        segBase = ctx.docBase;
+        segEnd = segBase + ctx.reader().maxDoc();
+        toGlobal = getGlobalOrds(segIdx);
       }
     }
 
-    @Override
-    public void close() throws IOException {
-      for (DocSet set : bigTermSets) {
-        // set.decref(); // OFF-HEAP
-      }
+    public void getBigTerms(int doc, Callback target) throws IOException {
+      setDoc(doc);
+      segments[segIdx].getBigTerms(doc - segBase, toGlobal, target);
     }
+
+    public void getSmallTerms(int doc, Callback target) {
+      setDoc(doc);
+      segments[segIdx].getSmallTerms(doc - segBase, toGlobal, target);
+    }
+
+    @Override
+    public void close() throws IOException {}
   }
 
   public interface Callback {
     public void call(int termNum);
   }
 
+  /** Counts the terms of a doc, for all active domains */
+  private static final class TermCounter implements Callback {
+    private final SegCountGlobal counts;
+    int maxIdx;
+
+    TermCounter(SegCountGlobal counts) {
+      this.counts = counts;
+    }
+
+    @Override
+    public void call(int termNum) {
+      counts.incrementCount(termNum, 1, maxIdx);
+    }
+  }
+
+  /** Counts the terms of a doc within the range of the processor, and collects them if asked to */
+  private static final class TermCollector implements Callback {
+    private final FacetFieldProcessorByArrayUIF processor;
+    private final SegCountGlobal counts;
+    private final int startTermIndex;
+    private final int nTerms;
+    int maxIdx;
+    boolean collectBase;
+    int segDoc;
+
+    TermCollector(FacetFieldProcessorByArrayUIF processor, SegCountGlobal counts) {
+      this.processor = processor;
+      this.counts = counts;
+      this.startTermIndex = processor.startTermIndex;
+      this.nTerms = processor.nTerms;
+    }
+
+    @Override
+    public void call(int termNum) {
+      int arrIdx = termNum - startTermIndex;
+      if (arrIdx < 0 || arrIdx >= nTerms) return;
+      counts.incrementCount(arrIdx, 1, maxIdx);
+      if (collectBase) {
+        try {
+          processor.collectFirstPhase(segDoc, arrIdx, processor.slotContext);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    }
+  }
+
   private void getCounts(FacetFieldProcessorByArrayUIF processor) throws IOException {
     DocSet docs = processor.fcontext.base;
     int baseSize = docs.size();
@@ -332,11 +382,9 @@ public class UnInvertedField extends DocTermOrds {
     SweepCountAccStruct baseCountAccStruct = SweepingCountSlotAcc.baseStructOf(processor);
     final List<SweepCountAccStruct> others = SweepingCountSlotAcc.otherStructsOf(processor);
 
-    final int[] index = this.index;
-
     boolean doNegative =
         baseSize > maxDoc >> 1
-            && termInstances > 0
+            && numTermsInField > 0
             && docs instanceof BitDocSet
             && baseCountAccStruct != null;
 
@@ -347,69 +395,37 @@ public class UnInvertedField extends DocTermOrds {
       // instead of creating a new bitset and inverting.
       docs = new BitDocSet(bs, maxDoc - baseSize);
       // simply negating will mean that we have deleted docs in the set.
-      // that should be OK, as their entries in our table should be empty.
+      // that should be OK, as their terms are also part of maxTermCounts.
       baseCountAccStruct = new SweepCountAccStruct(baseCountAccStruct, docs);
     }
 
-    // For the biggest terms, do straight set intersections
-    for (TopTerm tt : bigTerms.values()) {
-      // TODO: counts could be deferred if sorting by index order
-      final int termOrd = tt.termNum;
-      Iterator<SweepCountAccStruct> othersIter = others.iterator();
-      SweepCountAccStruct entry =
-          baseCountAccStruct != null ? baseCountAccStruct : othersIter.next();
-      for (; ; ) {
-        entry.countAcc.incrementCount(termOrd, searcher.numDocs(tt.termQuery, entry.docSet));
-        if (!othersIter.hasNext()) {
-          break;
-        }
-        entry = othersIter.next();
-      }
-    }
-
     // TODO: we could short-circuit counting altogether for sorted faceting
     // where we already have enough terms from the bigTerms
 
-    if (termInstances > 0) {
+    if (numTermsInField > 0) {
+      final List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
       final SweepIteratorAndCounts iterAndCounts =
           SweepDocIterator.newInstance(baseCountAccStruct, others);
       final SweepDocIterator iter = iterAndCounts.iter;
-      final SegCountGlobal counts = new SegCountGlobal(iterAndCounts.countAccs);
+      final TermCounter counter = new TermCounter(new SegCountGlobal(iterAndCounts.countAccs));
+      int segIdx = -1;
+      int segBase = 0;
+      int adjustedMax = 0;
+      SegmentUnInvertedField segment = null;
+      LongValues toGlobal = null;
       while (iter.hasNext()) {
         int doc = iter.nextDoc();
-        int maxIdx = iter.registerCounts(counts);
-        int code = index[doc];
-
-        if ((code & 0x80000000) != 0) {
-          int pos = code & 0x7fffffff;
-          int whichArray = (doc >>> 16) & 0xff;
-          byte[] arr = tnums[whichArray];
-          int tnum = 0;
-          for (; ; ) {
-            int delta = 0;
-            for (; ; ) {
-              byte b = arr[pos++];
-              delta = (delta << 7) | (b & 0x7f);
-              if ((b & 0x80) == 0) break;
-            }
-            if (delta == 0) break;
-            tnum += delta - TNUM_OFFSET;
-            counts.incrementCount(tnum, 1, maxIdx);
-          }
-        } else {
-          int tnum = 0;
-          int delta = 0;
-          for (; ; ) {
-            delta = (delta << 7) | (code & 0x7f);
-            if ((code & 0x80) == 0) {
-              if (delta == 0) break;
-              tnum += delta - TNUM_OFFSET;
-              counts.incrementCount(tnum, 1, maxIdx);
-              delta = 0;
-            }
-            code >>>= 8;
-          }
+        counter.maxIdx = iter.registerCounts(counter.counts);
+        if (doc >= adjustedMax) {
+          do {
+            LeafReaderContext ctx = leaves.get(++segIdx);
+            segBase = ctx.docBase;
+            adjustedMax = segBase + ctx.reader().maxDoc();
+          } while (doc >= adjustedMax);
+          segment = segments[segIdx];
+          toGlobal = getGlobalOrds(segIdx);
         }
+        segment.getTerms(doc - segBase, toGlobal, counter);
       }
     }
 
@@ -448,122 +464,48 @@ public class UnInvertedField extends DocTermOrds {
   public void collectDocsGeneric(FacetFieldProcessorByArrayUIF processor) throws IOException {
     use.incrementAndGet();
 
-    int startTermIndex = processor.startTermIndex;
-    int endTermIndex = processor.endTermIndex;
-    int nTerms = processor.nTerms;
-    DocSet docs = processor.fcontext.base;
+    if (numTermsInField == 0) {
+      return;
+    }
 
-    int uniqueTerms = 0;
-    final CountSlotAcc countAcc = processor.countAcc;
     final SweepCountAccStruct baseCountAccStruct = SweepingCountSlotAcc.baseStructOf(processor);
     final List<SweepCountAccStruct> others = SweepingCountSlotAcc.otherStructsOf(processor);
 
-    for (TopTerm tt : bigTerms.values()) {
-      if (tt.termNum >= startTermIndex && tt.termNum < endTermIndex) {
-        // handle the biggest terms
-        DocSet termSet = searcher.getDocSet(tt.termQuery);
-        DocSet intersection = termSet.intersection(docs);
-        int collected =
-            processor.collectFirstPhase(
-                intersection,
-                tt.termNum - startTermIndex,
-                slotNum -> {
-                  return new SlotContext(tt.termQuery);
-                });
-        final int termOrd = tt.termNum - startTermIndex;
-        countAcc.incrementCount(termOrd, collected);
-        for (SweepCountAccStruct entry : others) {
-          entry.countAcc.incrementCount(termOrd, termSet.intersectionSize(entry.docSet));
-        }
-        if (collected > 0) {
-          uniqueTerms++;
-        }
-      }
-    }
-
-    if (termInstances > 0) {
-
-      final List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
-      final Iterator<LeafReaderContext> ctxIt = leaves.iterator();
-      LeafReaderContext ctx = null;
-      int segBase = 0;
-      int segMax;
-      int adjustedMax = 0;
-
-      // TODO: handle facet.prefix here!!!
-
-      SweepIteratorAndCounts sweepIterAndCounts =
-          SweepDocIterator.newInstance(baseCountAccStruct, others);
-      final SweepDocIterator iter = sweepIterAndCounts.iter;
-      final CountSlotAcc[] countAccs = sweepIterAndCounts.countAccs;
-      final SegCountGlobal counts = new SegCountGlobal(countAccs);
+    final List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+    int segIdx = -1;
+    int segBase = 0;
+    int adjustedMax = 0;
+    SegmentUnInvertedField segment = null;
+    LongValues toGlobal = null;
+
+    SweepIteratorAndCounts sweepIterAndCounts =
+        SweepDocIterator.newInstance(baseCountAccStruct, others);
+    final SweepDocIterator iter = sweepIterAndCounts.iter;
+    final TermCollector collector =
+        new TermCollector(processor, new SegCountGlobal(sweepIterAndCounts.countAccs));
+    try {
       while (iter.hasNext()) {
         int doc = iter.nextDoc();
-        int maxIdx = iter.registerCounts(counts);
-        boolean collectBase = iter.collectBase();
+        collector.maxIdx = iter.registerCounts(collector.counts);
+        collector.collectBase = iter.collectBase();
 
         if (doc >= adjustedMax) {
+          LeafReaderContext ctx;
           do {
-            ctx = ctxIt.next();
-            if (ctx == null) {
-              // should be impossible
-              throw new RuntimeException("INTERNAL FACET ERROR");
-            }
+            ctx = leaves.get(++segIdx);
             segBase = ctx.docBase;
-            segMax = ctx.reader().maxDoc();
-            adjustedMax = segBase + segMax;
+            adjustedMax = segBase + ctx.reader().maxDoc();
           } while (doc >= adjustedMax);
           assert doc >= ctx.docBase;
           processor.setNextReaderFirstPhase(ctx);
+          segment = segments[segIdx];
+          toGlobal = getGlobalOrds(segIdx);
         }
-        int segDoc = doc - segBase;
-
-        int code = index[doc];
-
-        if ((code & 0x80000000) != 0) {
-          int pos = code & 0x7fffffff;
-          int whichArray = (doc >>> 16) & 0xff;
-          byte[] arr = tnums[whichArray];
-          int tnum = 0;
-          for (; ; ) {
-            int delta = 0;
-            for (; ; ) {
-              byte b = arr[pos++];
-              delta = (delta << 7) | (b & 0x7f);
-              if ((b & 0x80) == 0) break;
-            }
-            if (delta == 0) break;
-            tnum += delta - TNUM_OFFSET;
-            int arrIdx = tnum - startTermIndex;
-            if (arrIdx < 0) continue;
-            if (arrIdx >= nTerms) break;
-            counts.incrementCount(arrIdx, 1, maxIdx);
-            if (collectBase) {
-              processor.collectFirstPhase(segDoc, arrIdx, processor.slotContext);
-            }
-          }
-        } else {
-          int tnum = 0;
-          int delta = 0;
-          for (; ; ) {
-            delta = (delta << 7) | (code & 0x7f);
-            if ((code & 0x80) == 0) {
-              if (delta == 0) break;
-              tnum += delta - TNUM_OFFSET;
-              int arrIdx = tnum - startTermIndex;
-              if (arrIdx >= 0) {
-                if (arrIdx >= nTerms) break;
-                counts.incrementCount(arrIdx, 1, maxIdx);
-                if (collectBase) {
-                  processor.collectFirstPhase(segDoc, arrIdx, processor.slotContext);
-                }
-              }
-              delta = 0;
-            }
-            code >>>= 8;
-          }
-        }
+        collector.segDoc = doc - segBase;
+        segment.getTerms(collector.segDoc, toGlobal, collector);
       }
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
     }
   }
 
@@ -571,47 +513,22 @@ public class UnInvertedField extends DocTermOrds {
     return ft.indexedToReadable(termval, charsRef).toString();
   }
 
-  /** may return a reused BytesRef */
-  BytesRef getTermValue(TermsEnum te, int termNum) throws IOException {
-    // System.out.println("getTermValue termNum=" + termNum + " this=" + this + " numTerms=" +
-    // numTermsInField);
-    if (bigTerms.size() > 0) {
-      // see if the term is one of our big terms.
-      TopTerm tt = bigTerms.get(termNum);
-      if (tt != null) {
-        // System.out.println("  return big " + tt.term);
-        return tt.term;
-      }
-    }
-
-    return lookupTerm(te, termNum);
-  }
-
   @Override
   public String toString() {
-    final long indexSize =
-        indexedTermsArray == null
-            ? 0
-            : (8
-                + 8
-                + 8
-                + 8
-                + (indexedTermsArray.length << 3)
-                + sizeOfIndexedStrings); // assume 8 byte references?
     return "{field="
         + field
         + ",memSize="
         + memSize()
-        + ",tindexSize="
-        + indexSize
+        + ",segments="
+        + segments.length
+        + ",reusedSegments="
+        + numReusedSegments
         + ",time="
-        + total_time
-        + ",phase1="
-        + phase1_time
+        + totalTime
         + ",nTerms="
         + numTermsInField
         + ",bigTerms="
-        + bigTerms.size()
+        + numBigTerms
         + ",termInstances="
         + termInstances
         + ",uses="
@@ -625,11 +542,21 @@ public class UnInvertedField extends DocTermOrds {
 
   public static UnInvertedField getUnInvertedField(String field, SolrIndexSearcher searcher)
       throws IOException {
+    return getUnInvertedField(field, searcher, null);
+  }
+
+  /**
+   * Returns the cached un-inverted field of the searcher, creating it if needed. Segments already
+   * un-inverted by {@code previous}, which may be null, are reused. This is how autowarming the
+   * fieldValueCache limits the work after a commit to the new segments.
+   */
+  public static UnInvertedField getUnInvertedField(
+      String field, SolrIndexSearcher searcher, UnInvertedField previous) throws IOException {
     SolrCache<String, UnInvertedField> cache = searcher.getFieldValueCache();
     if (cache == null) {
-      return new UnInvertedField(field, searcher);
+      return new UnInvertedField(field, searcher, previous);
     }
-    return cache.computeIfAbsent(field, f -> new UnInvertedField(f, searcher));
+    return cache.computeIfAbsent(field, f -> new UnInvertedField(f, searcher, previous));
   }
 
   // Returns null if not already populated
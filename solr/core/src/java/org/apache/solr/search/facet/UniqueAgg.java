@@ -203,6 +203,29 @@ public class UniqueAgg extends StrAggValueSource {
     public int compare(int slotA, int slotB) {
       return getCardinality(slotA) - getCardinality(slotB);
     }
+
+    @Override
+    public boolean isMergeable() {
+      return true;
+    }
+
+    @Override
+    public void merge(SlotAcc other) {
+      final LongSet[] otherSets = ((BaseNumericAcc) other).sets;
+      for (int i = 0; i < sets.length; i++) {
+        final LongSet otherSet = otherSets[i];
+        if (otherSet == null) {
+          continue;
+        }
+        if (sets[i] == null) {
+          sets[i] = otherSet;
+        } else {
+          for (LongIterator iter = otherSet.iterator(); iter.hasNext(); ) {
+            sets[i].add(iter.next());
+          }
+        }
+      }
+    }
   }
 
   static class NumericAcc extends BaseNumericAcc {
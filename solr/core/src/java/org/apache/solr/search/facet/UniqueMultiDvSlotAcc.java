@@ -23,8 +23,8 @@ import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.MultiDocValues;
 import org.apache.lucene.index.OrdinalMap;
 import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.util.BitSet;
 import org.apache.lucene.util.BytesRef;
-import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.LongValues;
 import org.apache.solr.schema.SchemaField;
 
@@ -79,9 +79,9 @@ class UniqueMultiDvSlotAcc extends UniqueSlotAcc {
       int segOrd = (int) subDv.nextOrd();
       assert segOrd >= 0;
 
-      FixedBitSet bits = arr[slotNum];
+      BitSet bits = arr[slotNum];
       if (bits == null) {
-        bits = new FixedBitSet(nTerms);
+        bits = newBits();
         arr[slotNum] = bits;
       }
 
@@ -19,8 +19,8 @@ package org.apache.solr.search.facet;
 
 import java.io.IOException;
 import java.util.function.IntFunction;
+import org.apache.lucene.util.BitSet;
 import org.apache.lucene.util.BytesRef;
-import org.apache.lucene.util.FixedBitSet;
 import org.apache.solr.schema.SchemaField;
 import org.apache.solr.search.SolrIndexSearcher;
 
@@ -45,7 +45,7 @@ class UniqueMultivaluedSlotAcc extends UniqueSlotAcc implements UnInvertedField.
     return docToTerm.lookupOrd(ord);
   }
 
-  private FixedBitSet bits; // bits for the current slot, only set for the callback
+  private BitSet bits; // bits for the current slot, only set for the callback
 
   @Override
   public void call(int termNum) {
@@ -57,7 +57,7 @@ class UniqueMultivaluedSlotAcc extends UniqueSlotAcc implements UnInvertedField.
       throws IOException {
     bits = arr[slotNum];
     if (bits == null) {
-      bits = new FixedBitSet(nTerms);
+      bits = newBits();
       arr[slotNum] = bits;
     }
     // this will call back to our Callback.call(int termNum)
@@ -23,8 +23,8 @@ import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.MultiDocValues;
 import org.apache.lucene.index.OrdinalMap;
 import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.util.BitSet;
 import org.apache.lucene.util.BytesRef;
-import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.LongValues;
 import org.apache.solr.schema.SchemaField;
 
@@ -86,9 +86,9 @@ class UniqueSinglevaluedSlotAcc extends UniqueSlotAcc {
   }
 
   protected void collectOrdToSlot(int slotNum, int ord) {
-    FixedBitSet bits = arr[slotNum];
+    BitSet bits = arr[slotNum];
     if (bits == null) {
-      bits = new FixedBitSet(nTerms);
+      bits = newBits();
       arr[slotNum] = bits;
     }
     bits.set(ord);
@@ -20,17 +20,26 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.BitSet;
+import org.apache.lucene.util.BitSetIterator;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.SparseFixedBitSet;
 import org.apache.solr.common.util.Hash;
 import org.apache.solr.common.util.SimpleOrderedMap;
 import org.apache.solr.schema.SchemaField;
 import org.apache.solr.util.hll.HLL;
 
 abstract class UniqueSlotAcc extends SlotAcc {
+  /**
+   * Above this many terms the per-slot ord sets are sparse, so that a slot with a few values does
+   * not cost a bit for every term of the field.
+   */
+  static final int SPARSE_THRESHOLD = 1 << 16;
+
   HLLAgg.HLLFactory factory;
   SchemaField field;
-  FixedBitSet[] arr;
+  BitSet[] arr;
   int[] counts; // populated with the cardinality once
   int nTerms;
 
@@ -39,19 +48,24 @@ abstract class UniqueSlotAcc extends SlotAcc {
       throws IOException {
     super(fcontext);
     this.factory = factory;
-    arr = new FixedBitSet[numSlots];
+    arr = new BitSet[numSlots];
     this.field = field;
   }
 
   @Override
   public void reset() throws IOException {
     counts = null;
-    for (FixedBitSet bits : arr) {
+    for (BitSet bits : arr) {
       if (bits == null) continue;
       bits.clear(0, bits.length());
     }
   }
 
+  /** Returns a new, empty set of ords for a slot */
+  protected BitSet newBits() {
+    return nTerms > SPARSE_THRESHOLD ? new SparseFixedBitSet(nTerms) : new FixedBitSet(nTerms);
+  }
+
   @Override
   public Object getValue(int slot) throws IOException {
     if (fcontext.isShard()) {
@@ -66,14 +80,14 @@ abstract class UniqueSlotAcc extends SlotAcc {
     if (counts != null) { // will only be pre-populated if this was used for sorting.
       res = counts[slot];
     } else {
-      FixedBitSet bs = arr[slot];
+      BitSet bs = arr[slot];
       res = bs == null ? 0 : bs.cardinality();
     }
     return res;
   }
 
   private Object getShardHLL(int slot) throws IOException {
-    FixedBitSet ords = arr[slot];
+    BitSet ords = arr[slot];
     if (ords == null) return HLLAgg.NO_VALUES;
 
     HLL hll = factory.getHLL();
@@ -97,7 +111,7 @@ abstract class UniqueSlotAcc extends SlotAcc {
 
   private Object getShardValue(int slot) throws IOException {
     if (factory != null) return getShardHLL(slot);
-    FixedBitSet ords = arr[slot];
+    BitSet ords = arr[slot];
     int unique;
     if (counts != null) {
       unique = counts[slot];
@@ -140,7 +154,7 @@ abstract class UniqueSlotAcc extends SlotAcc {
   public void calcCounts() {
     counts = new int[arr.length];
     for (int i = 0; i < arr.length; i++) {
-      FixedBitSet bs = arr[i];
+      BitSet bs = arr[i];
       counts[i] = bs == null ? 0 : bs.cardinality();
     }
   }
@@ -160,4 +174,28 @@ abstract class UniqueSlotAcc extends SlotAcc {
       counts = resizer.resize(counts, 0);
     }
   }
+
+  @Override
+  public boolean isMergeable() {
+    return true;
+  }
+
+  @Override
+  public void merge(SlotAcc other) {
+    // bits are set by global ord, so the bits of both accs can be combined
+    final BitSet[] otherArr = ((UniqueSlotAcc) other).arr;
+    for (int i = 0; i < arr.length; i++) {
+      if (otherArr[i] == null) {
+        continue;
+      }
+      if (arr[i] == null) {
+        arr[i] = otherArr[i];
+      } else if (arr[i] instanceof FixedBitSet && otherArr[i] instanceof FixedBitSet) {
+        ((FixedBitSet) arr[i]).or((FixedBitSet) otherArr[i]);
+      } else {
+        arr[i].or(new BitSetIterator(otherArr[i], otherArr[i].approximateCardinality()));
+      }
+    }
+    counts = null;
+  }
 }
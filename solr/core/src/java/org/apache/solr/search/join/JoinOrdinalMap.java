@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.join;
+
+import java.io.IOException;
+import java.util.Objects;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.packed.PackedInts;
+
+/**
+ * Maps the (top-level) ordinals of a "from" field to the ordinals of the same terms in a "to"
+ * field, so that the ordinals matched on the "from" side of a join can be turned into "to" ordinals
+ * without comparing terms. The mapping only holds for the readers the doc values come from: it is
+ * cached per "to" searcher in the {@link #CACHE_NAME} cache, keyed by the "from" reader and fields.
+ */
+public class JoinOrdinalMap implements Accountable {
+
+  /** Name of the optional user cache holding the ordinal maps of the joins. */
+  public static final String CACHE_NAME = "joinOrdinalCache";
+
+  private static final long BASE_RAM_BYTES_USED =
+      RamUsageEstimator.shallowSizeOfInstance(JoinOrdinalMap.class);
+
+  // "to" ordinal + 1 for each "from" ordinal, 0 when the "to" field doesn't have the term
+  private final PackedInts.Mutable toOrds;
+
+  private JoinOrdinalMap(PackedInts.Mutable toOrds) {
+    this.toOrds = toOrds;
+  }
+
+  /**
+   * Builds the ordinal map between two fields, or returns null when the "from" field has too many
+   * terms to be mapped.
+   */
+  public static JoinOrdinalMap build(
+      SortedSetDocValues fromDocValues, SortedSetDocValues toDocValues) throws IOException {
+    final long fromValueCount = fromDocValues.getValueCount();
+    if (fromValueCount > Integer.MAX_VALUE - 1) {
+      return null;
+    }
+    final PackedInts.Mutable toOrds =
+        PackedInts.getMutable(
+            (int) fromValueCount,
+            PackedInts.bitsRequired(toDocValues.getValueCount()),
+            PackedInts.COMPACT);
+
+    final TermsEnum fromTerms = fromDocValues.termsEnum();
+    final TermsEnum toTerms = toDocValues.termsEnum();
+    for (BytesRef term = fromTerms.next(); term != null; term = fromTerms.next()) {
+      final TermsEnum.SeekStatus status = toTerms.seekCeil(term);
+      if (status == TermsEnum.SeekStatus.END) {
+        break;
+      } else if (status == TermsEnum.SeekStatus.FOUND) {
+        toOrds.set((int) fromTerms.ord(), toTerms.ord() + 1);
+      }
+    }
+    return new JoinOrdinalMap(toOrds);
+  }
+
+  /** The "to" ordinal of the term of the given "from" ordinal, or -1 if there is none. */
+  public long getToOrd(long fromOrd) {
+    return toOrds.get((int) fromOrd) - 1;
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return BASE_RAM_BYTES_USED + toOrds.ramBytesUsed();
+  }
+
+  /** Identifies an ordinal map in the cache of a "to" searcher. */
+  public static final class CacheKey {
+    private final Object fromReaderKey;
+    private final String fromField;
+    private final String toField;
+
+    /**
+     * @param fromReaderKey the cache key of the "from" reader, see {@link
+     *     org.apache.lucene.index.IndexReader.CacheHelper#getKey()}
+     */
+    public CacheKey(Object fromReaderKey, String fromField, String toField) {
+      this.fromReaderKey = Objects.requireNonNull(fromReaderKey);
+      this.fromField = fromField;
+      this.toField = toField;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof CacheKey)) return false;
+      CacheKey other = (CacheKey) o;
+      return fromReaderKey == other.fromReaderKey
+          && fromField.equals(other.fromField)
+          && toField.equals(other.toField);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(System.identityHashCode(fromReaderKey), fromField, toField);
+    }
+  }
+}
@@ -0,0 +1,455 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.neural;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.ByteVectorValues;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FloatVectorValues;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.VectorSimilarityFunction;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.HitQueue;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.KnnByteVectorQuery;
+import org.apache.lucene.search.KnnFloatVectorQuery;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryVisitor;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TaskExecutor;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.util.Bits;
+import org.apache.solr.search.DocSet;
+import org.apache.solr.search.DocSetUtil;
+import org.apache.solr.search.SolrCache;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.util.vector.ScalarQuantizer;
+
+/**
+ * A K nearest neighbors query pre-filtered by the filter queries of a request. When searching
+ * through a {@link SolrIndexSearcher}, the filters are resolved to a {@link DocSet} (from the
+ * filterCache when they are cached) whose bits are handed to the HNSW search of each segment,
+ * rather than being evaluated again for every segment.
+ *
+ * <p>Segments in which the filters accept at most {@link #getExactSearchRatio()} of the documents,
+ * or no more than topK documents, are scored exhaustively: graph search degrades when most of the
+ * graph is filtered out, while scoring a few vectors is cheap. A graph search visiting more nodes
+ * than the filter accepts also falls back to exact scoring.
+ *
+ * <p>When searching quantized vectors, numCandidates docs are searched in each segment, then
+ * rescored against the full precision vectors kept in the binary doc values of the field, see
+ * {@link ScalarQuantizer}.
+ *
+ * <p>The top docs of a query are kept in the searcher's {@link #CACHE_NAME} cache when it is
+ * configured, so that the same vector and filters are only searched once per searcher.
+ */
+public class FilteredKnnVectorQuery extends Query {
+
+  /** Name of the optional user cache holding the top docs of the kNN queries. */
+  public static final String CACHE_NAME = "knnCache";
+
+  /** Default ratio of accepted docs under which a segment is scored exhaustively. */
+  public static final float DEFAULT_EXACT_SEARCH_RATIO = 0.01f;
+
+  private static final TopDocs NO_RESULTS =
+      new TopDocs(new TotalHits(0, TotalHits.Relation.EQUAL_TO), new ScoreDoc[0]);
+
+  private final String field;
+  private final float[] floatTarget;
+  private final byte[] byteTarget;
+  private final float[] rescoreTarget;
+  private final int k;
+  private final int numCandidates;
+  private final List<Query> filters;
+  private final float exactSearchRatio;
+
+  public FilteredKnnVectorQuery(
+      String field, float[] target, int k, List<Query> filters, float exactSearchRatio) {
+    this(field, target, null, null, k, k, filters, exactSearchRatio);
+  }
+
+  public FilteredKnnVectorQuery(
+      String field, byte[] target, int k, List<Query> filters, float exactSearchRatio) {
+    this(field, null, target, null, k, k, filters, exactSearchRatio);
+  }
+
+  /**
+   * Searches numCandidates docs per segment with the quantized target, then keeps the k best of
+   * them according to their full precision vectors.
+   */
+  public FilteredKnnVectorQuery(
+      String field,
+      byte[] quantizedTarget,
+      float[] rescoreTarget,
+      int k,
+      int numCandidates,
+      List<Query> filters,
+      float exactSearchRatio) {
+    this(
+        field,
+        null,
+        quantizedTarget,
+        Objects.requireNonNull(rescoreTarget, "rescoreTarget"),
+        k,
+        numCandidates,
+        filters,
+        exactSearchRatio);
+  }
+
+  private FilteredKnnVectorQuery(
+      String field,
+      float[] floatTarget,
+      byte[] byteTarget,
+      float[] rescoreTarget,
+      int k,
+      int numCandidates,
+      List<Query> filters,
+      float exactSearchRatio) {
+    if (k < 1) {
+      throw new IllegalArgumentException("k must be at least 1, got: " + k);
+    }
+    if (numCandidates < k) {
+      throw new IllegalArgumentException(
+          "numCandidates must be at least k=" + k + ", got: " + numCandidates);
+    }
+    this.field = Objects.requireNonNull(field, "field");
+    this.floatTarget = floatTarget;
+    this.byteTarget = byteTarget;
+    this.rescoreTarget = rescoreTarget;
+    this.k = k;
+    this.numCandidates = numCandidates;
+    this.filters = filters == null ? List.of() : List.copyOf(filters);
+    this.exactSearchRatio = exactSearchRatio;
+  }
+
+  public String getField() {
+    return field;
+  }
+
+  public int getK() {
+    return k;
+  }
+
+  public int getNumCandidates() {
+    return numCandidates;
+  }
+
+  public List<Query> getFilters() {
+    return filters;
+  }
+
+  public float getExactSearchRatio() {
+    return exactSearchRatio;
+  }
+
+  @Override
+  public Query rewrite(IndexSearcher indexSearcher) throws IOException {
+    if (!(indexSearcher instanceof SolrIndexSearcher)) {
+      return indexSearcher.rewrite(toLuceneQuery());
+    }
+    final SolrIndexSearcher searcher = (SolrIndexSearcher) indexSearcher;
+    @SuppressWarnings("unchecked")
+    final SolrCache<FilteredKnnVectorQuery, Query> cache = searcher.getCache(CACHE_NAME);
+    if (cache == null) {
+      return search(searcher);
+    }
+    // not computeIfAbsent: the filters may hold kNN queries of their own, and would recurse
+    Query topK = cache.get(this);
+    if (topK == null) {
+      topK = search(searcher);
+      cache.put(this, topK);
+    }
+    return topK;
+  }
+
+  /**
+   * The equivalent Lucene query, that evaluates the filters in each segment. Quantized vectors are
+   * not rescored by it.
+   */
+  private Query toLuceneQuery() {
+    Query filter = null;
+    if (!filters.isEmpty()) {
+      BooleanQuery.Builder builder = new BooleanQuery.Builder();
+      for (Query q : filters) {
+        builder.add(q, BooleanClause.Occur.FILTER);
+      }
+      filter = builder.build();
+    }
+    return floatTarget != null
+        ? new KnnFloatVectorQuery(field, floatTarget, k, filter)
+        : new KnnByteVectorQuery(field, byteTarget, k, filter);
+  }
+
+  private Query search(SolrIndexSearcher searcher) throws IOException {
+    final DocSet acceptDocs = getAcceptDocs(searcher);
+    final Bits acceptBits = acceptDocs == null ? null : acceptDocs.getBits();
+    // segments are searched concurrently when the searcher has an executor, like Lucene does
+    final TaskExecutor taskExecutor = searcher.getTaskExecutor();
+    final List<LeafReaderContext> leaves = searcher.getTopReaderContext().leaves();
+    final List<Callable<TopDocs>> tasks = new ArrayList<>(leaves.size());
+    for (LeafReaderContext context : leaves) {
+      tasks.add(() -> searchLeafAndRescore(context, acceptDocs, acceptBits));
+    }
+    final TopDocs[] perLeaf = taskExecutor.invokeAll(tasks).toArray(TopDocs[]::new);
+    final TopDocs topK = TopDocs.merge(k, perLeaf);
+    if (topK.scoreDocs.length == 0) {
+      return new MatchNoDocsQuery();
+    }
+    return new ScoredDocsQuery(searcher.getTopReaderContext(), topK.scoreDocs);
+  }
+
+  /**
+   * The docs accepted by the filters, or null when all docs are. Post filters are left out, they
+   * are applied to the results of the kNN search.
+   */
+  private DocSet getAcceptDocs(SolrIndexSearcher searcher) throws IOException {
+    if (filters.isEmpty()) {
+      return null;
+    }
+    final SolrIndexSearcher.ProcessedFilter pf = searcher.getProcessedFilter(filters);
+    if (pf.answer != null) {
+      return pf.answer;
+    } else if (pf.filter != null) {
+      return DocSetUtil.createDocSet(searcher, pf.filter, null);
+    }
+    return null;
+  }
+
+  /** The top hits of a segment, rescored if need be, with their top level doc ids */
+  private TopDocs searchLeafAndRescore(
+      LeafReaderContext context, DocSet acceptDocs, Bits acceptBits) throws IOException {
+    TopDocs results = searchLeaf(context, acceptDocs, acceptBits);
+    if (rescoreTarget != null) {
+      results = rescore(context, results);
+    }
+    for (ScoreDoc scoreDoc : results.scoreDocs) {
+      scoreDoc.doc += context.docBase;
+    }
+    return results;
+  }
+
+  private TopDocs searchLeaf(LeafReaderContext context, DocSet acceptDocs, Bits acceptBits)
+      throws IOException {
+    final LeafReader reader = context.reader();
+    final FieldInfo fieldInfo = reader.getFieldInfos().fieldInfo(field);
+    if (fieldInfo == null || fieldInfo.getVectorDimension() == 0) {
+      return NO_RESULTS;
+    }
+    if (acceptDocs == null) {
+      return approximateSearch(reader, reader.getLiveDocs(), Integer.MAX_VALUE);
+    }
+
+    final int cost = count(acceptDocs.iterator(context));
+    if (cost == 0) {
+      return NO_RESULTS;
+    }
+    if (cost <= numCandidates || cost <= exactSearchRatio * reader.maxDoc()) {
+      return exactSearch(context, fieldInfo, acceptDocs);
+    }
+    final int docBase = context.docBase;
+    final int maxDoc = reader.maxDoc();
+    final Bits leafBits =
+        new Bits() {
+          @Override
+          public boolean get(int index) {
+            return acceptBits.get(docBase + index);
+          }
+
+          @Override
+          public int length() {
+            return maxDoc;
+          }
+        };
+    final TopDocs results = approximateSearch(reader, leafBits, cost);
+    if (results.totalHits.relation == TotalHits.Relation.EQUAL_TO) {
+      return results;
+    }
+    // the graph search visited more docs than the filter accepts
+    return exactSearch(context, fieldInfo, acceptDocs);
+  }
+
+  private static int count(DocIdSetIterator iterator) throws IOException {
+    if (iterator == null) {
+      return 0;
+    }
+    int count = 0;
+    while (iterator.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+      count++;
+    }
+    return count;
+  }
+
+  private TopDocs approximateSearch(LeafReader reader, Bits acceptDocs, int visitedLimit)
+      throws IOException {
+    final TopDocs results =
+        floatTarget != null
+            ? reader.searchNearestVectors(
+                field, floatTarget, numCandidates, acceptDocs, visitedLimit)
+            : reader.searchNearestVectors(
+                field, byteTarget, numCandidates, acceptDocs, visitedLimit);
+    return results != null ? results : NO_RESULTS;
+  }
+
+  private TopDocs exactSearch(LeafReaderContext context, FieldInfo fieldInfo, DocSet acceptDocs)
+      throws IOException {
+    final DocIdSetIterator accepted = acceptDocs.iterator(context);
+    if (accepted == null) {
+      return NO_RESULTS;
+    }
+    final VectorSimilarityFunction similarity = fieldInfo.getVectorSimilarityFunction();
+    final HitQueue queue = new HitQueue(numCandidates, false);
+    int visited = 0;
+    if (floatTarget != null) {
+      final FloatVectorValues values = context.reader().getFloatVectorValues(field);
+      if (values == null) {
+        return NO_RESULTS;
+      }
+      for (int doc = accepted.nextDoc();
+          doc != DocIdSetIterator.NO_MORE_DOCS;
+          doc = accepted.nextDoc()) {
+        if (values.docID() < doc && values.advance(doc) == DocIdSetIterator.NO_MORE_DOCS) {
+          break;
+        }
+        if (values.docID() == doc) {
+          queue.insertWithOverflow(
+              new ScoreDoc(doc, similarity.compare(floatTarget, values.vectorValue())));
+          visited++;
+        }
+      }
+    } else {
+      final ByteVectorValues values = context.reader().getByteVectorValues(field);
+      if (values == null) {
+        return NO_RESULTS;
+      }
+      for (int doc = accepted.nextDoc();
+          doc != DocIdSetIterator.NO_MORE_DOCS;
+          doc = accepted.nextDoc()) {
+        if (values.docID() < doc && values.advance(doc) == DocIdSetIterator.NO_MORE_DOCS) {
+          break;
+        }
+        if (values.docID() == doc) {
+          queue.insertWithOverflow(
+              new ScoreDoc(doc, similarity.compare(byteTarget, values.vectorValue())));
+          visited++;
+        }
+      }
+    }
+
+    return new TopDocs(new TotalHits(visited, TotalHits.Relation.EQUAL_TO), popAll(queue));
+  }
+
+  /** Scores the candidates of a segment with their full precision vectors, keeping the k best. */
+  private TopDocs rescore(LeafReaderContext context, TopDocs candidates) throws IOException {
+    if (candidates.scoreDocs.length == 0) {
+      return candidates;
+    }
+    final BinaryDocValues vectors = context.reader().getBinaryDocValues(field);
+    if (vectors == null) {
+      throw new IllegalStateException("no full precision vectors indexed for field: " + field);
+    }
+    final VectorSimilarityFunction similarity =
+        context.reader().getFieldInfos().fieldInfo(field).getVectorSimilarityFunction();
+    final ScoreDoc[] byDoc = candidates.scoreDocs.clone();
+    Arrays.sort(byDoc, Comparator.comparingInt(scoreDoc -> scoreDoc.doc));
+    final float[] vector = new float[rescoreTarget.length];
+    final HitQueue queue = new HitQueue(k, false);
+    for (ScoreDoc candidate : byDoc) {
+      if (vectors.advanceExact(candidate.doc)) {
+        ScalarQuantizer.decode(vectors.binaryValue(), vector);
+        queue.insertWithOverflow(
+            new ScoreDoc(candidate.doc, similarity.compare(rescoreTarget, vector)));
+      }
+    }
+    return new TopDocs(candidates.totalHits, popAll(queue));
+  }
+
+  private static ScoreDoc[] popAll(HitQueue queue) {
+    final ScoreDoc[] scoreDocs = new ScoreDoc[queue.size()];
+    for (int i = scoreDocs.length - 1; i >= 0; i--) {
+      scoreDocs[i] = queue.pop();
+    }
+    return scoreDocs;
+  }
+
+  @Override
+  public void visit(QueryVisitor visitor) {
+    if (visitor.acceptField(field)) {
+      visitor.visitLeaf(this);
+    }
+  }
+
+  @Override
+  public String toString(String field) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(getClass().getSimpleName()).append(':').append(this.field).append('[');
+    if (floatTarget != null) {
+      sb.append(floatTarget[0]).append(",...");
+    } else {
+      sb.append(byteTarget[0]).append(",...");
+    }
+    sb.append("][").append(k).append(']');
+    if (rescoreTarget != null) {
+      sb.append("[numCandidates=").append(numCandidates).append(']');
+    }
+    if (!filters.isEmpty()) {
+      sb.append('[').append(filters).append(']');
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (!sameClassAs(other)) {
+      return false;
+    }
+    FilteredKnnVectorQuery that = (FilteredKnnVectorQuery) other;
+    return k == that.k
+        && numCandidates == that.numCandidates
+        && Float.compare(exactSearchRatio, that.exactSearchRatio) == 0
+        && field.equals(that.field)
+        && Arrays.equals(floatTarget, that.floatTarget)
+        && Arrays.equals(byteTarget, that.byteTarget)
+        && Arrays.equals(rescoreTarget, that.rescoreTarget)
+        && filters.equals(that.filters);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = classHash();
+    result = 31 * result + field.hashCode();
+    result = 31 * result + Arrays.hashCode(floatTarget);
+    result = 31 * result + Arrays.hashCode(byteTarget);
+    result = 31 * result + Arrays.hashCode(rescoreTarget);
+    result = 31 * result + k;
+    result = 31 * result + numCandidates;
+    result = 31 * result + filters.hashCode();
+    result = 31 * result + Float.hashCode(exactSearchRatio);
+    return result;
+  }
+}
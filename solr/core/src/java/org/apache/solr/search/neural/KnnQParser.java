@@ -16,7 +16,6 @@
  */
 package org.apache.solr.search.neural;
 
-import java.io.IOException;
 import java.util.List;
 import org.apache.lucene.search.Query;
 import org.apache.solr.common.SolrException;
@@ -29,7 +28,6 @@ import org.apache.solr.schema.SchemaField;
 import org.apache.solr.search.QParser;
 import org.apache.solr.search.QueryParsing;
 import org.apache.solr.search.QueryUtils;
-import org.apache.solr.search.SolrIndexSearcher;
 import org.apache.solr.search.SyntaxError;
 
 public class KnnQParser extends QParser {
@@ -37,6 +35,9 @@ public class KnnQParser extends QParser {
   // retrieve the top K results based on the distance similarity function
   static final String TOP_K = "topK";
   static final int DEFAULT_TOP_K = 10;
+  static final String EXACT_SEARCH_RATIO = "exactSearchRatio";
+  static final String OVERSAMPLE = "oversample";
+  static final float DEFAULT_OVERSAMPLE = 2f;
 
   /**
    * Constructor for the QParser
@@ -56,6 +57,10 @@ public class KnnQParser extends QParser {
     String denseVectorField = localParams.get(QueryParsing.F);
     String vectorToSearch = localParams.get(QueryParsing.V);
     int topK = localParams.getInt(TOP_K, DEFAULT_TOP_K);
+    float exactSearchRatio =
+        localParams.getFloat(
+            EXACT_SEARCH_RATIO, FilteredKnnVectorQuery.DEFAULT_EXACT_SEARCH_RATIO);
+    float oversample = localParams.getFloat(OVERSAMPLE, DEFAULT_OVERSAMPLE);
 
     if (denseVectorField == null || denseVectorField.isEmpty()) {
       throw new SolrException(
@@ -67,6 +72,12 @@ public class KnnQParser extends QParser {
           SolrException.ErrorCode.BAD_REQUEST, "the Dense Vector value 'v' to search is missing");
     }
 
+    if (!(oversample >= 1)) {
+      throw new SolrException(
+          SolrException.ErrorCode.BAD_REQUEST,
+          "the oversample factor must be at least 1, got: " + oversample);
+    }
+
     SchemaField schemaField = req.getCore().getLatestSchema().getField(denseVectorField);
     FieldType fieldType = schemaField.getType();
     if (!(fieldType instanceof DenseVectorField)) {
@@ -78,24 +89,26 @@ public class KnnQParser extends QParser {
     DenseVectorField denseVectorType = (DenseVectorField) fieldType;
 
     return denseVectorType.getKnnVectorQuery(
-        schemaField.getName(), vectorToSearch, topK, getFilterQuery());
+        schemaField.getName(),
+        vectorToSearch,
+        topK,
+        oversample,
+        getFilterQueries(),
+        exactSearchRatio);
   }
 
-  private Query getFilterQuery() throws SolrException, SyntaxError {
+  /**
+   * The filter queries of the request, that pre-filter the K nearest neighbors. They are resolved
+   * through the searcher at rewrite time, so that cached filters are reused.
+   */
+  private List<Query> getFilterQueries() throws SyntaxError {
     boolean isSubQuery = recurseCount != 0;
     if (!isFilter() && !isSubQuery) {
       String[] filterQueries = req.getParams().getParams(CommonParams.FQ);
       if (filterQueries != null && filterQueries.length != 0) {
-        try {
-          List<Query> filters = QueryUtils.parseFilterQueries(req);
-          SolrIndexSearcher.ProcessedFilter processedFilter =
-              req.getSearcher().getProcessedFilter(filters);
-          return processedFilter.filter;
-        } catch (IOException e) {
-          throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, e);
-        }
+        return QueryUtils.parseFilterQueries(req);
       }
     }
-    return null;
+    return List.of();
   }
 }
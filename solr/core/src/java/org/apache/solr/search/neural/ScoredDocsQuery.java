@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.neural;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import org.apache.lucene.index.IndexReaderContext;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryVisitor;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+
+/**
+ * Matches a fixed set of top level docs with precomputed scores, the result of a {@link
+ * FilteredKnnVectorQuery}. It can only be executed against the reader it was computed with.
+ */
+class ScoredDocsQuery extends Query {
+
+  private final Object contextIdentity;
+  private final int[] docs;
+  private final float[] scores;
+  private final int[] segmentStarts;
+
+  ScoredDocsQuery(IndexReaderContext topContext, ScoreDoc[] scoreDocs) {
+    this.contextIdentity = topContext.id();
+    final ScoreDoc[] sorted = scoreDocs.clone();
+    Arrays.sort(sorted, Comparator.comparingInt(scoreDoc -> scoreDoc.doc));
+    this.docs = new int[sorted.length];
+    this.scores = new float[sorted.length];
+    for (int i = 0; i < sorted.length; i++) {
+      docs[i] = sorted[i].doc;
+      scores[i] = sorted[i].score;
+    }
+    final List<LeafReaderContext> leaves = topContext.leaves();
+    this.segmentStarts = new int[leaves.size() + 1];
+    for (LeafReaderContext leaf : leaves) {
+      segmentStarts[leaf.ord] = findStart(leaf.docBase);
+    }
+    segmentStarts[leaves.size()] = docs.length;
+  }
+
+  private int findStart(int docBase) {
+    int index = Arrays.binarySearch(docs, docBase);
+    return index < 0 ? -1 - index : index;
+  }
+
+  @Override
+  public Weight createWeight(IndexSearcher searcher, ScoreMode scoreMode, float boost)
+      throws IOException {
+    if (searcher.getIndexReader().getContext().id() != contextIdentity) {
+      throw new IllegalStateException("This query was computed against a different reader");
+    }
+    return new Weight(this) {
+      @Override
+      public Explanation explain(LeafReaderContext context, int doc) throws IOException {
+        final int index =
+            Arrays.binarySearch(
+                docs,
+                segmentStarts[context.ord],
+                segmentStarts[context.ord + 1],
+                context.docBase + doc);
+        if (index < 0) {
+          return Explanation.noMatch("not in top docs");
+        }
+        return Explanation.match(scores[index] * boost, "within top docs");
+      }
+
+      @Override
+      public Scorer scorer(LeafReaderContext context) throws IOException {
+        final int lower = segmentStarts[context.ord];
+        final int upper = segmentStarts[context.ord + 1];
+        if (lower == upper) {
+          return null;
+        }
+        final DocIdSetIterator iterator =
+            new DocIdSetIterator() {
+              int index = lower - 1;
+
+              @Override
+              public int docID() {
+                if (index < lower) {
+                  return -1;
+                }
+                return index < upper ? docs[index] - context.docBase : NO_MORE_DOCS;
+              }
+
+              @Override
+              public int nextDoc() {
+                index++;
+                return docID();
+              }
+
+              @Override
+              public int advance(int target) throws IOException {
+                return slowAdvance(target);
+              }
+
+              @Override
+              public long cost() {
+                return upper - lower;
+              }
+            };
+        return new Scorer(this) {
+          @Override
+          public DocIdSetIterator iterator() {
+            return iterator;
+          }
+
+          @Override
+          public float getMaxScore(int upTo) {
+            float maxScore = 0;
+            for (int i = lower; i < upper; i++) {
+              maxScore = Math.max(maxScore, scores[i]);
+            }
+            return maxScore * boost;
+          }
+
+          @Override
+          public float score() {
+            final int doc = context.docBase + iterator.docID();
+            return scores[Arrays.binarySearch(docs, lower, upper, doc)] * boost;
+          }
+
+          @Override
+          public int docID() {
+            return iterator.docID();
+          }
+        };
+      }
+
+      @Override
+      public boolean isCacheable(LeafReaderContext ctx) {
+        return true;
+      }
+    };
+  }
+
+  @Override
+  public void visit(QueryVisitor visitor) {
+    visitor.visitLeaf(this);
+  }
+
+  @Override
+  public String toString(String field) {
+    return "ScoredDocsQuery[" + docs.length + " docs]";
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (!sameClassAs(other)) {
+      return false;
+    }
+    ScoredDocsQuery that = (ScoredDocsQuery) other;
+    return contextIdentity == that.contextIdentity
+        && Arrays.equals(docs, that.docs)
+        && Arrays.equals(scores, that.scores);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * classHash() + Arrays.hashCode(docs);
+  }
+}
@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.update;
+
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.metrics.QueryLoad;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.util.RefCounted;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Chooses the delay of time based auto commits between configured bounds, instead of always
+ * waiting the configured <code>maxTime</code>.
+ *
+ * <p>After each commit, the next delay is computed from the configured time:
+ *
+ * <ul>
+ *   <li>it is multiplied by the ratio between the indexing rate since the previous commit and its
+ *       moving average, within [0.5, 2]: bulk loads commit less often, while a trickle of updates
+ *       becomes visible sooner;
+ *   <li>it is multiplied by the ratio between the current query latency and its moving average
+ *       when queries got slower, so that commits back off under query load;
+ *   <li>it is at least twice the warming time of the last searcher, so that warming searchers
+ *       don't overlap.
+ * </ul>
+ *
+ * <p>When an auto commit is due while a searcher is still warming, it is postponed, as long as the
+ * first update it covers is not older than the maximum delay.
+ *
+ * @lucene.experimental
+ */
+public class AdaptiveCommitPolicy {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  /** Minimum ratio between the commit delay and the warming time of the last searcher */
+  static final double WARM_FACTOR = 2;
+
+  /** Weight of the last observation in the moving averages */
+  static final double AVERAGE_WEIGHT = 0.2;
+
+  static final double MIN_RATE_FACTOR = 0.5;
+  static final double MAX_RATE_FACTOR = 2;
+
+  private final long baseTime;
+  private final long minTime;
+  private final long maxTime;
+
+  private final LongSupplier warmTime;
+  private final DoubleSupplier queryLatency;
+  private final IntSupplier warmingSearchers;
+  private final LongSupplier nanoTime;
+
+  // guarded by this
+  private double averageIndexRate = -1;
+  private double averageQueryLatency = -1;
+  private volatile long lastWarmTime;
+
+  private final AtomicLong docsSinceCommit = new AtomicLong();
+  private volatile long lastCommitNanos;
+  private volatile long delay;
+
+  private final AtomicLong stretched = new AtomicLong();
+  private final AtomicLong advanced = new AtomicLong();
+  private final AtomicLong postponed = new AtomicLong();
+
+  /**
+   * @param baseTime the configured auto commit time, in ms
+   * @param minTime the minimum delay of a commit, in ms
+   * @param maxTime the maximum delay of a commit, in ms
+   * @param warmTime the warming time of the current searcher, in ms
+   * @param queryLatency recent mean query latency in ms, or a value &lt;= 0 if unknown
+   * @param warmingSearchers the number of searchers being warmed
+   */
+  public AdaptiveCommitPolicy(
+      long baseTime,
+      long minTime,
+      long maxTime,
+      LongSupplier warmTime,
+      DoubleSupplier queryLatency,
+      IntSupplier warmingSearchers) {
+    this(baseTime, minTime, maxTime, warmTime, queryLatency, warmingSearchers, System::nanoTime);
+  }
+
+  AdaptiveCommitPolicy(
+      long baseTime,
+      long minTime,
+      long maxTime,
+      LongSupplier warmTime,
+      DoubleSupplier queryLatency,
+      IntSupplier warmingSearchers,
+      LongSupplier nanoTime) {
+    if (minTime > baseTime || maxTime < baseTime) {
+      throw new IllegalArgumentException(
+          "Auto commit times must satisfy adaptiveMinTime <= maxTime <= adaptiveMaxTime: "
+              + minTime
+              + ", "
+              + baseTime
+              + ", "
+              + maxTime);
+    }
+    this.baseTime = baseTime;
+    this.minTime = minTime;
+    this.maxTime = maxTime;
+    this.warmTime = warmTime;
+    this.queryLatency = queryLatency;
+    this.warmingSearchers = warmingSearchers;
+    this.nanoTime = nanoTime;
+    this.delay = baseTime;
+    this.lastCommitNanos = nanoTime.getAsLong();
+  }
+
+  /** Creates a policy reading the warming and query metrics of the given core. */
+  public static AdaptiveCommitPolicy forCore(
+      SolrCore core, long baseTime, long minTime, long maxTime) {
+    return new AdaptiveCommitPolicy(
+        baseTime,
+        minTime,
+        maxTime,
+        () -> {
+          RefCounted<SolrIndexSearcher> searcher = core.getRegisteredSearcher();
+          if (searcher == null) {
+            return 0L;
+          }
+          try {
+            return searcher.get().getWarmupTime();
+          } finally {
+            searcher.decref();
+          }
+        },
+        () ->
+            QueryLoad.of(core.getSolrMetricsContext().getMetricRegistry())
+                .getMeanLatencyMillis(),
+        core::getOnDeckSearchers);
+  }
+
+  /** Returns the delay of the next time based auto commit, in ms. */
+  public long getDelay() {
+    return delay;
+  }
+
+  /** Indicate that a document has been added or deleted */
+  public void addedDocument() {
+    docsSinceCommit.incrementAndGet();
+  }
+
+  /**
+   * Returns the additional delay of a commit that is due, or 0 if it should happen now.
+   *
+   * @param pendingSinceNanos when the first update that the commit covers was made
+   */
+  public long postponeDelay(long pendingSinceNanos) {
+    if (warmingSearchers.getAsInt() == 0) {
+      return 0;
+    }
+    long remaining =
+        maxTime - TimeUnit.NANOSECONDS.toMillis(nanoTime.getAsLong() - pendingSinceNanos);
+    if (remaining <= 0) {
+      return 0;
+    }
+    postponed.incrementAndGet();
+    // check again after a fraction of the warming time
+    long retry = Math.min(remaining, Math.max(minTime, lastWarmTime / 4));
+    log.debug("Postponing auto commit by {}ms since a searcher is warming", retry);
+    return retry;
+  }
+
+  /** Inform the policy that a commit has occurred, and compute the next delay */
+  public synchronized void didCommit() {
+    long now = nanoTime.getAsLong();
+    long docs = docsSinceCommit.getAndSet(0);
+    double intervalMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(now - lastCommitNanos));
+    lastCommitNanos = now;
+
+    double indexRate = docs / intervalMs;
+    double rateFactor = 1;
+    if (averageIndexRate > 0) {
+      rateFactor =
+          Math.max(MIN_RATE_FACTOR, Math.min(MAX_RATE_FACTOR, indexRate / averageIndexRate));
+    }
+    averageIndexRate = average(averageIndexRate, indexRate);
+
+    double latency = queryLatency.getAsDouble();
+    double latencyFactor = 1;
+    if (latency > 0) {
+      if (averageQueryLatency > 0) {
+        latencyFactor = Math.max(1, latency / averageQueryLatency);
+      }
+      averageQueryLatency = average(averageQueryLatency, latency);
+    }
+
+    long next = Math.round(baseTime * rateFactor * latencyFactor);
+    lastWarmTime = warmTime.getAsLong();
+    next = Math.max(next, Math.round(WARM_FACTOR * lastWarmTime));
+    next = Math.max(minTime, Math.min(maxTime, next));
+    if (next > baseTime) {
+      stretched.incrementAndGet();
+    } else if (next < baseTime) {
+      advanced.incrementAndGet();
+    }
+    if (log.isDebugEnabled()) {
+      log.debug(
+          "Next auto commit in {}ms (indexRate={}/s, rateFactor={}, latencyFactor={})",
+          next,
+          indexRate * 1000,
+          rateFactor,
+          latencyFactor);
+    }
+    delay = next;
+  }
+
+  private static double average(double average, double value) {
+    return average < 0 ? value : average + AVERAGE_WEIGHT * (value - average);
+  }
+
+  /** Number of commits scheduled later than the configured time */
+  public long getStretchedCount() {
+    return stretched.get();
+  }
+
+  /** Number of commits scheduled earlier than the configured time */
+  public long getAdvancedCount() {
+    return advanced.get();
+  }
+
+  /** Number of times a due commit was postponed because a searcher was warming */
+  public long getPostponedCount() {
+    return postponed.get();
+  }
+
+  public long getMinTime() {
+    return minTime;
+  }
+
+  public long getMaxTime() {
+    return maxTime;
+  }
+
+  @Override
+  public String toString() {
+    return "adaptive between " + minTime + "ms and " + maxTime + "ms";
+  }
+}
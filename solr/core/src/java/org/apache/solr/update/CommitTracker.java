@@ -62,6 +62,10 @@ public final class CommitTracker implements Runnable {
   private final ScheduledExecutorService scheduler =
       Executors.newScheduledThreadPool(1, new SolrNamedThreadFactory("commitScheduler"));
   private ScheduledFuture<?> pending;
+  // whether the pending commit was scheduled by the adaptive policy, and may be postponed
+  private boolean pendingAdaptive;
+  // when the oldest update covered by the pending commit was scheduled
+  private long pendingSinceNanos;
 
   // state
   private AtomicLong docsSinceCommit = new AtomicLong(0);
@@ -75,6 +79,8 @@ public final class CommitTracker implements Runnable {
 
   private String name;
 
+  private final AdaptiveCommitPolicy adaptivePolicy;
+
   public CommitTracker(
       String name,
       SolrCore core,
@@ -83,6 +89,30 @@ public final class CommitTracker implements Runnable {
       long tLogFileSizeUpperBound,
       boolean openSearcher,
       boolean softCommit) {
+    this(
+        name,
+        core,
+        docsUpperBound,
+        timeUpperBound,
+        tLogFileSizeUpperBound,
+        openSearcher,
+        softCommit,
+        null);
+  }
+
+  /**
+   * @param adaptivePolicy if not null, chooses the delay of time based commits instead of
+   *     timeUpperBound
+   */
+  public CommitTracker(
+      String name,
+      SolrCore core,
+      int docsUpperBound,
+      int timeUpperBound,
+      long tLogFileSizeUpperBound,
+      boolean openSearcher,
+      boolean softCommit,
+      AdaptiveCommitPolicy adaptivePolicy) {
     this.core = core;
     this.name = name;
     pending = null;
@@ -93,6 +123,7 @@ public final class CommitTracker implements Runnable {
 
     this.softCommit = softCommit;
     this.openSearcher = openSearcher;
+    this.adaptivePolicy = timeUpperBound > 0 ? adaptivePolicy : null;
 
     log.info("{} AutoCommit: {}", name, this);
   }
@@ -111,7 +142,7 @@ public final class CommitTracker implements Runnable {
 
   /** schedule individual commits */
   public void scheduleCommitWithin(long commitMaxTime) {
-    _scheduleCommitWithin(commitMaxTime);
+    _scheduleCommitWithin(commitMaxTime, false);
   }
 
   public void cancelPendingCommit() {
@@ -126,14 +157,22 @@ public final class CommitTracker implements Runnable {
   }
 
   private void _scheduleCommitWithinIfNeeded(long commitWithin) {
+    if (adaptivePolicy != null) {
+      adaptivePolicy.addedDocument();
+      if (commitWithin <= 0) {
+        _scheduleCommitWithin(adaptivePolicy.getDelay(), true);
+        return;
+      }
+    }
+
     long ctime = (commitWithin > 0) ? commitWithin : timeUpperBound;
 
     if (ctime > 0) {
-      _scheduleCommitWithin(ctime);
+      _scheduleCommitWithin(ctime, false);
     }
   }
 
-  private void _scheduleCommitWithin(long commitMaxTime) {
+  private void _scheduleCommitWithin(long commitMaxTime, boolean adaptive) {
     if (commitMaxTime <= 0) return;
     synchronized (this) {
       if (pending != null && pending.getDelay(TimeUnit.MILLISECONDS) <= commitMaxTime) {
@@ -161,8 +200,14 @@ public final class CommitTracker implements Runnable {
 
       // log.info("###scheduling for " + commitMaxTime);
 
+      if (pending == null) {
+        // a rescheduled commit still covers the updates of the one it replaces
+        pendingSinceNanos = System.nanoTime();
+      }
+
       // schedule our new commit
       pending = scheduler.schedule(this, commitMaxTime, TimeUnit.MILLISECONDS);
+      pendingAdaptive = adaptive;
     }
   }
 
@@ -204,7 +249,7 @@ public final class CommitTracker implements Runnable {
       if (docs == docsUpperBound + 1) {
         // reset the count here instead of run() so we don't miss other documents being added
         docsSinceCommit.set(0);
-        _scheduleCommitWithin(DOC_COMMIT_DELAY_MS);
+        _scheduleCommitWithin(DOC_COMMIT_DELAY_MS, false);
       }
     }
   }
@@ -233,12 +278,16 @@ public final class CommitTracker implements Runnable {
   private void _scheduleMaxSizeTriggeredCommitIfNeeded(LongSupplier currentTlogSize) {
     if (tLogFileSizeUpperBound > 0 && currentTlogSize.getAsLong() > tLogFileSizeUpperBound) {
       docsSinceCommit.set(0);
-      _scheduleCommitWithin(SIZE_COMMIT_DELAY_MS);
+      _scheduleCommitWithin(SIZE_COMMIT_DELAY_MS, false);
     }
   }
 
   /** Inform tracker that a commit has occurred */
-  public void didCommit() {}
+  public void didCommit() {
+    if (adaptivePolicy != null) {
+      adaptivePolicy.didCommit();
+    }
+  }
 
   /** Inform tracker that a rollback has occurred, cancel any pending commits */
   public void didRollback() {
@@ -255,8 +304,16 @@ public final class CommitTracker implements Runnable {
   @Override
   public void run() {
     synchronized (this) {
+      if (pendingAdaptive) {
+        long postponeDelay = adaptivePolicy.postponeDelay(pendingSinceNanos);
+        if (postponeDelay > 0) {
+          pending = scheduler.schedule(this, postponeDelay, TimeUnit.MILLISECONDS);
+          return;
+        }
+      }
       // log.info("###start commit. pending=null");
       pending = null; // allow a new commit to be scheduled
+      pendingAdaptive = false;
     }
 
     MDCLoggingContext.setCore(core);
@@ -295,6 +352,7 @@ public final class CommitTracker implements Runnable {
   public String toString() {
     if (timeUpperBound > 0 || docsUpperBound > 0 || tLogFileSizeUpperBound > 0) {
       return (timeUpperBound > 0 ? ("if uncommitted for " + timeUpperBound + "ms; ") : "")
+          + (adaptivePolicy != null ? (adaptivePolicy + "; ") : "")
           + (docsUpperBound > 0 ? ("if " + docsUpperBound + " uncommitted docs; ") : "")
           + (tLogFileSizeUpperBound > 0
               ? String.format(
@@ -309,6 +367,11 @@ public final class CommitTracker implements Runnable {
     return timeUpperBound;
   }
 
+  /** The policy choosing the delay of time based commits, or null if they use a fixed delay */
+  public AdaptiveCommitPolicy getAdaptivePolicy() {
+    return adaptivePolicy;
+  }
+
   int getDocsUpperBound() {
     return docsUpperBound;
   }
@@ -146,7 +146,8 @@ public class DirectUpdateHandler2 extends UpdateHandler
             softCommitTimeUpperBound,
             NO_FILE_SIZE_UPPER_BOUND_PLACEHOLDER,
             true,
-            true);
+            true,
+            newAdaptiveCommitPolicy(core, updateHandlerInfo));
 
     commitWithinSoftCommit = updateHandlerInfo.commitWithinSoftCommit;
 
@@ -158,6 +159,21 @@ public class DirectUpdateHandler2 extends UpdateHandler
     }
   }
 
+  private static AdaptiveCommitPolicy newAdaptiveCommitPolicy(
+      SolrCore core, UpdateHandlerInfo updateHandlerInfo) {
+    int maxTime = updateHandlerInfo.autoSoftCommmitMaxTime;
+    int minTime = updateHandlerInfo.autoSoftCommitAdaptiveMinTime;
+    int adaptiveMaxTime = updateHandlerInfo.autoSoftCommitAdaptiveMaxTime;
+    if (maxTime <= 0 || (minTime < 0 && adaptiveMaxTime < 0)) {
+      return null;
+    }
+    return AdaptiveCommitPolicy.forCore(
+        core,
+        maxTime,
+        minTime < 0 ? maxTime : minTime,
+        adaptiveMaxTime < 0 ? maxTime : adaptiveMaxTime);
+  }
+
   public DirectUpdateHandler2(SolrCore core, UpdateHandler updateHandler) {
     super(core, updateHandler.getUpdateLog());
     solrCoreState = core.getSolrCoreState();
@@ -186,7 +202,8 @@ public class DirectUpdateHandler2 extends UpdateHandler
             softCommitTimeUpperBound,
             NO_FILE_SIZE_UPPER_BOUND_PLACEHOLDER,
             updateHandlerInfo.openSearcher,
-            true);
+            true,
+            newAdaptiveCommitPolicy(core, updateHandlerInfo));
 
     commitWithinSoftCommit = updateHandlerInfo.commitWithinSoftCommit;
 
@@ -259,6 +276,33 @@ public class DirectUpdateHandler2 extends UpdateHandler
           getCategory().toString(),
           scope);
     }
+    AdaptiveCommitPolicy adaptivePolicy = softCommitTracker.getAdaptivePolicy();
+    if (adaptivePolicy != null) {
+      solrMetricsContext.gauge(
+          () -> adaptivePolicy.getDelay(),
+          true,
+          "softAutoCommitAdaptiveTime",
+          getCategory().toString(),
+          scope);
+      solrMetricsContext.gauge(
+          () -> adaptivePolicy.getStretchedCount(),
+          true,
+          "softAutoCommitsStretched",
+          getCategory().toString(),
+          scope);
+      solrMetricsContext.gauge(
+          () -> adaptivePolicy.getAdvancedCount(),
+          true,
+          "softAutoCommitsAdvanced",
+          getCategory().toString(),
+          scope);
+      solrMetricsContext.gauge(
+          () -> adaptivePolicy.getPostponedCount(),
+          true,
+          "softAutoCommitsPostponed",
+          getCategory().toString(),
+          scope);
+    }
     optimizeCommands = solrMetricsContext.meter("optimizes", getCategory().toString(), scope);
     rollbackCommands = solrMetricsContext.meter("rollbacks", getCategory().toString(), scope);
     splitCommands = solrMetricsContext.meter("splits", getCategory().toString(), scope);
@@ -310,31 +354,121 @@ public class DirectUpdateHandler2 extends UpdateHandler
     TestInjection.injectDirectUpdateLatch();
     try {
       return addDoc0(cmd);
-    } catch (SolrException e) {
-      throw e;
-    } catch (AlreadyClosedException e) {
+    } catch (RuntimeException e) {
+      throw toAddDocException(cmd, e);
+    }
+  }
+
+  /** Decorates an exception thrown while adding a document with information about it. */
+  private static SolrException toAddDocException(AddUpdateCommand cmd, RuntimeException e) {
+    if (e instanceof SolrException) {
+      return (SolrException) e;
+    } else if (e instanceof AlreadyClosedException) {
       String errorMsg =
           "Server error writing document id " + cmd.getPrintableId() + " to the index.";
-      throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, errorMsg, e);
-    } catch (IllegalArgumentException iae) {
+      return new SolrException(SolrException.ErrorCode.SERVER_ERROR, errorMsg, e);
+    } else if (e instanceof IllegalArgumentException) {
       String errorDetails =
-          (iae.getCause() instanceof BytesRefHash.MaxBytesLengthExceededException
+          (e.getCause() instanceof BytesRefHash.MaxBytesLengthExceededException
               ? ". Perhaps the document has an indexed string field (solr.StrField) which is too large"
               : "");
       String errorMsg =
           "Exception writing document id "
               + cmd.getPrintableId()
               + " to the index; possible analysis error: "
-              + iae.getMessage()
+              + e.getMessage()
               + errorDetails;
-      throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, errorMsg, iae);
-    } catch (RuntimeException t) {
+      return new SolrException(SolrException.ErrorCode.BAD_REQUEST, errorMsg, e);
+    } else {
       String errorMsg =
           "Exception writing document id "
               + cmd.getPrintableId()
               + " to the index; possible analysis error.";
-      throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, errorMsg, t);
+      return new SolrException(SolrException.ErrorCode.BAD_REQUEST, errorMsg, e);
+    }
+  }
+
+  /**
+   * Adds the documents with a single reference to the index writer, and logs them to the update log
+   * at once. Commands that need special handling (reordered delete by queries, buffering for TLOG
+   * replicas) are still added one by one, in order.
+   */
+  @Override
+  public int addDocs(List<AddUpdateCommand> cmds) throws IOException {
+    TestInjection.injectDirectUpdateLatch();
+    int rc = 0;
+    int start = 0;
+    for (int i = 0; i < cmds.size(); i++) {
+      AddUpdateCommand cmd = cmds.get(i);
+      if (!canAddInBatch(cmd)) {
+        rc += addDocBatch(cmds.subList(start, i));
+        try {
+          rc += addDoc0(cmd);
+        } catch (RuntimeException e) {
+          throw toAddDocException(cmd, e);
+        }
+        start = i + 1;
+      }
+    }
+    return rc + addDocBatch(cmds.subList(start, cmds.size()));
+  }
+
+  private boolean canAddInBatch(AddUpdateCommand cmd) {
+    if ((cmd.getFlags() & UpdateCommand.IGNORE_INDEXWRITER) != 0) {
+      return false;
+    }
+    if (idField == null || !cmd.overwrite) {
+      return true;
+    }
+    // should always be true on a leader
+    return ulog == null || cmd.version <= 0 || ulog.getDBQNewer(cmd.version) == null;
+  }
+
+  /** Adds the documents that {@link #canAddInBatch} accepted. */
+  private int addDocBatch(List<AddUpdateCommand> cmds) throws IOException {
+    if (cmds.isEmpty()) {
+      return 0;
+    }
+    int added = 0;
+    RefCounted<IndexWriter> iw = solrCoreState.getIndexWriter(core);
+    try {
+      IndexWriter writer = iw.get();
+      for (AddUpdateCommand cmd : cmds) {
+        addCommands.increment();
+        addCommandsCumulative.mark();
+        try {
+          if (idField == null) {
+            cmd.overwrite = false;
+          }
+          if (cmd.overwrite) {
+            updateDocOrDocValues(cmd, writer);
+          } else {
+            writer.addDocuments(cmd.makeLuceneDocs());
+          }
+        } catch (RuntimeException e) {
+          numErrors.increment();
+          numErrorsCumulative.mark();
+          throw toAddDocException(cmd, e);
+        } catch (IOException e) {
+          numErrors.increment();
+          numErrorsCumulative.mark();
+          throw e;
+        }
+        added++;
+      }
+    } finally {
+      try {
+        // like addDoc, only log what was successfully added to the index
+        if (ulog != null && added > 0) ulog.add(cmds.subList(0, added));
+      } finally {
+        iw.decref();
+      }
+      for (int i = 0; i < added; i++) {
+        updateAddTrackers(cmds.get(i));
+        numDocsPending.increment();
+      }
     }
+    return added;
   }
 
   /**
@@ -378,15 +512,7 @@ public class DirectUpdateHandler2 extends UpdateHandler
         allowDuplicateUpdate(cmd);
       }
 
-      if ((cmd.getFlags() & UpdateCommand.IGNORE_AUTOCOMMIT) == 0) {
-        if (commitWithinSoftCommit) {
-          commitTracker.addedDocument(-1, this::getCurrentTLogSize);
-          softCommitTracker.addedDocument(cmd.commitWithin);
-        } else {
-          softCommitTracker.addedDocument(-1);
-          commitTracker.addedDocument(cmd.commitWithin, this::getCurrentTLogSize);
-        }
-      }
+      updateAddTrackers(cmd);
 
       rc = 1;
     } finally {
@@ -471,6 +597,18 @@ public class DirectUpdateHandler2 extends UpdateHandler
     }
   }
 
+  private void updateAddTrackers(AddUpdateCommand cmd) {
+    if ((cmd.getFlags() & UpdateCommand.IGNORE_AUTOCOMMIT) == 0) {
+      if (commitWithinSoftCommit) {
+        commitTracker.addedDocument(-1, this::getCurrentTLogSize);
+        softCommitTracker.addedDocument(cmd.commitWithin);
+      } else {
+        softCommitTracker.addedDocument(-1);
+        commitTracker.addedDocument(cmd.commitWithin, this::getCurrentTLogSize);
+      }
+    }
+  }
+
   private void updateDeleteTrackers(DeleteUpdateCommand cmd) {
     if ((cmd.getFlags() & UpdateCommand.IGNORE_AUTOCOMMIT) == 0) {
       if (commitWithinSoftCommit) {
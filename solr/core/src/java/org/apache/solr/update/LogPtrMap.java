@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.update;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefHash;
+
+/**
+ * Maps the indexed ids of updates to their {@link UpdateLog.LogPtr} in the transaction log, without
+ * keeping an object per update: the ids are copied in the byte blocks of an open addressing {@link
+ * BytesRefHash}, and the pointers and versions are stored in paged long arrays indexed by the id
+ * ordinal. {@link #get} returns a new {@link UpdateLog.LogPtr} for the latest update of an id.
+ *
+ * <p>This is not thread safe, callers synchronize on the {@link UpdateLog}.
+ *
+ * @lucene.internal
+ */
+public class LogPtrMap {
+  private static final int PAGE_SHIFT = 12;
+  private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+  private static final int PAGE_MASK = PAGE_SIZE - 1;
+  // pointer, version and previousPointer of each entry
+  private static final int LONGS_PER_ENTRY = 3;
+
+  private final BytesRefHash ids = new BytesRefHash();
+  private long[][] pages = new long[0][];
+
+  /** Sets the pointer of the given id, replacing any previous pointer. */
+  public void put(BytesRef indexedId, long pointer, long version, long previousPointer) {
+    int ord = ids.add(indexedId);
+    if (ord < 0) {
+      ord = -ord - 1;
+    }
+    int page = ord >>> PAGE_SHIFT;
+    if (page >= pages.length) {
+      pages = ArrayUtil.growExact(pages, page + 1);
+      pages[page] = new long[PAGE_SIZE * LONGS_PER_ENTRY];
+    }
+    int offset = (ord & PAGE_MASK) * LONGS_PER_ENTRY;
+    pages[page][offset] = pointer;
+    pages[page][offset + 1] = version;
+    pages[page][offset + 2] = previousPointer;
+  }
+
+  public void put(BytesRef indexedId, UpdateLog.LogPtr ptr) {
+    put(indexedId, ptr.pointer, ptr.version, ptr.previousPointer);
+  }
+
+  /** Returns the pointer of the latest update of the given id, or null if there is none. */
+  public UpdateLog.LogPtr get(BytesRef indexedId) {
+    int ord = ids.find(indexedId);
+    if (ord < 0) {
+      return null;
+    }
+    long[] page = pages[ord >>> PAGE_SHIFT];
+    int offset = (ord & PAGE_MASK) * LONGS_PER_ENTRY;
+    return new UpdateLog.LogPtr(page[offset], page[offset + 1], page[offset + 2]);
+  }
+
+  public int size() {
+    return ids.size();
+  }
+
+  public boolean isEmpty() {
+    return ids.size() == 0;
+  }
+
+  /** Removes all entries, and releases the memory they used. */
+  public void clear() {
+    ids.clear();
+    pages = new long[0][];
+  }
+
+  @Override
+  public String toString() {
+    return "LogPtrMap(size=" + size() + ")";
+  }
+}
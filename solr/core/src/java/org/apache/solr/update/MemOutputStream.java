@@ -43,6 +43,18 @@ public class MemOutputStream extends FastOutputStream {
     }
   }
 
+  /** Returns a copy of everything written to this stream */
+  public byte[] toByteArray() {
+    byte[] bytes = new byte[Math.toIntExact(size())];
+    int offset = 0;
+    for (byte[] buffer : buffers) {
+      System.arraycopy(buffer, 0, bytes, offset, buffer.length);
+      offset += buffer.length;
+    }
+    System.arraycopy(buf, 0, bytes, offset, pos);
+    return bytes;
+  }
+
   public void writeAll(FastOutputStream fos) throws IOException {
     for (byte[] buffer : buffers) {
       fos.write(buffer);
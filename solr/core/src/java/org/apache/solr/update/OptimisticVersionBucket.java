@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.update;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+import org.apache.solr.common.SolrException;
+
+/**
+ * A version bucket that is locked with a compare-and-set on a state word rather than the intrinsic
+ * object monitor or a {@link java.util.concurrent.locks.ReentrantLock}. An uncontended lock is a
+ * single CAS, and a contended one spins for a while before blocking; the spin budget adapts to how
+ * long the bucket is usually held. Like {@link TimedVersionBucket}, it fails with an exception if
+ * the lock can't be obtained within <code>lockTimeoutMs</code> (if greater than 0).
+ *
+ * <p>Like the locks it replaces, it is reentrant: a thread holding the bucket can lock it again,
+ * as DistributedUpdateProcessor does when an in-place update turns into a delete.
+ *
+ * @lucene.internal
+ */
+public class OptimisticVersionBucket extends VersionBucket {
+  private static final VarHandle STATE;
+
+  static {
+    try {
+      STATE =
+          MethodHandles.lookup().findVarHandle(OptimisticVersionBucket.class, "state", int.class);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private static final int MIN_SPINS = 16;
+  private static final int MAX_SPINS = 1 << 12;
+
+  // 1 while locked
+  private volatile int state;
+  // the thread holding the lock, written before releasing state and after acquiring it
+  private Thread owner;
+  // how many times the owner locked the bucket, only accessed by the owner
+  private int holds;
+  // threads blocked in lock, written while synchronized on this
+  private volatile int lockWaiters;
+  // threads in awaitNanos, guarded by this
+  private int conditionWaiters;
+  // how many times to retry before blocking, a hint so racy updates are fine
+  private int spins = MIN_SPINS;
+
+  @Override
+  public <T, R> R runWithLock(int lockTimeoutMs, CheckedFunction<T, R> function)
+      throws IOException {
+    if (tryLock(lockTimeoutMs)) {
+      return function.apply();
+    } else {
+      throw new SolrException(
+          SolrException.ErrorCode.SERVER_ERROR,
+          "Unable to get version bucket lock in " + lockTimeoutMs + " ms");
+    }
+  }
+
+  @Override
+  public void unlock() {
+    if (--holds > 0) {
+      return;
+    }
+    owner = null;
+    state = 0;
+    // lockWaiters is read after state is written, and waiters write lockWaiters before trying to
+    // get the lock, so either they see the lock free or we see them waiting
+    if (lockWaiters != 0) {
+      synchronized (this) {
+        if (conditionWaiters == 0) {
+          notify();
+        } else {
+          notifyAll();
+        }
+      }
+    }
+  }
+
+  @Override
+  public void signalAll() {
+    synchronized (this) {
+      notifyAll();
+    }
+  }
+
+  /** Releases the lock, waits to be signalled or for the timeout, and gets the lock again. */
+  @Override
+  public void awaitNanos(long nanosTimeout) {
+    if (nanosTimeout <= 0) {
+      return;
+    }
+    // all the holds are released while waiting, and restored once the lock is got back
+    final int savedHolds = holds;
+    holds = 1;
+    try {
+      synchronized (this) {
+        conditionWaiters++;
+        try {
+          // signalAll needs the lock and then the monitor, so it can't run until we wait
+          unlock();
+          TimeUnit.NANOSECONDS.timedWait(this, nanosTimeout);
+        } finally {
+          conditionWaiters--;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } finally {
+      // callers unlock when done, even if this fails
+      tryLock(0);
+      holds = savedHolds;
+    }
+  }
+
+  protected boolean tryLock(int lockTimeoutMs) {
+    final Thread current = Thread.currentThread();
+    if (owner == current) {
+      holds++;
+      return true;
+    }
+    if (STATE.compareAndSet(this, 0, 1)) {
+      return acquired(current);
+    }
+    int budget = spins;
+    for (int i = 0; i < budget; i++) {
+      Thread.onSpinWait();
+      if (state == 0 && STATE.compareAndSet(this, 0, 1)) {
+        spins = Math.min(MAX_SPINS, budget << 1);
+        return acquired(current);
+      }
+    }
+    spins = Math.max(MIN_SPINS, budget >> 1);
+    return awaitLock(lockTimeoutMs) && acquired(current);
+  }
+
+  private boolean acquired(Thread current) {
+    owner = current;
+    holds = 1;
+    return true;
+  }
+
+  // like the intrinsic monitor, waiting for the lock isn't interruptible
+  private synchronized boolean awaitLock(int lockTimeoutMs) {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lockTimeoutMs);
+    boolean interrupted = false;
+    lockWaiters++;
+    try {
+      while (!STATE.compareAndSet(this, 0, 1)) {
+        try {
+          if (lockTimeoutMs > 0) {
+            long timeLeft = deadline - System.nanoTime();
+            if (timeLeft <= 0) {
+              return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, timeLeft);
+          } else {
+            wait();
+          }
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      return true;
+    } finally {
+      lockWaiters--;
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
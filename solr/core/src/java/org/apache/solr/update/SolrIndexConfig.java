@@ -42,6 +42,7 @@ import org.apache.solr.core.SolrResourceLoader;
 import org.apache.solr.index.DefaultMergePolicyFactory;
 import org.apache.solr.index.MergePolicyFactory;
 import org.apache.solr.index.MergePolicyFactoryArgs;
+import org.apache.solr.index.QueryLoadAwareMergeScheduler;
 import org.apache.solr.index.SortingMergePolicy;
 import org.apache.solr.schema.IndexSchema;
 import org.apache.solr.util.SolrPluginUtils;
@@ -261,7 +262,7 @@ public class SolrIndexConfig implements MapSerializable {
     iwc.setSimilarity(schema.getSimilarity());
     MergePolicy mergePolicy = buildMergePolicy(core.getResourceLoader(), schema);
     iwc.setMergePolicy(mergePolicy);
-    MergeScheduler mergeScheduler = buildMergeScheduler(core.getResourceLoader());
+    MergeScheduler mergeScheduler = buildMergeScheduler(core);
     iwc.setMergeScheduler(mergeScheduler);
     iwc.setInfoStream(infoStream);
 
@@ -317,12 +318,16 @@ public class SolrIndexConfig implements MapSerializable {
     return mpf.getMergePolicy();
   }
 
-  private MergeScheduler buildMergeScheduler(SolrResourceLoader resourceLoader) {
+  private MergeScheduler buildMergeScheduler(SolrCore core) {
     String msClassName =
         mergeSchedulerInfo == null
             ? SolrIndexConfig.DEFAULT_MERGE_SCHEDULER_CLASSNAME
             : mergeSchedulerInfo.className;
-    MergeScheduler scheduler = resourceLoader.newInstance(msClassName, MergeScheduler.class);
+    MergeScheduler scheduler =
+        core.getResourceLoader().newInstance(msClassName, MergeScheduler.class);
+    if (scheduler instanceof QueryLoadAwareMergeScheduler) {
+      ((QueryLoadAwareMergeScheduler) scheduler).setCore(core);
+    }
 
     if (mergeSchedulerInfo != null) {
       // LUCENE-5080: these two setters are removed, so we have to invoke setMaxMergesAndThreads
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.update;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The lock that {@link VersionInfo} uses to block updates during commits, for many concurrent
+ * updates. A read lock of a {@link java.util.concurrent.locks.ReentrantReadWriteLock} updates a
+ * single state shared by all the updating threads, which becomes a point of contention. Here each
+ * thread counts its updates in one of several stripes of a long array, on separate cache lines, so
+ * updates only contend when a commit blocks them.
+ *
+ * <p>Like a read lock, {@link #lockForUpdate} is reentrant, and can be called by the thread that
+ * blocks updates. Updates can't be blocked by a thread that holds the lock for update.
+ *
+ * @lucene.internal
+ */
+public class StripedUpdateLock {
+  // longs between two stripes, so that they are on different cache lines
+  private static final int STRIPE_SPACING = 8;
+
+  private static final AtomicInteger nextStripe = new AtomicInteger();
+
+  private final AtomicLongArray updates;
+  private final int stripeMask;
+  // holds the stripe of the thread and how many times it holds the lock for update
+  private final ThreadLocal<int[]> threadState;
+  private final ReentrantLock blockLock = new ReentrantLock(true);
+  private volatile Thread blockingThread;
+
+  public StripedUpdateLock() {
+    this(Runtime.getRuntime().availableProcessors() * 2);
+  }
+
+  public StripedUpdateLock(int numStripes) {
+    int stripes = Integer.highestOneBit(Math.max(1, numStripes - 1)) << 1;
+    updates = new AtomicLongArray(stripes * STRIPE_SPACING);
+    stripeMask = stripes - 1;
+    threadState =
+        ThreadLocal.withInitial(
+            () -> new int[] {(nextStripe.getAndIncrement() & stripeMask) * STRIPE_SPACING, 0});
+  }
+
+  public void lockForUpdate() {
+    int[] state = threadState.get();
+    int stripe = state[0];
+    if (state[1] > 0 || blockingThread == Thread.currentThread()) {
+      // reentrant, updates can't be blocked until this thread is done
+      updates.getAndIncrement(stripe);
+      state[1]++;
+      return;
+    }
+    while (true) {
+      updates.getAndIncrement(stripe);
+      if (blockingThread == null) {
+        state[1]++;
+        return;
+      }
+      // let the blocking thread go first
+      unlockStripe(stripe);
+      blockLock.lock();
+      blockLock.unlock();
+    }
+  }
+
+  public void unlockForUpdate() {
+    int[] state = threadState.get();
+    state[1]--;
+    unlockStripe(state[0]);
+  }
+
+  private void unlockStripe(int stripe) {
+    updates.getAndDecrement(stripe);
+    Thread blocking = blockingThread;
+    if (blocking != null) {
+      LockSupport.unpark(blocking);
+    }
+  }
+
+  /** Waits for the current updates to finish, and blocks new ones until {@link #unblockUpdates}. */
+  public void blockUpdates() {
+    blockLock.lock();
+    if (blockLock.getHoldCount() > 1) {
+      return;
+    }
+    Thread current = Thread.currentThread();
+    blockingThread = current;
+    // updates increment their stripe before checking blockingThread, so the ones that didn't see
+    // it are counted here
+    while (pendingUpdates() != 0) {
+      LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(1));
+    }
+  }
+
+  public void unblockUpdates() {
+    if (blockLock.getHoldCount() == 1) {
+      blockingThread = null;
+    }
+    blockLock.unlock();
+  }
+
+  private long pendingUpdates() {
+    long pending = 0;
+    for (int i = 0; i < updates.length(); i += STRIPE_SPACING) {
+      pending += updates.get(i);
+    }
+    return pending;
+  }
+}
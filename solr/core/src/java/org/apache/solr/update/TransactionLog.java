@@ -33,10 +33,17 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.ByteBuffersDataOutput;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.compress.LZ4.FastCompressionHashTable;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.util.CollectionUtil;
@@ -87,6 +94,16 @@ public class TransactionLog implements Closeable {
   protected Map<String, Integer> globalStringMap = new HashMap<>();
   protected List<String> globalStringList = new ArrayList<>();
 
+  // compression of the add records, from the header for existing logs
+  protected volatile Compression compression = Compression.NONE;
+
+  // group sync state, guarded by syncLock
+  private final Object syncLock = new Object();
+  private boolean syncing;
+  private long startedSyncs;
+  private long completedSyncs;
+  private int pendingSyncs;
+
   // write a BytesRef as a byte array
   protected static final JavaBinCodec.ObjectResolver resolver =
       new JavaBinCodec.ObjectResolver() {
@@ -112,6 +129,93 @@ public class TransactionLog implements Closeable {
   protected static final ChannelInputStreamOpener CHANNEL_INPUT_STREAM_OPENER =
       ChannelFastInputStream::new;
 
+  /**
+   * Compression of the documents of add records. A compressed record is a byte array instead of a
+   * list: its first byte identifies the compression, followed by the length of the uncompressed
+   * record and the compressed data. Logs containing compressed records have version 2 in their
+   * header, and are not readable by older versions.
+   */
+  public enum Compression {
+    NONE,
+    LZ4,
+    DEFLATE;
+
+    /** Records smaller than this aren't worth compressing */
+    static final int MIN_COMPRESSED_RECORD_SIZE = 128;
+
+    public static Compression get(String name) {
+      if (name == null) {
+        return NONE;
+      }
+      try {
+        return valueOf(name.toUpperCase(Locale.ROOT));
+      } catch (IllegalArgumentException e) {
+        throw new SolrException(
+            SolrException.ErrorCode.SERVER_ERROR, "Unknown transaction log compression: " + name);
+      }
+    }
+
+    /** Returns the compressed record, or null if compressing doesn't save space */
+    byte[] compress(byte[] record) throws IOException {
+      if (this == NONE || record.length < MIN_COMPRESSED_RECORD_SIZE) {
+        return null;
+      }
+      ByteBuffersDataOutput out = new ByteBuffersDataOutput();
+      out.writeByte((byte) ordinal());
+      out.writeVInt(record.length);
+      if (this == LZ4) {
+        org.apache.lucene.util.compress.LZ4.compress(
+            record, 0, record.length, out, new FastCompressionHashTable());
+      } else {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+          deflater.setInput(record);
+          deflater.finish();
+          byte[] buffer = new byte[4096];
+          while (!deflater.finished()) {
+            int len = deflater.deflate(buffer);
+            out.writeBytes(buffer, 0, len);
+          }
+        } finally {
+          deflater.end();
+        }
+      }
+      return out.size() < record.length ? out.toArrayCopy() : null;
+    }
+
+    static byte[] decompress(byte[] compressed) throws IOException {
+      ByteArrayDataInput in = new ByteArrayDataInput(compressed);
+      int ordinal = in.readByte();
+      if (ordinal <= NONE.ordinal() || ordinal >= values().length) {
+        throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "Corrupt transaction log");
+      }
+      byte[] record = new byte[in.readVInt()];
+      if (values()[ordinal] == LZ4) {
+        org.apache.lucene.util.compress.LZ4.decompress(in, record.length, record, 0);
+      } else {
+        Inflater inflater = new Inflater(true);
+        try {
+          inflater.setInput(compressed, in.getPosition(), compressed.length - in.getPosition());
+          int len = 0;
+          while (len < record.length) {
+            int n = inflater.inflate(record, len, record.length - len);
+            if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+              throw new SolrException(
+                  SolrException.ErrorCode.SERVER_ERROR, "Corrupt transaction log");
+            }
+            len += n;
+          }
+        } catch (DataFormatException e) {
+          throw new SolrException(
+              SolrException.ErrorCode.SERVER_ERROR, "Corrupt transaction log", e);
+        } finally {
+          inflater.end();
+        }
+      }
+      return record;
+    }
+  }
+
   public class LogCodec extends JavaBinCodec {
 
     public LogCodec(JavaBinCodec.ObjectResolver resolver) {
@@ -335,7 +439,34 @@ public class TransactionLog implements Closeable {
       for (int i = 0; i < globalStringList.size(); i++) {
         globalStringMap.put(globalStringList.get(i), i + 1);
       }
+      Object compressionName = header.get("compression");
+      compression = Compression.get(compressionName == null ? null : compressionName.toString());
+    }
+  }
+
+  /**
+   * Sets the compression of the documents written to this log. This has no effect once the log
+   * header is written: the compression recorded in it applies.
+   */
+  public void setCompression(Compression compression) {
+    synchronized (this) {
+      if (fos.size() == 0) {
+        this.compression = compression;
+      }
+    }
+  }
+
+  public Compression getCompression() {
+    return compression;
+  }
+
+  /** Returns the given record read from the log, decompressed if needed. */
+  protected static Object decodeRecord(Object record, LogCodec codec) throws IOException {
+    if (!(record instanceof byte[])) {
+      return record;
     }
+    byte[] bytes = Compression.decompress((byte[]) record);
+    return codec.readVal(new FastInputStream(null, bytes, 0, bytes.length));
   }
 
   protected void addGlobalStrings(Collection<String> strings) {
@@ -364,7 +495,12 @@ public class TransactionLog implements Closeable {
     assert pos == 0;
 
     Map<String, Object> header = new LinkedHashMap<>();
-    header.put("SOLR_TLOG", 1); // a magic string + version number
+    if (compression == Compression.NONE) {
+      header.put("SOLR_TLOG", 1); // a magic string + version number
+    } else {
+      header.put("SOLR_TLOG", 2);
+      header.put("compression", compression.name());
+    }
     header.put("strings", globalStringList);
     codec.marshal(header, fos);
 
@@ -447,6 +583,13 @@ public class TransactionLog implements Closeable {
       }
       lastAddSize = (int) out.size();
 
+      byte[] compressed = compression.compress(out.toByteArray());
+      if (compressed != null) {
+        out = new MemOutputStream(new byte[compressed.length + 8]);
+        codec.init(out);
+        codec.writeByteArray(compressed, 0, compressed.length);
+      }
+
       synchronized (this) {
         long pos = fos.size(); // if we had flushed, this should be equal to channel.position()
         assert pos != 0;
@@ -573,7 +716,7 @@ public class TransactionLog implements Closeable {
 
       DataInputInputStream is = channelInputStreamOpener.open(channel, pos);
       try (LogCodec codec = new LogCodec(resolver)) {
-        return codec.readVal(is);
+        return decodeRecord(codec.readVal(is), codec);
       }
     } catch (IOException e) {
       throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, e);
@@ -630,6 +773,68 @@ public class TransactionLog implements Closeable {
     }
   }
 
+  /**
+   * Like {@code finish(FSYNC)}, but shares fsyncs among concurrent callers: while one caller
+   * syncs the log, the others wait, and the next fsync acknowledges all of them at once. That fsync
+   * is performed by one of the waiting callers, after waiting for up to {@code maxDelayMs} for more
+   * callers to join.
+   *
+   * @return the number of callers acknowledged by the fsync that this caller performed, or 0 if
+   *     this caller was acknowledged by the fsync of another one
+   */
+  public int groupSync(long maxDelayMs) {
+    long needed;
+    synchronized (syncLock) {
+      pendingSyncs++;
+      // only a sync starting after the writes of this caller covers them
+      needed = startedSyncs + 1;
+      while (completedSyncs < needed) {
+        if (!syncing) {
+          syncing = true;
+          break;
+        }
+        try {
+          syncLock.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, e);
+        }
+      }
+      if (completedSyncs >= needed) {
+        return 0;
+      }
+    }
+
+    long sync = -1;
+    try {
+      if (maxDelayMs > 0) {
+        try {
+          Thread.sleep(maxDelayMs);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, e);
+        }
+      }
+      int batchSize;
+      synchronized (syncLock) {
+        sync = ++startedSyncs;
+        batchSize = pendingSyncs;
+        pendingSyncs = 0;
+      }
+      finish(UpdateLog.SyncLevel.FSYNC);
+      synchronized (syncLock) {
+        completedSyncs = sync;
+      }
+      return batchSize;
+    } finally {
+      // on failure, the waiting callers take over
+      synchronized (syncLock) {
+        syncing = false;
+        syncLock.notifyAll();
+      }
+    }
+  }
+
   @Override
   public void close() {
     try {
@@ -751,7 +956,7 @@ public class TransactionLog implements Closeable {
         }
       }
 
-      Object o = codec.readVal(fis);
+      Object o = decodeRecord(codec.readVal(fis), codec);
 
       // skip over record size
       int size = fis.readInt();
@@ -928,7 +1133,7 @@ public class TransactionLog implements Closeable {
       nextLength = fis.readInt();
 
       // TODO: optionally skip document data
-      Object o = codec.readVal(fis);
+      Object o = decodeRecord(codec.readVal(fis), codec);
 
       // this is only true if we read all the data (and we currently skip reading SolrInputDocument)
       // assert fis.position() == prevPos + 4 + thisLength;
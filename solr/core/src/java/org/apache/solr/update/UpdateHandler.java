@@ -161,6 +161,20 @@ public abstract class UpdateHandler implements SolrInfoBean {
 
   public abstract int addDoc(AddUpdateCommand cmd) throws IOException;
 
+  /**
+   * Adds several documents, in order, as {@link #addDoc(AddUpdateCommand)} would. If one of them
+   * fails, the documents before it may have been added, but not the ones after it.
+   *
+   * @return the number of documents added
+   */
+  public int addDocs(List<AddUpdateCommand> cmds) throws IOException {
+    int rc = 0;
+    for (AddUpdateCommand cmd : cmds) {
+      rc += addDoc(cmd);
+    }
+    return rc;
+  }
+
   public abstract void delete(DeleteUpdateCommand cmd) throws IOException;
 
   public abstract void deleteByQuery(DeleteUpdateCommand cmd) throws IOException;
@@ -20,7 +20,9 @@ import static org.apache.solr.update.processor.DistributedUpdateProcessor.Distri
 import static org.apache.solr.update.processor.DistributingUpdateProcessorFactory.DISTRIB_UPDATE_PARAM;
 
 import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -207,9 +209,9 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
   protected Deque<TransactionLog> newestLogsOnStartup = new ArrayDeque<>();
   protected int numOldRecords; // number of records in the recent logs
 
-  protected Map<BytesRef, LogPtr> map = new HashMap<>();
-  protected Map<BytesRef, LogPtr> prevMap; // used while committing/reopening is happening
-  protected Map<BytesRef, LogPtr> prevMap2; // used while committing/reopening is happening
+  protected LogPtrMap map = new LogPtrMap();
+  protected LogPtrMap prevMap; // used while committing/reopening is happening
+  protected LogPtrMap prevMap2; // used while committing/reopening is happening
   // the transaction log used to look up entries found in prevMap
   protected TransactionLog prevMapLog;
   // the transaction log used to look up entries found in prevMap2
@@ -255,6 +257,12 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
 
   protected SyncLevel defaultSyncLevel = SyncLevel.FLUSH;
 
+  /** Max delay to wait for concurrent requests to share an fsync with, -1 to not share fsyncs */
+  protected int groupSyncMaxDelayMs = -1;
+
+  /** Compression of the documents written to new transaction logs */
+  protected TransactionLog.Compression compression = TransactionLog.Compression.NONE;
+
   protected volatile UpdateHandler uhandler; // a core reload can change this reference!
   protected volatile boolean cancelApplyBufferUpdate;
   protected List<Long> startingVersions;
@@ -264,6 +272,8 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
   protected Meter applyingBufferedOpsMeter;
   protected Meter replayOpsMeter;
   protected Meter copyOverOldUpdatesMeter;
+  protected Timer syncTimer;
+  protected Histogram groupSyncBatchSize;
   protected SolrMetricsContext solrMetricsContext;
 
   public static class LogPtr {
@@ -350,6 +360,8 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
   public void init(PluginInfo info) {
     dataDir = (String) info.initArgs.get("dir");
     defaultSyncLevel = SyncLevel.getSyncLevel((String) info.initArgs.get("syncLevel"));
+    groupSyncMaxDelayMs = objToInt(info.initArgs.get("groupSyncMaxDelayMs"), -1);
+    compression = TransactionLog.Compression.get((String) info.initArgs.get("compression"));
 
     numRecordsToKeep = objToInt(info.initArgs.get("numRecordsToKeep"), 100);
     maxNumLogsToKeep = objToInt(info.initArgs.get("maxNumLogsToKeep"), 10);
@@ -360,9 +372,11 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
           "Number of version buckets must be greater than 0!");
 
     log.info(
-        "Initializing UpdateLog: dataDir={} defaultSyncLevel={} numRecordsToKeep={} maxNumLogsToKeep={} numVersionBuckets={}",
+        "Initializing UpdateLog: dataDir={} defaultSyncLevel={} groupSyncMaxDelayMs={} compression={} numRecordsToKeep={} maxNumLogsToKeep={} numVersionBuckets={}",
         dataDir,
         defaultSyncLevel,
+        groupSyncMaxDelayMs,
+        compression,
         numRecordsToKeep,
         maxNumLogsToKeep,
         numVersionBuckets);
@@ -505,6 +519,8 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
     applyingBufferedOpsMeter = solrMetricsContext.meter("ops", scope, "applyingBuffered");
     replayOpsMeter = solrMetricsContext.meter("ops", scope, "replay");
     copyOverOldUpdatesMeter = solrMetricsContext.meter("ops", scope, "copyOverOldUpdates");
+    syncTimer = solrMetricsContext.timer("time", scope, "fsync");
+    groupSyncBatchSize = solrMetricsContext.histogram("batchSize", scope, "fsync");
     solrMetricsContext.gauge(() -> state.getValue(), true, "state", scope);
   }
 
@@ -519,7 +535,11 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
    */
   public TransactionLog newTransactionLog(
       Path tlogFile, Collection<String> globalStrings, boolean openExisting) {
-    return new TransactionLog(tlogFile, globalStrings, openExisting);
+    TransactionLog newLog = new TransactionLog(tlogFile, globalStrings, openExisting);
+    if (!openExisting) {
+      newLog.setCompression(compression);
+    }
+    return newLog;
   }
 
   public String getLogDir() {
@@ -597,6 +617,19 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
     add(cmd, false);
   }
 
+  /**
+   * Logs several add commands, in order, without letting other updates interleave with them.
+   *
+   * @see #add(AddUpdateCommand)
+   */
+  public void add(List<AddUpdateCommand> cmds) {
+    synchronized (this) {
+      for (AddUpdateCommand cmd : cmds) {
+        add(cmd, false);
+      }
+    }
+  }
+
   public void add(AddUpdateCommand cmd, boolean clearCaches) {
     // don't log if we are replaying from another log
     // TODO: we currently need to log to maintain correct versioning, rtg, etc
@@ -621,16 +654,14 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
       if (!clearCaches) {
         // TODO: in the future we could support a real position for a REPLAY update.
         // Only currently would be useful for RTG while in recovery mode though.
-        LogPtr ptr = new LogPtr(pos, cmd.getVersion(), prevPointer);
-
-        map.put(cmd.getIndexedId(), ptr);
+        map.put(cmd.getIndexedId(), pos, cmd.getVersion(), prevPointer);
 
         if (trace) {
           log.trace(
-              "TLOG: added id {} to {} {} map={}",
+              "TLOG: added id {} to {} LogPtr({}) map={}",
               cmd.getPrintableId(),
               tlog,
-              ptr,
+              pos,
               System.identityHashCode(map));
         }
 
@@ -656,7 +687,7 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
     // note: sync required to ensure maps aren't changed out form under us
     if (cmd.isInPlaceUpdate()) {
       BytesRef indexedId = cmd.getIndexedId();
-      for (Map<BytesRef, LogPtr> currentMap : Arrays.asList(map, prevMap, prevMap2)) {
+      for (LogPtrMap currentMap : Arrays.asList(map, prevMap, prevMap2)) {
         if (currentMap != null) {
           LogPtr prevEntry = currentMap.get(indexedId);
           if (null != prevEntry) {
@@ -827,7 +858,7 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
     prevMap = map;
     prevMapLog = tlog;
 
-    map = new HashMap<>();
+    map = new LogPtrMap();
   }
 
   private void clearOldMaps() {
@@ -906,7 +937,7 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
       // any added documents will make it into this commit or not.
       // But we do know that any updates already added will definitely
       // show up in the latest reader after the commit succeeds.
-      map = new HashMap<>();
+      map = new LogPtrMap();
 
       if (debug) {
         log.debug(
@@ -1185,12 +1216,34 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
     }
 
     try {
-      currLog.finish(syncLevel);
+      if (syncLevel == SyncLevel.FSYNC) {
+        sync(currLog);
+      } else {
+        currLog.finish(syncLevel);
+      }
     } finally {
       currLog.decref();
     }
   }
 
+  private void sync(TransactionLog currLog) {
+    Timer.Context timerContext = syncTimer == null ? null : syncTimer.time();
+    try {
+      if (groupSyncMaxDelayMs >= 0) {
+        int batchSize = currLog.groupSync(groupSyncMaxDelayMs);
+        if (batchSize > 0 && groupSyncBatchSize != null) {
+          groupSyncBatchSize.update(batchSize);
+        }
+      } else {
+        currLog.finish(SyncLevel.FSYNC);
+      }
+    } finally {
+      if (timerContext != null) {
+        timerContext.stop();
+      }
+    }
+  }
+
   public Future<RecoveryInfo> recoverFromLog() {
     recoveryInfo = new RecoveryInfo();
 
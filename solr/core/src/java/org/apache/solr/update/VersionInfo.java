@@ -47,11 +47,14 @@ public class VersionInfo {
   private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
   private static final String SYS_PROP_BUCKET_VERSION_LOCK_TIMEOUT_MS =
       "bucketVersionLockTimeoutMs";
+  private static final String SYS_PROP_OPTIMISTIC_VERSION_LOCKING = "optimisticVersionLocking";
 
   private final UpdateLog ulog;
   private final VersionBucket[] buckets;
   private SchemaField versionField;
   final ReadWriteLock lock = new ReentrantReadWriteLock(true);
+  // replaces lock with optimistic version locking
+  private final StripedUpdateLock stripedLock;
 
   private int versionBucketLockTimeoutMs;
 
@@ -103,9 +106,19 @@ public class VersionInfo {
             .get("versionBucketLockTimeoutMs")
             .intVal(
                 Integer.parseInt(System.getProperty(SYS_PROP_BUCKET_VERSION_LOCK_TIMEOUT_MS, "0")));
+    boolean optimisticLocking =
+        ulog.uhandler
+            .core
+            .getSolrConfig()
+            .get("updateHandler")
+            .get("optimisticVersionLocking")
+            .boolVal(Boolean.getBoolean(SYS_PROP_OPTIMISTIC_VERSION_LOCKING));
+    stripedLock = optimisticLocking ? new StripedUpdateLock() : null;
     buckets = new VersionBucket[BitUtil.nextHighestPowerOfTwo(nBuckets)];
     for (int i = 0; i < buckets.length; i++) {
-      if (versionBucketLockTimeoutMs > 0) {
+      if (optimisticLocking) {
+        buckets[i] = new OptimisticVersionBucket();
+      } else if (versionBucketLockTimeoutMs > 0) {
         buckets[i] = new TimedVersionBucket();
       } else {
         buckets[i] = new VersionBucket();
@@ -124,19 +137,35 @@ public class VersionInfo {
   }
 
   public void lockForUpdate() {
-    lock.readLock().lock();
+    if (stripedLock != null) {
+      stripedLock.lockForUpdate();
+    } else {
+      lock.readLock().lock();
+    }
   }
 
   public void unlockForUpdate() {
-    lock.readLock().unlock();
+    if (stripedLock != null) {
+      stripedLock.unlockForUpdate();
+    } else {
+      lock.readLock().unlock();
+    }
   }
 
   public void blockUpdates() {
-    lock.writeLock().lock();
+    if (stripedLock != null) {
+      stripedLock.blockUpdates();
+    } else {
+      lock.writeLock().lock();
+    }
   }
 
   public void unblockUpdates() {
-    lock.writeLock().unlock();
+    if (stripedLock != null) {
+      stripedLock.unblockUpdates();
+    } else {
+      lock.writeLock().unlock();
+    }
   }
 
   /*
@@ -206,8 +235,15 @@ public class VersionInfo {
     // int h = hash + (hash >>> 8) + (hash >>> 16) + (hash >>> 24);
     // Assume good hash codes for now.
 
-    int slot = hash & (buckets.length - 1);
-    return buckets[slot];
+    return buckets[bucketIndex(hash)];
+  }
+
+  /**
+   * Returns the index of the bucket of the given hash. Code that holds several buckets at once
+   * locks them in increasing index order.
+   */
+  public int bucketIndex(int hash) {
+    return hash & (buckets.length - 1);
   }
 
   public Long lookupVersion(BytesRef idBytes) {
@@ -22,6 +22,9 @@ import static org.apache.solr.update.processor.DistributingUpdateProcessorFactor
 import com.google.common.annotations.VisibleForTesting;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -243,6 +246,16 @@ public class DistributedUpdateProcessor extends UpdateRequestProcessor {
 
     doDistribAdd(cmd);
 
+    addVersionToResponse(cmd);
+
+    // TODO: keep track of errors?  needs to be done at a higher level though since
+    // an id may fail before it gets to this processor.
+    // Given that, it may also make sense to move the version reporting out of this
+    // processor too.
+
+  }
+
+  private void addVersionToResponse(AddUpdateCommand cmd) {
     // TODO: what to do when no idField?
     if (returnVersions && rsp != null && idField != null) {
       if (addsResponse == null) {
@@ -253,12 +266,179 @@ public class DistributedUpdateProcessor extends UpdateRequestProcessor {
       idField.getType().indexedToReadable(cmd.getIndexedId(), scratch);
       addsResponse.add(scratch.toString(), cmd.getVersion());
     }
+  }
 
-    // TODO: keep track of errors?  needs to be done at a higher level though since
-    // an id may fail before it gets to this processor.
-    // Given that, it may also make sense to move the version reporting out of this
-    // processor too.
+  /**
+   * Versions a batch of new documents on the leader while holding the buckets of all of them, and
+   * passes the batch on to the rest of the chain. Atomic updates of root documents are merged with
+   * the current documents, which are all looked up at once with {@link
+   * RealTimeGetComponent#getInputDocuments}. Any command that needs more than that (version
+   * constraints, in-place updates, replays...) makes the whole batch fall back to {@link
+   * #processAdd(AddUpdateCommand)}.
+   */
+  @Override
+  public void processAddBatch(List<AddUpdateCommand> cmds) throws IOException {
+    if (!canVersionAddBatch(cmds)) {
+      super.processAddBatch(cmds);
+      return;
+    }
+    for (int i = 0; i < cmds.size(); i++) {
+      assert TestInjection.injectFailUpdateRequests();
+    }
+
+    // lock buckets in increasing order so that concurrent batches can't deadlock
+    int[] slots = new int[cmds.size()];
+    for (int i = 0; i < slots.length; i++) {
+      slots[i] = vinfo.bucketIndex(bucketHash(cmds.get(i).getIndexedId()));
+    }
+    Arrays.sort(slots);
+    int numSlots = 0;
+    for (int i = 0; i < slots.length; i++) {
+      if (i == 0 || slots[i] != slots[i - 1]) {
+        slots[numSlots++] = slots[i];
+      }
+    }
 
+    vinfo.lockForUpdate();
+    try {
+      runWithBucketsLocked(
+          Arrays.copyOf(slots, numSlots),
+          0,
+          () -> {
+            doVersionAddBatch(cmds);
+            return null;
+          });
+    } finally {
+      vinfo.unlockForUpdate();
+    }
+
+    for (AddUpdateCommand cmd : cmds) {
+      addVersionToResponse(cmd);
+    }
+  }
+
+  private boolean canVersionAddBatch(List<AddUpdateCommand> cmds) {
+    if (vinfo == null
+        || !versionsStored
+        || req.getParams().get(DISTRIB_FROM_COLLECTION) != null
+        || req.getParams().get(CommonParams.VERSION_FIELD) != null) {
+      return false;
+    }
+    boolean hasAtomicUpdates = false;
+    for (AddUpdateCommand cmd : cmds) {
+      setupRequest(cmd);
+      if (!isLeader
+          || forwardToLeader
+          || cmd.getIndexedId() == null
+          || cmd.getVersion() != 0
+          || (cmd.getFlags() & (UpdateCommand.REPLAY | UpdateCommand.PEER_SYNC)) != 0
+          || cmd.isInPlaceUpdate()
+          || cmd.getSolrInputDocument().getField(CommonParams.VERSION_FIELD) != null) {
+        return false;
+      }
+      if (AtomicUpdateDocumentMerger.isAtomicUpdate(cmd)) {
+        if (!canMergeInBatch(cmd)) {
+          return false;
+        }
+        hasAtomicUpdates = true;
+      }
+    }
+    if (hasAtomicUpdates) {
+      // an atomic update must see the previous updates of the same document
+      Set<BytesRef> ids = new HashSet<>();
+      for (AddUpdateCommand cmd : cmds) {
+        if (!ids.add(cmd.getIndexedId())) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /** Whether this atomic update is a full update of a root document, see getUpdatedDocument */
+  private boolean canMergeInBatch(AddUpdateCommand cmd) {
+    return cmd.getIndexedIdStr().equals(cmd.getSelfOrNestedDocIdStr())
+        && !cmd.getReq()
+            .getParams()
+            .getBool(UpdateParams.REQUIRE_PARTIAL_DOC_UPDATES_INPLACE, false)
+        && AtomicUpdateDocumentMerger.computeInPlaceUpdatableFields(cmd).isEmpty();
+  }
+
+  private void runWithBucketsLocked(
+      int[] slots, int i, VersionBucket.CheckedFunction<Void, Void> function) throws IOException {
+    if (i == slots.length) {
+      function.apply();
+      return;
+    }
+    VersionBucket bucket = vinfo.bucket(slots[i]);
+    bucket.runWithLock(
+        vinfo.getVersionBucketLockTimeoutMs(),
+        () -> {
+          try {
+            runWithBucketsLocked(slots, i + 1, function);
+          } finally {
+            bucket.unlock();
+          }
+          return null;
+        });
+  }
+
+  // must be synchronized by the buckets of all commands
+  private void doVersionAddBatch(List<AddUpdateCommand> cmds) throws IOException {
+    mergeAtomicUpdates(cmds);
+
+    SolrInputDocument[] clonedDocs =
+        shouldCloneCmdDoc() ? new SolrInputDocument[cmds.size()] : null;
+    for (int i = 0; i < cmds.size(); i++) {
+      AddUpdateCommand cmd = cmds.get(i);
+      cmd.prevVersion =
+          cmd.getReq()
+              .getParams()
+              .getLong(DistributedUpdateProcessor.DISTRIB_INPLACE_PREVVERSION, -1);
+
+      VersionBucket bucket = vinfo.bucket(bucketHash(cmd.getIndexedId()));
+      // see doVersionAdd
+      bucket.signalAll();
+      long version = vinfo.getNewClock();
+      cmd.setVersion(version);
+      cmd.getSolrInputDocument().setField(CommonParams.VERSION_FIELD, version);
+      bucket.updateHighest(version);
+
+      if (clonedDocs != null) {
+        clonedDocs[i] = cmd.solrDoc.deepCopy();
+      }
+    }
+
+    if (next != null) next.processAddBatch(cmds);
+    isIndexChanged = true;
+
+    if (clonedDocs != null) {
+      for (int i = 0; i < cmds.size(); i++) {
+        cmds.get(i).solrDoc = clonedDocs[i];
+      }
+    }
+  }
+
+  // must be synchronized by the buckets of all commands
+  private void mergeAtomicUpdates(List<AddUpdateCommand> cmds) throws IOException {
+    List<AddUpdateCommand> atomicUpdates = new ArrayList<>();
+    List<BytesRef> rootIds = new ArrayList<>();
+    for (AddUpdateCommand cmd : cmds) {
+      if (AtomicUpdateDocumentMerger.isAtomicUpdate(cmd)) {
+        atomicUpdates.add(cmd);
+        rootIds.add(cmd.getIndexedId());
+      }
+    }
+    if (atomicUpdates.isEmpty()) {
+      return;
+    }
+
+    SolrInputDocument[] oldRootDocs =
+        RealTimeGetComponent.getInputDocuments(
+            req.getCore(), rootIds, RealTimeGetComponent.Resolution.ROOT_WITH_CHILDREN);
+    for (int i = 0; i < oldRootDocs.length; i++) {
+      mergeWithOldRootDoc(atomicUpdates.get(i), oldRootDocs[i], 0);
+    }
   }
 
   protected void doDistribAdd(AddUpdateCommand cmd) throws IOException {
@@ -763,7 +943,6 @@ public class DistributedUpdateProcessor extends UpdateRequestProcessor {
     }
 
     BytesRef rootIdBytes = cmd.getIndexedId(); // root doc; falls back to doc ID if no _route_
-    String rootDocIdString = cmd.getIndexedIdStr();
 
     Set<String> inPlaceUpdatedFields =
         AtomicUpdateDocumentMerger.computeInPlaceUpdatableFields(cmd);
@@ -796,6 +975,12 @@ public class DistributedUpdateProcessor extends UpdateRequestProcessor {
             RealTimeGetComponent.Resolution
                 .ROOT_WITH_CHILDREN); // when no children, just fetches the doc
 
+    return mergeWithOldRootDoc(cmd, oldRootDocWithChildren, versionOnUpdate);
+  }
+
+  private boolean mergeWithOldRootDoc(
+      AddUpdateCommand cmd, SolrInputDocument oldRootDocWithChildren, long versionOnUpdate) {
+    String rootDocIdString = cmd.getIndexedIdStr();
     SolrInputDocument sdoc = cmd.getSolrInputDocument();
     SolrInputDocument mergedDoc;
     if (oldRootDocWithChildren == null) {
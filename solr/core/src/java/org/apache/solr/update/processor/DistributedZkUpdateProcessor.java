@@ -254,6 +254,14 @@ public class DistributedZkUpdateProcessor extends DistributedUpdateProcessor {
     }
   }
 
+  @Override
+  public void processAddBatch(List<AddUpdateCommand> cmds) throws IOException {
+    // documents may belong to different shards and are distributed one by one
+    for (AddUpdateCommand cmd : cmds) {
+      processAdd(cmd);
+    }
+  }
+
   @Override
   public void processAdd(AddUpdateCommand cmd) throws IOException {
     clusterState = zkController.getClusterState();
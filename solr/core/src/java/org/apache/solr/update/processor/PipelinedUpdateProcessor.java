@@ -0,0 +1,381 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.update.processor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.UpdateParams;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.update.AddUpdateCommand;
+import org.apache.solr.update.CommitUpdateCommand;
+import org.apache.solr.update.DeleteUpdateCommand;
+import org.apache.solr.update.MergeIndexesCommand;
+import org.apache.solr.update.RollbackUpdateCommand;
+
+/**
+ * Runs the part of an update chain that follows the {@link LogUpdateProcessorFactory} on several
+ * threads, while the request thread keeps parsing the content stream and running the processors
+ * up to and including the log processor.
+ *
+ * <p>Each worker thread has its own instance of the tail of the chain, and a bounded queue of
+ * commands so that the request thread can't run too far ahead. Adds and deletes by id are routed
+ * to a worker by the hash of their id, so that updates of the same document are applied in the
+ * order they were sent. Deletes by query, commits, rollbacks and index merges wait for all the
+ * workers to be idle, and then run on the request thread.
+ *
+ * <p>The worker threads come from the {@link UpdatePipelineExecutor} of the node, which bounds how
+ * many of them run at the same time across all requests.
+ *
+ * <p>If a command fails, the next commands may already have been processed by the other workers.
+ * The first failure is thrown on the request thread as soon as it is noticed, and the remaining
+ * queued commands are dropped.
+ *
+ * @see UpdateParams#PIPELINE_THREADS
+ * @lucene.experimental
+ */
+public class PipelinedUpdateProcessor extends UpdateRequestProcessor {
+
+  /** Maximum number of commands (or batches of adds) waiting in the queue of a worker. */
+  static final int QUEUE_SIZE = 64;
+
+  private static final Object STOP = new Object();
+
+  private final Worker[] workers;
+  private final UpdatePipelineExecutor executor;
+  private final CountDownLatch workersStopped;
+  private volatile Throwable failure;
+  private int nextWorker;
+  private boolean stopped;
+
+  /**
+   * Creates the processors for this request: a pipelined chain if {@link
+   * UpdateParams#PIPELINE_THREADS} is greater than 1 and at least two worker threads of the node
+   * are free, otherwise the regular chain. Pipelining isn't used in SolrCloud mode, when versions
+   * are returned in the response, or when the chain handles errors per document.
+   */
+  public static UpdateRequestProcessor createProcessor(
+      UpdateRequestProcessorChain processorChain, SolrQueryRequest req, SolrQueryResponse rsp) {
+    int threads = req.getParams().getInt(UpdateParams.PIPELINE_THREADS, 1);
+    List<UpdateRequestProcessorFactory> factories = processorChain.getProcessors();
+    int split = pipelineSplit(factories);
+    UpdatePipelineExecutor executor = req.getCoreContainer().getUpdatePipelineExecutor();
+    if (threads <= 1
+        || split < 0
+        || executor == null
+        || req.getCoreContainer().isZooKeeperAware()
+        || req.getParams().getBool(UpdateParams.VERSIONS, false)
+        || req.getParams().get(DistributingUpdateProcessorFactory.DISTRIB_UPDATE_PARAM) != null) {
+      return processorChain.createProcessor(req, rsp);
+    }
+    threads = executor.reserve(threads);
+    if (threads == 0) {
+      return processorChain.createProcessor(req, rsp);
+    }
+
+    UpdateRequestProcessor[] tails = new UpdateRequestProcessor[threads];
+    try {
+      for (int i = 0; i < threads; i++) {
+        tails[i] = createProcessors(factories.subList(split + 1, factories.size()), req, rsp, null);
+      }
+    } catch (RuntimeException e) {
+      executor.release(threads);
+      throw e;
+    }
+    PipelinedUpdateProcessor pipeline = new PipelinedUpdateProcessor(executor, tails);
+    try {
+      return createProcessors(factories.subList(0, split + 1), req, rsp, pipeline);
+    } catch (RuntimeException e) {
+      pipeline.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the index of the log processor in the chain, or -1 if this chain can't be pipelined
+   * because it has no log processor or it handles errors per document.
+   */
+  private static int pipelineSplit(List<UpdateRequestProcessorFactory> factories) {
+    int split = -1;
+    for (int i = 0; i < factories.size(); i++) {
+      UpdateRequestProcessorFactory factory = factories.get(i);
+      if (factory instanceof TolerantUpdateProcessorFactory) {
+        return -1;
+      }
+      if (factory instanceof LogUpdateProcessorFactory && split < 0) {
+        split = i;
+      }
+    }
+    return split;
+  }
+
+  private static UpdateRequestProcessor createProcessors(
+      List<UpdateRequestProcessorFactory> factories,
+      SolrQueryRequest req,
+      SolrQueryResponse rsp,
+      UpdateRequestProcessor last) {
+    for (int i = factories.size() - 1; i >= 0; i--) {
+      last = factories.get(i).getInstance(req, rsp, last);
+    }
+    return last;
+  }
+
+  /** Runs the tails on threads of the executor, that were reserved for them. */
+  PipelinedUpdateProcessor(UpdatePipelineExecutor executor, UpdateRequestProcessor[] tails) {
+    super(null);
+    this.executor = executor;
+    this.workers = new Worker[tails.length];
+    this.workersStopped = new CountDownLatch(tails.length);
+    for (int i = 0; i < tails.length; i++) {
+      workers[i] = new Worker(i, tails[i]);
+    }
+    int started = 0;
+    try {
+      for (; started < workers.length; started++) {
+        executor.execute(workers[started]);
+      }
+    } catch (RuntimeException e) {
+      // the node is shutting down
+      for (int i = started; i < workers.length; i++) {
+        workersStopped.countDown();
+      }
+      stopWorkers();
+      throw e;
+    }
+  }
+
+  @Override
+  public void processAdd(AddUpdateCommand cmd) throws IOException {
+    // loaders may reuse the command once this returns
+    AddUpdateCommand copy = (AddUpdateCommand) cmd.clone();
+    enqueue(workerFor(copy.getIndexedId()), copy);
+  }
+
+  @Override
+  public void processAddBatch(List<AddUpdateCommand> cmds) throws IOException {
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    List<AddUpdateCommand>[] perWorker = new List[workers.length];
+    for (AddUpdateCommand cmd : cmds) {
+      AddUpdateCommand copy = (AddUpdateCommand) cmd.clone();
+      Worker worker = workerFor(copy.getIndexedId());
+      List<AddUpdateCommand> batch = perWorker[worker.index];
+      if (batch == null) {
+        batch = perWorker[worker.index] = new ArrayList<>(cmds.size() / workers.length + 1);
+      }
+      batch.add(copy);
+    }
+    for (Worker worker : workers) {
+      if (perWorker[worker.index] != null) {
+        enqueue(worker, perWorker[worker.index]);
+      }
+    }
+  }
+
+  @Override
+  public void processDelete(DeleteUpdateCommand cmd) throws IOException {
+    if (cmd.isDeleteById()) {
+      DeleteUpdateCommand copy = (DeleteUpdateCommand) cmd.clone();
+      enqueue(workerFor(copy.getIndexedId()), copy);
+    } else {
+      awaitWorkers();
+      workers[0].processor.processDelete(cmd);
+    }
+  }
+
+  @Override
+  public void processMergeIndexes(MergeIndexesCommand cmd) throws IOException {
+    awaitWorkers();
+    workers[0].processor.processMergeIndexes(cmd);
+  }
+
+  @Override
+  public void processCommit(CommitUpdateCommand cmd) throws IOException {
+    awaitWorkers();
+    workers[0].processor.processCommit(cmd);
+  }
+
+  @Override
+  public void processRollback(RollbackUpdateCommand cmd) throws IOException {
+    awaitWorkers();
+    workers[0].processor.processRollback(cmd);
+  }
+
+  @Override
+  public void finish() throws IOException {
+    stopWorkers();
+    checkFailure();
+    for (Worker worker : workers) {
+      worker.processor.finish();
+    }
+  }
+
+  @Override
+  protected void doClose() {
+    stopWorkers();
+    for (Worker worker : workers) {
+      try {
+        worker.processor.close();
+      } catch (IOException e) {
+        // UpdateRequestProcessor.close logs and doesn't throw
+      }
+    }
+  }
+
+  private Worker workerFor(BytesRef id) {
+    if (id == null) {
+      // no uniqueKey, so no ordering to preserve
+      nextWorker = (nextWorker + 1) % workers.length;
+      return workers[nextWorker];
+    }
+    return workers[Math.floorMod(id.hashCode(), workers.length)];
+  }
+
+  private void enqueue(Worker worker, Object cmd) throws IOException {
+    checkFailure();
+    put(worker, cmd);
+  }
+
+  /** Waits until all the commands queued so far have been processed. */
+  private void awaitWorkers() throws IOException {
+    checkFailure();
+    CountDownLatch latch = new CountDownLatch(workers.length);
+    for (Worker worker : workers) {
+      put(worker, latch);
+    }
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, e);
+    }
+    checkFailure();
+  }
+
+  private void stopWorkers() {
+    if (stopped) {
+      return;
+    }
+    stopped = true;
+    try {
+      for (Worker worker : workers) {
+        put(worker, STOP);
+      }
+    } finally {
+      boolean interrupted = false;
+      while (true) {
+        try {
+          workersStopped.await();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      executor.release(workers.length);
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void put(Worker worker, Object cmd) {
+    try {
+      worker.queue.put(cmd);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, e);
+    }
+  }
+
+  private synchronized void setFailure(Throwable t) {
+    if (failure == null) {
+      failure = t;
+    }
+  }
+
+  private void checkFailure() throws IOException {
+    Throwable t = failure;
+    if (t == null) {
+      return;
+    }
+    if (t instanceof IOException) {
+      throw (IOException) t;
+    } else if (t instanceof RuntimeException) {
+      throw (RuntimeException) t;
+    } else if (t instanceof Error) {
+      throw (Error) t;
+    }
+    throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, t);
+  }
+
+  private class Worker implements Runnable {
+    final int index;
+    final UpdateRequestProcessor processor;
+    final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+
+    Worker(int index, UpdateRequestProcessor processor) {
+      this.index = index;
+      this.processor = processor;
+    }
+
+    @Override
+    public void run() {
+      try {
+        process();
+      } finally {
+        workersStopped.countDown();
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void process() {
+      while (true) {
+        Object cmd;
+        try {
+          cmd = queue.take();
+        } catch (InterruptedException e) {
+          // keep draining the queue, the request thread may be waiting for a barrier
+          setFailure(new SolrException(SolrException.ErrorCode.SERVER_ERROR, e));
+          continue;
+        }
+        if (cmd == STOP) {
+          return;
+        } else if (cmd instanceof CountDownLatch) {
+          ((CountDownLatch) cmd).countDown();
+        } else if (failure == null) {
+          // once something failed, drain the queue so that the request thread never blocks
+          try {
+            if (cmd instanceof AddUpdateCommand) {
+              processor.processAdd((AddUpdateCommand) cmd);
+            } else if (cmd instanceof DeleteUpdateCommand) {
+              processor.processDelete((DeleteUpdateCommand) cmd);
+            } else {
+              processor.processAddBatch((List<AddUpdateCommand>) cmd);
+            }
+          } catch (Throwable t) {
+            setFailure(t);
+          }
+        }
+      }
+    }
+  }
+}
@@ -17,6 +17,7 @@
 package org.apache.solr.update.processor;
 
 import java.io.IOException;
+import java.util.List;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.response.SolrQueryResponse;
@@ -66,16 +67,31 @@ public class RunUpdateProcessorFactory extends UpdateRequestProcessorFactory {
 
     @Override
     public void processAdd(AddUpdateCommand cmd) throws IOException {
+      checkNotAtomicUpdate(cmd);
 
+      updateHandler.addDoc(cmd);
+      super.processAdd(cmd);
+      changesSinceCommit = true;
+    }
+
+    @Override
+    public void processAddBatch(List<AddUpdateCommand> cmds) throws IOException {
+      for (AddUpdateCommand cmd : cmds) {
+        checkNotAtomicUpdate(cmd);
+      }
+
+      // some documents may have been added even if a later one fails
+      changesSinceCommit = true;
+      updateHandler.addDocs(cmds);
+      if (next != null) next.processAddBatch(cmds);
+    }
+
+    private static void checkNotAtomicUpdate(AddUpdateCommand cmd) {
       if (AtomicUpdateDocumentMerger.isAtomicUpdate(cmd)) {
         throw new SolrException(
             SolrException.ErrorCode.BAD_REQUEST,
             "RunUpdateProcessor has received an AddUpdateCommand containing a document that appears to still contain Atomic document update operations, most likely because DistributedUpdateProcessorFactory was explicitly disabled from this updateRequestProcessorChain");
       }
-
-      updateHandler.addDoc(cmd);
-      super.processAdd(cmd);
-      changesSinceCommit = true;
     }
 
     @Override
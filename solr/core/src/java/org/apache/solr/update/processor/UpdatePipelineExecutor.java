@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.update.processor;
+
+import java.io.Closeable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import org.apache.solr.common.util.ExecutorUtil;
+import org.apache.solr.common.util.SolrNamedThreadFactory;
+
+/**
+ * The worker threads of the {@link PipelinedUpdateProcessor}s of a node, owned by the {@link
+ * org.apache.solr.core.CoreContainer}. Threads are reused across requests, and the number of
+ * threads running pipelines at the same time is bounded for the whole node by {@link
+ * #MAX_THREADS_PROP}, by default the number of available processors.
+ *
+ * <p>A worker runs for the duration of its request, so a request reserves its threads up front
+ * rather than queueing behind the workers of other requests, and falls back to the regular chain
+ * when fewer than two threads are free.
+ *
+ * @lucene.internal
+ */
+public class UpdatePipelineExecutor implements Closeable {
+
+  /** System property bounding the number of pipeline worker threads of the node. */
+  public static final String MAX_THREADS_PROP = "solr.updatePipeline.maxThreads";
+
+  private final int maxThreads;
+  private final Semaphore permits;
+  private final ExecutorService executor;
+
+  public UpdatePipelineExecutor() {
+    this(Integer.getInteger(MAX_THREADS_PROP, Runtime.getRuntime().availableProcessors()));
+  }
+
+  public UpdatePipelineExecutor(int maxThreads) {
+    this.maxThreads = Math.max(0, maxThreads);
+    this.permits = new Semaphore(this.maxThreads);
+    // MDC aware, so that the workers inherit the SolrRequestInfo of the request
+    this.executor =
+        ExecutorUtil.newMDCAwareCachedThreadPool(new SolrNamedThreadFactory("updatePipeline"));
+  }
+
+  public int getMaxThreads() {
+    return maxThreads;
+  }
+
+  /**
+   * Reserves up to the given number of threads without waiting.
+   *
+   * @return the number of threads reserved, to be given back with {@link #release(int)}, or 0 if
+   *     fewer than two threads were free
+   */
+  int reserve(int threads) {
+    int reserved = 0;
+    while (reserved < threads && permits.tryAcquire()) {
+      reserved++;
+    }
+    if (reserved < 2) {
+      permits.release(reserved);
+      return 0;
+    }
+    return reserved;
+  }
+
+  void release(int threads) {
+    permits.release(threads);
+  }
+
+  void execute(Runnable worker) {
+    executor.execute(worker);
+  }
+
+  @Override
+  public void close() {
+    ExecutorUtil.shutdownAndAwaitTermination(executor);
+  }
+}
@@ -19,6 +19,7 @@ package org.apache.solr.update.processor;
 import java.io.Closeable;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.util.List;
 import net.jcip.annotations.NotThreadSafe;
 import org.apache.solr.update.AddUpdateCommand;
 import org.apache.solr.update.CommitUpdateCommand;
@@ -54,6 +55,21 @@ public abstract class UpdateRequestProcessor implements Closeable {
     if (next != null) next.processAdd(cmd);
   }
 
+  /**
+   * Processes several add commands, in order. The commands are distinct instances that must not be
+   * reused by the caller until this method returns.
+   *
+   * <p>By default, this calls {@link #processAdd(AddUpdateCommand)} for each command, so the rest
+   * of the chain sees the documents one by one. Processors that can save per-document overhead
+   * should override this and pass the batch on to {@code next.processAddBatch}. If an exception is
+   * thrown, the commands before the failing one may have been processed, but not the ones after.
+   */
+  public void processAddBatch(List<AddUpdateCommand> cmds) throws IOException {
+    for (AddUpdateCommand cmd : cmds) {
+      processAdd(cmd);
+    }
+  }
+
   public void processDelete(DeleteUpdateCommand cmd) throws IOException {
     if (next != null) next.processDelete(cmd);
   }
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import org.apache.solr.common.util.ByteArrayUtf8CharSequence;
+import org.noggit.CharArr;
+import org.noggit.JSONParser;
+
+/**
+ * A {@link JSONParser} that reads UTF-8 encoded JSON without decoding it. Each byte of the input is
+ * parsed as one char, which works since all the JSON syntax is ASCII, so the string values are
+ * the UTF-8 bytes of the strings. {@link #getUtf8String()} returns them as a {@link
+ * ByteArrayUtf8CharSequence} that is only decoded if needed, while {@link #getString()} and {@link
+ * #getStringChars()} decode them as usual.
+ *
+ * <p>Unquoted keys and values must be ASCII.
+ */
+public class Utf8JSONParser extends JSONParser {
+  private static final int REPLACEMENT_CHAR = 0xFFFD;
+
+  public Utf8JSONParser(InputStream in) {
+    // ISO-8859-1 maps each byte to the char with the same value
+    super(new InputStreamReader(in, StandardCharsets.ISO_8859_1));
+  }
+
+  /** Returns the JSON string value as UTF-8 bytes, decoding any escaped characters. */
+  public ByteArrayUtf8CharSequence getUtf8String() throws IOException {
+    CharArr chars = super.getStringChars();
+    byte[] bytes = new byte[chars.size()];
+    char[] arr = chars.getArray();
+    for (int i = 0, j = chars.getStart(); i < bytes.length; i++, j++) {
+      bytes[i] = (byte) arr[j];
+    }
+    return new ByteArrayUtf8CharSequence(bytes, 0, bytes.length);
+  }
+
+  @Override
+  public String getString() throws IOException {
+    return decode(super.getStringChars());
+  }
+
+  @Override
+  public CharArr getStringChars() throws IOException {
+    String str = getString();
+    return new CharArr(str.toCharArray(), 0, str.length());
+  }
+
+  @Override
+  public void getString(CharArr output) throws IOException {
+    output.write(getString());
+  }
+
+  private static String decode(CharArr chars) {
+    char[] arr = chars.getArray();
+    int start = chars.getStart();
+    int end = chars.getEnd();
+    for (int i = start; i < end; i++) {
+      if (arr[i] >= 0x80) {
+        byte[] bytes = new byte[end - start];
+        for (int j = 0; j < bytes.length; j++) {
+          bytes[j] = (byte) arr[start + j];
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+      }
+    }
+    // ASCII
+    return new String(arr, start, end - start);
+  }
+
+  /** Writes escaped characters as UTF-8, other chars are bytes of the input already. */
+  @Override
+  protected void writeEscapedChar(CharArr arr) throws IOException {
+    int ch = getChar();
+    if (ch != -1) {
+      start--;
+    }
+    if (ch != 'u') {
+      // a raw byte, or an ASCII escape sequence
+      arr.write(readEscapedChar());
+      return;
+    }
+
+    char c = readEscapedChar();
+    // characters outside the BMP are escaped as a surrogate pair
+    while (Character.isHighSurrogate(c)) {
+      ch = getChar();
+      if (ch != '\\') {
+        if (ch != -1) {
+          start--;
+        }
+        break;
+      }
+      ch = getChar();
+      if (ch != -1) {
+        start--;
+      }
+      if (ch != 'u') {
+        writeUtf8(arr, REPLACEMENT_CHAR);
+        arr.write(readEscapedChar());
+        return;
+      }
+      char low = readEscapedChar();
+      if (Character.isLowSurrogate(low)) {
+        writeUtf8(arr, Character.toCodePoint(c, low));
+        return;
+      }
+      writeUtf8(arr, REPLACEMENT_CHAR);
+      c = low;
+    }
+    writeUtf8(arr, Character.isSurrogate(c) ? REPLACEMENT_CHAR : c);
+  }
+
+  private static void writeUtf8(CharArr arr, int codePoint) {
+    if (codePoint < 0x80) {
+      arr.write(codePoint);
+    } else if (codePoint < 0x800) {
+      arr.write(0xC0 | (codePoint >> 6));
+      arr.write(0x80 | (codePoint & 0x3F));
+    } else if (codePoint < 0x10000) {
+      arr.write(0xE0 | (codePoint >> 12));
+      arr.write(0x80 | ((codePoint >> 6) & 0x3F));
+      arr.write(0x80 | (codePoint & 0x3F));
+    } else {
+      arr.write(0xF0 | (codePoint >> 18));
+      arr.write(0x80 | ((codePoint >> 12) & 0x3F));
+      arr.write(0x80 | ((codePoint >> 6) & 0x3F));
+      arr.write(0x80 | (codePoint & 0x3F));
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.util.vector;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.apache.lucene.index.VectorSimilarityFunction;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * Linear scalar quantization of float vectors to signed bytes, so that they can be indexed as byte
+ * vectors, a quarter of the size of the float ones.
+ *
+ * <p>Vector components are scaled from [-range, range] to [-127, 127] and rounded, components
+ * outside the range are clamped. Cosine similarity doesn't depend on the norm of the vectors, so
+ * for it each vector is rather scaled by its own largest absolute component, making the most of
+ * the byte range whatever the magnitude of the vectors.
+ *
+ * <p>The full precision vectors are kept aside, encoded by {@link #encode(float[])}, to rescore
+ * the candidates found with the quantized ones.
+ */
+public class ScalarQuantizer {
+
+  private static final int MAX_QUANTIZED_VALUE = Byte.MAX_VALUE;
+
+  private final VectorSimilarityFunction similarityFunction;
+  private final float range;
+
+  public ScalarQuantizer(VectorSimilarityFunction similarityFunction, float range) {
+    if (!(range > 0)) {
+      throw new IllegalArgumentException("the quantization range must be positive, got: " + range);
+    }
+    this.similarityFunction = similarityFunction;
+    this.range = range;
+  }
+
+  public float getRange() {
+    return range;
+  }
+
+  public byte[] quantize(float[] vector) {
+    float scale = MAX_QUANTIZED_VALUE / range;
+    if (similarityFunction == VectorSimilarityFunction.COSINE) {
+      float maxAbs = 0;
+      for (float component : vector) {
+        maxAbs = Math.max(maxAbs, Math.abs(component));
+      }
+      if (maxAbs > 0) {
+        scale = MAX_QUANTIZED_VALUE / maxAbs;
+      }
+    }
+    byte[] quantized = new byte[vector.length];
+    for (int i = 0; i < vector.length; i++) {
+      int value = Math.round(vector[i] * scale);
+      quantized[i] = (byte) Math.max(-MAX_QUANTIZED_VALUE, Math.min(MAX_QUANTIZED_VALUE, value));
+    }
+    return quantized;
+  }
+
+  /** Encodes a full precision vector, to be decoded by {@link #decode(BytesRef, float[])}. */
+  public static BytesRef encode(float[] vector) {
+    ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES);
+    buffer.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().put(vector);
+    return new BytesRef(buffer.array());
+  }
+
+  /**
+   * Decodes a full precision vector encoded by {@link #encode(float[])} into the given array, whose
+   * length must be the dimension of the vector.
+   */
+  public static float[] decode(BytesRef bytes, float[] vector) {
+    ByteBuffer.wrap(bytes.bytes, bytes.offset, bytes.length)
+        .order(ByteOrder.LITTLE_ENDIAN)
+        .asFloatBuffer()
+        .get(vector);
+    return vector;
+  }
+}
@@ -28,7 +28,10 @@ import java.util.Set;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.common.util.Utils;
+import org.apache.solr.metrics.MetricsMap;
+import org.apache.solr.metrics.SolrMetricManager;
 import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.search.join.JoinOrdinalMap;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -279,6 +282,52 @@ public class TestJoin extends SolrTestCaseJ4 {
         });
   }
 
+  @Test
+  public void testTopLevelDVJoinOrdinalCache() throws Exception {
+    indexEmployeeDocs();
+    ModifiableSolrParams p = params("sort", "id asc");
+
+    assertJQ(
+        req(
+            p,
+            "q",
+            "{!join from=dept_ss_dv to=dept_id_indexed_sdv method=topLevelDV}title:MTS",
+            "fl",
+            "id"),
+        "/response=={'numFound':3,'start':0,'numFoundExact':true,'docs':[{'id':'10'},{'id':'12'},{'id':'13'}]}");
+    assertEquals(1L, lookupJoinOrdinalCacheMetrics().get("inserts"));
+
+    // same fields and readers, the ordinal map is reused
+    assertJQ(
+        req(
+            p,
+            "q",
+            "{!join from=dept_ss_dv to=dept_id_indexed_sdv method=topLevelDV}name:john",
+            "fl",
+            "id"),
+        "/response=={'numFound':1,'start':0,'numFoundExact':true,'docs':[{'id':'10'}]}");
+    assertEquals(1L, lookupJoinOrdinalCacheMetrics().get("inserts"));
+    assertEquals(1L, lookupJoinOrdinalCacheMetrics().get("hits"));
+
+    // no ordinal map for self joins
+    assertJQ(
+        req(p, "q", "{!join from=dept_ss_dv to=dept_ss_dv method=topLevelDV}name:dave", "fl", "id"),
+        "/response=={'numFound':3,'start':0,'numFoundExact':true,'docs':[{'id':'1'},{'id':'4'},{'id':'5'}]}");
+    assertEquals(1L, lookupJoinOrdinalCacheMetrics().get("inserts"));
+  }
+
+  private static Map<String, Object> lookupJoinOrdinalCacheMetrics() {
+    return ((MetricsMap)
+            ((SolrMetricManager.GaugeWrapper<?>)
+                    h.getCore()
+                        .getCoreMetricManager()
+                        .getRegistry()
+                        .getMetrics()
+                        .get("CACHE.searcher." + JoinOrdinalMap.CACHE_NAME))
+                .getGauge())
+        .getValue();
+  }
+
   @Test
   public void testIndexJoin() throws Exception {
     indexEmployeeDocs();
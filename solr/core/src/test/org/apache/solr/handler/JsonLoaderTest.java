@@ -21,11 +21,13 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
 import org.apache.solr.SolrTestCaseJ4;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.SolrInputField;
 import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.ByteArrayUtf8CharSequence;
 import org.apache.solr.common.util.ContentStreamBase;
 import org.apache.solr.common.util.Utils;
 import org.apache.solr.handler.loader.JsonLoader;
@@ -164,6 +166,48 @@ public class JsonLoaderTest extends SolrTestCaseJ4 {
     req.close();
   }
 
+  public void testUtf8Parsing() throws Exception {
+    SolrQueryRequest req = req(JsonLoader.UTF8_PARAM, "true");
+    BufferingRequestProcessor p = new BufferingRequestProcessor(null);
+    JsonLoader loader = new JsonLoader();
+    loader.load(req, new SolrQueryResponse(), new ContentStreamBase.StringStream(input), p);
+    assertEquals(2, p.addCommands.size());
+    assertEquals(
+        "SolrInputDocument(fields: [bool=true, f0=v0, array=[aaa, bbb]])",
+        p.addCommands.get(0).solrDoc.toString());
+    assertEquals(2, p.commitCommands.size());
+    assertEquals(4, p.deleteCommands.size());
+    assertEquals("ID", p.deleteCommands.get(0).id);
+    assertEquals("QUERY", p.deleteCommands.get(2).query);
+    assertEquals(1, p.rollbackCommands.size());
+
+    String str =
+        ("[{'id':'1', 'name_s':'caf\u00e9 \ud83d\ude00', "
+                + "'escaped_s':'caf\\u00e9 \\ud83d\\ude00 \\'q\\' \\\\', "
+                + "'lone_s':'\\ud83d!', 'cat_s':['x','\u00e9'], 'count_i':'5', "
+                + "'f\u00e9_s':'v'}]")
+            .replace('\'', '"');
+    p = new BufferingRequestProcessor(null);
+    loader.load(req, new SolrQueryResponse(), new ContentStreamBase.StringStream(str), p);
+    assertEquals(1, p.addCommands.size());
+    SolrInputDocument doc = p.addCommands.get(0).solrDoc;
+
+    // string fields keep the UTF-8 bytes, other values are decoded
+    Object name = doc.getFieldValue("name_s");
+    assertTrue(name instanceof ByteArrayUtf8CharSequence);
+    assertEquals("caf\u00e9 \ud83d\ude00", name.toString());
+    assertEquals("caf\u00e9 \ud83d\ude00 \"q\" \\", doc.getFieldValue("escaped_s").toString());
+    assertEquals("\ufffd!", doc.getFieldValue("lone_s").toString());
+    assertEquals(
+        Arrays.asList("x", "\u00e9"),
+        doc.getFieldValues("cat_s").stream().map(Object::toString).collect(Collectors.toList()));
+    assertEquals("5", doc.getFieldValue("count_i"));
+    assertEquals("v", doc.getFieldValue("f\u00e9_s").toString());
+    assertEquals("1", doc.getFieldValue("id").toString());
+
+    req.close();
+  }
+
   @Test
   public void testInvalidJsonProducesBadRequestSolrException() {
     SolrQueryResponse rsp = new SolrQueryResponse();
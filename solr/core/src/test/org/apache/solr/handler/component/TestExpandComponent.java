@@ -18,9 +18,12 @@ package org.apache.solr.handler.component;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Map;
 import org.apache.solr.SolrTestCaseJ4;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.metrics.MetricsMap;
+import org.apache.solr.metrics.SolrMetricManager;
 import org.apache.solr.search.CollapsingQParserPlugin;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -1098,6 +1101,78 @@ public class TestExpandComponent extends SolrTestCaseJ4 {
     resetExceptionIgnores();
   }
 
+  @Test
+  public void testCachedGroups() {
+    assertU(adoc("id", "1", "group_s", "a", "test_i", "10"));
+    assertU(adoc("id", "2", "group_s", "a", "test_i", "20"));
+    assertU(commit());
+    assertU(adoc("id", "3", "group_s", "a", "test_i", "30"));
+    assertU(adoc("id", "4", "group_s", "b", "test_i", "40"));
+    assertU(commit());
+    assertU(adoc("id", "5", "group_s", "b", "test_i", "50"));
+    assertU(adoc("id", "6", "group_s", "c", "test_i", "5"));
+    assertU(commit());
+
+    ModifiableSolrParams params = new ModifiableSolrParams();
+    params.add("q", "*:*");
+    params.add("fq", "{!collapse field=group_s}");
+    params.add("defType", "edismax");
+    params.add("bf", "field(test_i)");
+    params.add("expand", "true");
+    params.add("rows", "1");
+
+    assertQ(
+        req(params, "start", "0"),
+        "/response/result/doc[1]/str[@name='id'][.='5']",
+        "*[count(/response/lst[@name='expanded']/result)=1]",
+        "/response/lst[@name='expanded']/result[@name='b'][@numFound='1']",
+        "/response/lst[@name='expanded']/result[@name='b']/doc[1]/str[@name='id'][.='4']");
+    assertEquals(1L, lookupExpandCacheMetrics().get("inserts"));
+
+    // the following pages are expanded from the cached groups
+    final String[] secondPage = {
+      "/response/result/doc[1]/str[@name='id'][.='3']",
+      "*[count(/response/lst[@name='expanded']/result)=1]",
+      "/response/lst[@name='expanded']/result[@name='a'][@numFound='2']",
+      "/response/lst[@name='expanded']/result[@name='a']/doc[1]/str[@name='id'][.='2']",
+      "/response/lst[@name='expanded']/result[@name='a']/doc[2]/str[@name='id'][.='1']"
+    };
+    assertQ(req(params, "start", "1"), secondPage);
+    assertQ(
+        req(params, "start", "2"),
+        "/response/result/doc[1]/str[@name='id'][.='6']",
+        "*[count(/response/lst[@name='expanded']/result)=0]");
+    assertEquals(1L, lookupExpandCacheMetrics().get("inserts"));
+
+    // same results when the groups of the page are collected
+    assertQ(req(params, "start", "1", "expand.cache", "false"), secondPage);
+    assertEquals(1L, lookupExpandCacheMetrics().get("inserts"));
+
+    // other expand options are cached separately
+    assertQ(
+        req(params, "start", "1", "expand.rows", "1"),
+        "/response/lst[@name='expanded']/result[@name='a'][@numFound='2']",
+        "*[count(/response/lst[@name='expanded']/result[@name='a']/doc)=1]",
+        "/response/lst[@name='expanded']/result[@name='a']/doc[1]/str[@name='id'][.='2']");
+    assertQ(
+        req(params, "start", "1", "expand.q", "test_i:[15 TO *]"),
+        "/response/lst[@name='expanded']/result[@name='a'][@numFound='1']",
+        "/response/lst[@name='expanded']/result[@name='a']/doc[1]/str[@name='id'][.='2']");
+    assertEquals(3L, lookupExpandCacheMetrics().get("inserts"));
+  }
+
+  private static Map<String, Object> lookupExpandCacheMetrics() {
+    return ((MetricsMap)
+            ((SolrMetricManager.GaugeWrapper<?>)
+                    h.getCore()
+                        .getCoreMetricManager()
+                        .getRegistry()
+                        .getMetrics()
+                        .get("CACHE.searcher." + ExpandComponent.CACHE_NAME))
+                .getGauge())
+        .getValue();
+  }
+
   /**
    * randomize addition of docs into bunch of segments TODO: there ought to be a test utility to do
    * this; even add in batches
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.index;
+
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.MergeScheduler;
+import org.apache.lucene.index.MergeTrigger;
+import org.apache.solr.SolrTestCase;
+import org.apache.solr.index.QueryLoadAwareMergeScheduler.Load;
+import org.apache.solr.metrics.QueryLoad;
+import org.junit.Test;
+
+public class QueryLoadAwareMergeSchedulerTest extends SolrTestCase {
+
+  @Test
+  public void testLoadTransitions() throws Exception {
+    try (QueryLoadAwareMergeScheduler scheduler = new QueryLoadAwareMergeScheduler()) {
+      scheduler.setMaxMergesAndThreads(6, 3);
+      scheduler.setBusyMaxThreadCount(1);
+      assertTrue(scheduler.getAutoIOThrottle());
+
+      scheduler.refreshLoad(new QueryLoad(50, 10));
+      assertEquals(Load.NORMAL, scheduler.getLoad());
+
+      // latency spike
+      scheduler.refreshLoad(new QueryLoad(50, 40));
+      assertEquals(Load.BUSY, scheduler.getLoad());
+      assertEquals(1, scheduler.getMaxThreadCount());
+      assertEquals(6, scheduler.getMaxMergeCount());
+
+      // no more queries: catch up
+      scheduler.refreshLoad(QueryLoad.NONE);
+      assertEquals(Load.IDLE, scheduler.getLoad());
+      assertEquals(3, scheduler.getMaxThreadCount());
+      assertFalse(scheduler.getAutoIOThrottle());
+
+      scheduler.refreshLoad(new QueryLoad(50, 10));
+      assertEquals(Load.NORMAL, scheduler.getLoad());
+      assertEquals(3, scheduler.getMaxThreadCount());
+      assertTrue(scheduler.getAutoIOThrottle());
+    }
+  }
+
+  @Test
+  public void testBusyRequestRate() throws Exception {
+    try (QueryLoadAwareMergeScheduler scheduler = new QueryLoadAwareMergeScheduler()) {
+      scheduler.setBusyRequestsPerSecond(100);
+      scheduler.refreshLoad(new QueryLoad(50, 10));
+      assertEquals(Load.NORMAL, scheduler.getLoad());
+      scheduler.refreshLoad(new QueryLoad(200, 10));
+      assertEquals(Load.BUSY, scheduler.getLoad());
+      // merge threads are auto detected on the first merge
+      assertEquals(
+          QueryLoadAwareMergeScheduler.AUTO_DETECT_MERGES_AND_THREADS,
+          scheduler.getMaxThreadCount());
+
+      // as auto detection does, then the busy thread count applies from the next merge on
+      scheduler.setMaxMergesAndThreads(6, 3);
+      scheduler.setQueryLoad(() -> new QueryLoad(200, 10));
+      scheduler.merge(new NoMerges(), MergeTrigger.EXPLICIT);
+      assertEquals(Load.BUSY, scheduler.getLoad());
+      assertEquals(1, scheduler.getMaxThreadCount());
+
+      scheduler.refreshLoad(new QueryLoad(50, 10));
+      assertEquals(Load.NORMAL, scheduler.getLoad());
+      assertEquals(3, scheduler.getMaxThreadCount());
+    }
+  }
+
+  private static class NoMerges implements MergeScheduler.MergeSource {
+    @Override
+    public MergePolicy.OneMerge getNextMerge() {
+      return null;
+    }
+
+    @Override
+    public void onMergeFinished(MergePolicy.OneMerge merge) {}
+
+    @Override
+    public boolean hasPendingMerges() {
+      return false;
+    }
+
+    @Override
+    public void merge(MergePolicy.OneMerge merge) {}
+  }
+}
@@ -17,6 +17,7 @@
 package org.apache.solr.schema;
 
 import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -24,9 +25,12 @@ import java.util.List;
 import java.util.Map;
 import org.apache.lucene.index.VectorEncoding;
 import org.apache.lucene.index.VectorSimilarityFunction;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TopDocs;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.core.AbstractBadConfigTestBase;
+import org.apache.solr.search.neural.FilteredKnnVectorQuery;
 import org.apache.solr.util.vector.DenseVectorParser;
 import org.hamcrest.MatcherAssert;
 import org.junit.Before;
@@ -67,6 +71,23 @@ public class DenseVectorFieldTest extends AbstractBadConfigTestBase {
         "No enum constant org.apache.lucene.index.VectorSimilarityFunction.NOT_EXISTENT");
   }
 
+  @Test
+  public void fieldTypeDefinition_badVectorQuantization_shouldThrowException() throws Exception {
+    assertConfigs(
+        "solrconfig-basic.xml",
+        "bad-schema-densevector-quantization.xml",
+        "unsupported vector quantization: 'int4'");
+  }
+
+  @Test
+  public void fieldTypeDefinition_byteEncodingQuantization_shouldThrowException()
+      throws Exception {
+    assertConfigs(
+        "solrconfig-basic.xml",
+        "bad-schema-densevector-quantization-byte.xml",
+        "vector quantization is only supported with the FLOAT32 vector encoding");
+  }
+
   @Test
   public void fieldDefinition_docValues_shouldThrowException() throws Exception {
     assertConfigs(
@@ -603,6 +624,28 @@ public class DenseVectorFieldTest extends AbstractBadConfigTestBase {
     }
   }
 
+  @Test
+  public void query_knnVectorQueryOnQuantizedField_shouldSearchQuantizedVectors()
+      throws Exception {
+    try {
+      initCore("solrconfig-basic.xml", "schema-densevector.xml");
+      assertU(adoc("id", "0", "vector_int8_quantization", "[1.0, 2.0, 3.0, 4.0]"));
+      assertU(adoc("id", "1", "vector_int8_quantization", "[4.0, 3.0, 2.0, 1.0]"));
+      assertU(adoc("id", "2", "vector_int8_quantization", "[1.5, 2.5, 3.5, 4.5]"));
+      assertU(commit());
+
+      SchemaField field = h.getCore().getLatestSchema().getField("vector_int8_quantization");
+      DenseVectorField type = (DenseVectorField) field.getType();
+      Query query = type.getKnnVectorQuery(field.getName(), "[1.0, 2.0, 3.0, 4.0]", 2, null);
+
+      MatcherAssert.assertThat(query, instanceOf(FilteredKnnVectorQuery.class));
+      TopDocs topDocs = h.getCore().withSearcher(searcher -> searcher.search(query, 10));
+      assertEquals(2, topDocs.scoreDocs.length);
+    } finally {
+      deleteCore();
+    }
+  }
+
   @Test
   public void denseVectorField_shouldBePresentAfterAtomicUpdate() throws Exception {
     assumeTrue(
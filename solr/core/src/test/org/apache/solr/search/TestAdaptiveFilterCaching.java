@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.WildcardQuery;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.metrics.MetricsMap;
+import org.apache.solr.metrics.SolrMetricManager;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Verify that filters much larger than the most selective one of a request are not cached */
+public class TestAdaptiveFilterCaching extends SolrTestCaseJ4 {
+
+  private static final int NUM_DOCS = 300;
+  private static final int NUM_RARE = NUM_DOCS / 100;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    System.setProperty("solr.test.useFilterForSortedQuery", "false");
+    System.setProperty("solr.test.adaptiveFilterCaching", "true");
+    initCore("solrconfig-deeppaging.xml", "schema-sorts.xml");
+
+    for (int i = 0; i < NUM_DOCS; i++) {
+      assertU(
+          adoc(
+              "id",
+              Integer.toString(i),
+              "str",
+              i % 100 == 0 ? "rare" : "common",
+              "str_last",
+              "all"));
+      if (random().nextInt(NUM_DOCS / 4) == 0) {
+        assertU(commit()); // sometimes make multiple segments
+      }
+    }
+    assertU(commit());
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    System.clearProperty("solr.test.useFilterForSortedQuery");
+    System.clearProperty("solr.test.adaptiveFilterCaching");
+  }
+
+  private static long lookupFilterCacheInserts(SolrCore core) {
+    return (long)
+        ((MetricsMap)
+                ((SolrMetricManager.GaugeWrapper<?>)
+                        core.getCoreMetricManager()
+                            .getRegistry()
+                            .getMetrics()
+                            .get("CACHE.searcher.filterCache"))
+                    .getGauge())
+            .getValue()
+            .get("inserts");
+  }
+
+  @Test
+  public void testEstimates() throws Exception {
+    h.getCore()
+        .withSearcher(
+            searcher -> {
+              TermQuery rare = new TermQuery(new Term("str", "rare"));
+              TermQuery all = new TermQuery(new Term("str_last", "all"));
+              assertEquals(NUM_RARE, FilterCostEstimator.estimateMatches(rare, searcher));
+              assertEquals(
+                  NUM_DOCS,
+                  FilterCostEstimator.estimateMatches(new MatchAllDocsQuery(), searcher));
+              assertEquals(
+                  NUM_RARE,
+                  FilterCostEstimator.estimateMatches(
+                      new BooleanQuery.Builder()
+                          .add(all, BooleanClause.Occur.FILTER)
+                          .add(rare, BooleanClause.Occur.MUST)
+                          .build(),
+                      searcher));
+              assertEquals(
+                  NUM_DOCS,
+                  FilterCostEstimator.estimateMatches(
+                      new BooleanQuery.Builder()
+                          .add(all, BooleanClause.Occur.SHOULD)
+                          .add(rare, BooleanClause.Occur.SHOULD)
+                          .build(),
+                      searcher));
+              assertEquals(
+                  FilterCostEstimator.UNKNOWN,
+                  FilterCostEstimator.estimateMatches(
+                      new WildcardQuery(new Term("str", "r*")), searcher));
+              return null;
+            });
+  }
+
+  @Test
+  public void testLargeFilterNotCached() throws Exception {
+    final String expectNumFound = "/response/numFound==" + NUM_RARE;
+
+    h.reload();
+    assertJQ(req("q", "*:*", "fq", "str_last:all", "fq", "str:rare"), expectNumFound);
+    assertEquals(1, lookupFilterCacheInserts(h.getCore()));
+
+    // order of the filters doesn't matter
+    h.reload();
+    assertJQ(req("q", "*:*", "fq", "str:rare", "fq", "str_last:all"), expectNumFound);
+    assertEquals(1, lookupFilterCacheInserts(h.getCore()));
+
+    // filters of comparable sizes are both cached
+    h.reload();
+    assertJQ(
+        req("q", "*:*", "fq", "str_last:all", "fq", "str:common"),
+        "/response/numFound==" + (NUM_DOCS - NUM_RARE));
+    assertEquals(2, lookupFilterCacheInserts(h.getCore()));
+
+    // a single filter is always cached
+    h.reload();
+    assertJQ(req("q", "*:*", "fq", "str_last:all"), "/response/numFound==" + NUM_DOCS);
+    assertEquals(1, lookupFilterCacheInserts(h.getCore()));
+
+    // negative filters are never deferred
+    h.reload();
+    assertJQ(req("q", "*:*", "fq", "str:rare", "fq", "-str_last:all"), "/response/numFound==0");
+    assertEquals(2, lookupFilterCacheInserts(h.getCore()));
+  }
+}
@@ -220,7 +220,12 @@ public class TestCollapseQParserPlugin extends SolrTestCaseJ4 {
 
   @Test
   public void testStringCollapse() {
-    for (final String hint : new String[] {"", " hint=" + CollapsingQParserPlugin.HINT_TOP_FC}) {
+    for (final String hint :
+        new String[] {
+          "",
+          " hint=" + CollapsingQParserPlugin.HINT_TOP_FC,
+          " hint=" + CollapsingQParserPlugin.HINT_SEGMENT
+        }) {
       testCollapseQueries("group_s", hint, false);
       testCollapseQueries("group_s_dv", hint, false);
     }
@@ -107,6 +107,10 @@ public class TestDocSet extends SolrTestCase {
     return new BitDocSet(bs);
   }
 
+  public DocSet getRoaringDocSet(FixedBitSet bs) {
+    return RoaringDocSet.fromBits(bs, bs.length());
+  }
+
   public DocSlice getDocSlice(FixedBitSet bs) {
     int len = bs.cardinality();
     int[] arr = new int[len + 5];
@@ -128,7 +132,7 @@ public class TestDocSet extends SolrTestCase {
   }
 
   public DocSet getDocSet(FixedBitSet bs) {
-    switch (rand.nextInt(9)) {
+    switch (rand.nextInt(10)) {
       case 0:
       case 1:
       case 2:
@@ -145,6 +149,8 @@ public class TestDocSet extends SolrTestCase {
         return getIntDocSet(bs);
       case 8:
         return getIntDocSet(bs);
+      case 9:
+        return getRoaringDocSet(bs);
     }
     return null;
   }
@@ -224,6 +230,91 @@ public class TestDocSet extends SolrTestCase {
     // doMany(130, 1000000);
   }
 
+  /** Creates a set spanning several roaring blocks, each of them empty, sparse or dense */
+  private FixedBitSet getRandomBlockSet(int maxDoc) {
+    FixedBitSet bs = new FixedBitSet(maxDoc);
+    for (int base = 0; base < maxDoc; base += RoaringDocSet.BLOCK_SIZE) {
+      int blockSize = Math.min(RoaringDocSet.BLOCK_SIZE, maxDoc - base);
+      int bitsToSet;
+      switch (rand.nextInt(4)) {
+        case 0:
+          bitsToSet = 0;
+          break;
+        case 1:
+          bitsToSet = rand.nextInt(RoaringDocSet.MAX_ARRAY_LENGTH + 1);
+          break;
+        case 2:
+          bitsToSet = RoaringDocSet.MAX_ARRAY_LENGTH + rand.nextInt(3) - 1;
+          break;
+        default:
+          bitsToSet = rand.nextInt(blockSize);
+          break;
+      }
+      for (int i = 0; i < bitsToSet; i++) {
+        bs.set(base + rand.nextInt(blockSize));
+      }
+    }
+    return bs;
+  }
+
+  public void testRoaringDocSet() {
+    for (int iter = 0; iter < 20; iter++) {
+      int maxDoc = RoaringDocSet.BLOCK_SIZE * (1 + rand.nextInt(4)) + rand.nextInt(1000);
+      FixedBitSet bs1 = getRandomBlockSet(maxDoc);
+      FixedBitSet bs2 = getRandomBlockSet(maxDoc);
+
+      DocSet r1 = getRoaringDocSet(bs1);
+      DocSet r2 = getRoaringDocSet(bs2);
+      checkEqual(bs1, r1);
+      iter(new BitDocSet(bs1), r1);
+      iter(r1, RoaringDocSet.of(getIntDocSet(bs1), maxDoc));
+      assertTrue(DocSetUtil.equals(r1, r1.clone()));
+      assertEquals(bs1, r1.getFixedBitSetClone());
+
+      FixedBitSet a_and = bs1.clone();
+      a_and.and(bs2);
+      FixedBitSet a_or = bs1.clone();
+      a_or.or(bs2);
+      FixedBitSet a_andn = bs1.clone();
+      a_andn.andNot(bs2);
+
+      for (DocSet b2 : new DocSet[] {r2, new BitDocSet(bs2), getIntDocSet(bs2)}) {
+        checkEqual(a_and, r1.intersection(b2));
+        checkEqual(a_and, b2.intersection(r1));
+        checkEqual(a_or, r1.union(b2));
+        checkEqual(a_or, b2.union(r1));
+        checkEqual(a_andn, r1.andNot(b2));
+        iter(new BitDocSet(a_and), r1.intersection(b2));
+        iter(new BitDocSet(a_andn), r1.andNot(b2));
+
+        assertEquals(a_and.cardinality(), r1.intersectionSize(b2));
+        assertEquals(a_and.cardinality(), b2.intersectionSize(r1));
+        assertEquals(a_and.cardinality() > 0, r1.intersects(b2));
+        assertEquals(a_or.cardinality(), r1.unionSize(b2));
+        assertEquals(a_andn.cardinality(), r1.andNotSize(b2));
+      }
+
+      // compacting never changes the content of a set
+      DocSet compacted = DocSetUtil.compact(new BitDocSet(bs1), maxDoc);
+      iter(new BitDocSet(bs1), compacted);
+      if (compacted instanceof RoaringDocSet) {
+        assertTrue(compacted.ramBytesUsed() < new BitDocSet(bs1).ramBytesUsed());
+      }
+    }
+  }
+
+  public void testCompactSparseSet() {
+    int maxDoc = RoaringDocSet.BLOCK_SIZE * 16;
+    FixedBitSet bs = new FixedBitSet(maxDoc);
+    // all docs clustered in a single block
+    for (int i = 0; i < 1000; i++) {
+      bs.set(RoaringDocSet.BLOCK_SIZE * 3 + rand.nextInt(RoaringDocSet.BLOCK_SIZE));
+    }
+    DocSet compacted = DocSetUtil.compact(new BitDocSet(bs), maxDoc);
+    assertTrue(compacted instanceof RoaringDocSet);
+    iter(new BitDocSet(bs), compacted);
+  }
+
   public DocSet getRandomDocSet(int n, int maxDoc) {
     FixedBitSet obs = new FixedBitSet(maxDoc);
     int[] a = new int[n];
@@ -583,6 +674,7 @@ public class TestDocSet extends SolrTestCase {
     FixedBitSet bs = getRandomSet(reader.maxDoc(), rand.nextInt(reader.maxDoc() + 1));
     DocSet a = new BitDocSet(bs);
     DocSet b = getIntDocSet(bs);
+    DocSet c = getRoaringDocSet(bs);
 
     //    Query fa = a.makeQuery();
     //    Query fb = b.makeQuery();
@@ -602,7 +694,8 @@ public class TestDocSet extends SolrTestCase {
       doTestIteratorEqual(
           getExpectedBits(a, readerContext),
           () -> a.iterator(readerContext),
-          () -> b.iterator(readerContext));
+          () -> b.iterator(readerContext),
+          () -> c.iterator(readerContext));
     }
 
     int nReaders = leaves.size();
@@ -612,7 +705,8 @@ public class TestDocSet extends SolrTestCase {
       doTestIteratorEqual(
           getExpectedBits(a, readerContext),
           () -> a.iterator(readerContext),
-          () -> b.iterator(readerContext));
+          () -> b.iterator(readerContext),
+          () -> c.iterator(readerContext));
     }
   }
 
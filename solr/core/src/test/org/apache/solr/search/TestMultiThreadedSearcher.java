@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.index.NoMergePolicyFactory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Verify that queries collected concurrently over segment slices return the sequential results */
+public class TestMultiThreadedSearcher extends SolrTestCaseJ4 {
+
+  private static final int NUM_SEGMENTS = 12;
+  private static final int DOCS_PER_SEGMENT = 10;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    System.setProperty("solr.indexSearcherExecutorThreads", "4");
+    // small segments are grouped into slices of up to 5 segments, we need more than one slice
+    systemSetPropertySolrTestsMergePolicyFactory(NoMergePolicyFactory.class.getName());
+    initCore("solrconfig.xml", "schema_latest.xml");
+
+    int id = 0;
+    for (int segment = 0; segment < NUM_SEGMENTS; segment++) {
+      for (int i = 0; i < DOCS_PER_SEGMENT; i++, id++) {
+        assertU(
+            adoc(
+                "id", Integer.toString(id),
+                "val_i", Integer.toString(id),
+                "field_s", id % 2 == 0 ? "a" : "b"));
+      }
+      assertU(commit());
+    }
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    System.clearProperty("solr.indexSearcherExecutorThreads");
+    systemClearPropertySolrTestsMergePolicyFactory();
+  }
+
+  @Test
+  public void testSearcherHasSlices() throws Exception {
+    h.getCore()
+        .withSearcher(
+            searcher -> {
+              assertNotNull(searcher.getExecutor());
+              assertTrue(searcher.getSlices().length > 1);
+              return null;
+            });
+  }
+
+  @Test
+  public void testTopDocs() throws Exception {
+    // docs with the highest values are in the last segments, the lowest ones in the first
+    assertJQ(
+        req("q", "*:*", "sort", "val_i desc", "rows", "3", "fl", "id"),
+        "/response/numFound==120",
+        "/response/docs==[{'id':'119'},{'id':'118'},{'id':'117'}]");
+    assertJQ(
+        req("q", "field_s:a", "sort", "val_i asc", "rows", "3", "fl", "id"),
+        "/response/numFound==60",
+        "/response/docs==[{'id':'0'},{'id':'2'},{'id':'4'}]");
+    assertJQ(
+        req("q", "field_s:b", "rows", "0", "fl", "id,score"),
+        "/response/numFound==60",
+        "/response/maxScore>0.0");
+    assertJQ(
+        req("q", "field_s:b", "rows", "5", "fl", "id,score"),
+        "/response/numFound==60",
+        "/response/maxScore>0.0");
+  }
+
+  @Test
+  public void testDocSet() throws Exception {
+    // faceting needs the DocSet of all matches
+    assertJQ(
+        req("q", "val_i:[10 TO 59]", "rows", "2", "facet", "true", "facet.field", "field_s"),
+        "/response/numFound==50",
+        "/facet_counts/facet_fields/field_s==['a',25,'b',25]");
+    assertJQ(
+        req("q", "val_i:[10 TO 59]", "rows", "0", "facet", "true", "facet.field", "field_s"),
+        "/response/numFound==50",
+        "/facet_counts/facet_fields/field_s==['a',25,'b',25]");
+  }
+
+  @Test
+  public void testPostFilters() throws Exception {
+    // frange supports concurrent collection, every slice gets its own collector
+    assertJQ(
+        req(
+            "q", "*:*",
+            "fq", "{!frange l=100 cache=false cost=200}val_i",
+            "sort", "val_i asc",
+            "rows", "2",
+            "fl", "id",
+            "facet", "true",
+            "facet.field", "field_s"),
+        "/response/numFound==20",
+        "/response/docs==[{'id':'100'},{'id':'101'}]",
+        "/facet_counts/facet_fields/field_s==['a',10,'b',10]");
+
+    // collapsing needs to see all matches, it is collected sequentially
+    assertJQ(
+        req("q", "*:*", "fq", "{!collapse field=field_s min=val_i}", "sort", "id asc"),
+        "/response/numFound==2");
+  }
+}
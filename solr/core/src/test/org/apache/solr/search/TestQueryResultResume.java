@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import static org.apache.solr.common.util.Utils.fromJSONString;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.metrics.SolrMetricManager;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Verify that deeper pages continue collecting from a cached, shallower page of the same query */
+public class TestQueryResultResume extends SolrTestCaseJ4 {
+
+  private static final int NUM_DOCS = 200;
+  private static final String QUERY = "int_dv:[0 TO 15]";
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    System.setProperty("solr.test.useFilterForSortedQuery", "false");
+    System.setProperty("solr.test.queryResultWindowSize", "10");
+    System.setProperty("solr.test.resumeCachedQueryResults", "true");
+    initCore("solrconfig-deeppaging.xml", "schema-sorts.xml");
+
+    for (int i = 0; i < NUM_DOCS; i++) {
+      assertU(adoc("id", Integer.toString(i), "int_dv", Integer.toString(random().nextInt(20))));
+      if (random().nextInt(NUM_DOCS / 4) == 0) {
+        assertU(commit()); // sometimes make multiple segments
+      }
+    }
+    assertU(commit());
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    System.clearProperty("solr.test.useFilterForSortedQuery");
+    System.clearProperty("solr.test.queryResultWindowSize");
+    System.clearProperty("solr.test.resumeCachedQueryResults");
+  }
+
+  private static long resumedSortCount() {
+    return (long)
+        ((SolrMetricManager.GaugeWrapper<?>)
+                h.getCore()
+                    .getCoreMetricManager()
+                    .getRegistry()
+                    .getMetrics()
+                    .get("SEARCHER.searcher.resumedSortCount"))
+            .getGauge()
+            .getValue();
+  }
+
+  private static List<String> ids(String q, String sort, int start, int rows) throws Exception {
+    String response =
+        sort == null
+            ? JQ(req("q", q, "fl", "id", "start", "" + start, "rows", "" + rows))
+            : JQ(req("q", q, "fl", "id", "sort", sort, "start", "" + start, "rows", "" + rows));
+    @SuppressWarnings("unchecked")
+    Map<String, Object> body =
+        (Map<String, Object>) (((Map<?, ?>) fromJSONString(response)).get("response"));
+    List<String> ids = new ArrayList<>();
+    for (Object doc : (List<?>) body.get("docs")) {
+      ids.add((String) ((Map<?, ?>) doc).get("id"));
+    }
+    return ids;
+  }
+
+  @Test
+  public void testDeepPages() throws Exception {
+    for (String sort :
+        new String[] {null, "int_dv asc,id desc", "int_dv desc,id asc", "score desc,id asc"}) {
+      List<String> expected = ids("{!lucene cache=false}" + QUERY, sort, 0, NUM_DOCS);
+      assertTrue(expected.size() > 50);
+
+      long resumed = resumedSortCount();
+      // first page is collected from scratch and cached
+      assertEquals(expected.subList(0, 10), ids(QUERY, sort, 0, 10));
+      assertEquals(resumed, resumedSortCount());
+
+      // next pages continue after the cached top docs
+      assertEquals(expected.subList(10, 20), ids(QUERY, sort, 10, 10));
+      assertEquals(++resumed, resumedSortCount());
+      assertEquals(expected.subList(35, 45), ids(QUERY, sort, 35, 10));
+      assertEquals(++resumed, resumedSortCount());
+
+      // served from the grown cache entry
+      assertEquals(expected.subList(12, 30), ids(QUERY, sort, 12, 18));
+      assertEquals(resumed, resumedSortCount());
+
+      // beyond the last match
+      assertEquals(
+          expected.subList(expected.size() - 5, expected.size()),
+          ids(QUERY, sort, expected.size() - 5, 10));
+      assertEquals(++resumed, resumedSortCount());
+    }
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.util.Map;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.index.NoMergePolicyFactory;
+import org.apache.solr.metrics.MetricsMap;
+import org.apache.solr.metrics.SolrMetricManager;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Verify that the segmentFilterCache backs the filterCache and survives commits */
+public class TestSegmentFilterCache extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    System.setProperty("solr.segmentFilterCache.enabled", "true");
+    // segment identity must be predictable across commits
+    systemSetPropertySolrTestsMergePolicyFactory(NoMergePolicyFactory.class.getName());
+    initCore("solrconfig.xml", "schema_latest.xml");
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    System.clearProperty("solr.segmentFilterCache.enabled");
+    systemClearPropertySolrTestsMergePolicyFactory();
+  }
+
+  private static Map<String, Object> lookupCacheMetrics(SolrCore core, String cacheName) {
+    return ((MetricsMap)
+            ((SolrMetricManager.GaugeWrapper<?>)
+                    core.getCoreMetricManager()
+                        .getRegistry()
+                        .getMetrics()
+                        .get("CACHE.searcher." + cacheName))
+                .getGauge())
+        .getValue();
+  }
+
+  @Test
+  public void testReuseAcrossCommits() throws Exception {
+    for (int i = 0; i < 10; i++) {
+      assertU(adoc("id", Integer.toString(i), "field_s", i % 2 == 0 ? "a" : "b"));
+    }
+    assertU(commit());
+    for (int i = 10; i < 20; i++) {
+      assertU(adoc("id", Integer.toString(i), "field_s", i % 2 == 0 ? "a" : "b"));
+    }
+    assertU(commit());
+
+    assertJQ(req("q", "*:*", "fq", "field_s:a"), "/response/numFound==10");
+    Map<String, Object> segmentMetrics = lookupCacheMetrics(h.getCore(), "segmentFilterCache");
+    assertEquals(2L, segmentMetrics.get("inserts")); // one per segment
+    assertEquals(2, segmentMetrics.get("size"));
+
+    // a new segment: autowarming of the filterCache only needs to compute the new one
+    assertU(adoc("id", "20", "field_s", "a"));
+    assertU(commit());
+    segmentMetrics = lookupCacheMetrics(h.getCore(), "segmentFilterCache");
+    assertEquals(1L, segmentMetrics.get("inserts"));
+    assertEquals(2L, segmentMetrics.get("hits"));
+    assertEquals(3, segmentMetrics.get("size"));
+    assertJQ(req("q", "*:*", "fq", "field_s:a"), "/response/numFound==11");
+
+    // deletions don't change the segment core keys; cached segment sets must still be filtered
+    assertU(delI("0"));
+    assertU(commit());
+    segmentMetrics = lookupCacheMetrics(h.getCore(), "segmentFilterCache");
+    assertEquals(0L, segmentMetrics.get("inserts"));
+    assertEquals(3L, segmentMetrics.get("hits"));
+    assertJQ(req("q", "*:*", "fq", "field_s:a"), "/response/numFound==10");
+    assertJQ(req("q", "*:*", "fq", "-field_s:a"), "/response/numFound==10");
+
+    // uncached filters don't populate the segmentFilterCache
+    assertJQ(req("q", "*:*", "fq", "{!cache=false}field_s:b"), "/response/numFound==10");
+    segmentMetrics = lookupCacheMetrics(h.getCore(), "segmentFilterCache");
+    assertEquals(0L, segmentMetrics.get("inserts"));
+  }
+}
@@ -155,6 +155,83 @@ public class TestJsonFacetRefinement extends SolrTestCaseHS {
     }
   }
 
+  Object doMerge(String facet, String... responses) throws Exception {
+    SolrQueryRequest req = req();
+    try {
+      FacetRequest facetRequest =
+          new FacetParser.FacetTopParser(req).parse(Utils.fromJSONString(facet));
+      FacetMerger merger = null;
+      FacetMerger.Context ctx = new FacetMerger.Context(responses.length);
+      for (int i = 0; i < responses.length; i++) {
+        Object response = fromJSON(responses[i]);
+        if (i == 0) {
+          merger = facetRequest.createFacetMerger(response);
+        }
+        ctx.newShard("s" + i);
+        merger.merge(response, ctx);
+      }
+      return merger.getMergedResult();
+    } finally {
+      req.close();
+    }
+  }
+
+  @Test
+  public void testStreamMerge() throws Exception {
+    String[] shards = {
+      "{x: {buckets:[{val:a, count:1}, {val:c, count:3}, {val:d, count:1}], more:true } }",
+      "{x: {buckets:[{val:b, count:4}, {val:c, count:2}], more:true } }",
+      "{x: {buckets:[] } }",
+      "{x: {buckets:[{val:a, count:2}, {val:d, count:2}, {val:e, count:1}] } }"
+    };
+
+    for (String params :
+        new String[] {
+          "sort:'index asc', limit:-1",
+          "sort:'index asc', limit:2",
+          "sort:'index asc', limit:2, offset:1",
+          "sort:'index asc', limit:-1, mincount:3",
+          "sort:'index desc', limit:3",
+          "sort:'count desc', limit:2" // not streamable, falls back to hashing
+        }) {
+      String hash = "{x : {type:terms, field:X, " + params + "} }";
+      String stream = "{x : {type:terms, field:X, merge:stream, " + params + "} }";
+      assertEquals(params, doMerge(hash, shards), doMerge(stream, shards));
+    }
+
+    match(
+        doMerge("{x : {type:terms, field:X, sort:'index asc', merge:stream, limit:2} }", shards),
+        1e-5,
+        "=={x:{buckets:[{val:a,count:3},{val:b,count:4}]}}");
+
+    // sub-facets are merged per streamed bucket
+    String[] shardsWithSubs = {
+      "{x: {buckets:[{val:a, count:1, y:{buckets:[{val:q, count:1}]}}, {val:c, count:3, y:{buckets:[]}}] } }",
+      "{x: {buckets:[{val:c, count:2, y:{buckets:[{val:q, count:2}, {val:r, count:1}]}}] } }"
+    };
+    String subFacet = "facet:{y:{type:terms, field:Y}}";
+    assertEquals(
+        doMerge("{x : {type:terms, field:X, sort:index, " + subFacet + "} }", shardsWithSubs),
+        doMerge(
+            "{x : {type:terms, field:X, sort:index, merge:stream, " + subFacet + "} }",
+            shardsWithSubs));
+
+    // refinement needs to know which shard saw which bucket, so it takes precedence over streaming
+    SolrQueryRequest req = req();
+    try {
+      FacetRequest facetRequest =
+          new FacetParser.FacetTopParser(req)
+              .parse(
+                  Utils.fromJSONString(
+                      "{x : {type:terms, field:X, sort:index, merge:stream, refine:true} }"));
+      FacetField x = (FacetField) facetRequest.getSubFacets().get("x");
+      assertTrue(x.streamMerge);
+      assertFalse(new FacetFieldMerger(x).isStreaming(new FacetMerger.Context(2)));
+    } finally {
+      req.close();
+    }
+  }
+
   @Test
   public void testMerge() throws Exception {
 
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.facet;
+
+import java.util.Locale;
+import java.util.Map;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.index.NoMergePolicyFactory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.noggit.ObjectBuilder;
+
+/** Verify that terms facets collected with several threads match the serially collected ones */
+public class TestJsonFacetThreads extends SolrTestCaseJ4 {
+
+  private static final int NUM_SEGMENTS = 8;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    // we need DVs on point fields to compute stats & facets
+    if (Boolean.getBoolean(NUMERIC_POINTS_SYSPROP))
+      System.setProperty(NUMERIC_DOCVALUES_SYSPROP, "true");
+    systemSetPropertySolrTestsMergePolicyFactory(NoMergePolicyFactory.class.getName());
+    initCore("solrconfig.xml", "schema_latest.xml");
+
+    int id = 0;
+    for (int segment = 0; segment < NUM_SEGMENTS; segment++) {
+      final int numDocs = atLeast(10);
+      for (int i = 0; i < numDocs; i++, id++) {
+        // integral values keep sums exact whichever order they are added in
+        assertU(
+            adoc(
+                "id", Integer.toString(id),
+                "cat_s", "c" + random().nextInt(10),
+                "tags_ss", "t" + random().nextInt(5),
+                "tags_ss", "t" + random().nextInt(5),
+                "num_i", Integer.toString(random().nextInt(100) - 50),
+                "num_l", Long.toString(random().nextInt(1000)),
+                "num_d", Double.toString(random().nextInt(200) - 100),
+                "date_dt", "2020-01-0" + (1 + random().nextInt(9)) + "T00:00:00Z"));
+      }
+      assertU(commit());
+    }
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    systemClearPropertySolrTestsMergePolicyFactory();
+  }
+
+  @Test
+  public void testCounts() throws Exception {
+    assertSameFacets("{f:{type:terms, field:cat_s, method:dv, limit:-1, %s}}");
+    assertSameFacets("{f:{type:terms, field:tags_ss, method:dv, limit:-1, %s}}");
+    assertSameFacets("{f:{type:terms, field:tags_ss, method:dv, prefix:t1, %s}}");
+    assertSameFacets("{f:{type:terms, field:cat_s, method:dv, mincount:2, sort:'count asc', %s}}");
+  }
+
+  @Test
+  public void testStats() throws Exception {
+    assertSameFacets(
+        "{f:{type:terms, field:cat_s, method:dv, limit:-1, %s, facet:{"
+            + " sum:'sum(num_i)', min:'min(num_d)', max:'max(num_d)',"
+            + " minl:'min(num_l)', maxdt:'max(date_dt)',"
+            + " u:'unique(num_i)', us:'unique(tags_ss)', h:'hll(num_l)' }}}");
+    assertSameFacets(
+        "{f:{type:terms, field:tags_ss, method:dv, sort:'s desc', %s,"
+            + " facet:{ s:'sum(num_d)', m:'max(num_i)' }}}");
+  }
+
+  @Test
+  public void testFallsBackToSerial() throws Exception {
+    // allBuckets and sub-facets are collected serially, but must still give the same result
+    assertSameFacets("{f:{type:terms, field:cat_s, method:dv, allBuckets:true, %s}}");
+    assertSameFacets(
+        "{f:{type:terms, field:cat_s, method:dv, %s,"
+            + " facet:{ sub:{type:terms, field:tags_ss}}}}");
+  }
+
+  private void assertSameFacets(String facet) throws Exception {
+    final Object serial = getFacets(String.format(Locale.ROOT, facet, "threads:0"));
+    for (String threads : new String[] {"threads:2", "threads:4", "threads:-1"}) {
+      assertEquals(threads, serial, getFacets(String.format(Locale.ROOT, facet, threads)));
+    }
+  }
+
+  private Object getFacets(String facet) throws Exception {
+    String response =
+        h.query(
+            req("q", "*:*", "rows", "0", "wt", "json", "omitHeader", "true", "json.facet", facet));
+    return ((Map<?, ?>) ObjectBuilder.fromJSON(response)).get("facets");
+  }
+}
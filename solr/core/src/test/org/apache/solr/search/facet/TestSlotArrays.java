@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.facet;
+
+import java.util.Arrays;
+import org.apache.solr.SolrTestCase;
+import org.junit.Test;
+
+public class TestSlotArrays extends SolrTestCase {
+
+  @Test
+  public void testStorages() {
+    final int size = SlotArrays.PAGE_SIZE * 2 + random().nextInt(SlotArrays.PAGE_SIZE);
+    final long[] expected = new long[size];
+    for (SlotArrays.Storage storage : SlotArrays.Storage.values()) {
+      SlotArrays.LongArray array = SlotArrays.newLongArray(size, storage);
+      assertEquals(size, array.size());
+      for (int i = 0; i < 1000; i++) {
+        final int index = random().nextInt(size);
+        final long value = random().nextLong();
+        array.set(index, value);
+        expected[index] = value;
+        array.add(index, 3);
+        expected[index] += 3;
+      }
+      array.add(size - 1, 1);
+      expected[size - 1] += 1;
+      for (int i = 0; i < size; i++) {
+        assertEquals(storage + " index=" + i, expected[i], array.get(i));
+      }
+
+      array.fill(7);
+      assertEquals(7, array.get(0));
+      assertEquals(7, array.get(SlotArrays.PAGE_SIZE));
+      assertEquals(7, array.get(size - 1));
+      Arrays.fill(expected, 0);
+    }
+  }
+
+  @Test
+  public void testReleasedOffHeapPagesAreReused() {
+    final int size = SlotArrays.PAGE_SIZE + 10;
+    SlotArrays.LongArray released = SlotArrays.newLongArray(size, SlotArrays.Storage.OFFHEAP);
+    released.fill(42);
+    released.release();
+    released.release(); // no-op
+    expectThrows(NullPointerException.class, () -> released.get(0));
+
+    // pages coming from the pool are cleared
+    SlotArrays.LongArray array = SlotArrays.newLongArray(size, SlotArrays.Storage.OFFHEAP);
+    for (int i = 0; i < size; i++) {
+      assertEquals(0, array.get(i));
+    }
+    array.release();
+  }
+
+  @Test
+  public void testMergeAndResize() {
+    final int size = SlotArrays.PAGE_SIZE + 10;
+    SlotArrays.LongArray a = SlotArrays.newLongArray(size, SlotArrays.Storage.PAGED);
+    SlotArrays.LongArray b = SlotArrays.newLongArray(size, SlotArrays.Storage.OFFHEAP);
+    a.set(1, 5);
+    b.set(1, 2);
+    b.set(size - 1, 4);
+    a.add(b);
+    assertEquals(7, a.get(1));
+    assertEquals(4, a.get(size - 1));
+
+    // keep every other slot
+    SlotAcc.Resizer resizer =
+        new SlotAcc.Resizer() {
+          @Override
+          public int getNewSize() {
+            return (size + 1) / 2;
+          }
+
+          @Override
+          public int getNewSlot(int oldSlot) {
+            return (oldSlot & 1) == 1 ? oldSlot >> 1 : -1;
+          }
+        };
+    SlotArrays.LongArray resized = resizer.resize(a, 0);
+    assertEquals((size + 1) / 2, resized.size());
+    assertEquals(7, resized.get(0));
+    assertEquals(4, resized.get((size - 1) >> 1));
+  }
+}
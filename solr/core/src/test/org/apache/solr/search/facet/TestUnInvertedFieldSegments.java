@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.facet;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.index.NoMergePolicyFactory;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.util.RefCounted;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Verify that an {@link UnInvertedField} reuses the segments of the one it is warmed from */
+public class TestUnInvertedFieldSegments extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    systemSetPropertySolrTestsMergePolicyFactory(NoMergePolicyFactory.class.getName());
+    initCore("solrconfig.xml", "schema_latest.xml");
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    systemClearPropertySolrTestsMergePolicyFactory();
+  }
+
+  @Before
+  public void clearIndex() {
+    assertU(delQ("*:*"));
+    assertU(commit());
+  }
+
+  private void addSegment(int firstId, String... tags) {
+    for (int i = 0; i < tags.length; i++) {
+      assertU(adoc("id", Integer.toString(firstId + i), "tags_ss", tags[i], "tags_ss", "all"));
+    }
+    assertU(commit());
+  }
+
+  @Test
+  public void testReuseSegments() throws Exception {
+    addSegment(0, "a", "b", "c");
+    addSegment(10, "b", "c", "d");
+
+    final UnInvertedField first;
+    RefCounted<SolrIndexSearcher> ref = h.getCore().getSearcher();
+    try {
+      first = new UnInvertedField("tags_ss", ref.get());
+      assertEquals(0, first.getNumReusedSegments());
+      assertEquals(5, first.numTerms());
+    } finally {
+      ref.decref();
+    }
+
+    addSegment(20, "e", "a");
+    // a deletion doesn't invalidate the segment
+    assertU(delI("10"));
+    assertU(commit());
+
+    ref = h.getCore().getSearcher();
+    try {
+      final UnInvertedField second = new UnInvertedField("tags_ss", ref.get(), first);
+      assertEquals(2, second.getNumReusedSegments());
+      assertEquals(6, second.numTerms());
+
+      // global term numbers follow the term order across segments
+      final UnInvertedField.DocToTerm docToTerm = second.new DocToTerm();
+      String[] expected = {"a", "all", "b", "c", "d", "e"};
+      for (int i = 0; i < expected.length; i++) {
+        assertEquals(expected[i], docToTerm.lookupOrd(i).utf8ToString());
+      }
+      assertEquals(2, docToTerm.ceilOrd(new BytesRef("az")));
+      assertEquals(6, docToTerm.ceilOrd(new BytesRef("f")));
+    } finally {
+      ref.decref();
+    }
+  }
+
+  @Test
+  public void testFacetCounts() throws Exception {
+    addSegment(0, "a", "b", "c", "a");
+    addSegment(10, "b", "c", "d");
+    addSegment(20, "e", "a");
+    assertU(delI("11"));
+    assertU(commit());
+
+    for (String filter : new String[] {"*:*", "-tags_ss:e"}) {
+      assertJQ(
+          req(
+              "q", filter,
+              "rows", "0",
+              "json.facet",
+                  "{f:{type:terms, field:tags_ss, method:uif, limit:-1, sort:'index asc',"
+                      + " facet:{u:'unique(tags_ss)'}}}"),
+          filter.equals("*:*")
+              ? "/facets/f/buckets==["
+                  + "{val:a,count:3,u:2},{val:all,count:8,u:6},{val:b,count:2,u:2},"
+                  + "{val:c,count:1,u:2},{val:d,count:1,u:2},{val:e,count:1,u:2}]"
+              : "/facets/f/buckets==["
+                  + "{val:a,count:3,u:2},{val:all,count:7,u:5},{val:b,count:2,u:2},"
+                  + "{val:c,count:1,u:2},{val:d,count:1,u:2}]");
+    }
+
+    // counts only, a domain bigger than half the index is counted through its complement
+    assertJQ(
+        req(
+            "q", "*:*",
+            "rows", "0",
+            "json.facet",
+                "{f:{type:terms, field:tags_ss, method:uif, limit:-1, sort:'index asc'}}"),
+        "/facets/f/buckets==["
+            + "{val:a,count:3},{val:all,count:8},{val:b,count:2},"
+            + "{val:c,count:1},{val:d,count:1},{val:e,count:1}]");
+
+    assertJQ(
+        req(
+            "q", "*:*",
+            "rows", "0",
+            "json.facet", "{f:{type:terms, field:tags_ss, method:uif, prefix:a, limit:-1}}"),
+        "/facets/f/buckets==[{val:all,count:8},{val:a,count:3}]");
+  }
+}
@@ -22,10 +22,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import org.apache.solr.SolrTestCaseJ4;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.metrics.MetricsMap;
+import org.apache.solr.metrics.SolrMetricManager;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -35,6 +38,7 @@ public class KnnQParserTest extends SolrTestCaseJ4 {
   String vectorField = "vector";
   String vectorField2 = "vector2";
   String vectorFieldByteEncoding = "vector_byte_encoding";
+  String vectorFieldQuantized = "vector_int8_quantization";
 
   @Before
   public void prepareIndex() throws Exception {
@@ -95,6 +99,10 @@ public class KnnQParserTest extends SolrTestCaseJ4 {
         .addField(
             vectorField2, Arrays.asList(1.5f, 2.5f, 3.5f, 4.5f)); // cosine distance vector2= 0.998
 
+    for (int i = 0; i < 10; i++) {
+      docs.get(i).addField(vectorFieldQuantized, docs.get(i).getFieldValues(vectorField));
+    }
+
     docs.get(0).addField(vectorFieldByteEncoding, Arrays.asList(1, 2, 3, 4));
     docs.get(1).addField(vectorFieldByteEncoding, Arrays.asList(2, 2, 1, 4));
     docs.get(2).addField(vectorFieldByteEncoding, Arrays.asList(1, 2, 1, 2));
@@ -434,6 +442,50 @@ public class KnnQParserTest extends SolrTestCaseJ4 {
         "//result/doc[10]/str[@name='id'][.='8']");
   }
 
+  @Test
+  public void quantizedVectorField_shouldRankByFullPrecisionSimilarity() {
+    String vectorToSearch = "[1.0, 2.0, 3.0, 4.0]";
+
+    assertQ(
+        req(
+            CommonParams.Q,
+            "{!knn f=vector_int8_quantization topK=4 oversample=3}" + vectorToSearch,
+            "fl",
+            "id"),
+        "//result[@numFound='4']",
+        "//result/doc[1]/str[@name='id'][.='1']",
+        "//result/doc[2]/str[@name='id'][.='4']",
+        "//result/doc[3]/str[@name='id'][.='2']",
+        "//result/doc[4]/str[@name='id'][.='10']");
+
+    assertQ(
+        req(
+            CommonParams.Q,
+            "{!knn f=vector_int8_quantization topK=2}" + vectorToSearch,
+            "fq",
+            "id:(3 4 9 2)",
+            "fl",
+            "id"),
+        "//result[@numFound='2']",
+        "//result/doc[1]/str[@name='id'][.='4']",
+        "//result/doc[2]/str[@name='id'][.='2']");
+  }
+
+  @Test
+  public void incorrectOversample_shouldThrowException() {
+    String vectorToSearch = "[1.0, 2.0, 3.0, 4.0]";
+
+    assertQEx(
+        "Oversample lower than 1 should throw Exception",
+        "the oversample factor must be at least 1, got: 0.5",
+        req(
+            CommonParams.Q,
+            "{!knn f=vector_int8_quantization oversample=0.5}" + vectorToSearch,
+            "fl",
+            "id"),
+        SolrException.ErrorCode.BAD_REQUEST);
+  }
+
   @Test
   public void knnQueryUsedInFilter_shouldFilterResultsBeforeTheQueryExecution() {
     String vectorToSearch = "[1.0, 2.0, 3.0, 4.0]";
@@ -550,6 +602,70 @@ public class KnnQParserTest extends SolrTestCaseJ4 {
         "//result/doc[4]/str[@name='id'][.='3']");
   }
 
+  @Test
+  public void knnQueryWithFilterQuery_shouldReturnSameResultsWithExactOrApproximateSearch() {
+    String vectorToSearch = "[1.0, 2.0, 3.0, 4.0]";
+
+    for (String exactSearchRatio : new String[] {"0", "1"}) {
+      assertQ(
+          req(
+              CommonParams.Q,
+              "{!knn f=vector topK=2 exactSearchRatio=" + exactSearchRatio + "}" + vectorToSearch,
+              "fq",
+              "id:(3 4 9 2)",
+              "fl",
+              "id"),
+          "//result[@numFound='2']",
+          "//result/doc[1]/str[@name='id'][.='4']",
+          "//result/doc[2]/str[@name='id'][.='2']");
+    }
+  }
+
+  @Test
+  public void knnQueryWithFilterQuery_shouldReuseCachedTopK() {
+    String vectorToSearch = "[1.0, 2.0, 3.0, 4.0]";
+
+    for (int i = 0; i < 2; i++) {
+      assertQ(
+          req(
+              CommonParams.Q,
+              "{!knn f=vector topK=4}" + vectorToSearch,
+              "fq",
+              "id:(3 4 9 2)",
+              "fl",
+              "id"),
+          "//result[@numFound='4']",
+          "//result/doc[1]/str[@name='id'][.='4']",
+          "//result/doc[2]/str[@name='id'][.='2']");
+    }
+    assertEquals(1L, lookupKnnCacheMetrics().get("inserts"));
+    assertTrue((Long) lookupKnnCacheMetrics().get("hits") > 0);
+
+    assertQ(
+        req(
+            CommonParams.Q,
+            "{!knn f=vector topK=4}" + vectorToSearch,
+            "fq",
+            "id:(1 2 7 20)",
+            "fl",
+            "id"),
+        "//result[@numFound='3']",
+        "//result/doc[1]/str[@name='id'][.='1']");
+    assertEquals(2L, lookupKnnCacheMetrics().get("inserts"));
+  }
+
+  private static Map<String, Object> lookupKnnCacheMetrics() {
+    return ((MetricsMap)
+            ((SolrMetricManager.GaugeWrapper<?>)
+                    h.getCore()
+                        .getCoreMetricManager()
+                        .getRegistry()
+                        .getMetrics()
+                        .get("CACHE.searcher." + FilteredKnnVectorQuery.CACHE_NAME))
+                .getGauge())
+        .getValue();
+  }
+
   /**
    * See {@link org.apache.solr.search.ReRankQParserPlugin.ReRankQueryRescorer#combine(float,
    * boolean, float)}} for more details.
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.update;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.solr.SolrTestCase;
+import org.junit.Test;
+
+public class AdaptiveCommitPolicyTest extends SolrTestCase {
+
+  private final AtomicLong clock = new AtomicLong();
+  private final AtomicLong warmTime = new AtomicLong();
+  private final AtomicLong queryLatency = new AtomicLong(-1);
+  private final AtomicInteger warmingSearchers = new AtomicInteger();
+
+  private AdaptiveCommitPolicy newPolicy(long baseTime, long minTime, long maxTime) {
+    return new AdaptiveCommitPolicy(
+        baseTime,
+        minTime,
+        maxTime,
+        warmTime::get,
+        queryLatency::get,
+        warmingSearchers::get,
+        clock::get);
+  }
+
+  /** Adds docs over the given time and commits */
+  private static void commitAfter(
+      AdaptiveCommitPolicy policy, AtomicLong clock, int docs, long millis) {
+    for (int i = 0; i < docs; i++) {
+      policy.addedDocument();
+    }
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    policy.didCommit();
+  }
+
+  @Test
+  public void testIndexRate() {
+    AdaptiveCommitPolicy policy = newPolicy(1000, 100, 10000);
+    assertEquals(1000, policy.getDelay());
+    commitAfter(policy, clock, 100, 1000);
+    assertEquals(1000, policy.getDelay());
+
+    // bulk load: stretched, but at most twice
+    commitAfter(policy, clock, 1000, 1000);
+    assertEquals(2000, policy.getDelay());
+    assertEquals(1, policy.getStretchedCount());
+
+    // trickle: advanced, but at most half
+    commitAfter(policy, clock, 1, 1000);
+    assertEquals(500, policy.getDelay());
+    assertEquals(1, policy.getAdvancedCount());
+  }
+
+  @Test
+  public void testQueryLatencyAndWarming() {
+    AdaptiveCommitPolicy policy = newPolicy(1000, 100, 5000);
+    queryLatency.set(10);
+    commitAfter(policy, clock, 100, 1000);
+    assertEquals(1000, policy.getDelay());
+
+    queryLatency.set(30);
+    commitAfter(policy, clock, 100, 1000);
+    assertEquals(3000, policy.getDelay());
+
+    // faster queries don't advance commits
+    queryLatency.set(1);
+    commitAfter(policy, clock, 100, 1000);
+    assertEquals(1000, policy.getDelay());
+
+    warmTime.set(1500);
+    commitAfter(policy, clock, 100, 1000);
+    assertEquals(3000, policy.getDelay());
+
+    // bounded by the max time
+    warmTime.set(10000);
+    commitAfter(policy, clock, 100, 1000);
+    assertEquals(5000, policy.getDelay());
+  }
+
+  @Test
+  public void testPostpone() {
+    AdaptiveCommitPolicy policy = newPolicy(1000, 100, 5000);
+    long pendingSince = clock.get();
+    assertEquals(0, policy.postponeDelay(pendingSince));
+
+    warmingSearchers.set(1);
+    assertEquals(100, policy.postponeDelay(pendingSince));
+    assertEquals(1, policy.getPostponedCount());
+
+    // never beyond the max time
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(4950));
+    assertEquals(50, policy.postponeDelay(pendingSince));
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(50));
+    assertEquals(0, policy.postponeDelay(pendingSince));
+  }
+
+  @Test
+  public void testInvalidBounds() {
+    expectThrows(IllegalArgumentException.class, () -> newPolicy(1000, 2000, 5000));
+    expectThrows(IllegalArgumentException.class, () -> newPolicy(1000, 100, 500));
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.update;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.SolrTestCase;
+import org.junit.Test;
+
+public class LogPtrMapTest extends SolrTestCase {
+
+  @Test
+  public void testPutAndGet() {
+    LogPtrMap map = new LogPtrMap();
+    Map<BytesRef, UpdateLog.LogPtr> expected = new HashMap<>();
+    int numIds = atLeast(10000);
+    int numUpdates = numIds * 2;
+    for (int i = 0; i < numUpdates; i++) {
+      BytesRef id = new BytesRef("id" + random().nextInt(numIds));
+      UpdateLog.LogPtr ptr = new UpdateLog.LogPtr(i * 10L, i + 1L, random().nextInt(3) - 1L);
+      map.put(id, ptr);
+      expected.put(id, ptr);
+    }
+
+    assertEquals(expected.size(), map.size());
+    for (Map.Entry<BytesRef, UpdateLog.LogPtr> entry : expected.entrySet()) {
+      UpdateLog.LogPtr ptr = map.get(entry.getKey());
+      assertNotNull(ptr);
+      assertEquals(entry.getValue().pointer, ptr.pointer);
+      assertEquals(entry.getValue().version, ptr.version);
+      assertEquals(entry.getValue().previousPointer, ptr.previousPointer);
+    }
+    assertNull(map.get(new BytesRef("missing")));
+
+    map.clear();
+    assertTrue(map.isEmpty());
+    assertNull(map.get(expected.keySet().iterator().next()));
+    map.put(new BytesRef("id"), 1, 2, -1);
+    assertEquals(1, map.size());
+    assertEquals(2, map.get(new BytesRef("id")).version);
+  }
+}
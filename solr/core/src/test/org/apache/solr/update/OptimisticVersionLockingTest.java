@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.update;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.solr.SolrTestCase;
+import org.apache.solr.common.SolrException;
+import org.junit.Test;
+
+public class OptimisticVersionLockingTest extends SolrTestCase {
+
+  private int counter;
+
+  @Test
+  public void testBucketMutualExclusion() throws Exception {
+    OptimisticVersionBucket bucket = new OptimisticVersionBucket();
+    int numThreads = 8;
+    int numIncrements = atLeast(1000);
+    Thread[] threads = new Thread[numThreads];
+    for (int t = 0; t < numThreads; t++) {
+      threads[t] =
+          new Thread(
+              () -> {
+                for (int i = 0; i < numIncrements; i++) {
+                  boolean pause = i % 100 == 0;
+                  try {
+                    bucket.runWithLock(
+                        0,
+                        () -> {
+                          try {
+                            counter++;
+                            if (pause) {
+                              Thread.yield();
+                            }
+                          } finally {
+                            bucket.unlock();
+                          }
+                          return null;
+                        });
+                  } catch (Exception e) {
+                    throw new RuntimeException(e);
+                  }
+                }
+              });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(numThreads * numIncrements, counter);
+  }
+
+  @Test
+  public void testBucketLockTimeout() throws Exception {
+    OptimisticVersionBucket bucket = new OptimisticVersionBucket();
+    assertTrue(bucket.tryLock(0));
+    Thread other =
+        new Thread(
+            () ->
+                expectThrows(
+                    SolrException.class,
+                    () ->
+                        bucket.runWithLock(
+                            50,
+                            () -> {
+                              bucket.unlock();
+                              return null;
+                            })));
+    other.start();
+    other.join();
+    bucket.unlock();
+    assertTrue(bucket.tryLock(50));
+    bucket.unlock();
+  }
+
+  @Test
+  public void testBucketIsReentrant() throws Exception {
+    OptimisticVersionBucket bucket = new OptimisticVersionBucket();
+    assertTrue(bucket.tryLock(0));
+    assertTrue(bucket.tryLock(50));
+    bucket.unlock();
+
+    // still held after the nested unlock
+    AtomicBoolean locked = new AtomicBoolean();
+    Thread other =
+        new Thread(
+            () -> {
+              locked.set(bucket.tryLock(50));
+              if (locked.get()) {
+                bucket.unlock();
+              }
+            });
+    other.start();
+    other.join();
+    assertFalse(locked.get());
+
+    // waiting releases all the holds, and restores them
+    assertTrue(bucket.tryLock(0));
+    bucket.awaitNanos(TimeUnit.MILLISECONDS.toNanos(1));
+    bucket.unlock();
+    bucket.unlock();
+
+    other =
+        new Thread(
+            () -> {
+              locked.set(bucket.tryLock(0));
+              if (locked.get()) {
+                bucket.unlock();
+              }
+            });
+    other.start();
+    other.join();
+    assertTrue(locked.get());
+  }
+
+  @Test
+  public void testBucketAwaitAndSignal() throws Exception {
+    OptimisticVersionBucket bucket = new OptimisticVersionBucket();
+    CountDownLatch waiting = new CountDownLatch(1);
+    AtomicBoolean signalled = new AtomicBoolean();
+    Thread waiter =
+        new Thread(
+            () -> {
+              assertTrue(bucket.tryLock(0));
+              try {
+                waiting.countDown();
+                long start = System.nanoTime();
+                while (!signalled.get()) {
+                  bucket.awaitNanos(TimeUnit.SECONDS.toNanos(30));
+                }
+                assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(30));
+              } finally {
+                bucket.unlock();
+              }
+            });
+    waiter.start();
+    waiting.await();
+    // the waiter releases the lock while it waits
+    assertTrue(bucket.tryLock(10000));
+    signalled.set(true);
+    bucket.signalAll();
+    bucket.unlock();
+    waiter.join();
+    assertTrue(bucket.tryLock(0));
+    bucket.unlock();
+  }
+
+  @Test
+  public void testBlockUpdates() throws Exception {
+    StripedUpdateLock lock = new StripedUpdateLock(4);
+    lock.lockForUpdate();
+    // reentrant
+    lock.lockForUpdate();
+    lock.unlockForUpdate();
+
+    AtomicBoolean blocked = new AtomicBoolean();
+    Thread blocker =
+        new Thread(
+            () -> {
+              lock.blockUpdates();
+              blocked.set(true);
+              // the blocking thread can still update
+              lock.lockForUpdate();
+              lock.unlockForUpdate();
+              try {
+                Thread.sleep(50);
+              } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+              }
+              blocked.set(false);
+              lock.unblockUpdates();
+            });
+    blocker.start();
+    Thread.sleep(50);
+    // waits for the update in progress
+    assertFalse(blocked.get());
+    lock.unlockForUpdate();
+
+    while (blocker.isAlive() && !blocked.get()) {
+      Thread.sleep(1);
+    }
+    AtomicBoolean updatedWhileBlocked = new AtomicBoolean();
+    Thread updater =
+        new Thread(
+            () -> {
+              lock.lockForUpdate();
+              updatedWhileBlocked.set(blocked.get());
+              lock.unlockForUpdate();
+            });
+    updater.start();
+    updater.join();
+    blocker.join();
+    assertFalse(updatedWhileBlocked.get());
+  }
+}
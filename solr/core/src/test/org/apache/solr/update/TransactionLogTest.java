@@ -18,10 +18,13 @@
 package org.apache.solr.update;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Locale;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.solr.SolrTestCase;
 import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.update.TransactionLog.LogReader;
@@ -71,4 +74,139 @@ public class TransactionLogTest extends SolrTestCase {
       assertEquals(uuid, (UUID) doc.getFieldValue("uuid"));
     }
   }
+
+  @Test
+  public void testGroupSync() throws Exception {
+    String tlogFileName =
+        String.format(
+            Locale.ROOT, UpdateLog.LOG_FILENAME_PATTERN, UpdateLog.TLOG_NAME, Long.MAX_VALUE);
+    Path logFile = createTempDir().resolve(tlogFileName);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger fsyncs = new AtomicInteger();
+    AtomicInteger acknowledged = new AtomicInteger();
+    int numThreads = 5;
+
+    try (TransactionLog tlog =
+        new TransactionLog(logFile, null) {
+          @Override
+          public void finish(UpdateLog.SyncLevel syncLevel) {
+            if (syncLevel == UpdateLog.SyncLevel.FSYNC && fsyncs.getAndIncrement() == 0) {
+              // the first fsync is slow, the other callers queue up behind it
+              try {
+                release.await();
+              } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+              }
+            }
+            super.finish(syncLevel);
+          }
+        }) {
+      Thread[] threads = new Thread[numThreads];
+      for (int i = 0; i < numThreads; i++) {
+        threads[i] =
+            new Thread(
+                () -> {
+                  AddUpdateCommand updateCommand = new AddUpdateCommand(null);
+                  updateCommand.solrDoc = new SolrInputDocument();
+                  tlog.write(updateCommand);
+                  acknowledged.addAndGet(tlog.groupSync(0));
+                });
+      }
+
+      threads[0].start();
+      while (fsyncs.get() == 0) {
+        Thread.sleep(1);
+      }
+      for (int i = 1; i < numThreads; i++) {
+        threads[i].start();
+      }
+      for (int i = 1; i < numThreads; i++) {
+        while (threads[i].getState() != Thread.State.WAITING) {
+          Thread.sleep(1);
+        }
+      }
+      release.countDown();
+      for (Thread thread : threads) {
+        thread.join();
+      }
+
+      // one fsync for the first caller, and a single one for all the others
+      assertEquals(2, fsyncs.get());
+      assertEquals(numThreads, acknowledged.get());
+    }
+  }
+
+  @Test
+  public void testCompression() throws Exception {
+    for (TransactionLog.Compression compression : TransactionLog.Compression.values()) {
+      if (compression != TransactionLog.Compression.NONE) {
+        assertCompressedRoundTrip(compression);
+      }
+    }
+  }
+
+  private Path writeDocs(TransactionLog.Compression compression, long[] positions)
+      throws IOException {
+    String tlogFileName =
+        String.format(
+            Locale.ROOT, UpdateLog.LOG_FILENAME_PATTERN, UpdateLog.TLOG_NAME, Long.MAX_VALUE);
+    Path logFile = createTempDir().resolve(tlogFileName);
+    try (TransactionLog tlog = new TransactionLog(logFile, null)) {
+      tlog.deleteOnClose = false;
+      tlog.setCompression(compression);
+      for (int i = 0; i < positions.length; i++) {
+        AddUpdateCommand updateCommand = new AddUpdateCommand(null);
+        SolrInputDocument doc = new SolrInputDocument();
+        doc.addField("id", Integer.toString(i));
+        // every other document is too small to be compressed
+        if (i % 2 == 0) {
+          doc.addField("text", "the quick brown fox jumps over the lazy dog ".repeat(20 + i));
+        }
+        updateCommand.solrDoc = doc;
+        updateCommand.setVersion(i + 1);
+        positions[i] = tlog.write(updateCommand);
+      }
+      tlog.finish(UpdateLog.SyncLevel.FLUSH);
+    }
+    return logFile;
+  }
+
+  private void assertCompressedRoundTrip(TransactionLog.Compression compression)
+      throws Exception {
+    int numDocs = 10;
+    long[] positions = new long[numDocs];
+    long uncompressedSize = Files.size(writeDocs(TransactionLog.Compression.NONE, positions));
+    Path logFile = writeDocs(compression, positions);
+    assertTrue(Files.size(logFile) < uncompressedSize);
+
+    try (TransactionLog tlog = new TransactionLog(logFile, null, true)) {
+      assertEquals(compression, tlog.getCompression());
+
+      LogReader reader = tlog.getReader(0);
+      for (int i = 0; i < numDocs; i++) {
+        List<?> entry = (List<?>) reader.next();
+        assertEquals(UpdateLog.ADD, entry.get(0));
+        assertEquals(i + 1L, entry.get(1));
+        SolrInputDocument doc = (SolrInputDocument) entry.get(2);
+        assertEquals(Integer.toString(i), doc.getFieldValue("id"));
+        assertEquals(i % 2 == 0, doc.containsKey("text"));
+      }
+      assertNull(reader.next());
+      reader.close();
+
+      TransactionLog.ReverseReader reverseReader = tlog.getReverseReader();
+      for (int i = numDocs - 1; i >= 0; i--) {
+        List<?> entry = (List<?>) reverseReader.next();
+        assertEquals(i + 1L, entry.get(1));
+      }
+      assertNull(reverseReader.next());
+      reverseReader.close();
+
+      for (int i = 0; i < numDocs; i++) {
+        List<?> entry = (List<?>) tlog.lookup(positions[i]);
+        SolrInputDocument doc = (SolrInputDocument) entry.get(2);
+        assertEquals(Integer.toString(i), doc.getFieldValue("id"));
+      }
+    }
+  }
 }
@@ -16,6 +16,9 @@
  */
 package org.apache.solr.update;
 
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.lucene.util.BytesRef;
 import org.apache.solr.SolrTestCaseJ4;
 import org.apache.solr.common.util.Hash;
@@ -58,6 +61,57 @@ public class VersionInfoTest extends SolrTestCaseJ4 {
     }
   }
 
+  @Test
+  public void testOptimisticVersionLockingIsReentrant() throws Exception {
+    System.setProperty("optimisticVersionLocking", "true");
+    try {
+      initCore("solrconfig-tlog.xml", "schema-version-dv.xml");
+      VersionBucket bucket =
+          h.getCore().getUpdateHandler().getUpdateLog().getVersionInfo().bucket(0);
+      assertTrue(bucket instanceof OptimisticVersionBucket);
+
+      // like an in-place update that turns into a delete, locks the bucket it holds
+      AtomicBoolean nestedRan = new AtomicBoolean();
+      Thread updater =
+          new Thread(
+              () -> {
+                try {
+                  bucket.runWithLock(
+                      0,
+                      () -> {
+                        try {
+                          return bucket.runWithLock(
+                              0,
+                              () -> {
+                                try {
+                                  nestedRan.set(true);
+                                  return null;
+                                } finally {
+                                  bucket.unlock();
+                                }
+                              });
+                        } finally {
+                          bucket.unlock();
+                        }
+                      });
+                } catch (IOException e) {
+                  throw new RuntimeException(e);
+                }
+              });
+      updater.start();
+      updater.join(TimeUnit.SECONDS.toMillis(30));
+      assertFalse("the bucket could not be locked again", updater.isAlive());
+      assertTrue(nestedRan.get());
+
+      // fully released
+      assertTrue(((OptimisticVersionBucket) bucket).tryLock(0));
+      bucket.unlock();
+    } finally {
+      deleteCore();
+      System.clearProperty("optimisticVersionLocking");
+    }
+  }
+
   protected void testMaxVersionLogic(SolrQueryRequest req) throws Exception {
     UpdateHandler uhandler = req.getCore().getUpdateHandler();
     UpdateLog ulog = uhandler.getUpdateLog();
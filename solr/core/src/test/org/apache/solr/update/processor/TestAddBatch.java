@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.update.processor;
+
+import static org.apache.solr.common.util.Utils.fromJSONString;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.params.UpdateParams;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.update.AddUpdateCommand;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Adds documents through {@link UpdateRequestProcessor#processAddBatch} */
+public class TestAddBatch extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig-tlog.xml", "schema15.xml");
+  }
+
+  @Before
+  public void before() {
+    clearIndex();
+    assertU(commit());
+  }
+
+  private static String docs(int from, int to) {
+    StringBuilder json = new StringBuilder("[");
+    for (int i = from; i < to; i++) {
+      if (i > from) json.append(',');
+      json.append("{\"id\":\"").append(i).append("\",\"val_i\":").append(i).append('}');
+    }
+    return json.append(']').toString();
+  }
+
+  /** Returns the versions of the added documents, by id */
+  private static List<Object> addVersions(String json, String batchSize) throws Exception {
+    String response =
+        updateJ(
+            json, params(UpdateParams.VERSIONS, "true", UpdateParams.ADD_BATCH_SIZE, batchSize));
+    @SuppressWarnings("unchecked")
+    List<Object> adds = (List<Object>) ((Map<?, ?>) fromJSONString(response)).get("adds");
+    return adds;
+  }
+
+  @Test
+  public void testVersionsAndRealTimeGet() throws Exception {
+    for (String batchSize : new String[] {"1", "7", "100"}) {
+      before();
+      List<Object> adds = addVersions(docs(0, 250), batchSize);
+      assertEquals(500, adds.size());
+      long lastVersion = 0;
+      for (int i = 0; i < 250; i++) {
+        assertEquals(Integer.toString(i), adds.get(2 * i));
+        long version = ((Number) adds.get(2 * i + 1)).longValue();
+        assertTrue(version > lastVersion);
+        lastVersion = version;
+      }
+      assertJQ(
+          req("qt", "/get", "id", "42", "fl", "id,val_i,_version_"),
+          "/doc/val_i==42",
+          "/doc/_version_==" + adds.get(85));
+
+      assertU(commit());
+      assertJQ(req("q", "*:*", "rows", "0"), "/response/numFound==250");
+      assertJQ(req("q", "val_i:[100 TO 199]", "rows", "0"), "/response/numFound==100");
+    }
+  }
+
+  @Test
+  public void testDuplicatesInBatch() throws Exception {
+    addVersions(
+        "[{\"id\":\"1\",\"val_i\":1},{\"id\":\"2\",\"val_i\":2},{\"id\":\"1\",\"val_i\":3}]",
+        "10");
+    assertJQ(req("qt", "/get", "id", "1", "fl", "val_i"), "/doc/val_i==3");
+    assertU(commit());
+    assertJQ(req("q", "*:*", "rows", "0"), "/response/numFound==2");
+    assertJQ(req("q", "id:1", "fl", "val_i"), "/response/docs/[0]/val_i==3");
+  }
+
+  @Test
+  public void testAtomicUpdatesInBatch() throws Exception {
+    addVersions(docs(0, 5), "10");
+    assertU(commit());
+    // 5 and 6 are only in the update log
+    addVersions(docs(5, 7), "10");
+
+    List<Object> adds =
+        addVersions(
+            "[{\"id\":\"3\",\"val_i\":{\"inc\":10},\"cat_s\":{\"add\":\"a\"}},"
+                + "{\"id\":\"6\",\"val_i\":{\"inc\":10}},"
+                + "{\"id\":\"1\",\"cat_s\":{\"set\":\"b\"}},"
+                + "{\"id\":\"100\",\"val_i\":{\"set\":100}},"
+                + "{\"id\":\"5\",\"val_i\":{\"inc\":1}}]",
+            "10");
+    assertEquals(10, adds.size());
+    assertJQ(req("qt", "/get", "id", "3", "fl", "val_i,cat_s"), "/doc=={'val_i':13,'cat_s':['a']}");
+    assertJQ(req("qt", "/get", "id", "6", "fl", "val_i"), "/doc/val_i==16");
+    assertJQ(req("qt", "/get", "id", "1", "fl", "val_i,cat_s"), "/doc=={'val_i':1,'cat_s':['b']}");
+    assertJQ(req("qt", "/get", "id", "100", "fl", "val_i"), "/doc/val_i==100");
+    assertJQ(req("qt", "/get", "id", "5", "fl", "val_i"), "/doc/val_i==6");
+
+    assertU(commit());
+    assertJQ(req("q", "*:*", "rows", "0"), "/response/numFound==8");
+    assertJQ(req("q", "val_i:[10 TO *]", "rows", "0"), "/response/numFound==3");
+  }
+
+  @Test
+  public void testVersionConstraintsInBatch() throws Exception {
+    addVersions(docs(0, 5), "10");
+    // a batch with optimistic concurrency is versioned document by document
+    ignoreException("version conflict");
+    expectThrows(
+        Exception.class,
+        () ->
+            addVersions(
+                "[{\"id\":\"10\",\"_version_\":-1},"
+                    + "{\"id\":\"1\",\"_version_\":-1},"
+                    + "{\"id\":\"11\"}]",
+                "10"));
+    unIgnoreException("version conflict");
+    assertU(commit());
+    assertJQ(req("q", "id:10", "rows", "0"), "/response/numFound==1");
+    assertJQ(req("q", "id:11", "rows", "0"), "/response/numFound==0");
+  }
+
+  @Test
+  public void testFailureInBatch() throws Exception {
+    ignoreException("not_an_int");
+    expectThrows(
+        Exception.class,
+        () ->
+            addVersions(
+                "[{\"id\":\"1\",\"val_i\":1},"
+                    + "{\"id\":\"2\",\"val_i\":\"not_an_int\"},"
+                    + "{\"id\":\"3\",\"val_i\":3}]",
+                "10"));
+    unIgnoreException("not_an_int");
+    assertU(commit());
+    // like when adding one by one, the documents before the failing one are added
+    assertJQ(req("q", "id:1", "rows", "0"), "/response/numFound==1");
+    assertJQ(req("q", "id:2 OR id:3", "rows", "0"), "/response/numFound==0");
+  }
+
+  @Test
+  public void testParseErrorIsReportedOverFailureInBatch() throws Exception {
+    ignoreException("not_an_int");
+    ignoreException("Cannot parse provided JSON");
+    // the batch holding the first document fails when it is flushed after the parse error
+    Exception e =
+        expectThrows(
+            Exception.class,
+            () -> addVersions("[{\"id\":\"1\",\"val_i\":\"not_an_int\"},{\"id\":", "10"));
+    unIgnoreException("Cannot parse provided JSON");
+    unIgnoreException("not_an_int");
+    assertTrue(e.getMessage(), e.getMessage().contains("Cannot parse provided JSON"));
+  }
+
+  @Test
+  public void testDefaultDelegatesToProcessAdd() throws Exception {
+    List<String> ids = new ArrayList<>();
+    UpdateRequestProcessor processor =
+        new UpdateRequestProcessor(null) {
+          @Override
+          public void processAdd(AddUpdateCommand cmd) {
+            ids.add((String) cmd.getSolrInputDocument().getFieldValue("id"));
+          }
+        };
+    try (SolrQueryRequest req = req()) {
+      List<AddUpdateCommand> cmds = new ArrayList<>();
+      for (String id : new String[] {"a", "b", "c"}) {
+        AddUpdateCommand cmd = new AddUpdateCommand(req);
+        cmd.solrDoc = sdoc("id", id);
+        cmds.add(cmd);
+      }
+      processor.processAddBatch(cmds);
+    }
+    assertEquals(List.of("a", "b", "c"), ids);
+  }
+}
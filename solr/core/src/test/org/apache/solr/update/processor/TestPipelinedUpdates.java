@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.update.processor;
+
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.params.UpdateParams;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.update.AddUpdateCommand;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Runs update requests through a {@link PipelinedUpdateProcessor} */
+public class TestPipelinedUpdates extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    // not bounded by the processors of the machine running the tests
+    System.setProperty(UpdatePipelineExecutor.MAX_THREADS_PROP, "4");
+    initCore("solrconfig-tlog.xml", "schema15.xml");
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    System.clearProperty(UpdatePipelineExecutor.MAX_THREADS_PROP);
+  }
+
+  @Before
+  public void before() {
+    clearIndex();
+    assertU(commit());
+  }
+
+  @Test
+  public void testCreateProcessor() throws Exception {
+    UpdateRequestProcessorChain chain = h.getCore().getUpdateProcessingChain(null);
+    try (SolrQueryRequest req = req(UpdateParams.PIPELINE_THREADS, "4");
+        SolrQueryRequest other = req(UpdateParams.PIPELINE_THREADS, "2")) {
+      UpdateRequestProcessor processor =
+          PipelinedUpdateProcessor.createProcessor(chain, req, new SolrQueryResponse());
+      try {
+        assertTrue(isPipelined(processor));
+
+        // all the threads of the node are taken
+        UpdateRequestProcessor otherProcessor =
+            PipelinedUpdateProcessor.createProcessor(chain, other, new SolrQueryResponse());
+        assertFalse(isPipelined(otherProcessor));
+        otherProcessor.close();
+      } finally {
+        processor.finish();
+        processor.close();
+      }
+
+      // and given back once the request is done
+      UpdateRequestProcessor otherProcessor =
+          PipelinedUpdateProcessor.createProcessor(chain, other, new SolrQueryResponse());
+      assertTrue(isPipelined(otherProcessor));
+      otherProcessor.finish();
+      otherProcessor.close();
+    }
+    try (SolrQueryRequest req = req()) {
+      UpdateRequestProcessor processor =
+          PipelinedUpdateProcessor.createProcessor(chain, req, new SolrQueryResponse());
+      for (UpdateRequestProcessor p = processor; p != null; p = p.next) {
+        assertFalse(p instanceof PipelinedUpdateProcessor);
+      }
+      processor.close();
+    }
+  }
+
+  private static boolean isPipelined(UpdateRequestProcessor processor) {
+    for (UpdateRequestProcessor p = processor; p != null; p = p.next) {
+      if (p instanceof PipelinedUpdateProcessor) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Test
+  public void testUpdatesOfSameIdKeepTheirOrder() throws Exception {
+    StringBuilder json = new StringBuilder("[");
+    for (int round = 0; round < 5; round++) {
+      for (int i = 0; i < 200; i++) {
+        if (json.length() > 1) json.append(',');
+        json.append("{\"id\":\"").append(i).append("\",\"val_i\":").append(round).append('}');
+      }
+    }
+    json.append(']');
+
+    for (String batchSize : new String[] {"1", "10"}) {
+      before();
+      updateJ(
+          json.toString(),
+          params(
+              UpdateParams.PIPELINE_THREADS, "4",
+              UpdateParams.ADD_BATCH_SIZE, batchSize,
+              "commit", "true"));
+      assertJQ(req("q", "*:*", "rows", "0"), "/response/numFound==200");
+      assertJQ(req("q", "val_i:4", "rows", "0"), "/response/numFound==200");
+    }
+  }
+
+  @Test
+  public void testCommandsInBetweenDocuments() throws Exception {
+    updateJ(
+        json(
+            "{"
+                + "'add': {'doc': {'id': '1', 'val_i': 1}},"
+                + "'add': {'doc': {'id': '2', 'val_i': 2}},"
+                + "'delete': '1',"
+                + "'add': {'doc': {'id': '3', 'val_i': 3}},"
+                + "'delete': {'query': 'val_i:3'},"
+                + "'commit': {},"
+                + "'add': {'doc': {'id': '4', 'val_i': 4}}"
+                + "}"),
+        params(UpdateParams.PIPELINE_THREADS, "3", "commit", "true"));
+    assertJQ(
+        req("q", "*:*", "sort", "id asc", "fl", "id"), "/response/docs==[{'id':'2'},{'id':'4'}]");
+  }
+
+  @Test
+  public void testFailure() throws Exception {
+    UpdateRequestProcessorChain chain = h.getCore().getUpdateProcessingChain(null);
+    SolrQueryRequest req = req(UpdateParams.PIPELINE_THREADS, "2");
+    try {
+      UpdateRequestProcessor processor =
+          PipelinedUpdateProcessor.createProcessor(chain, req, new SolrQueryResponse());
+      try {
+        AddUpdateCommand cmd = new AddUpdateCommand(req);
+        cmd.solrDoc = sdoc("id", "1", "val_i", "not a number");
+        expectThrows(
+            Exception.class,
+            () -> {
+              processor.processAdd(cmd);
+              processor.finish();
+            });
+      } finally {
+        processor.close();
+      }
+    } finally {
+      req.close();
+    }
+  }
+}
@@ -26,4 +26,10 @@ public interface ExpandParams {
   public static final String EXPAND_Q = EXPAND + ".q";
   public static final String EXPAND_FQ = EXPAND + ".fq";
   public static final String EXPAND_NULL = EXPAND + ".nullGroup";
+
+  /**
+   * Whether the top docs of every group may be collected once and reused from the searcher's
+   * <code>expandCache</code>, when that cache is configured. Defaults to true.
+   */
+  public static final String EXPAND_CACHE = EXPAND + ".cache";
 }
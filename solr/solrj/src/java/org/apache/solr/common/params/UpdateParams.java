@@ -76,4 +76,16 @@ public interface UpdateParams {
    * "In-Place" with out re-indexing the entire document.
    */
   public static final String REQUIRE_PARTIAL_DOC_UPDATES_INPLACE = "update.partial.requireInPlace";
+
+  /**
+   * Maximum number of consecutive documents that the JSON and JavaBin loaders hand to the update
+   * processors at once. 1 processes them one by one.
+   */
+  public static final String ADD_BATCH_SIZE = "update.addBatchSize";
+
+  /**
+   * Number of threads running the update processors that follow the log processor, while the
+   * request thread parses the content. 1, the default, runs the whole chain on the request thread.
+   */
+  public static final String PIPELINE_THREADS = "update.pipelineThreads";
 }
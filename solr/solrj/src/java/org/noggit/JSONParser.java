@@ -665,7 +665,7 @@ public class JSONParser {
   }
 
   // backslash has already been read when this is called
-  private char readEscapedChar() throws IOException {
+  protected char readEscapedChar() throws IOException {
     int ch = getChar();
     switch (ch) {
       case '"':
@@ -699,6 +699,14 @@ public class JSONParser {
     throw err("Invalid character escape");
   }
 
+  /**
+   * Reads an escaped character and writes it to the output. The backslash has already been read
+   * when this is called.
+   */
+  protected void writeEscapedChar(CharArr arr) throws IOException {
+    arr.write(readEscapedChar());
+  }
+
   // a dummy buffer we can use to point at other buffers
   private final CharArr tmp = new CharArr(null, 0, 0);
 
@@ -754,7 +762,7 @@ public class JSONParser {
         int len = middle - start - 1;
         if (len > 0) arr.write(buf, start, len);
         start = middle;
-        arr.write(readEscapedChar());
+        writeEscapedChar(arr);
         middle = start;
       }
     }
@@ -770,7 +778,7 @@ public class JSONParser {
       if (!isUnquotedStringChar(ch)) {
         if (ch == -1) break;
         if (ch == '\\') {
-          arr.write(readEscapedChar());
+          writeEscapedChar(arr);
           continue;
         }
         start--;
@@ -778,7 +786,7 @@ public class JSONParser {
       }
 
       if (ch == '\\') {
-        arr.write(readEscapedChar());
+        writeEscapedChar(arr);
         continue;
       }
 